@@ -31,6 +31,7 @@ import com.voipgrid.vialer.api.models.PhoneAccount;
 import com.voipgrid.vialer.api.models.SystemUser;
 import com.voipgrid.vialer.fcm.FcmMessagingService;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.middleware.MiddlewareHelper;
 import com.voipgrid.vialer.onboarding.SetupActivity;
 import com.voipgrid.vialer.sip.SipService;
@@ -105,7 +106,7 @@ public class AccountActivity extends LoginRequiredActivity {
         mPhoneAccountHelper = new PhoneAccountHelper(this);
         mPreferences = new Preferences(this);
         mApi = ServiceGenerator.createApiService(this);
-        mLogger = new Logger(this.getClass());
+        mLogger = LoggerFactory.getLogger(this.getClass());
         mClipboardHelper =  ClipboardHelper.fromContext(this);
         mBroadcastReceiverManager = BroadcastReceiverManager.fromContext(this);
 
@@ -4,7 +4,7 @@ import android.app.Activity;
 import android.app.Application;
 import android.os.Bundle;
 
-import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 
 public class ActivityLifecycleTracker implements Application.ActivityLifecycleCallbacks {
 
@@ -12,29 +12,29 @@ public class ActivityLifecycleTracker implements Application.ActivityLifecycleCa
 
     @Override
     public void onActivityCreated(Activity activity, Bundle bundle) {
-        new Logger(activity.getClass()).d("onCreate");
+        LoggerFactory.getLogger(activity.getClass()).d("onCreate");
     }
 
     @Override
     public void onActivityStarted(Activity activity) {
-        new Logger(activity.getClass()).d("onStart");
+        LoggerFactory.getLogger(activity.getClass()).d("onStart");
     }
 
     @Override
     public void onActivityResumed(Activity activity) {
         isApplicationVisible = true;
-        new Logger(activity.getClass()).d("onResume");
+        LoggerFactory.getLogger(activity.getClass()).d("onResume");
     }
 
     @Override
     public void onActivityPaused(Activity activity) {
         isApplicationVisible = false;
-        new Logger(activity.getClass()).d("onPause");
+        LoggerFactory.getLogger(activity.getClass()).d("onPause");
     }
 
     @Override
     public void onActivityStopped(Activity activity) {
-        new Logger(activity.getClass()).d("onStop");
+        LoggerFactory.getLogger(activity.getClass()).d("onStop");
     }
 
     @Override
@@ -44,7 +44,7 @@ public class ActivityLifecycleTracker implements Application.ActivityLifecycleCa
 
     @Override
     public void onActivityDestroyed(Activity activity) {
-        new Logger(activity.getClass()).d("onDestroy");
+        LoggerFactory.getLogger(activity.getClass()).d("onDestroy");
     }
 
     public boolean isApplicationVisible() {
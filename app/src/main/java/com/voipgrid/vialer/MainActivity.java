@@ -24,6 +24,7 @@ import com.voipgrid.vialer.contacts.SyncUtils;
 import com.voipgrid.vialer.contacts.UpdateChangedContactsService;
 import com.voipgrid.vialer.dialer.DialerActivity;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.onboarding.AccountFragment;
 import com.voipgrid.vialer.onboarding.SetupActivity;
 import com.voipgrid.vialer.permissions.ContactsPermission;
@@ -64,7 +65,7 @@ public class MainActivity extends NavigationDrawerActivity implements
             }
         }
 
-        mLogger = new Logger(this.getClass());
+        mLogger = LoggerFactory.getLogger(this.getClass());
         JsonStorage jsonStorage = new JsonStorage(this);
         ConnectivityHelper connectivityHelper = ConnectivityHelper.get(this);
         Boolean hasSystemUser = jsonStorage.has(SystemUser.class);
@@ -30,6 +30,8 @@ public class Preferences {
     public static final String PREF_HAS_TLS_ENABLED = "PREF_HAS_TLS_ENABLED";
     public static final String PREF_HAS_STUN_ENABLED = "PREF_HAS_STUN_ENABLED";
     public static final String PREF_AUDIO_CODEC = "PREF_AUDIO_CODEC";
+    public static final String PREF_CALL_QUALITY_HISTORY = "PREF_CALL_QUALITY_HISTORY";
+    public static final String PREF_CALL_SETUP_LATENCY = "PREF_CALL_SETUP_LATENCY";
 
     public static final String CONNECTION_PREFERENCE = "CONNECTION_PREFERENCE";
     public static final long CONNECTION_PREFERENCE_NONE = -10;
@@ -202,4 +204,26 @@ public class Preferences {
     public @AudioCodec int getAudioCodec() {
         return mPreferences.getInt(PREF_AUDIO_CODEC, DEFAULT_VALUE_AUDIO_CODEC);
     }
+
+    /**
+     * @return The quality of earlier calls per network, as encoded by CallQualityHistory.
+     */
+    public String getCallQualityHistory() {
+        return mPreferences.getString(PREF_CALL_QUALITY_HISTORY, null);
+    }
+
+    public void setCallQualityHistory(String callQualityHistory) {
+        mPreferences.edit().putString(PREF_CALL_QUALITY_HISTORY, callQualityHistory).apply();
+    }
+
+    /**
+     * @return The latencies from push to incoming call, as encoded by LatencyHistogram.
+     */
+    public String getCallSetupLatency() {
+        return mPreferences.getString(PREF_CALL_SETUP_LATENCY, null);
+    }
+
+    public void setCallSetupLatency(String callSetupLatency) {
+        mPreferences.edit().putString(PREF_CALL_SETUP_LATENCY, callSetupLatency).apply();
+    }
 }
@@ -6,6 +6,7 @@ import com.voipgrid.vialer.analytics.AnalyticsApplication;
 import com.voipgrid.vialer.dagger.DaggerVialerComponent;
 import com.voipgrid.vialer.dagger.VialerComponent;
 import com.voipgrid.vialer.dagger.VialerModule;
+import com.voipgrid.vialer.t9.T9SearchEngine;
 
 /**
  * VialerApplication that extends the AnalyticsApplication
@@ -35,6 +36,7 @@ public class VialerApplication extends AnalyticsApplication {
         registerActivityLifecycleCallbacks(mActivityLifecycle);
         new ANRWatchDog().start();
         Contacts.initialize(this);
+        T9SearchEngine.getInstance().reloadInBackground(this);
     }
 
     public static String getAppVersion() {
@@ -5,6 +5,7 @@ import android.content.Context;
 import com.voipgrid.vialer.api.models.ApiTokenRequest;
 import com.voipgrid.vialer.api.models.ApiTokenResponse;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.util.AccountHelper;
 
 import java.io.IOException;
@@ -55,7 +56,7 @@ public class ApiTokenFetcher {
                 password,
                 ServiceGenerator.createApiService(context, null, null, null),
                 new AccountHelper(context),
-                new Logger(ApiTokenFetcher.class)
+                LoggerFactory.getLogger(ApiTokenFetcher.class)
         );
     }
 
@@ -71,7 +72,7 @@ public class ApiTokenFetcher {
                 accountHelper.getPassword(),
                 ServiceGenerator.createApiService(context, null, null, null),
                 new AccountHelper(context),
-                new Logger(ApiTokenFetcher.class)
+                LoggerFactory.getLogger(ApiTokenFetcher.class)
         );
     }
 
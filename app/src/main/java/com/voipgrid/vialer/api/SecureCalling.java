@@ -10,6 +10,7 @@ import com.voipgrid.vialer.Preferences;
 import com.voipgrid.vialer.api.models.SystemUser;
 import com.voipgrid.vialer.api.models.UseEncryption;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.util.JsonStorage;
 
 import retrofit2.Call;
@@ -65,7 +66,7 @@ public class SecureCalling {
     public static SecureCalling fromContext(Context context) {
         SystemUser systemUser = null;
         JsonStorage jsonStorage = new JsonStorage(context);
-        Logger logger = new Logger(SecureCalling.class);
+        Logger logger = LoggerFactory.getLogger(SecureCalling.class);
 
         if (jsonStorage.has(SystemUser.class)) {
             systemUser = (SystemUser) jsonStorage.get(SystemUser.class);
@@ -5,6 +5,7 @@ import android.content.Context;
 import android.content.Intent;
 
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.onboarding.SetupActivity;
 import com.voipgrid.vialer.util.AccountHelper;
 import com.voipgrid.vialer.util.JsonStorage;
@@ -23,7 +24,7 @@ public class LogUserOutOnUnauthorizedResponse implements Interceptor {
 
     public LogUserOutOnUnauthorizedResponse(Context context) {
         mContext = context;
-        mLogger = new Logger(this.getClass());
+        mLogger = LoggerFactory.getLogger(this.getClass());
     }
 
     @Override
@@ -8,6 +8,7 @@ import android.content.Context;
 import android.content.Intent;
 
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 
 public class BluetoothButtonReceiver extends BroadcastReceiver {
 
@@ -16,7 +17,7 @@ public class BluetoothButtonReceiver extends BroadcastReceiver {
 
     public BluetoothButtonReceiver(Listener listener) {
         mListener = listener;
-        mLogger = new Logger(this.getClass());
+        mLogger = LoggerFactory.getLogger(this.getClass());
     }
 
     @Override
@@ -14,6 +14,7 @@ import android.content.Intent;
 
 import com.voipgrid.vialer.VialerApplication;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.sip.SipConstants;
 
 public class CallStatusReceiver extends BroadcastReceiver {
@@ -23,7 +24,7 @@ public class CallStatusReceiver extends BroadcastReceiver {
 
     public CallStatusReceiver(Listener listener) {
         mListener = listener;
-        mLogger = new Logger(this);
+        mLogger = LoggerFactory.getLogger(this.getClass());
     }
 
     @Override
@@ -4,6 +4,7 @@ import android.app.Activity;
 import android.os.Handler;
 
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 
 public class DelayedFinish implements Runnable {
     private final Activity mActivity;
@@ -19,7 +20,7 @@ public class DelayedFinish implements Runnable {
         mActivity = activity;
         mHandler = handler;
         mSipServiceConnection = sipServiceConnection;
-        mLogger = new Logger(this.getClass());
+        mLogger = LoggerFactory.getLogger(this.getClass());
     }
 
     void begin() {
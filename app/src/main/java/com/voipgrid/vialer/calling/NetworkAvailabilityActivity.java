@@ -9,6 +9,7 @@ import android.widget.TextView;
 import com.voipgrid.vialer.R;
 import com.voipgrid.vialer.VialerApplication;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.sip.SipCall;
 import com.voipgrid.vialer.sip.SipService;
 import com.voipgrid.vialer.util.NetworkUtil;
@@ -98,7 +99,7 @@ public class NetworkAvailabilityActivity extends AbstractCallActivity {
 
     public static void start() {
         Intent intent = new Intent(VialerApplication.get(), NetworkAvailabilityActivity.class);
-        Logger logger = new Logger(NetworkAvailabilityActivity.class);
+        Logger logger = LoggerFactory.getLogger(NetworkAvailabilityActivity.class);
         VialerApplication.get().startActivity(intent);
         logger.d("No connectivity available, the Network Availability Activity is being shown");
     }
@@ -9,6 +9,7 @@ import android.os.Handler;
 import android.os.IBinder;
 
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.sip.SipService;
 
 public class SipServiceConnection implements ServiceConnection {
@@ -69,7 +70,7 @@ public class SipServiceConnection implements ServiceConnection {
      * @param activity
      */
     SipServiceConnection(Activity activity) {
-        mLogger = new Logger(this.getClass());
+        mLogger = LoggerFactory.getLogger(this.getClass());
         mActivity = activity;
 
         if (activity instanceof SipServiceConnectionListener) {
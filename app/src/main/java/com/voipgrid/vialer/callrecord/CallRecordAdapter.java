@@ -12,23 +12,19 @@ import android.widget.ImageButton;
 import android.widget.ListView;
 import android.widget.TextView;
 
-import com.github.tamir7.contacts.Contact;
 import com.voipgrid.vialer.R;
 import com.voipgrid.vialer.VialerApplication;
 import com.voipgrid.vialer.api.models.CallRecord;
-import com.voipgrid.vialer.contacts.Contacts;
+import com.voipgrid.vialer.contacts.ContactImageLoader;
 import com.voipgrid.vialer.dialer.DialerActivity;
 import com.voipgrid.vialer.permissions.ContactsPermission;
 import com.voipgrid.vialer.util.DialHelper;
-import com.voipgrid.vialer.util.IconHelper;
 import com.voipgrid.vialer.util.PhoneNumberUtils;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import javax.inject.Inject;
 
@@ -45,10 +41,9 @@ public class CallRecordAdapter extends BaseAdapter implements View.OnClickListen
 
     public boolean mCallAlreadySetup = false;
 
-    private Map<String, Contact> mCachedContacts = new HashMap<>();
-    private Map<String, Bitmap> mCachedContactImages = new HashMap<>();
+    @Inject ContactImageLoader mContactImageLoader;
 
-    @Inject Contacts mContacts;
+    private final Runnable mOnCallerLoaded = this::notifyDataSetChanged;
 
     /**
      * Construct a new CallRecordAdapter
@@ -90,7 +85,8 @@ public class CallRecordAdapter extends BaseAdapter implements View.OnClickListen
         ViewHolder viewHolder;
         // Get the call record.
         CallRecord callRecord = getItem(position);
-        Contact contact = null;
+        String contactName = null;
+        Bitmap bitmapImage = null;
         String number = "";
         // Default resource for direction.
         int resource = 0;
@@ -112,12 +108,18 @@ public class CallRecordAdapter extends BaseAdapter implements View.OnClickListen
                 }
             }
 
-            // Get possible name or null.
-            if (ContactsPermission.hasPermission(mActivity)) {
-                if (!mCachedContacts.containsKey(number)) {
-                    mCachedContacts.put(number, mContacts.getContactByPhoneNumber(number));
+            // Get possible name and photo, the row is refreshed when they are looked up.
+            if (number != null && ContactsPermission.hasPermission(mActivity)) {
+                ContactImageLoader.Caller caller = mContactImageLoader.getCachedCaller(number);
+                if (caller != null) {
+                    contactName = caller.getDisplayName();
+                    if (caller.hasPhoto()) {
+                        bitmapImage = mContactImageLoader.getCachedPhoto(number);
+                    }
+                }
+                if (caller == null || (caller.hasPhoto() && bitmapImage == null)) {
+                    mContactImageLoader.loadCaller(number, mOnCallerLoaded);
                 }
-                contact = mCachedContacts.get(number);
             }
         }
 
@@ -127,21 +129,10 @@ public class CallRecordAdapter extends BaseAdapter implements View.OnClickListen
             convertView = inflater.inflate(R.layout.list_item_call_record, parent, false);
         }
 
-        Bitmap bitmapImage = null;
-
-        if (contact != null) {
-
-            if (!mCachedContactImages.containsKey(number)) {
-                mCachedContactImages.put(number, mContacts.getContactImageByPhoneNumber(number));
-            }
-
-            bitmapImage = mCachedContactImages.get(number);
-
-            if (bitmapImage == null) {
-                bitmapImage = IconHelper.getCallerIconBitmap(contact.getDisplayName().substring(0, 1), number, 0);
-            }
-        } else {
-            bitmapImage = IconHelper.getCallerIconBitmap("", number, 0);
+        if (bitmapImage == null) {
+            String letter = contactName != null && !contactName.isEmpty()
+                    ? contactName.substring(0, 1) : "";
+            bitmapImage = mContactImageLoader.getAvatar(letter, number != null ? number : "");
         }
 
         View photoView = convertView.findViewById(R.id.text_view_contact_icon);
@@ -165,8 +156,8 @@ public class CallRecordAdapter extends BaseAdapter implements View.OnClickListen
                 viewHolder.title.setText(convertView.getContext().getString(R.string.supressed_number));
                 // Make call button invisible.
                 callButton.setVisibility(View.GONE);
-            } else if (contact != null) {
-                viewHolder.title.setText(contact.getDisplayName());
+            } else if (contactName != null) {
+                viewHolder.title.setText(contactName);
                 callButton.setOnClickListener(this);
                 callButton.setVisibility(View.VISIBLE);
             } else {
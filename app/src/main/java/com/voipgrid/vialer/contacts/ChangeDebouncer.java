@@ -0,0 +1,52 @@
+package com.voipgrid.vialer.contacts;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces a burst of changes into one action. The action runs after the changes have stopped
+ * for the debounce time, or at most the maximum delay after the first change of the burst.
+ */
+class ChangeDebouncer {
+
+    private final ScheduledExecutorService mExecutor;
+    private final Runnable mAction;
+    private final long mDebounceMillis;
+    private final long mMaxDelayMillis;
+
+    private ScheduledFuture<?> mPending;
+    private long mFirstChange;
+
+    /**
+     * @param executor The executor the action runs on.
+     * @param action
+     * @param debounceMillis
+     * @param maxDelayMillis
+     */
+    ChangeDebouncer(ScheduledExecutorService executor, Runnable action, long debounceMillis,
+            long maxDelayMillis) {
+        mExecutor = executor;
+        mAction = action;
+        mDebounceMillis = debounceMillis;
+        mMaxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Schedule the action for a change.
+     *
+     * @param now The elapsed realtime of the change.
+     * @return The delay before the action runs.
+     */
+    synchronized long onChange(long now) {
+        // An action that has not started yet is replaced by a later one.
+        if (mPending == null || !mPending.cancel(false)) {
+            mFirstChange = now;
+        }
+
+        long delay = Math.max(0, Math.min(mDebounceMillis, mFirstChange + mMaxDelayMillis - now));
+
+        mPending = mExecutor.schedule(mAction, delay, TimeUnit.MILLISECONDS);
+        return delay;
+    }
+}
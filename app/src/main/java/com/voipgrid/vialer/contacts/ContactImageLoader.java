@@ -0,0 +1,268 @@
+package com.voipgrid.vialer.contacts;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.res.AssetFileDescriptor;
+import android.database.ContentObserver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.ContactsContract;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+
+import com.amulyakhare.textdrawable.util.ColorGenerator;
+import com.voipgrid.vialer.util.IconHelper;
+import com.voipgrid.vialer.util.PhoneNumberUtils;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Looks up the contacts of phone numbers and loads their photos off the main thread. Photos
+ * and generated letter avatars are kept in one cache that is bounded by the size of the
+ * bitmaps, so scrolling through long lists does not increase memory usage. The contacts and
+ * their photos are evicted when the contacts change or have been synced.
+ */
+public class ContactImageLoader {
+
+    /**
+     * The number of looked up phone numbers to keep.
+     */
+    private static final int MAX_CALLERS = 500;
+
+    private final Context mContext;
+    private final Contacts mContacts;
+
+    private final LruCache<String, Bitmap> mBitmaps;
+    private final LruCache<String, Caller> mCallers = new LruCache<>(MAX_CALLERS);
+
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(2);
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Keys that are being loaded, only used on the main thread.
+    private final Set<String> mLoading = new HashSet<>();
+
+    // Incremented by every eviction, a lookup that started before it is not cached.
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    /**
+     * The contact found for a phone number.
+     */
+    public static class Caller {
+        private final String mDisplayName;
+        private final boolean mHasPhoto;
+
+        private Caller(String displayName, boolean hasPhoto) {
+            mDisplayName = displayName;
+            mHasPhoto = hasPhoto;
+        }
+
+        /**
+         * @return The name of the contact, or null if the number is not in the contacts.
+         */
+        public String getDisplayName() {
+            return mDisplayName;
+        }
+
+        public boolean hasPhoto() {
+            return mHasPhoto;
+        }
+    }
+
+    public ContactImageLoader(Context context, Contacts contacts) {
+        mContext = context;
+        mContacts = contacts;
+
+        // Use an eighth of the available memory for bitmaps.
+        int maxBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE);
+        mBitmaps = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+
+        context.getContentResolver().registerContentObserver(ContactsContract.Contacts.CONTENT_URI,
+                true, new ContentObserver(mMainHandler) {
+                    @Override
+                    public void onChange(boolean selfChange) {
+                        evictContacts();
+                    }
+                });
+        LocalBroadcastManager.getInstance(context).registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                evictContacts();
+            }
+        }, new IntentFilter(ContactsSyncTask.CONTACTS_SYNCED_BROADCAST));
+    }
+
+    /**
+     * Forget the looked up contacts and their photos, they are looked up again when they are
+     * shown. The generated avatars are kept.
+     */
+    public void evictContacts() {
+        mGeneration.incrementAndGet();
+        mCallers.evictAll();
+        for (String key : mBitmaps.snapshot().keySet()) {
+            if (!key.startsWith("avatar:")) {
+                mBitmaps.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Get the contact of a phone number if it has been looked up.
+     *
+     * @param number
+     * @return The caller, or null if {@link #loadCaller(String, Runnable)} is needed.
+     */
+    public Caller getCachedCaller(String number) {
+        return mCallers.get(callerKey(number));
+    }
+
+    /**
+     * Get the photo of the contact of a phone number if it is in the cache.
+     *
+     * @param number
+     * @return
+     */
+    public Bitmap getCachedPhoto(String number) {
+        return mBitmaps.get(photoKey(number));
+    }
+
+    /**
+     * Look up the contact and photo of a phone number on a background thread. Must be called
+     * from the main thread.
+     *
+     * @param number
+     * @param onLoaded Run on the main thread when the caller is cached.
+     */
+    public void loadCaller(final String number, final Runnable onLoaded) {
+        final String key = callerKey(number);
+        if (!mLoading.add(key)) {
+            return;
+        }
+
+        final int generation = mGeneration.get();
+        mExecutor.execute(() -> {
+            String displayName = mContacts.getContactNameByPhoneNumber(number);
+            Bitmap photo = displayName != null
+                    ? mContacts.getContactImageByPhoneNumber(number) : null;
+
+            // The contacts changed during the lookup, the next bind looks it up again.
+            if (generation == mGeneration.get()) {
+                if (photo != null) {
+                    mBitmaps.put(photoKey(number), photo);
+                }
+                mCallers.put(key, new Caller(displayName, photo != null));
+            }
+
+            mMainHandler.post(() -> {
+                mLoading.remove(key);
+                onLoaded.run();
+            });
+        });
+    }
+
+    /**
+     * Show the contact thumbnail in the view. The placeholder is shown while the thumbnail is
+     * loaded on a background thread. Must be called from the main thread.
+     *
+     * @param view The view, its tag is used to detect that it is reused for another contact.
+     * @param thumbnailUri
+     * @param placeholder
+     */
+    public void loadThumbnail(final ImageView view, String thumbnailUri, Bitmap placeholder) {
+        final String key = "thumbnail:" + thumbnailUri;
+        Bitmap thumbnail = mBitmaps.get(key);
+        view.setTag(key);
+
+        if (thumbnail != null) {
+            view.setImageBitmap(thumbnail);
+            return;
+        }
+
+        view.setImageBitmap(placeholder);
+
+        final Uri uri = Uri.parse(thumbnailUri);
+        final int generation = mGeneration.get();
+        mExecutor.execute(() -> {
+            Bitmap bitmap = decodeThumbnail(uri);
+            if (bitmap == null) {
+                return;
+            }
+            if (generation == mGeneration.get()) {
+                mBitmaps.put(key, bitmap);
+            }
+
+            mMainHandler.post(() -> {
+                if (key.equals(view.getTag())) {
+                    view.setImageBitmap(bitmap);
+                }
+            });
+        });
+    }
+
+    /**
+     * Get the generated round avatar with a letter, the avatars are shared by all numbers with
+     * the same letter and color.
+     *
+     * @param letter The letter to show, or an empty string for the person placeholder.
+     * @param colorKey The value the color of the avatar is generated from.
+     * @return
+     */
+    public Bitmap getAvatar(String letter, String colorKey) {
+        int color = ColorGenerator.MATERIAL.getColor(colorKey);
+        String key = "avatar:" + letter + ":" + color;
+
+        Bitmap avatar = mBitmaps.get(key);
+        if (avatar == null) {
+            avatar = IconHelper.getCallerIconBitmap(letter, colorKey, color);
+            mBitmaps.put(key, avatar);
+        }
+        return avatar;
+    }
+
+    private Bitmap decodeThumbnail(Uri uri) {
+        AssetFileDescriptor afd = null;
+        try {
+            afd = mContext.getContentResolver().openAssetFileDescriptor(uri, "r");
+            FileDescriptor fileDescriptor = afd != null ? afd.getFileDescriptor() : null;
+            if (fileDescriptor != null) {
+                return BitmapFactory.decodeFileDescriptor(fileDescriptor, null, null);
+            }
+        } catch (IOException | SecurityException e) {
+            // No thumbnail, the placeholder stays visible.
+        } finally {
+            if (afd != null) {
+                try {
+                    afd.close();
+                } catch (IOException e) {
+
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String callerKey(String number) {
+        return PhoneNumberUtils.format(number);
+    }
+
+    private static String photoKey(String number) {
+        return "photo:" + PhoneNumberUtils.format(number);
+    }
+}
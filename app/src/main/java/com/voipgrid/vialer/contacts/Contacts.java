@@ -10,12 +10,17 @@ import android.provider.ContactsContract;
 import com.github.tamir7.contacts.Contact;
 import com.github.tamir7.contacts.Query;
 import com.voipgrid.vialer.VialerApplication;
+import com.voipgrid.vialer.t9.T9Match;
+import com.voipgrid.vialer.t9.T9SearchEngine;
 
 import java.io.ByteArrayInputStream;
 import java.util.List;
 
 /**
- * Class that allows you to get information about contacts..
+ * Class that allows you to get information about contacts.. Names and images of phone numbers
+ * are looked up in the synced contacts of the {@link T9SearchEngine} once they are loaded. When
+ * the synced contacts do not have the number, for example before the first sync or while a
+ * change has not been synced yet, the contacts provider is asked.
  */
 
 public class Contacts {
@@ -50,6 +55,11 @@ public class Contacts {
      * @return bitmap image
      */
     public Bitmap getContactImageByPhoneNumber(String number) {
+        T9Match match = T9SearchEngine.getInstance().findContactByPhoneNumber(number);
+        if (match != null) {
+            return openPhoto(match.getContactId());
+        }
+
         Contact contact = getContactByPhoneNumber(number);
 
         if (contact == null) {
@@ -94,6 +104,11 @@ public class Contacts {
      * @return name of contact
      */
     public String getContactNameByPhoneNumber(String number) {
+        T9Match match = T9SearchEngine.getInstance().findContactByPhoneNumber(number);
+        if (match != null) {
+            return match.getDisplayName();
+        }
+
         Contact contact = getContactByPhoneNumber(number);
 
         if (contact == null) {
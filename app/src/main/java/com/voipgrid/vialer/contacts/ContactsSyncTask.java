@@ -1,15 +1,21 @@
 package com.voipgrid.vialer.contacts;
 
 import android.content.Context;
+import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
 import android.provider.ContactsContract;
 import android.util.Log;
 
+import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.permissions.ContactsPermission;
+import com.voipgrid.vialer.t9.T9BatchWriter;
 import com.voipgrid.vialer.t9.T9DatabaseHelper;
+import com.voipgrid.vialer.t9.T9SearchEngine;
 
 
 /**
@@ -19,8 +25,19 @@ public class ContactsSyncTask {
     private static final String TAG = ContactsSyncTask.class.getName();
     private static final boolean DEBUG = false;
 
+    /**
+     * The number of contacts that are written to the t9 database in one transaction.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 250;
+
+    /**
+     * Local broadcast sent after a sync, everything cached about the contacts is outdated.
+     */
+    public static final String CONTACTS_SYNCED_BROADCAST = "com.voipgrid.vialer.contacts.CONTACTS_SYNCED_BROADCAST";
+
     private Context mContext;
     private Logger mLogger;
+    private int mBatchSize = DEFAULT_BATCH_SIZE;
 
     private static Progress progress = new Progress(0);
 
@@ -31,34 +48,101 @@ public class ContactsSyncTask {
      */
     public ContactsSyncTask(Context context) {
         mContext = context;
-        mLogger = new Logger(ContactsSyncTask.class);
+        mLogger = LoggerFactory.getLogger(ContactsSyncTask.class);
 
         mLogger.d("onCreate");
     }
 
+    /**
+     * Set the number of contacts that are written to the t9 database in one transaction.
+     *
+     * @param batchSize
+     * @return this To allow method chaining.
+     */
+    public ContactsSyncTask setBatchSize(int batchSize) {
+        mBatchSize = batchSize;
+
+        return this;
+    }
+
     /**
      * Make a query with a certain selection to a contentResolver.
      *
      * @param uri
+     * @param projection
      * @param selection
+     * @param selectionArgs
+     * @param sortOrder
      */
-    public Cursor query(Uri uri, String selection) {
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+            String sortOrder) {
         return mContext.getContentResolver()
                 .query(uri,
-                        null,
+                        projection,
                         selection,
-                        null,
-                        null);  // gives you the list of contacts who has phone numbers
+                        selectionArgs,
+                        sortOrder);
     }
 
     /**
-     * execute a query to the Contacts database to get all contacts with a phone number.
+     * The contact columns needed for the sync.
      * @return
      */
+    public static String[] getContactProjection() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            return new String[] {
+                    ContactsContract.Contacts._ID,
+                    ContactsContract.Contacts.LOOKUP_KEY,
+                    ContactsContract.Contacts.DISPLAY_NAME_PRIMARY,
+                    ContactsContract.Contacts.PHOTO_THUMBNAIL_URI,
+                    ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP,
+            };
+        }
+        return new String[] {
+                ContactsContract.Contacts._ID,
+                ContactsContract.Contacts.LOOKUP_KEY,
+                ContactsContract.Contacts.DISPLAY_NAME_PRIMARY,
+                ContactsContract.Contacts.PHOTO_THUMBNAIL_URI,
+        };
+    }
+
+    /**
+     * The phone number columns needed for the sync.
+     * @return
+     */
+    public static String[] getPhoneNumberProjection() {
+        return new String[] {
+                ContactsContract.CommonDataKinds.Phone.CONTACT_ID,
+                ContactsContract.CommonDataKinds.Phone._ID,
+                ContactsContract.CommonDataKinds.Phone.NUMBER,
+                ContactsContract.CommonDataKinds.Phone.TYPE,
+                ContactsContract.CommonDataKinds.Phone.LABEL,
+        };
+    }
+
+    /**
+     * execute a query to the Contacts database to get all contacts with a phone number.
+     * @return Cursor ordered by contact id.
+     */
     public Cursor queryAllContacts() {
         // gives you the list of contacts who has phone numbers
         return query(ContactsContract.Contacts.CONTENT_URI,
-                ContactsContract.Data.HAS_PHONE_NUMBER + " = 1");
+                getContactProjection(),
+                ContactsContract.Contacts.HAS_PHONE_NUMBER + " = 1",
+                null,
+                ContactsContract.Contacts._ID + " ASC");
+    }
+
+    /**
+     * Retrieve the phone numbers of all contacts.
+     * @return Cursor ordered by contact id.
+     */
+    public Cursor queryAllPhoneNumbers() {
+        return query(ContactsContract.CommonDataKinds.Phone.CONTENT_URI,
+                getPhoneNumberProjection(),
+                null,
+                null,
+                ContactsContract.CommonDataKinds.Phone.CONTACT_ID + " ASC");
     }
 
     /**
@@ -66,10 +150,13 @@ public class ContactsSyncTask {
      * @param contactId contact id of which we query its Phone CommonDataKind.
      * @return
      */
-    public Cursor queryAllPhoneNumbers(String contactId) {
+    public Cursor queryAllPhoneNumbers(long contactId) {
         // Gives the list of phone numbers for a given contact.
         return query(ContactsContract.CommonDataKinds.Phone.CONTENT_URI,
-                ContactsContract.CommonDataKinds.Phone.CONTACT_ID + " = " + contactId);
+                getPhoneNumberProjection(),
+                ContactsContract.CommonDataKinds.Phone.CONTACT_ID + " = ?",
+                new String[] {Long.toString(contactId)},
+                null);
     }
 
     /**
@@ -87,34 +174,24 @@ public class ContactsSyncTask {
         }
 
         Cursor cursor = queryAllContacts();
+        Cursor numbers = queryAllPhoneNumbers();
         SyncUtils.setFullSyncInProgress(mContext, true);
-        sync(cursor);
+        sync(cursor, numbers);
         SyncUtils.setFullSyncInProgress(mContext, false);
-        SyncUtils.setRequiresFullContactSync(mContext, false);
     }
 
     /**
      * Create a SyncContact object from the given contact cursor.
      * @param contactCursor Cursor containing contacts.
+     * @param columns The column indexes of the cursor.
      * @return Populated SyncContact object.
      */
-    private SyncContact createSyncContactFromCursor(Cursor contactCursor) {
-        long contactId =
-                contactCursor.getLong(
-                        contactCursor.getColumnIndex(
-                                ContactsContract.Contacts._ID));
-        String lookupKey =
-                contactCursor.getString(
-                        contactCursor.getColumnIndex(
-                                ContactsContract.Contacts.LOOKUP_KEY));
-        String displayName =
-                contactCursor.getString(
-                        contactCursor.getColumnIndex(
-                                ContactsContract.Contacts.DISPLAY_NAME_PRIMARY));
-        String thumbnailUri =
-                contactCursor.getString(
-                        contactCursor.getColumnIndex(
-                                ContactsContract.Contacts.PHOTO_THUMBNAIL_URI));
+    private SyncContact createSyncContactFromCursor(Cursor contactCursor,
+            ContactColumns columns) {
+        long contactId = contactCursor.getLong(columns.id);
+        String lookupKey = contactCursor.getString(columns.lookupKey);
+        String displayName = contactCursor.getString(columns.displayName);
+        String thumbnailUri = contactCursor.getString(columns.thumbnailUri);
 
         return new SyncContact(contactId, lookupKey, displayName, thumbnailUri);
     }
@@ -122,21 +199,15 @@ public class ContactsSyncTask {
     /**
      * Create a SyncContactNumber object from the give number cursor.
      * @param numberCursor Cursor containing phone numbers.
+     * @param columns The column indexes of the cursor.
      * @return Populated SyncContact object or null.
      */
-    private SyncContactNumber createSyncContactNumberFromCursor(Cursor numberCursor) {
-        long dataId =
-                numberCursor.getLong(
-                        numberCursor.getColumnIndex(ContactsContract.CommonDataKinds.Phone._ID));
-        String number =
-                numberCursor.getString(
-                        numberCursor.getColumnIndex(ContactsContract.CommonDataKinds.Phone.NUMBER));
-        int type =
-                numberCursor.getInt(
-                        numberCursor.getColumnIndex(ContactsContract.CommonDataKinds.Phone.TYPE));
-        String label =
-                numberCursor.getString(
-                        numberCursor.getColumnIndex(ContactsContract.CommonDataKinds.Phone.LABEL));
+    private SyncContactNumber createSyncContactNumberFromCursor(Cursor numberCursor,
+            NumberColumns columns) {
+        long dataId = numberCursor.getLong(columns.id);
+        String number = numberCursor.getString(columns.number);
+        int type = numberCursor.getInt(columns.type);
+        String label = numberCursor.getString(columns.label);
 
         // We do not want to sync numbers that are null.
         if (number == null) {
@@ -155,10 +226,24 @@ public class ContactsSyncTask {
     }
 
     /**
-     * Sync syncs the contacts in the given cursor for T9 and call with app button.
+     * Sync syncs the contacts in the given cursor for T9 and call with app button. The phone
+     * numbers are queried per contact.
      * @param cursor The cursor of contact(s) to sync.
      */
     public void sync(Cursor cursor) {
+        sync(cursor, null);
+    }
+
+    /**
+     * Sync syncs the contacts in the given cursor for T9 and call with app button.
+     *
+     * When both cursors are ordered by contact id the numbers are merged with the contacts
+     * while walking both cursors once. Otherwise the numbers are queried per contact.
+     *
+     * @param cursor The cursor of contact(s) to sync.
+     * @param numbers The cursor with the phone numbers of the contact(s), or null.
+     */
+    public void sync(Cursor cursor, Cursor numbers) {
         mLogger.d("sync");
         // Check contacts permission. Do nothing if we don't have it. Since it's a background
         // job we can't really ask the user for permission.
@@ -170,50 +255,180 @@ public class ContactsSyncTask {
 
         progress = new Progress(cursor.getCount());
         T9DatabaseHelper t9Database = new T9DatabaseHelper(mContext);
+        T9BatchWriter t9Writer = t9Database.openBatchWriter(mBatchSize);
+        long syncStart = System.currentTimeMillis();
+        long lastSync = Long.parseLong(SyncUtils.getLastSync(mContext));
+        boolean requiresFullContactSync = SyncUtils.requiresFullContactSync(mContext);
+
+        boolean deletionsKnown = true;
+        if (requiresFullContactSync) {
+            // Every contact is written again, this also removes the contacts that no longer
+            // exist.
+            t9Writer.removeAll();
+        } else {
+            deletionsKnown = removeDeletedContacts(t9Writer, lastSync);
+        }
+
+        writeContacts(cursor, numbers, t9Writer, lastSync, requiresFullContactSync, progress);
+        t9Writer.close();
+
+        mLogger.i("Synced " + progress.getProcessed() + " contacts at "
+                + Math.round(progress.getContactsPerSecond()) + " contacts/sec");
+
+        // Remove dead weight from t9 db.
+        t9Database.afterSyncCleanup();
+        SyncUtils.setLastSync(mContext, syncStart);
+
+        // Contacts that were deleted too long ago can only be removed by the next full sync.
+        SyncUtils.setRequiresFullContactSync(mContext, !deletionsKnown);
+
+        // Make the synced contacts searchable.
+        T9SearchEngine.getInstance().reload(t9Database);
+        broadcastSynced();
+    }
+
+    /**
+     * Sync only the contacts that were added, changed or deleted since the last sync. Only the
+     * rows of those contacts are written to the t9 database and the search index.
+     */
+    public void syncChanges() {
+        mLogger.d("syncChanges");
+        if (!ContactsPermission.hasPermission(mContext)) {
+            mLogger.d("syncChanges: no contact permission");
+            return;
+        }
+
+        // The timestamps and deleted contacts are only available from API 18.
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            return;
+        }
+
+        long syncStart = System.currentTimeMillis();
+        long lastSync = Long.parseLong(SyncUtils.getLastSync(mContext));
+
+        Cursor contacts = query(ContactsContract.Contacts.CONTENT_URI,
+                getContactProjection(),
+                ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP + " > " + lastSync,
+                null,
+                ContactsContract.Contacts._ID + " ASC");
+
+        if (contacts == null) {
+            return;
+        }
+
+        Cursor numbers = query(ContactsContract.CommonDataKinds.Phone.CONTENT_URI,
+                getPhoneNumberProjection(),
+                ContactsContract.CommonDataKinds.Phone.CONTACT_LAST_UPDATED_TIMESTAMP + " > "
+                        + lastSync,
+                null,
+                ContactsContract.CommonDataKinds.Phone.CONTACT_ID + " ASC");
+
+        Progress changes = new Progress(contacts.getCount());
+        T9DatabaseHelper t9Database = new T9DatabaseHelper(mContext);
+        T9SearchEngine.Builder additions = new T9SearchEngine.Builder();
+        T9BatchWriter t9Writer = t9Database.openBatchWriter(mBatchSize)
+                .setSearchIndexBuilder(additions);
+
+        boolean deletionsKnown = removeDeletedContacts(t9Writer, lastSync);
+        writeContacts(contacts, numbers, t9Writer, lastSync, false, changes);
+        t9Writer.close();
+
+        mLogger.i("Synced " + t9Writer.getChangedContactIds().size() + " changed contacts");
+
+        SyncUtils.setLastSync(mContext, syncStart);
+        T9SearchEngine.getInstance().update(t9Writer.getChangedContactIds(), additions);
+        broadcastSynced();
+
+        if (!deletionsKnown) {
+            // Contacts that were deleted too long ago can only be removed by a full sync.
+            SyncUtils.setRequiresFullContactSync(mContext, true);
+            SyncUtils.requestContactSync(mContext);
+        }
+    }
+
+    private void broadcastSynced() {
+        LocalBroadcastManager.getInstance(mContext).sendBroadcast(
+                new Intent(CONTACTS_SYNCED_BROADCAST));
+    }
+
+    /**
+     * Queue the removal of the contacts that were deleted since the last sync.
+     *
+     * @param t9Writer
+     * @param lastSync
+     * @return Whether all deleted contacts are known, the contacts provider only keeps them
+     * for a limited time.
+     */
+    private boolean removeDeletedContacts(T9BatchWriter t9Writer, long lastSync) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            return false;
+        }
+
+        if (lastSync < System.currentTimeMillis()
+                - ContactsContract.DeletedContacts.DAYS_KEPT_MILLISECONDS) {
+            return false;
+        }
+
+        Cursor deleted = query(ContactsContract.DeletedContacts.CONTENT_URI,
+                new String[] {ContactsContract.DeletedContacts.CONTACT_ID},
+                ContactsContract.DeletedContacts.CONTACT_DELETED_TIMESTAMP + " > " + lastSync,
+                null,
+                null);
+
+        if (deleted == null) {
+            return false;
+        }
+
+        while (deleted.moveToNext()) {
+            t9Writer.remove(deleted.getLong(0));
+        }
+        deleted.close();
+
+        return true;
+    }
+
+    /**
+     * Write the contacts of the cursor to the t9 database.
+     *
+     * @param cursor The cursor of contact(s) to sync.
+     * @param numbers The cursor with the phone numbers of the contact(s), or null.
+     * @param t9Writer
+     * @param lastSync
+     * @param requiresFullContactSync Whether unchanged contacts are written as well.
+     * @param progress
+     */
+    private void writeContacts(Cursor cursor, Cursor numbers, T9BatchWriter t9Writer,
+            long lastSync, boolean requiresFullContactSync, Progress progress) {
+        ContactColumns contactColumns = new ContactColumns(cursor);
+        PhoneNumberStream numberStream = numbers != null ? new PhoneNumberStream(numbers) : null;
 
         SyncContact syncContact;
-        SyncContactNumber syncContactNumber;
 
         // Loop all contacts to sync.
         while (cursor.moveToNext()) {
             progress.setProcessed(cursor.getPosition() + 1);
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
-                long lastUpdated =
-                        cursor.getLong(cursor.getColumnIndex(
-                                ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP));
+            if (contactColumns.lastUpdated >= 0) {
+                long lastUpdated = cursor.getLong(contactColumns.lastUpdated);
                 // Skip the contact if it has not changed since the last sync AND a full sync
                 // is not required.
-                if (lastUpdated <= Long.parseLong(SyncUtils.getLastSync(mContext))
-                        && !SyncUtils.requiresFullContactSync(mContext)) {
+                if (lastUpdated <= lastSync && !requiresFullContactSync) {
                     continue;
                 }
             }
 
-            syncContact = createSyncContactFromCursor(cursor);
+            syncContact = createSyncContactFromCursor(cursor, contactColumns);
 
             // Get all numbers for contact.
-            Cursor numbers = queryAllPhoneNumbers(Long.toString(syncContact.getContactId()));
+            boolean hasNumbers = numberStream != null && numberStream.canProvide(syncContact)
+                    ? numberStream.addNumbersTo(syncContact)
+                    : addQueriedNumbersTo(syncContact);
 
-            if (numbers == null) {
+            if (!hasNumbers) {
+                // The numbers of the contact might have been removed.
+                t9Writer.remove(syncContact.getContactId());
                 continue;
             }
 
-            // Check if we have found phone numbers.
-            if (numbers.getCount() <= 0) {
-                // Close cursor before continue.
-                numbers.close();
-                continue;
-            }
-
-            // Loop all number belonging to a contact.
-            while (numbers.moveToNext()) {
-                syncContactNumber = createSyncContactNumberFromCursor(numbers);
-                if (syncContactNumber != null) {
-                    syncContact.addNumber(syncContactNumber);
-                }
-            }
-            numbers.close();
-
             if (DEBUG) {
                 Log.d(TAG, "Syncing contact: " +
                         syncContact.getContactId() +
@@ -222,13 +437,127 @@ public class ContactsSyncTask {
             }
 
             // Sync the contact.
-            t9Database.updateT9Contact(syncContact);
+            t9Writer.add(syncContact);
         }
         cursor.close();
+        if (numbers != null) {
+            numbers.close();
+        }
+    }
 
-        // Remove dead weight from t9 db.
-        t9Database.afterSyncCleanup();
-        SyncUtils.setLastSyncNow(mContext);
+    /**
+     * Query the numbers of a single contact and add them to the contact.
+     * @param syncContact
+     * @return Whether the contact has phone numbers.
+     */
+    private boolean addQueriedNumbersTo(SyncContact syncContact) {
+        Cursor numbers = queryAllPhoneNumbers(syncContact.getContactId());
+
+        if (numbers == null) {
+            return false;
+        }
+
+        NumberColumns numberColumns = new NumberColumns(numbers);
+        boolean found = false;
+
+        // Loop all number belonging to a contact.
+        while (numbers.moveToNext()) {
+            found = true;
+            SyncContactNumber syncContactNumber =
+                    createSyncContactNumberFromCursor(numbers, numberColumns);
+            if (syncContactNumber != null) {
+                syncContact.addNumber(syncContactNumber);
+            }
+        }
+        numbers.close();
+
+        return found;
+    }
+
+    /**
+     * Walks a cursor with phone numbers ordered by contact id alongside the contacts cursor.
+     */
+    private class PhoneNumberStream {
+        private final Cursor mCursor;
+        private final NumberColumns mColumns;
+        private boolean mHasRow;
+        private long mLastContactId = Long.MIN_VALUE;
+
+        PhoneNumberStream(Cursor cursor) {
+            mCursor = cursor;
+            mColumns = new NumberColumns(cursor);
+            mHasRow = cursor.moveToNext();
+        }
+
+        /**
+         * The stream can only provide the numbers when the contacts are ordered by id.
+         * @param syncContact
+         * @return Whether the numbers of the contact can be taken from the stream.
+         */
+        boolean canProvide(SyncContact syncContact) {
+            return mColumns.contactId >= 0 && syncContact.getContactId() >= mLastContactId;
+        }
+
+        /**
+         * Add the numbers of the contact to it.
+         * @param syncContact
+         * @return Whether the contact has phone numbers.
+         */
+        boolean addNumbersTo(SyncContact syncContact) {
+            long contactId = syncContact.getContactId();
+            mLastContactId = contactId;
+
+            // Skip the numbers of contacts that are not synced.
+            while (mHasRow && mCursor.getLong(mColumns.contactId) < contactId) {
+                mHasRow = mCursor.moveToNext();
+            }
+
+            boolean found = false;
+
+            while (mHasRow && mCursor.getLong(mColumns.contactId) == contactId) {
+                found = true;
+                SyncContactNumber syncContactNumber =
+                        createSyncContactNumberFromCursor(mCursor, mColumns);
+                if (syncContactNumber != null) {
+                    syncContact.addNumber(syncContactNumber);
+                }
+                mHasRow = mCursor.moveToNext();
+            }
+
+            return found;
+        }
+    }
+
+    /**
+     * Column indexes of a contacts cursor, looked up once per cursor.
+     */
+    private static class ContactColumns {
+        final int id, lookupKey, displayName, thumbnailUri, lastUpdated;
+
+        ContactColumns(Cursor cursor) {
+            id = cursor.getColumnIndex(ContactsContract.Contacts._ID);
+            lookupKey = cursor.getColumnIndex(ContactsContract.Contacts.LOOKUP_KEY);
+            displayName = cursor.getColumnIndex(ContactsContract.Contacts.DISPLAY_NAME_PRIMARY);
+            thumbnailUri = cursor.getColumnIndex(ContactsContract.Contacts.PHOTO_THUMBNAIL_URI);
+            lastUpdated = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2
+                    ? cursor.getColumnIndex(ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP)
+                    : -1;
+        }
+    }
+
+    /**
+     * Column indexes of a phone numbers cursor, looked up once per cursor.
+     */
+    private static class NumberColumns {
+        final int contactId, id, number, type, label;
+
+        NumberColumns(Cursor cursor) {
+            contactId = cursor.getColumnIndex(ContactsContract.CommonDataKinds.Phone.CONTACT_ID);
+            id = cursor.getColumnIndex(ContactsContract.CommonDataKinds.Phone._ID);
+            number = cursor.getColumnIndex(ContactsContract.CommonDataKinds.Phone.NUMBER);
+            type = cursor.getColumnIndex(ContactsContract.CommonDataKinds.Phone.TYPE);
+            label = cursor.getColumnIndex(ContactsContract.CommonDataKinds.Phone.LABEL);
+        }
     }
 
     public static Progress getProgress() {
@@ -237,9 +566,11 @@ public class ContactsSyncTask {
 
     public static class Progress {
         private int processed, total;
+        private final long startTime;
 
         private Progress(int total) {
             this.total = total;
+            this.startTime = System.currentTimeMillis();
         }
 
         private void setProcessed(int processed) {
@@ -257,6 +588,21 @@ public class ContactsSyncTask {
         public boolean isComplete() {
             return total == processed;
         }
+
+        /**
+         * The throughput of the sync so far.
+         *
+         * @return The number of processed contacts per second.
+         */
+        public double getContactsPerSecond() {
+            long elapsed = System.currentTimeMillis() - startTime;
+
+            if (elapsed <= 0) {
+                return 0;
+            }
+
+            return processed * 1000d / elapsed;
+        }
     }
 }
 
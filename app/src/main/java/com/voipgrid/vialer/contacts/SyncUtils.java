@@ -10,7 +10,7 @@ import android.preference.PreferenceManager;
 import android.provider.ContactsContract;
 
 import com.voipgrid.vialer.R;
-import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.permissions.ContactsPermission;
 
 /**
@@ -46,7 +46,7 @@ public class SyncUtils {
      * @param context
      */
     public static void requestContactSync(Context context) {
-        new Logger(SyncUtils.class).d(TAG + " requestContactSync");
+        LoggerFactory.getLogger(SyncUtils.class).d(TAG + " requestContactSync");
         // Check contacts permission. Do nothing if we don't have it. Since it's a background
         // job we can't really ask the user for permission.
         if (!ContactsPermission.hasPermission(context)) {
@@ -70,7 +70,7 @@ public class SyncUtils {
      * @param context
      */
     public static void setPeriodicSync(Context context) {
-        new Logger(SyncUtils.class).d(TAG + " setPeriodicSync");
+        LoggerFactory.getLogger(SyncUtils.class).d(TAG + " setPeriodicSync");
         // Check contacts permission. Do nothing if we don't have it. Since it's a background
         // job we can't really ask the user for permission.
         if (!ContactsPermission.hasPermission(context)) {
@@ -120,13 +120,15 @@ public class SyncUtils {
     }
 
     /**
-     * Set time of last contact sync to now.
+     * Set time of last contact sync. Use the time the sync started, so changes made during
+     * the sync are picked up by the next one.
      * @param context
+     * @param lastSync
      */
-    public static void setLastSyncNow(Context context) {
+    public static void setLastSync(Context context, long lastSync) {
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
 
-        prefs.edit().putString(SyncConstants.LAST_SYNC, Long.toString(System.currentTimeMillis())).apply();
+        prefs.edit().putString(SyncConstants.LAST_SYNC, Long.toString(lastSync)).apply();
     }
 
     /**
@@ -134,7 +136,7 @@ public class SyncUtils {
      * @param inProgress
      */
     public static void setFullSyncInProgress(Context context, boolean inProgress) {
-        new Logger(SyncUtils.class).d(TAG + " setFullSyncInProgress");
+        LoggerFactory.getLogger(SyncUtils.class).d(TAG + " setFullSyncInProgress");
         PreferenceManager.getDefaultSharedPreferences(context)
                 .edit().putBoolean(SyncConstants.FULL_SYNC_INPROGRESS, inProgress).apply();
     }
@@ -5,10 +5,10 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.database.ContentObserver;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.IBinder;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.provider.ContactsContract;
 import androidx.annotation.Nullable;
@@ -17,8 +17,12 @@ import android.util.Log;
 import com.voipgrid.vialer.BuildConfig;
 import com.voipgrid.vialer.VialerApplication;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.permissions.ContactsPermission;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
 /**
  * UpdateChangedContactsService listens for changed contacts and syncs them for t9 search.
  * NOTE: Never start this service with API level < 18!
@@ -27,7 +31,7 @@ public class UpdateChangedContactsService extends Service {
 
     private static final String LOG_TAG = UpdateChangedContactsService.class.getName();
 
-    private final Logger mLogger = new Logger(this);
+    private final Logger mLogger = LoggerFactory.getLogger(this.getClass());
 
     @Override
     public void onCreate() {
@@ -72,10 +76,23 @@ public class UpdateChangedContactsService extends Service {
     }
 
 
+    /**
+     * Syncs the changed contacts when the contacts change. A burst of changes, like an import
+     * or an account sync, is coalesced into one sync that runs after the changes have stopped
+     * for {@link #DEBOUNCE_MILLIS}, or at most {@link #MAX_DELAY_MILLIS} after the first one.
+     */
     private static class ContactUpdateContentObserver extends ContentObserver {
+        private static final long DEBOUNCE_MILLIS = 2000;
+        private static final long MAX_DELAY_MILLIS = 10000;
+
         private final String LOG_TAG = ContactUpdateContentObserver.class.getName();
 
-        private static Thread syncThread;
+        // All syncs run one after another on the same thread.
+        private static final ScheduledExecutorService sSyncExecutor =
+                Executors.newSingleThreadScheduledExecutor();
+
+        private final ChangeDebouncer mDebouncer = new ChangeDebouncer(sSyncExecutor,
+                this::syncChangedContacts, DEBOUNCE_MILLIS, MAX_DELAY_MILLIS);
 
         private SharedPreferences mPrefs;
         private Context mContext;
@@ -99,72 +116,27 @@ public class UpdateChangedContactsService extends Service {
 
         @Override
         public void onChange(boolean selfChange, Uri uri) {
-            if(syncThread != null && syncThread.isAlive()) return;
-
-            syncThread = new Thread(this::syncUpdatedContacts);
-
-            syncThread.start();
+            mDebouncer.onChange(SystemClock.elapsedRealtime());
         }
 
         /**
-         * Runs the tasks required to handle a contact being updated/added.
-         *
+         * Runs the tasks required to handle contacts being added, updated or deleted.
          */
-        private void syncUpdatedContacts() {
+        private void syncChangedContacts() {
             // Updating during a full sync would trigger a loop.
             if (mPrefs.getBoolean(SyncConstants.FULL_SYNC_INPROGRESS, true)) {
                 return;
             }
 
-            // Get changed contacts.
-            Cursor updatedContacts = getUpdatedContactsCursor();
-
-            // No results to sync.
-            if (updatedContacts == null || updatedContacts.getCount() <= 0){
-                if (updatedContacts != null) {
-                    updatedContacts.close();
-                }
-                return;
-            }
-
-
             if (BuildConfig.DEBUG) {
-                Log.d(LOG_TAG, "Contact changed. Start syncing changed contacts.");
+                Log.d(LOG_TAG, "Contacts changed. Start syncing changed contacts.");
             }
 
-            // Sync changed contacts.
-            new ContactsSyncTask(mContext).sync(updatedContacts);
+            new ContactsSyncTask(mContext).syncChanges();
 
             if (BuildConfig.DEBUG) {
                 Log.d(LOG_TAG, "Done syncing changed contacts.");
             }
         }
-
-        /**
-         * Get the selection string for contact query.
-         * @return
-         */
-        private String getSelection() {
-            // Contacts who have a phone number and are changed since last sync.
-            return ContactsContract.Data.HAS_PHONE_NUMBER + " = 1 AND " +
-                    ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP + " > " +
-                    SyncUtils.getLastSync(mContext);
-        }
-
-        /**
-         * Get a cursor with the contacts that are updated.
-         * @return
-         */
-        private Cursor getUpdatedContactsCursor() {
-            Cursor cursor = mContext.getContentResolver().query(
-                    ContactsContract.Contacts.CONTENT_URI,
-                    null,
-                    getSelection(),
-                    null,
-                    null,
-                    null);
-
-            return cursor;
-        }
     }
 }
@@ -4,6 +4,7 @@ import android.content.Context;
 import android.util.Log;
 
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.yakivmospan.scytale.Crypto;
 import com.yakivmospan.scytale.ErrorListener;
 import com.yakivmospan.scytale.Options;
@@ -22,7 +23,7 @@ public class Encrypter implements ErrorListener {
     public Encrypter(Context context) {
         mCrypto = new Crypto(Options.TRANSFORMATION_SYMMETRIC);
         mStore = new Store(context);
-        mLogger = new Logger(this.getClass());
+        mLogger = LoggerFactory.getLogger(this.getClass());
         mCrypto.setErrorListener(this);
         mStore.setErrorListener(this);
     }
@@ -15,6 +15,7 @@ import com.voipgrid.vialer.api.models.PhoneAccount;
 import com.voipgrid.vialer.api.models.SystemUser;
 import com.voipgrid.vialer.calling.CallActivityHelper;
 import com.voipgrid.vialer.calling.CallNotifications;
+import com.voipgrid.vialer.contacts.ContactImageLoader;
 import com.voipgrid.vialer.contacts.Contacts;
 import com.voipgrid.vialer.reachability.ReachabilityReceiver;
 import com.voipgrid.vialer.sip.IpSwitchMonitor;
@@ -111,6 +112,12 @@ public class VialerModule {
         return new Contacts();
     }
 
+    @Singleton
+    @Provides
+    ContactImageLoader provideContactImageLoader(Context context, Contacts contacts) {
+        return new ContactImageLoader(context, contacts);
+    }
+
     @Provides
     Preferences providePreferences(Context context) {
         return new Preferences(context);
@@ -2,10 +2,8 @@ package com.voipgrid.vialer.dialer;
 
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.content.res.AssetFileDescriptor;
 import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.PorterDuff;
 import android.net.Uri;
 import android.os.Bundle;
@@ -30,6 +28,7 @@ import com.voipgrid.vialer.VialerApplication;
 import com.voipgrid.vialer.analytics.AnalyticsHelper;
 import com.voipgrid.vialer.api.models.SystemUser;
 import com.voipgrid.vialer.calling.Dialer;
+import com.voipgrid.vialer.contacts.ContactImageLoader;
 import com.voipgrid.vialer.contacts.Contacts;
 import com.voipgrid.vialer.contacts.ContactsSyncTask;
 import com.voipgrid.vialer.contacts.SyncUtils;
@@ -39,15 +38,10 @@ import com.voipgrid.vialer.reachability.ReachabilityReceiver;
 import com.voipgrid.vialer.t9.ContactCursorLoader;
 import com.voipgrid.vialer.util.ConnectivityHelper;
 import com.voipgrid.vialer.util.DialHelper;
-import com.voipgrid.vialer.util.IconHelper;
 import com.voipgrid.vialer.util.JsonStorage;
 import com.voipgrid.vialer.util.LoginRequiredActivity;
 import com.voipgrid.vialer.util.PhoneNumberUtils;
 
-import java.io.FileDescriptor;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-
 import javax.inject.Inject;
 
 import androidx.core.content.ContextCompat;
@@ -77,6 +71,7 @@ public class DialerActivity extends LoginRequiredActivity implements
     @Inject JsonStorage mJsonStorage;
     @Inject ReachabilityReceiver mReachabilityReceiver;
     @Inject Contacts mContacts;
+    @Inject ContactImageLoader mContactImageLoader;
 
     DialHelper mDialHelper;
 
@@ -218,37 +213,6 @@ public class DialerActivity extends LoginRequiredActivity implements
         mEmptyView.setText("");
     }
 
-    /**
-     * Function to get the bitmap from the uri.
-     *
-     * @param thumbnailUriString String uri of the file
-     * @return Bitmap of the uri.
-     */
-    private Bitmap loadContactThumbnail(String thumbnailUriString) {
-        Uri thumbUri = Uri.parse(thumbnailUriString);
-        AssetFileDescriptor afd = null;
-        try {
-            afd = getContentResolver().openAssetFileDescriptor(thumbUri, "r");
-            FileDescriptor fileDescriptor = afd.getFileDescriptor();
-            if (fileDescriptor != null) {
-                // Decodes the bitmap
-                return BitmapFactory.decodeFileDescriptor(
-                        fileDescriptor, null, null);
-            }
-        } catch (FileNotFoundException e) {
-
-        } finally {
-            if (afd != null) {
-                try {
-                    afd.close();
-                } catch (IOException e) {
-
-                }
-            }
-        }
-        return null;
-    }
-
     /**
      * Function to setup the listview and cursor adapter.
      */
@@ -275,20 +239,15 @@ public class DialerActivity extends LoginRequiredActivity implements
                 if (view.getId() == R.id.text_view_contact_icon) {
                     // The class stores a contact uri for which
                     // we can retrieve a photo.
-                    boolean hasThumbnail = false;
+                    String firstLetter = cursor.getString(1).replaceAll("\\<.*?>", "").substring(0, 1);
+                    Bitmap avatar = mContactImageLoader.getAvatar(firstLetter, cursor.getString(0));
                     String thumbnailUriString = cursor.getString(columnIndex);
                     if (thumbnailUriString != null) {
-                        Bitmap thumbNail = loadContactThumbnail(thumbnailUriString);
-                        if (thumbNail != null) {
-                            hasThumbnail = true;
-                            ((CircleImageView) view).setImageBitmap(thumbNail);
-                        }
-                    }
-
-                    if (!hasThumbnail) {
-                        String firstLetter = cursor.getString(1).replaceAll("\\<.*?>", "").substring(0, 1);
-                        Bitmap bitmapImage = IconHelper.getCallerIconBitmap(firstLetter, cursor.getString(0), 0);
-                        ((CircleImageView) view).setImageBitmap(bitmapImage);
+                        mContactImageLoader.loadThumbnail((CircleImageView) view,
+                                thumbnailUriString, avatar);
+                    } else {
+                        view.setTag(null);
+                        ((CircleImageView) view).setImageBitmap(avatar);
                     }
                     return true;
                 } else if (view instanceof TextView) {
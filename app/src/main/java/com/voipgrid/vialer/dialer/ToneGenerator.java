@@ -3,6 +3,7 @@ package com.voipgrid.vialer.dialer;
 import android.os.Handler;
 
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 
 /**
  * This is a wrapper around Android's ToneGenerator class with the purpose of improving the stability of
@@ -54,7 +55,7 @@ public class ToneGenerator {
     public ToneGenerator(int streamType, int volume) {
         mStreamType = streamType;
         mVolume = volume;
-        mLogger = new Logger(this.getClass());
+        mLogger = LoggerFactory.getLogger(this.getClass());
     }
 
     /**
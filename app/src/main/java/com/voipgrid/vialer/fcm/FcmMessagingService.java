@@ -4,6 +4,7 @@ import android.content.Intent;
 import android.net.Uri;
 import android.os.Build;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import androidx.annotation.NonNull;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
@@ -17,6 +18,7 @@ import com.voipgrid.vialer.api.Registration;
 import com.voipgrid.vialer.api.ServiceGenerator;
 import com.voipgrid.vialer.logging.LogHelper;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.sip.SipConstants;
 import com.voipgrid.vialer.sip.SipService;
 import com.voipgrid.vialer.sip.SipUri;
@@ -59,7 +61,7 @@ public class FcmMessagingService extends FirebaseMessagingService {
     @Override
     public void onCreate() {
         super.onCreate();
-        mRemoteLogger = new Logger(FcmMessagingService.class);
+        mRemoteLogger = LoggerFactory.getLogger(FcmMessagingService.class);
         mAnalyticsHelper = new AnalyticsHelper(((AnalyticsApplication) getApplication()).getDefaultTracker());
         mConnectivityHelper = ConnectivityHelper.get(this);
         mPowerManager = (PowerManager) getSystemService(POWER_SERVICE);
@@ -68,6 +70,8 @@ public class FcmMessagingService extends FirebaseMessagingService {
 
     @Override
     public void onMessageReceived(RemoteMessage remoteMessage) {
+        // Taken first, the latency of a call setup starts when the push message arrives.
+        long receivedTime = SystemClock.elapsedRealtime();
         super.onMessageReceived(remoteMessage);
         mRemoteLogger.d("onMessageReceived");
         RemoteMessageData remoteMessageData = new RemoteMessageData(remoteMessage.getData());
@@ -80,7 +84,7 @@ public class FcmMessagingService extends FirebaseMessagingService {
         }
 
         if (remoteMessageData.isCallRequest()) {
-            handleCall(remoteMessage, remoteMessageData);
+            handleCall(remoteMessage, remoteMessageData, receivedTime);
             return;
         }
 
@@ -101,8 +105,10 @@ public class FcmMessagingService extends FirebaseMessagingService {
      *
      * @param remoteMessage
      * @param remoteMessageData
+     * @param receivedTime The {@link SystemClock#elapsedRealtime()} when the message arrived.
      */
-    private void handleCall(RemoteMessage remoteMessage, RemoteMessageData remoteMessageData) {
+    private void handleCall(RemoteMessage remoteMessage, RemoteMessageData remoteMessageData,
+            long receivedTime) {
         logCurrentState(remoteMessageData);
 
         if (!isConnectionSufficient()) {
@@ -119,7 +125,7 @@ public class FcmMessagingService extends FirebaseMessagingService {
 
         mRemoteLogger.d("Payload processed, calling startService method");
 
-        startSipService(remoteMessageData);
+        startSipService(remoteMessageData, receivedTime);
     }
 
     /**
@@ -260,8 +266,9 @@ public class FcmMessagingService extends FirebaseMessagingService {
      * intent.
      *
      * @param remoteMessageData
+     * @param receivedTime The {@link SystemClock#elapsedRealtime()} when the message arrived.
      */
-    private void startSipService(RemoteMessageData remoteMessageData) {
+    private void startSipService(RemoteMessageData remoteMessageData, long receivedTime) {
         mRemoteLogger.d("startSipService");
         Intent intent = new Intent(this, SipService.class);
         intent.setAction(SipConstants.ACTION_CALL_INCOMING);
@@ -279,6 +286,7 @@ public class FcmMessagingService extends FirebaseMessagingService {
         intent.putExtra(SipConstants.EXTRA_PHONE_NUMBER, remoteMessageData.getPhoneNumber());
         intent.putExtra(SipConstants.EXTRA_CONTACT_NAME, remoteMessageData.getCallerId());
         intent.putExtra(RemoteMessageData.MESSAGE_START_TIME, remoteMessageData.getMessageStartTime());
+        intent.putExtra(SipConstants.EXTRA_PUSH_RECEIVED_TIME, receivedTime);
 
         startService(intent);
     }
@@ -2,7 +2,15 @@ package com.voipgrid.vialer.logging;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * Fixed capacity ring buffer for log messages that can be written from any thread without
+ * locking. Every message gets a sequence number, the slot of a message is its sequence number
+ * modulo the capacity so a new message overwrites the oldest one. The buffer is bounded by the
+ * number of messages and by the memory used by the messages.
+ */
 class Buffer {
 
     /**
@@ -11,30 +19,77 @@ class Buffer {
      */
     private static final int DEFAULT_BUFFER_SIZE = 100;
 
+    /**
+     * The default maximum memory used by the messages in the buffer.
+     */
+    private static final int DEFAULT_MAX_BYTES = 128 * 1024;
+
+    /**
+     * The number of times a drain yields while waiting for a message that is being written.
+     */
+    private static final int MAX_WRITE_WAITS = 1000;
+
     /**
      * The size of the buffer, this amount of records will be stored in the buffer before old
      * records are removed from the stack.
      *
      */
-    private int mSize;
+    private final int mSize;
+    private final long mMaxBytes;
 
-    private List<String> buffer = new ArrayList<>();
+    private final AtomicReferenceArray<Entry> mSlots;
 
-    Buffer(int size) {
+    // Sequence number of the next message.
+    private final AtomicLong mHead = new AtomicLong();
+
+    // Sequence number of the oldest message that can still be in the buffer.
+    private final AtomicLong mTail = new AtomicLong();
+
+    private final AtomicLong mBytes = new AtomicLong();
+
+    private static class Entry {
+        private final long mSequence;
+        private final String mLog;
+        private final long mBytes;
+
+        private Entry(long sequence, String log) {
+            mSequence = sequence;
+            mLog = log;
+            mBytes = sizeOf(log);
+        }
+    }
+
+    Buffer(int size, long maxBytes) {
         mSize = size;
+        mMaxBytes = maxBytes;
+        mSlots = new AtomicReferenceArray<>(size);
+    }
+
+    Buffer(int size) {
+        this(size, DEFAULT_MAX_BYTES);
     }
 
     Buffer() {
-        mSize = DEFAULT_BUFFER_SIZE;
+        this(DEFAULT_BUFFER_SIZE);
     }
 
     /**
-     * Get the contents of the buffer.
+     * Get the contents of the buffer without removing them.
      *
-     * @return A List of strings that have been added to the buffer.
+     * @return A List of strings that have been added to the buffer, oldest first.
      */
     public List<String> get() {
-        return buffer;
+        return collect(false);
+    }
+
+    /**
+     * Remove and return the contents of the buffer. Messages that are added while draining end
+     * up in this or in the next drain.
+     *
+     * @return A List of strings that have been added to the buffer, oldest first.
+     */
+    public List<String> drain() {
+        return collect(true);
     }
 
     /**
@@ -43,11 +98,29 @@ class Buffer {
      * @param log The string that will be added to the buffer
      */
     public void add(String log) {
-        if (buffer.size() >= mSize) {
-            buffer.remove(0);
+        long sequence = mHead.getAndIncrement();
+        int slot = slotOf(sequence);
+        Entry entry = new Entry(sequence, log);
+        Entry replaced = mSlots.getAndSet(slot, entry);
+
+        if (replaced != null && replaced.mSequence > sequence) {
+            // A message of the next round was written first, it stays.
+            if (mSlots.compareAndSet(slot, entry, replaced)) {
+                return;
+            }
+        }
+
+        mBytes.addAndGet(entry.mBytes - (replaced != null ? replaced.mBytes : 0));
+
+        if (sequence < mTail.get() && mSlots.compareAndSet(slot, entry, null)) {
+            // The message was evicted or drained before it was stored, nobody else removes it.
+            mBytes.addAndGet(-entry.mBytes);
+            return;
         }
 
-        buffer.add(log);
+        while (mBytes.get() > mMaxBytes && evictOldest()) {
+            // Keep evicting until the buffer fits again.
+        }
     }
 
     /**
@@ -55,6 +128,103 @@ class Buffer {
      *
      */
     public void clear() {
-        buffer = new ArrayList<>();
+        drain();
+    }
+
+    /**
+     * @return The memory used by the messages in the buffer.
+     */
+    long getBytes() {
+        return mBytes.get();
+    }
+
+    /**
+     * The memory used by a message, a char takes 2 bytes.
+     */
+    static long sizeOf(String log) {
+        return log == null ? 0 : 2L * log.length();
+    }
+
+    private List<String> collect(boolean remove) {
+        long head = mHead.get();
+        long tail = Math.max(mTail.get(), head - mSize);
+        List<String> logs = new ArrayList<>((int) (head - tail));
+
+        for (long sequence = tail; sequence < head; sequence++) {
+            int slot = slotOf(sequence);
+            Entry entry = awaitWrite(slot, sequence);
+
+            if (entry == null || entry.mSequence != sequence) {
+                continue;
+            }
+
+            if (!remove) {
+                logs.add(entry.mLog);
+            } else if (mSlots.compareAndSet(slot, entry, null)) {
+                mBytes.addAndGet(-entry.mBytes);
+                logs.add(entry.mLog);
+            }
+        }
+
+        if (remove) {
+            advanceTail(head);
+        }
+
+        return logs;
+    }
+
+    /**
+     * A sequence number is taken before the message is stored, wait a little for a message
+     * that is being written by another thread.
+     */
+    private Entry awaitWrite(int slot, long sequence) {
+        Entry entry = mSlots.get(slot);
+        for (int i = 0; i < MAX_WRITE_WAITS
+                && (entry == null || entry.mSequence < sequence)
+                && sequence >= mTail.get(); i++) {
+            Thread.yield();
+            entry = mSlots.get(slot);
+        }
+        return entry;
+    }
+
+    /**
+     * Remove the oldest message. A message that is still being written is removed by its writer,
+     * which checks the tail after storing the message.
+     *
+     * @return FALSE when there is nothing left to remove.
+     */
+    private boolean evictOldest() {
+        long tail = mTail.get();
+        long head = mHead.get();
+        long oldest = Math.max(tail, head - mSize);
+
+        if (oldest >= head) {
+            return false;
+        }
+
+        if (!mTail.compareAndSet(tail, oldest + 1)) {
+            // Another thread removed a message, check again.
+            return true;
+        }
+
+        int slot = slotOf(oldest);
+        Entry entry = mSlots.get(slot);
+        if (entry != null && entry.mSequence == oldest
+                && mSlots.compareAndSet(slot, entry, null)) {
+            mBytes.addAndGet(-entry.mBytes);
+        }
+        return true;
+    }
+
+    private void advanceTail(long tail) {
+        long current = mTail.get();
+        while (current < tail && !mTail.compareAndSet(current, tail)) {
+            current = mTail.get();
+        }
+    }
+
+    private int slotOf(long sequence) {
+        return (int) (sequence % mSize);
     }
 }
@@ -1,32 +1,136 @@
 package com.voipgrid.vialer.logging;
 
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
 import android.os.Build;
 import android.telephony.TelephonyManager;
 
 import com.voipgrid.vialer.util.ConnectivityHelper;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The device and network details that are added to every log line. They are looked up once
+ * and kept in an immutable snapshot, a connectivity change discards the snapshot so the next
+ * log line looks them up again. Reading them does not query the system services.
+ */
 public class DeviceInformation {
 
     private Context mContext;
 
+    private volatile Snapshot mSnapshot;
+
+    // Incremented by every connectivity change, a lookup that started before it is not kept.
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    private volatile Runnable mConnectivityListener;
+
+    private final BroadcastReceiver mConnectivityReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            onConnectivityChanged();
+        }
+    };
+
+    private static class Snapshot {
+        private final String mDeviceName;
+        private final String mConnectionType;
+        private final boolean mConnected;
+
+        private Snapshot(String deviceName, String connectionType, boolean connected) {
+            mDeviceName = deviceName;
+            mConnectionType = connectionType;
+            mConnected = connected;
+        }
+    }
+
     public DeviceInformation(Context context) {
         mContext = context;
     }
 
+    /**
+     * Discard the snapshot whenever the connectivity changes.
+     */
+    public void observeConnectivity() {
+        mContext.registerReceiver(mConnectivityReceiver,
+                new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
+    /**
+     * Run the listener after every connectivity change, on the main thread.
+     *
+     * @param listener
+     */
+    public void setConnectivityListener(Runnable listener) {
+        mConnectivityListener = listener;
+    }
+
     public String getDeviceName() {
-        return Build.BRAND + " " + Build.PRODUCT + " " + "(" + Build.MODEL + ")";
+        return getSnapshot().mDeviceName;
     }
 
+    /**
+     * @return The connection type, with the carrier when connected to a mobile network.
+     */
     public String getConnectionType() {
-        ConnectivityHelper connectivityHelper = ConnectivityHelper.get(mContext);
-        if (connectivityHelper.getConnectionType() == ConnectivityHelper.Connection.WIFI || connectivityHelper.getConnectionType() == ConnectivityHelper.Connection.NO_CONNECTION) {
-            return connectivityHelper.getConnectionTypeString();
+        return getSnapshot().mConnectionType;
+    }
+
+    /**
+     * @return TRUE when the device has a network connection.
+     */
+    public boolean isConnected() {
+        return getSnapshot().mConnected;
+    }
+
+    void onConnectivityChanged() {
+        synchronized (mGeneration) {
+            mGeneration.incrementAndGet();
+            mSnapshot = null;
+        }
+
+        Runnable listener = mConnectivityListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot snapshot = mSnapshot;
+        if (snapshot == null) {
+            int generation = mGeneration.get();
+            ConnectivityHelper.Connection connection =
+                    ConnectivityHelper.get(mContext).getConnectionType();
+            snapshot = new Snapshot(lookUpDeviceName(), lookUpConnectionType(connection),
+                    connection != ConnectivityHelper.Connection.NO_CONNECTION);
+
+            // The connectivity changed during the lookup, the next call looks it up again.
+            synchronized (mGeneration) {
+                if (generation == mGeneration.get()) {
+                    mSnapshot = snapshot;
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    private String lookUpDeviceName() {
+        return Build.BRAND + " " + Build.PRODUCT + " " + "(" + Build.MODEL + ")";
+    }
+
+    private String lookUpConnectionType(ConnectivityHelper.Connection connection) {
+        String connectionType = ConnectivityHelper.getConnectionTypeString(connection);
+
+        if (connection == ConnectivityHelper.Connection.WIFI || connection == ConnectivityHelper.Connection.NO_CONNECTION) {
+            return connectionType;
         } else {
             TelephonyManager manager = (TelephonyManager) mContext.getSystemService(Context.TELEPHONY_SERVICE);
             String carrierName = manager.getNetworkOperatorName();
-            return connectivityHelper.getConnectionTypeString() + " (" + carrierName + ")";
+            return connectionType + " (" + carrierName + ")";
         }
     }
 }
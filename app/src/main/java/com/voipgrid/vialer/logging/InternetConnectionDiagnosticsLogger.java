@@ -9,7 +9,7 @@ import github.nisrulz.easydeviceinfo.base.NetworkType;
 
 public class InternetConnectionDiagnosticsLogger {
 
-    private final Logger mLogger = new Logger(this);
+    private final Logger mLogger = LoggerFactory.getLogger(this.getClass());
     private final EasyNetworkMod mEasyNetworkMod;
 
     private static final HashMap<Integer, String> networkTypeMap = new HashMap<>();
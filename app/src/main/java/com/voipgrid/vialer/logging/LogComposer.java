@@ -5,7 +5,7 @@ import com.voipgrid.vialer.logging.tracing.CallerLocator;
 public class LogComposer {
 
     private DeviceInformation mDeviceInformation;
-    private String mIdentifier;
+    private volatile String mIdentifier;
     private String mAppVersion;
     private CallerLocator mCallerLocator;
 
@@ -15,6 +15,15 @@ public class LogComposer {
         mAppVersion = appVersion;
     }
 
+    /**
+     * Change the identifier, used when the user changes the remote logging id.
+     *
+     * @param identifier
+     */
+    public void setIdentifier(String identifier) {
+        mIdentifier = identifier;
+    }
+
     /**
      * Function to format a message to include severity level and identifier.
      *
@@ -0,0 +1,79 @@
+package com.voipgrid.vialer.logging;
+
+/**
+ * A log message as it was logged, before it is anonymized and composed. Creating an event is
+ * cheap so it can be done on the thread that logs.
+ */
+final class LogEvent {
+
+    private final String mLevel;
+    private final String mTag;
+    private final String mMessage;
+    private final long mTimestamp;
+    private final String mThreadName;
+    private final Boolean mRemote;
+    private final Throwable mCallSite;
+
+    LogEvent(@Logger.LogLevels String level, String tag, String message, Boolean remote) {
+        this(level, tag, null, message, remote);
+    }
+
+    LogEvent(@Logger.LogLevels String level, String tag, Throwable callSite, String message,
+            Boolean remote) {
+        this(level, tag, callSite, message, System.currentTimeMillis(),
+                Thread.currentThread().getName(), remote);
+    }
+
+    LogEvent(@Logger.LogLevels String level, String tag, Throwable callSite, String message,
+            long timestamp, String threadName, Boolean remote) {
+        mLevel = level;
+        mTag = tag;
+        mCallSite = callSite;
+        mMessage = message;
+        mTimestamp = timestamp;
+        mThreadName = threadName;
+        mRemote = remote;
+    }
+
+    String getLevel() {
+        return mLevel;
+    }
+
+    String getTag() {
+        return mTag;
+    }
+
+    /**
+     * @return The captured stack of the line that is resolved to the tag, or null when the tag
+     * is known.
+     */
+    Throwable getCallSite() {
+        return mCallSite;
+    }
+
+    String getMessage() {
+        return mMessage;
+    }
+
+    /**
+     * @return The time in milliseconds at which the message was logged.
+     */
+    long getTimestamp() {
+        return mTimestamp;
+    }
+
+    /**
+     * @return The name of the thread that logged the message.
+     */
+    String getThreadName() {
+        return mThreadName;
+    }
+
+    /**
+     * @return TRUE when the message is sent to remote, FALSE when it is kept in the buffer, null
+     * when the remote logging preference was not read yet when the message was logged.
+     */
+    Boolean isRemote() {
+        return mRemote;
+    }
+}
@@ -0,0 +1,278 @@
+package com.voipgrid.vialer.logging;
+
+import com.voipgrid.vialer.logging.file.LogSpool;
+import com.voipgrid.vialer.logging.formatting.LogFormatter;
+import com.voipgrid.vialer.logging.tracing.CallerLocator;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves the anonymizing and composing of log messages off the threads that log. Any thread can
+ * enqueue a {@link LogEvent} into a bounded queue, a single background thread takes the events
+ * from the queue and writes them in batches to remote or to the buffer. The remote logger is
+ * created on the background thread when it is first needed.
+ *
+ * When a spool is given, remote messages are written to the spool while the device has no
+ * network connection. They are sent once the spool is drained.
+ *
+ * Work that can block, like reading the preferences, is done by the set up that runs on the
+ * background thread before the first event is written.
+ */
+class LogPipeline {
+
+    /**
+     * What happens with an event that is enqueued while the queue is full.
+     */
+    enum OverflowPolicy {
+        /**
+         * The enqueued event is dropped.
+         */
+        DROP_NEWEST,
+
+        /**
+         * The oldest event in the queue is dropped to make room for the enqueued event.
+         */
+        DROP_OLDEST,
+    }
+
+    static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The maximum number of events that are written to remote at once.
+     */
+    static final int MAX_BATCH_SIZE = 64;
+
+    private static final long FLUSH_POLL_MILLIS = 10;
+
+    private final LogFormatter mLogFormatter;
+    private final LogComposer mLogComposer;
+    private final Callable<VialerLogger> mVialerLoggerProvider;
+    private final Buffer mBuffer;
+    private final LogSpool mSpool;
+    private final DeviceInformation mDeviceInformation;
+    private final Runnable mSetUp;
+    private final Callable<Boolean> mRemoteByDefault;
+    private final OverflowPolicy mOverflowPolicy;
+
+    private final BlockingQueue<LogEvent> mQueue;
+    private final Thread mConsumer;
+    private final Object mLock = new Object();
+
+    // Events that were enqueued, and events that were processed or dropped.
+    private final AtomicLong mSubmitted = new AtomicLong();
+    private final AtomicLong mCompleted = new AtomicLong();
+
+    private final AtomicLong mProcessed = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+
+    // Only used on the consumer thread.
+    private final SimpleDateFormat mSpoolDateFormat =
+            new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+
+    LogPipeline(LogFormatter logFormatter, LogComposer logComposer,
+            Callable<VialerLogger> vialerLoggerProvider, Buffer buffer) {
+        this(logFormatter, logComposer, vialerLoggerProvider, buffer, DEFAULT_CAPACITY,
+                OverflowPolicy.DROP_NEWEST);
+    }
+
+    LogPipeline(LogFormatter logFormatter, LogComposer logComposer,
+            Callable<VialerLogger> vialerLoggerProvider, Buffer buffer, int capacity,
+            OverflowPolicy overflowPolicy) {
+        this(logFormatter, logComposer, vialerLoggerProvider, buffer, null, null, null,
+                () -> false, capacity, overflowPolicy);
+    }
+
+    /**
+     * @param spool Where remote messages are written while offline, or null to always send them.
+     * @param deviceInformation Tells whether the device is offline, only used with a spool.
+     * @param setUp Run on the background thread before the first event is written, or null.
+     * @param remoteByDefault Whether the events that were logged before the remote logging
+     *                        preference was known are sent to remote, called after the set up.
+     */
+    LogPipeline(LogFormatter logFormatter, LogComposer logComposer,
+            Callable<VialerLogger> vialerLoggerProvider, Buffer buffer, LogSpool spool,
+            DeviceInformation deviceInformation, Runnable setUp,
+            Callable<Boolean> remoteByDefault, int capacity, OverflowPolicy overflowPolicy) {
+        mLogFormatter = logFormatter;
+        mLogComposer = logComposer;
+        mVialerLoggerProvider = vialerLoggerProvider;
+        mBuffer = buffer;
+        mSpool = spool;
+        mDeviceInformation = deviceInformation;
+        mSetUp = setUp;
+        mRemoteByDefault = remoteByDefault;
+        mOverflowPolicy = overflowPolicy;
+        mQueue = new ArrayBlockingQueue<>(capacity);
+
+        mConsumer = new Thread(this::consume, "LogPipeline");
+        mConsumer.setDaemon(true);
+        mConsumer.setPriority(Thread.MIN_PRIORITY);
+        mConsumer.start();
+    }
+
+    /**
+     * Add an event to the queue, this never blocks.
+     *
+     * @param event
+     * @return FALSE when the event was dropped because the queue is full.
+     */
+    boolean enqueue(LogEvent event) {
+        mSubmitted.incrementAndGet();
+
+        if (mQueue.offer(event)) {
+            return true;
+        }
+
+        if (mOverflowPolicy == OverflowPolicy.DROP_OLDEST) {
+            while (mQueue.poll() != null) {
+                drop();
+                if (mQueue.offer(event)) {
+                    return true;
+                }
+            }
+        }
+
+        drop();
+        return false;
+    }
+
+    /**
+     * Wait until the events that were enqueued before this call have been written.
+     *
+     * @param timeoutMillis
+     * @return FALSE when the events were not written within the timeout.
+     */
+    boolean flush(long timeoutMillis) {
+        if (Thread.currentThread() == mConsumer) {
+            return false;
+        }
+
+        long target = mSubmitted.get();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        synchronized (mLock) {
+            while (mCompleted.get() < target) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    mLock.wait(Math.min(remaining, FLUSH_POLL_MILLIS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return The number of events that were written to remote or to the buffer.
+     */
+    long getProcessedCount() {
+        return mProcessed.get();
+    }
+
+    /**
+     * @return The number of events that were dropped because the queue was full.
+     */
+    long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    private void drop() {
+        mDropped.incrementAndGet();
+        mCompleted.incrementAndGet();
+    }
+
+    private void consume() {
+        if (mSetUp != null) {
+            try {
+                mSetUp.run();
+            } catch (Exception e) {
+                // Avoid crashing the app in background logging.
+            }
+        }
+
+        List<LogEvent> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        List<String> remoteMessages = new ArrayList<>(MAX_BATCH_SIZE);
+
+        while (true) {
+            try {
+                batch.add(mQueue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            mQueue.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+            boolean offline = isOffline();
+            for (LogEvent event : batch) {
+                write(event, remoteMessages, offline);
+            }
+
+            try {
+                if (offline) {
+                    mSpool.flush();
+                } else if (!remoteMessages.isEmpty()) {
+                    // Not kept, the factory replaces the logger when remote logging is disabled.
+                    mVialerLoggerProvider.call().log(remoteMessages);
+                }
+            } catch (Exception e) {
+                // Avoid crashing the app in background logging.
+            }
+
+            mProcessed.addAndGet(batch.size());
+            mCompleted.addAndGet(batch.size());
+            batch.clear();
+            remoteMessages.clear();
+
+            synchronized (mLock) {
+                mLock.notifyAll();
+            }
+        }
+    }
+
+    private boolean isOffline() {
+        try {
+            return mSpool != null && !mDeviceInformation.isConnected();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void write(LogEvent event, List<String> remoteMessages, boolean offline) {
+        try {
+            String tag = event.getCallSite() != null
+                    ? CallerLocator.resolve(event.getCallSite()).format() : event.getTag();
+            String message = mLogFormatter.applyAllFormatters(tag, event.getMessage());
+            message = mLogComposer.compose(event.getLevel(), tag, message);
+
+            boolean remote = isRemote(event);
+            if (remote && offline) {
+                mSpool.append(message + " (FROM LOG SPOOL, LOGGED AT "
+                        + mSpoolDateFormat.format(new Date(event.getTimestamp())) + ")");
+            } else if (remote) {
+                remoteMessages.add(message);
+            } else {
+                mBuffer.add(message);
+            }
+        } catch (Exception e) {
+            // Avoid crashing the app in background logging.
+        }
+    }
+
+    private boolean isRemote(LogEvent event) throws Exception {
+        Boolean remote = event.isRemote();
+        return remote != null ? remote : Boolean.TRUE.equals(mRemoteByDefault.call());
+    }
+}
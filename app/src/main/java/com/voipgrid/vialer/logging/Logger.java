@@ -1,22 +1,16 @@
 package com.voipgrid.vialer.logging;
 
-import android.content.Context;
 import androidx.annotation.StringDef;
 import android.util.Log;
 
-import com.voipgrid.vialer.Preferences;
-import com.voipgrid.vialer.R;
-import com.voipgrid.vialer.VialerApplication;
-import com.voipgrid.vialer.logging.file.LogFileCreator;
-import com.voipgrid.vialer.logging.formatting.LogFormatter;
 import com.voipgrid.vialer.logging.tracing.CallerLocator;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.util.List;
 
 /**
- * Class used for sending logs to a remote service.
+ * Class used for sending logs to a remote service. Loggers are shared, get them from
+ * {@link LoggerFactory#getLogger(Class)}.
  */
 public class Logger {
 
@@ -33,61 +27,48 @@ public class Logger {
 
     private final String tag;
 
-    private Context mContext;
-    private static VialerLogger logEntryLogger = null;
-    private LogFormatter mLogFormatter;
-    private LogComposer mLogComposer;
-    private CallerLocator mCallerLocator;
-    private LogFileCreator mLogFileCreator;
+    private final LoggerFactory mLoggerFactory;
+    private final CallerLocator mCallerLocator = new CallerLocator();
 
-    private static Buffer sBuffer;
-
-    private boolean mRemoteLoggingEnabled;
+    // Overrides the remote logging preference when not null.
+    private Boolean mForcedRemoteLogging;
     private boolean mLogToConsole = true;
 
-    static  {
-        sBuffer = new Buffer();
-    }
-
     public Logger(Class thisClass) {
-        mContext = VialerApplication.get();
-        mLogFileCreator = new LogFileCreator(mContext);
-        createLogger();
-        mLogFormatter = new LogFormatter();
-        mLogComposer = new LogComposer(
-                new DeviceInformation(mContext),
-                new Preferences(mContext).getLoggerIdentifier(),
-                VialerApplication.getAppVersion()
-        );
-        mCallerLocator = new CallerLocator();
-        mRemoteLoggingEnabled = new Preferences(mContext).remoteLoggingIsActive();
-        tag = thisClass.getSimpleName();
+        this(thisClass.getSimpleName(), LoggerFactory.get());
     }
 
     public Logger(Object object) {
         this(object.getClass());
     }
 
+    Logger(String tag, LoggerFactory loggerFactory) {
+        this.tag = tag;
+        mLoggerFactory = loggerFactory;
+    }
+
     /**
      * Also logs all messages to the console.
      *
-     * @return this To allow method chaining.
+     * @return A new logger that does not log to the console, loggers are shared.
      */
     public Logger disableConsoleLogging() {
-        mLogToConsole = false;
+        Logger logger = copy();
+        logger.mLogToConsole = false;
 
-        return this;
+        return logger;
     }
 
     /**
      * Forces messages to be logged to remote rather than taking the user setting.
      *
-     * @return this To allow method chaining.
+     * @return A new logger with the forced setting, loggers are shared.
      */
     public Logger forceRemoteLogging(boolean forced) {
-        mRemoteLoggingEnabled = forced;
+        Logger logger = copy();
+        logger.mForcedRemoteLogging = forced;
 
-        return this;
+        return logger;
     }
 
     /**
@@ -95,34 +76,51 @@ public class Logger {
      * @return VialerLogger The vialer logger being used currently
      */
     public VialerLogger getVialerLogger() {
-        return logEntryLogger;
+        return mLoggerFactory.getVialerLogger();
     }
 
-    /**
-     * Function to create the remote logger instance.
-     */
-    private void createLogger() {
-        mLogFileCreator.createIfDoesNotExist();
-
-        if(logEntryLogger != null) return;
-
-        logEntryLogger = new VialerLogger(mContext, new LogEntriesFactory()).initialize(new String[] {
-                mContext.getString(R.string.log_entry_token),
-                mContext.getString(R.string.secondary_log_entry_token)
-        });
+    private Logger copy() {
+        Logger logger = new Logger(tag, mLoggerFactory);
+        logger.mForcedRemoteLogging = mForcedRemoteLogging;
+        logger.mLogToConsole = mLogToConsole;
+        return logger;
     }
 
     /**
      * Function to log the message for the given tag.
      */
     private void log(@LogLevels String level, String message) {
-        String tag = createLogTag();
+        LogPipeline pipeline = mLoggerFactory.getPipeline();
+        // Null until the pipeline has read the preference, the pipeline decides then.
+        Boolean remoteLoggingEnabled = mForcedRemoteLogging != null
+                ? mForcedRemoteLogging : mLoggerFactory.isRemoteLoggingEnabled();
+        boolean mightBeRemote = remoteLoggingEnabled == null || remoteLoggingEnabled;
+        CallerLocator.Mode callerMode = mLoggerFactory.getCallerMode();
+        boolean deferred = mightBeRemote && callerMode == CallerLocator.Mode.DEFERRED;
+
+        String tag = deferred ? this.tag : createLogTag(level,
+                Boolean.TRUE.equals(remoteLoggingEnabled), callerMode);
+        Throwable callSite = deferred ? CallerLocator.capture() : null;
 
         if (mLogToConsole) {
             logToConsole(level, tag, message);
         }
 
-        logToRemote(level, tag, message);
+        pipeline.enqueue(new LogEvent(level, tag, callSite, message, remoteLoggingEnabled));
+    }
+
+    /**
+     * Picks the correct log tag to use, only using the stack trace option when remote logging is enabled for
+     * performance reasons.
+     *
+     * @return String The log tag.
+     */
+    private String createLogTag(String level, boolean remoteLoggingEnabled,
+            CallerLocator.Mode callerMode) {
+        if (!remoteLoggingEnabled) {
+            return tag;
+        }
+        return mCallerLocator.locateTag(level, callerMode, mLoggerFactory.getCallerSampleRate());
     }
 
     /**
@@ -148,39 +146,6 @@ public class Logger {
         }
     }
 
-    /**
-     * Logs the message to the remote logger.
-     *
-     * @param tag
-     * @param message
-     */
-    private void logToRemote(String level, String tag, String message) {
-        if( logEntryLogger == null ) return;
-
-        try {
-            message = mLogFormatter.applyAllFormatters(tag, message);
-            message = mLogComposer.compose(level, tag, message);
-
-            if (mRemoteLoggingEnabled) {
-                logEntryLogger.log(message);
-            } else {
-                sBuffer.add(message);
-            }
-        } catch (Exception e) {
-            // Avoid crashing the app in background logging.
-        }
-    }
-
-    /**
-     * Picks the correct log tag to use, only using the stack trace option when remote logging is enabled for
-     * performance reasons.
-     *
-     * @return String The log tag.
-     */
-    private String createLogTag() {
-        return mRemoteLoggingEnabled ? mCallerLocator.locate().format() : tag;
-    }
-
     /**
      * Verbose log.
      */
@@ -221,15 +186,14 @@ public class Logger {
      *
      */
     void logBufferToRemote() {
-        List<String> buffer = sBuffer.get();
-        sBuffer.clear();
-
-        if (logEntryLogger == null) {
-            return;
-        }
+        mLoggerFactory.logBufferToRemote();
+    }
 
-        for (String log : buffer) {
-            logEntryLogger.log(log + " (FROM LOG BUFFER)");
-        }
+    /**
+     * Waits a short while for the messages that are still in the log pipeline to be written.
+     *
+     */
+    void flush() {
+        mLoggerFactory.flush();
     }
 }
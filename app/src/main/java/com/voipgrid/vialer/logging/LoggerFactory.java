@@ -0,0 +1,299 @@
+package com.voipgrid.vialer.logging;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import com.voipgrid.vialer.Preferences;
+import com.voipgrid.vialer.R;
+import com.voipgrid.vialer.VialerApplication;
+import com.voipgrid.vialer.logging.file.LogFileCreator;
+import com.voipgrid.vialer.logging.file.LogSpool;
+import com.voipgrid.vialer.logging.formatting.LogFormatter;
+import com.voipgrid.vialer.logging.tracing.CallerLocator;
+import com.voipgrid.vialer.logging.transport.HttpBatchTransport;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Hands out the loggers of the app, loggers are cached per tag and share one log pipeline.
+ * Creating a logger does not touch the disk, the pipeline is created when the first message is
+ * logged and reads the preferences on its own thread. The remote logging preferences
+ * are observed instead of read for every logger.
+ *
+ * Remote messages that are logged while offline are kept in a spool on disk, the spool is sent
+ * when the connectivity returns. This also sends what was spooled before the app was stopped.
+ */
+public class LoggerFactory implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+    private static final long FLUSH_TIMEOUT_MILLIS = 2000;
+
+    private static final int DEFAULT_CALLER_SAMPLE_RATE = 20;
+
+    private static final String SPOOL_DIRECTORY = "log_spool";
+    private static final int SPOOL_SEGMENT_BYTES = 64 * 1024;
+    private static final long SPOOL_MAX_BYTES = 1024 * 1024;
+
+    private static final long UPLOAD_STATS_INTERVAL_MILLIS = 15 * 60 * 1000;
+
+    private static LoggerFactory sInstance;
+
+    private final Context mContext;
+    private final ConcurrentHashMap<String, Logger> mLoggers = new ConcurrentHashMap<>();
+    private final Buffer mBuffer = new Buffer();
+    private final ExecutorService mSpoolDrainer = Executors.newSingleThreadExecutor();
+
+    private volatile LogPipeline mPipeline;
+    // Null until the pipeline thread has read the preference.
+    private volatile Boolean mRemoteLoggingEnabled;
+    // The exact caller of every line, the stack trace is walked on the pipeline thread.
+    private volatile CallerLocator.Mode mCallerMode = CallerLocator.Mode.DEFERRED;
+    private volatile int mCallerSampleRate = DEFAULT_CALLER_SAMPLE_RATE;
+    private LogComposer mLogComposer;
+    private DeviceInformation mDeviceInformation;
+    private LogSpool mSpool;
+    private VialerLogger mVialerLogger;
+
+    LoggerFactory(Context context) {
+        mContext = context;
+    }
+
+    static synchronized LoggerFactory get() {
+        if (sInstance == null) {
+            sInstance = new LoggerFactory(VialerApplication.get());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Replace the shared factory, only used by tests.
+     *
+     * @param loggerFactory
+     */
+    static synchronized void setInstance(LoggerFactory loggerFactory) {
+        sInstance = loggerFactory;
+    }
+
+    /**
+     * Get the logger that logs with the name of the class as tag.
+     *
+     * @param thisClass
+     * @return The logger, the same instance for every class with the same name.
+     */
+    public static Logger getLogger(Class thisClass) {
+        return get().getLogger(thisClass.getSimpleName());
+    }
+
+    /**
+     * Change how the callers of log lines are found when logging to remote. By default the
+     * exact caller of every line is found on the pipeline thread, SAMPLED and PER_SITE are
+     * cheaper but reuse the caller of another line.
+     *
+     * @param mode
+     * @param sampleRate Every how many lines the caller is found in SAMPLED mode.
+     */
+    public static void setCallerResolution(CallerLocator.Mode mode, int sampleRate) {
+        LoggerFactory loggerFactory = get();
+        loggerFactory.mCallerMode = mode;
+        loggerFactory.mCallerSampleRate = Math.max(1, sampleRate);
+    }
+
+    Logger getLogger(String tag) {
+        Logger logger = mLoggers.get(tag);
+        if (logger == null) {
+            Logger created = new Logger(tag, this);
+            logger = mLoggers.putIfAbsent(tag, created);
+            if (logger == null) {
+                logger = created;
+            }
+        }
+        return logger;
+    }
+
+    /**
+     * @return Whether the user enabled remote logging, null until the pipeline has read the
+     * preference.
+     */
+    Boolean isRemoteLoggingEnabled() {
+        return mRemoteLoggingEnabled;
+    }
+
+    CallerLocator.Mode getCallerMode() {
+        return mCallerMode;
+    }
+
+    int getCallerSampleRate() {
+        return mCallerSampleRate;
+    }
+
+    /**
+     * Get the pipeline that sends messages to remote, it is created on first use. Creating it
+     * does not block, the preferences are read and the connectivity is observed on the pipeline
+     * thread.
+     *
+     * @return
+     */
+    LogPipeline getPipeline() {
+        LogPipeline pipeline = mPipeline;
+        if (pipeline != null) {
+            return pipeline;
+        }
+
+        synchronized (this) {
+            if (mPipeline == null) {
+                mDeviceInformation = new DeviceInformation(mContext);
+                mSpool = new LogSpool(() -> new File(mContext.getFilesDir(), SPOOL_DIRECTORY),
+                        SPOOL_SEGMENT_BYTES, SPOOL_MAX_BYTES);
+                mLogComposer = new LogComposer(
+                        mDeviceInformation,
+                        null,
+                        VialerApplication.getAppVersion()
+                );
+
+                mPipeline = new LogPipeline(new LogFormatter(), mLogComposer,
+                        this::getVialerLogger, mBuffer, mSpool, mDeviceInformation,
+                        this::setUpPipeline, this::isRemoteLoggingEnabled,
+                        LogPipeline.DEFAULT_CAPACITY, LogPipeline.OverflowPolicy.DROP_NEWEST);
+            }
+            return mPipeline;
+        }
+    }
+
+    /**
+     * Read the preferences and start observing them and the connectivity, runs on the pipeline
+     * thread before the first message is written.
+     */
+    private void setUpPipeline() {
+        Preferences preferences = new Preferences(mContext);
+        mLogComposer.setIdentifier(preferences.getLoggerIdentifier());
+        mRemoteLoggingEnabled = preferences.remoteLoggingIsActive();
+        PreferenceManager.getDefaultSharedPreferences(mContext)
+                .registerOnSharedPreferenceChangeListener(this);
+
+        mDeviceInformation.setConnectivityListener(this::drainSpool);
+        mDeviceInformation.observeConnectivity();
+    }
+
+    /**
+     * Get the remote logger, it is created on first use. The lines are sent in gzipped batches
+     * when a log upload url is configured, otherwise every line is sent on its own through
+     * LogEntries.
+     *
+     * @return
+     */
+    synchronized VialerLogger getVialerLogger() {
+        if (mVialerLogger == null) {
+            String uploadUrl = mContext.getString(R.string.log_upload_url);
+            VialerLogger vialerLogger;
+            if (uploadUrl.isEmpty()) {
+                new LogFileCreator(mContext).createIfDoesNotExist();
+                vialerLogger = new VialerLogger(mContext, new LogEntriesFactory());
+            } else {
+                vialerLogger = new VialerLogger(mContext, HttpBatchTransport.factory(uploadUrl,
+                        this::logUploadStats, UPLOAD_STATS_INTERVAL_MILLIS));
+            }
+
+            mVialerLogger = vialerLogger.initialize(
+                    new String[] {
+                            mContext.getString(R.string.log_entry_token),
+                            mContext.getString(R.string.secondary_log_entry_token)
+                    });
+        }
+        return mVialerLogger;
+    }
+
+    /**
+     * Close the remote logger and its transports, the next message that is logged to remote
+     * creates a new one.
+     */
+    private void closeVialerLogger() {
+        final VialerLogger vialerLogger;
+        synchronized (this) {
+            vialerLogger = mVialerLogger;
+            mVialerLogger = null;
+        }
+
+        if (vialerLogger != null) {
+            // Closing waits a short while for the queued lines to be sent.
+            mSpoolDrainer.execute(() -> {
+                try {
+                    vialerLogger.close();
+                } catch (Exception e) {
+                    // Avoid crashing the app in background logging.
+                }
+            });
+        }
+    }
+
+    private void logUploadStats(HttpBatchTransport transport) {
+        getLogger(HttpBatchTransport.class.getSimpleName())
+                .i("Log upload: " + transport.getStats());
+    }
+
+    /**
+     * Sends the entire contents of the buffer to remote.
+     *
+     */
+    void logBufferToRemote() {
+        flush();
+        List<String> buffer = mBuffer.drain();
+
+        if (buffer.isEmpty()) {
+            return;
+        }
+
+        VialerLogger vialerLogger = getVialerLogger();
+        for (String log : buffer) {
+            vialerLogger.log(log + " (FROM LOG BUFFER)");
+        }
+    }
+
+    /**
+     * Sends the spooled messages in the background when the device is online. The spool is
+     * only sent through the batch upload, LogEntries can not confirm that it received them.
+     *
+     */
+    void drainSpool() {
+        mSpoolDrainer.execute(() -> {
+            try {
+                if (!mDeviceInformation.isConnected() || mSpool.isEmpty()) {
+                    return;
+                }
+
+                // A segment is only deleted when the environments confirmed its records.
+                mSpool.drain(records -> Boolean.TRUE.equals(mRemoteLoggingEnabled)
+                        && mDeviceInformation.isConnected()
+                        && getVialerLogger().logAndConfirm(records));
+            } catch (Exception e) {
+                // Avoid crashing the app in background logging.
+            }
+        });
+    }
+
+    /**
+     * Waits a short while for the messages that are still in the log pipeline to be written.
+     *
+     */
+    void flush() {
+        LogPipeline pipeline = mPipeline;
+        if (pipeline != null) {
+            pipeline.flush(FLUSH_TIMEOUT_MILLIS);
+        }
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        if (Preferences.PREF_REMOTE_LOGGING.equals(key)) {
+            mRemoteLoggingEnabled = sharedPreferences.getBoolean(key, false);
+            if (!mRemoteLoggingEnabled) {
+                closeVialerLogger();
+            }
+        } else if (Preferences.PREF_REMOTE_LOGGING_ID.equals(key)) {
+            mLogComposer.setIdentifier(new Preferences(mContext).getLoggerIdentifier());
+        }
+    }
+}
@@ -20,7 +20,7 @@ public class RemoteLoggingActivity extends AppCompatActivity {
 
         Thread.setDefaultUncaughtExceptionHandler(new RemoteUncaughtExceptionHandler());
 
-        mLogger = new Logger(this.getClass());
+        mLogger = LoggerFactory.getLogger(this.getClass());
     }
 
     /**
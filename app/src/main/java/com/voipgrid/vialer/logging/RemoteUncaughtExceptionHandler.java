@@ -24,7 +24,8 @@ public class RemoteUncaughtExceptionHandler implements Thread.UncaughtExceptionH
     }
 
     private void logStackTrace(Throwable exception) {
-        Logger logger = new Logger(RemoteUncaughtExceptionHandler.class).forceRemoteLogging(true);
+        Logger logger = LoggerFactory.getLogger(RemoteUncaughtExceptionHandler.class)
+                .forceRemoteLogging(true);
         logger.logBufferToRemote();
         String stackTrace = Log.getStackTraceString(exception);
         String traceID = LogUuidGenerator.generate();
@@ -52,5 +53,6 @@ public class RemoteUncaughtExceptionHandler implements Thread.UncaughtExceptionH
         }
         logger.e("************ END CRASH **************");
         logger.e("*************************************");
+        logger.flush();
     }
 }
\ No newline at end of file
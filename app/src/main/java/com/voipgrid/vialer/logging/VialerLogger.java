@@ -2,32 +2,49 @@ package com.voipgrid.vialer.logging;
 
 import android.content.Context;
 
-import com.logentries.logger.AsyncLoggingWorker;
+import com.voipgrid.vialer.logging.transport.LogEntriesTransport;
+import com.voipgrid.vialer.logging.transport.LogTransport;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
+/**
+ * Sends log messages to the remote logging environments, every environment has its own
+ * {@link LogTransport}.
+ */
 public class VialerLogger {
 
     /**
      * All environments in this list will be logged to whenever log() method is
      * called.
      */
-    private final ArrayList<AsyncLoggingWorker> environments = new ArrayList<>();
+    private final ArrayList<LogTransport> environments = new ArrayList<>();
 
     /**
      * This HashMap holds onto environments that were logged to specifically so they can be reused
      * if needed, the token is used as the key.
      */
-    private final HashMap<String, AsyncLoggingWorker> standAloneEnvironments = new HashMap<>();
+    private final HashMap<String, LogTransport> standAloneEnvironments = new HashMap<>();
 
     private Context mContext;
 
-    private LogEntriesFactory mLogEntriesFactory;
+    private LogTransport.Factory mTransportFactory;
 
+    /**
+     * Log every line on its own through LogEntries.
+     *
+     * @param context
+     * @param logEntriesFactory
+     */
     public VialerLogger(Context context, LogEntriesFactory logEntriesFactory) {
+        this(context, (String token, Context transportContext) -> LogEntriesTransport.wrap(
+                logEntriesFactory.createLogger(token, transportContext)));
+    }
+
+    public VialerLogger(Context context, LogTransport.Factory transportFactory) {
         mContext = context;
-        mLogEntriesFactory = logEntriesFactory;
+        mTransportFactory = transportFactory;
     }
 
     /**
@@ -49,9 +66,57 @@ public class VialerLogger {
      * @param message
      */
     public void log(String message) {
-        for (AsyncLoggingWorker logger : environments) {
-            logger.addLineToQueue(message);
+        for (LogTransport transport : environments) {
+            transport.send(message);
+        }
+    }
+
+    /**
+     * Send a batch of log messages to all configured logging environments.
+     *
+     * @param messages
+     */
+    public void log(List<String> messages) {
+        for (LogTransport transport : environments) {
+            for (String message : messages) {
+                transport.send(message);
+            }
+        }
+    }
+
+    /**
+     * Send a batch of log messages to all configured logging environments and wait until they
+     * accepted it. When an environment fails the batch can be sent again to the environments
+     * that already accepted it.
+     *
+     * @param messages
+     * @return TRUE when every environment confirmed that it accepted the messages.
+     */
+    public boolean logAndConfirm(List<String> messages) {
+        if (environments.isEmpty()) {
+            return false;
+        }
+
+        for (LogTransport transport : environments) {
+            if (!transport.sendNow(messages)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Close the transports of all logging environments, this logger can not be used anymore.
+     */
+    public void close() {
+        for (LogTransport transport : environments) {
+            transport.close();
+        }
+        for (LogTransport transport : standAloneEnvironments.values()) {
+            transport.close();
         }
+        environments.clear();
+        standAloneEnvironments.clear();
     }
 
     /**
@@ -62,11 +127,11 @@ public class VialerLogger {
     public void addLoggingEnvironment(String token) {
         if (token == null || token.isEmpty()) return;
 
-        AsyncLoggingWorker logger = mLogEntriesFactory.createLogger(token, mContext);
+        LogTransport transport = mTransportFactory.create(token, mContext);
 
-        if (logger == null) return;
+        if (transport == null) return;
 
-        environments.add(logger);
+        environments.add(transport);
     }
 
     /**
@@ -80,10 +145,10 @@ public class VialerLogger {
         if(!standAloneEnvironments.containsKey(token)) {
             standAloneEnvironments.put(
                     token,
-                    mLogEntriesFactory.createLogger(token, mContext)
+                    mTransportFactory.create(token, mContext)
             );
         }
 
-        standAloneEnvironments.get(token).addLineToQueue(message);
+        standAloneEnvironments.get(token).send(message);
     }
 }
@@ -0,0 +1,322 @@
+package com.voipgrid.vialer.logging.file;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.zip.CRC32;
+
+/**
+ * Append only store for log lines that could not be sent yet. The lines are written to segment
+ * files of a fixed maximum size, when the total size exceeds the maximum the oldest segments
+ * are deleted.
+ *
+ * Every record is written as its length, a CRC32 checksum and the UTF-8 bytes of the line. A
+ * record that was not completely written before the process died is detected when reading and
+ * ends the segment. Segments are never appended to after the spool is reopened.
+ */
+public class LogSpool {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String SEGMENT_EXTENSION = ".spool";
+
+    /**
+     * The length and the checksum of a record.
+     */
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private static final int WRITE_BUFFER_BYTES = 8 * 1024;
+
+    private final Callable<File> mDirectoryProvider;
+    private final int mSegmentBytes;
+    private final long mMaxBytes;
+
+    private final CRC32 mChecksum = new CRC32();
+
+    // Closed segments, oldest first.
+    private final List<File> mSegments = new ArrayList<>();
+    private long mClosedBytes;
+
+    private File mCurrentSegment;
+    private DataOutputStream mOutput;
+    private long mCurrentBytes;
+    private long mNextSequence;
+    private boolean mOpened;
+    private File mDirectory;
+
+    /**
+     * Handles the records of one segment.
+     */
+    public interface Uploader {
+        /**
+         * @param records The records of a segment, oldest first.
+         * @return TRUE when the records are sent and the segment can be deleted.
+         */
+        boolean upload(List<String> records);
+    }
+
+    /**
+     * Nothing is read from or written to the directory until the spool is used.
+     *
+     * @param directory
+     * @param segmentBytes The maximum size of a segment file.
+     * @param maxBytes The maximum size of all segment files together.
+     */
+    public LogSpool(File directory, int segmentBytes, long maxBytes) {
+        this(() -> directory, segmentBytes, maxBytes);
+    }
+
+    /**
+     * @param directoryProvider Looks up the directory when the spool is first used.
+     * @param segmentBytes The maximum size of a segment file.
+     * @param maxBytes The maximum size of all segment files together.
+     */
+    public LogSpool(Callable<File> directoryProvider, int segmentBytes, long maxBytes) {
+        mDirectoryProvider = directoryProvider;
+        mSegmentBytes = segmentBytes;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Add a record, it is buffered until {@link #flush()} is called or the segment is full.
+     *
+     * @param record
+     * @return FALSE when the record could not be written or is larger than a segment.
+     */
+    public synchronized boolean append(String record) {
+        byte[] bytes = record.getBytes(UTF_8);
+        int recordBytes = RECORD_HEADER_BYTES + bytes.length;
+
+        if (recordBytes > mSegmentBytes) {
+            return false;
+        }
+
+        try {
+            open();
+
+            if (mOutput == null || mCurrentBytes + recordBytes > mSegmentBytes) {
+                rotate();
+            }
+
+            mChecksum.reset();
+            mChecksum.update(bytes, 0, bytes.length);
+            mOutput.writeInt(bytes.length);
+            mOutput.writeInt((int) mChecksum.getValue());
+            mOutput.write(bytes);
+            mCurrentBytes += recordBytes;
+
+            evict();
+            return true;
+        } catch (IOException e) {
+            closeCurrentSegment();
+            return false;
+        }
+    }
+
+    /**
+     * Write the buffered records to the segment file.
+     */
+    public synchronized void flush() {
+        if (mOutput == null) {
+            return;
+        }
+
+        try {
+            mOutput.flush();
+        } catch (IOException e) {
+            closeCurrentSegment();
+        }
+    }
+
+    /**
+     * @return The number of bytes in the spool.
+     */
+    public synchronized long getBytes() {
+        open();
+        return mClosedBytes + mCurrentBytes;
+    }
+
+    public synchronized boolean isEmpty() {
+        return getBytes() == 0;
+    }
+
+    /**
+     * Hand the records to the uploader one segment at a time, oldest first. A segment is deleted
+     * when it is uploaded, draining stops at the first segment that fails to upload.
+     *
+     * @param uploader
+     * @return The number of uploaded records.
+     */
+    public int drain(Uploader uploader) {
+        List<File> segments;
+        synchronized (this) {
+            open();
+            closeCurrentSegment();
+            segments = new ArrayList<>(mSegments);
+        }
+
+        int uploaded = 0;
+        for (File segment : segments) {
+            List<String> records = read(segment);
+
+            if (!records.isEmpty() && !uploader.upload(records)) {
+                break;
+            }
+            uploaded += records.size();
+
+            synchronized (this) {
+                if (mSegments.remove(segment)) {
+                    mClosedBytes -= segment.length();
+                    segment.delete();
+                }
+            }
+        }
+        return uploaded;
+    }
+
+    /**
+     * Read the records of a segment up to the first incomplete or corrupt record.
+     */
+    private List<String> read(File segment) {
+        List<String> records = new ArrayList<>();
+        DataInputStream input = null;
+
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)));
+            while (true) {
+                int length = input.readInt();
+                int checksum = input.readInt();
+                if (length < 0 || length > mSegmentBytes - RECORD_HEADER_BYTES) {
+                    break;
+                }
+
+                byte[] bytes = new byte[length];
+                input.readFully(bytes);
+
+                CRC32 crc = new CRC32();
+                crc.update(bytes, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                records.add(new String(bytes, UTF_8));
+            }
+        } catch (EOFException e) {
+            // The end of the segment, or a record that was not completely written.
+        } catch (IOException e) {
+            // Return the records that could be read.
+        } finally {
+            close(input);
+        }
+
+        return records;
+    }
+
+    /**
+     * Find the segments that were written before, new records always go to a new segment.
+     */
+    private void open() {
+        if (mOpened) {
+            return;
+        }
+        mOpened = true;
+
+        try {
+            mDirectory = mDirectoryProvider.call();
+        } catch (Exception e) {
+            mDirectory = null;
+        }
+        if (mDirectory == null) {
+            return;
+        }
+
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(SEGMENT_EXTENSION)) {
+                continue;
+            }
+            try {
+                long sequence = Long.parseLong(
+                        name.substring(0, name.length() - SEGMENT_EXTENSION.length()));
+                mNextSequence = Math.max(mNextSequence, sequence + 1);
+                mSegments.add(file);
+                mClosedBytes += file.length();
+            } catch (NumberFormatException e) {
+                // Not a segment.
+            }
+        }
+    }
+
+    private void rotate() throws IOException {
+        closeCurrentSegment();
+
+        if (mDirectory == null || (!mDirectory.isDirectory() && !mDirectory.mkdirs())) {
+            throw new IOException("Unable to create " + mDirectory);
+        }
+
+        mCurrentSegment = new File(mDirectory,
+                String.format(Locale.ROOT, "%019d%s", mNextSequence++, SEGMENT_EXTENSION));
+        mOutput = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(mCurrentSegment, true), WRITE_BUFFER_BYTES));
+        mCurrentBytes = 0;
+    }
+
+    private void closeCurrentSegment() {
+        if (mOutput == null) {
+            return;
+        }
+
+        close(mOutput);
+        mOutput = null;
+
+        if (mCurrentBytes > 0) {
+            mSegments.add(mCurrentSegment);
+            mClosedBytes += mCurrentSegment.length();
+        } else {
+            mCurrentSegment.delete();
+        }
+        mCurrentSegment = null;
+        mCurrentBytes = 0;
+    }
+
+    /**
+     * Delete the oldest closed segments until the spool fits.
+     */
+    private void evict() {
+        while (mClosedBytes + mCurrentBytes > mMaxBytes && !mSegments.isEmpty()) {
+            File oldest = mSegments.remove(0);
+            mClosedBytes -= oldest.length();
+            oldest.delete();
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+
+        try {
+            closeable.close();
+        } catch (IOException e) {
+
+        }
+    }
+}
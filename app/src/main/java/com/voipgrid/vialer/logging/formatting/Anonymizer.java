@@ -0,0 +1,197 @@
+package com.voipgrid.vialer.logging.formatting;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces sensitive parts of log messages in a single pass. The rules are compiled once into a
+ * table indexed by the first char of their prefix, the message is scanned once and every
+ * position is only checked against the rules that can start with its char.
+ *
+ * When more rules match, the leftmost match wins and for matches at the same position the rule
+ * that was declared first wins. Replaced text is never matched again.
+ */
+public class Anonymizer {
+
+    /**
+     * Messages longer than this do not keep their StringBuilder for reuse.
+     */
+    private static final int MAX_REUSED_CAPACITY = 64 * 1024;
+
+    private final Rule[][] mRulesByFirstChar = new Rule[128][];
+
+    private final ThreadLocal<StringBuilder> mBuilder = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(1024);
+        }
+    };
+
+    /**
+     * A part of a message that is replaced, it always starts with a fixed prefix.
+     */
+    public static class Rule {
+        private final String mPrefix;
+        private final String mTerminator;
+        private final String mReplacement;
+
+        private Rule(String prefix, String terminator, String replacement) {
+            mPrefix = prefix;
+            mTerminator = terminator;
+            mReplacement = replacement;
+        }
+
+        /**
+         * Replaces the prefix, at least one char and the first terminator after it on the same
+         * line. The same as the pattern prefix(.+?)terminator.
+         *
+         * @param prefix
+         * @param terminator
+         * @param replacement
+         * @return
+         */
+        public static Rule between(String prefix, String terminator, String replacement) {
+            return new Rule(prefix, terminator, replacement);
+        }
+
+        /**
+         * Replaces the prefix followed by a number with an optional plus sign. The same as the
+         * pattern prefix\+?\d+.
+         *
+         * @param prefix
+         * @param replacement
+         * @return
+         */
+        public static Rule number(String prefix, String replacement) {
+            return new Rule(prefix, null, replacement);
+        }
+
+        /**
+         * @return The index after the match, or -1 when the rule does not match at the index.
+         */
+        private int match(String message, int index) {
+            if (!message.startsWith(mPrefix, index)) {
+                return -1;
+            }
+            int start = index + mPrefix.length();
+
+            return mTerminator == null ? matchNumber(message, start)
+                    : matchBetween(message, start);
+        }
+
+        private int matchNumber(String message, int start) {
+            int length = message.length();
+            if (start < length && message.charAt(start) == '+') {
+                start++;
+            }
+
+            int end = start;
+            while (end < length && isDigit(message.charAt(end))) {
+                end++;
+            }
+
+            return end > start ? end : -1;
+        }
+
+        private int matchBetween(String message, int start) {
+            int length = message.length();
+            if (start >= length || isLineTerminator(message.charAt(start))) {
+                return -1;
+            }
+
+            char first = mTerminator.charAt(0);
+            for (int i = start + 1; i < length; i++) {
+                char c = message.charAt(i);
+                if (c == first && message.startsWith(mTerminator, i)) {
+                    return i + mTerminator.length();
+                }
+                if (isLineTerminator(c)) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+    }
+
+    public Anonymizer(Rule... rules) {
+        List<List<Rule>> rulesByFirstChar = new ArrayList<>(mRulesByFirstChar.length);
+        for (int i = 0; i < mRulesByFirstChar.length; i++) {
+            rulesByFirstChar.add(null);
+        }
+
+        for (Rule rule : rules) {
+            char first = rule.mPrefix.charAt(0);
+            if (first >= mRulesByFirstChar.length) {
+                throw new IllegalArgumentException("Rule prefix must start with an ASCII char: "
+                        + rule.mPrefix);
+            }
+            if (rulesByFirstChar.get(first) == null) {
+                rulesByFirstChar.set(first, new ArrayList<>());
+            }
+            rulesByFirstChar.get(first).add(rule);
+        }
+
+        for (int i = 0; i < mRulesByFirstChar.length; i++) {
+            List<Rule> candidates = rulesByFirstChar.get(i);
+            if (candidates != null) {
+                mRulesByFirstChar[i] = candidates.toArray(new Rule[candidates.size()]);
+            }
+        }
+    }
+
+    /**
+     * Apply all rules to the message.
+     *
+     * @param message
+     * @return The anonymized message, the message itself when no rule matched.
+     */
+    public String anonymize(String message) {
+        StringBuilder builder = null;
+        int length = message.length();
+        int copied = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = message.charAt(i);
+            if (c >= mRulesByFirstChar.length || mRulesByFirstChar[c] == null) {
+                continue;
+            }
+
+            for (Rule rule : mRulesByFirstChar[c]) {
+                int end = rule.match(message, i);
+                if (end < 0) {
+                    continue;
+                }
+
+                if (builder == null) {
+                    builder = mBuilder.get();
+                    builder.setLength(0);
+                }
+                builder.append(message, copied, i).append(rule.mReplacement);
+                copied = end;
+                i = end - 1;
+                break;
+            }
+        }
+
+        if (builder == null) {
+            return message;
+        }
+
+        String anonymized = builder.append(message, copied, length).toString();
+        if (builder.capacity() > MAX_REUSED_CAPACITY) {
+            mBuilder.remove();
+        }
+        return anonymized;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * The chars that are not matched by . in a pattern.
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
@@ -1,19 +1,21 @@
 package com.voipgrid.vialer.logging.formatting.formatters;
 
+import static com.voipgrid.vialer.logging.formatting.Anonymizer.Rule.between;
+
 import com.voipgrid.vialer.fcm.FcmMessagingService;
+import com.voipgrid.vialer.logging.formatting.Anonymizer;
 import com.voipgrid.vialer.logging.formatting.Formatter;
 
-import java.util.regex.Pattern;
-
 public class PayloadAnonymizer implements Formatter {
 
+    private static final Anonymizer ANONYMIZER = new Anonymizer(
+            between("caller_id=", ",", "callerid=<CALLER_ID>,"),
+            between("phonenumber=", ",", "phonenumber=<PHONENUMBER>,")
+    );
+
     @Override
     public String format(String tag, String message) {
-
-        message = Pattern.compile("caller_id=(.+?),").matcher(message).replaceAll("callerid=<CALLER_ID>,");
-        message = Pattern.compile("phonenumber=(.+?),").matcher(message).replaceAll("phonenumber=<PHONENUMBER>,");
-
-        return message;
+        return ANONYMIZER.anonymize(message);
     }
 
     @Override
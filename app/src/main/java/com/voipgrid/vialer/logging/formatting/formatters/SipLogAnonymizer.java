@@ -1,23 +1,28 @@
 package com.voipgrid.vialer.logging.formatting.formatters;
 
+import static com.voipgrid.vialer.logging.formatting.Anonymizer.Rule.between;
+import static com.voipgrid.vialer.logging.formatting.Anonymizer.Rule.number;
+
+import com.voipgrid.vialer.logging.formatting.Anonymizer;
 import com.voipgrid.vialer.logging.formatting.Formatter;
 import com.voipgrid.vialer.sip.SipService;
 
-import java.util.regex.Pattern;
-
 public class SipLogAnonymizer implements Formatter {
+
+    private static final Anonymizer ANONYMIZER = new Anonymizer(
+            number("sip:", "sip:SIP_USER_ID"),
+            between("\"caller_id\" = ", ";", "<CALLER_ID>"),
+            between("To:", ">", "To: <SIP_ANONYMIZED>"),
+            between("From:", ">", "From: <SIP_ANONYMIZED>"),
+            between("Contact:", ">", "Contact: <SIP_ANONYMIZED>"),
+            between("Digest username=\"", "\"", "Digest username=\"<SIP_USERNAME>\""),
+            between("nonce=\"", "\"", "nonce=\"<NONCE>\""),
+            between("username=", "&", "username=<USERNAME>")
+    );
+
     @Override
     public String format(String tag, String message) {
-        message = Pattern.compile("sip:\\+?\\d+").matcher(message).replaceAll("sip:SIP_USER_ID");
-        message = Pattern.compile("\"caller_id\" = (.+?);").matcher(message).replaceAll("<CALLER_ID>");
-        message = Pattern.compile("To:(.+?)>").matcher(message).replaceAll("To: <SIP_ANONYMIZED>");
-        message = Pattern.compile("From:(.+?)>").matcher(message).replaceAll("From: <SIP_ANONYMIZED>");
-        message = Pattern.compile("Contact:(.+?)>").matcher(message).replaceAll("Contact: <SIP_ANONYMIZED>");
-        message = Pattern.compile("Digest username=\"(.+?)\"").matcher(message).replaceAll("Digest username=\"<SIP_USERNAME>\"");
-        message = Pattern.compile("nonce=\"(.+?)\"").matcher(message).replaceAll("nonce=\"<NONCE>\"");
-        message = Pattern.compile("username=(.+?)&").matcher(message).replaceAll("username=<USERNAME>");
-
-        return message;
+        return ANONYMIZER.anonymize(message);
     }
 
     @Override
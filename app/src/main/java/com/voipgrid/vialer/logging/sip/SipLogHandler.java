@@ -4,13 +4,10 @@ import android.content.Intent;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import com.voipgrid.vialer.VialerApplication;
-import com.voipgrid.vialer.util.StringUtil;
-
-import java.util.ArrayList;
-import java.util.Arrays;
 
 /**
- * Performs various actions based on the result of the pjsip logs.
+ * Performs various actions based on the result of the pjsip logs. Log entries of SIP messages
+ * are parsed once into a {@link SipMessage}, other entries are only checked for network errors.
  */
 public class SipLogHandler {
 
@@ -33,20 +30,34 @@ public class SipLogHandler {
      * Perform various tasks based on pjsip logs.
      *
      * @param log
+     * @return The SIP message in the log, or null when it is not a SIP message.
      */
-    public void handle(String log) {
-        if (log == null) return;
+    public SipMessage handle(String log) {
+        if (log == null) return null;
+
+        SipMessage message = SipMessage.parse(log);
 
-        if (log.contains(NETWORK_UNAVAILABLE)) {
-            performNetworkSwitch();
+        if (message == null) {
+            if (log.contains(NETWORK_UNAVAILABLE)) {
+                performNetworkSwitch();
+            }
+            return null;
         }
 
-        if (isInvite(log)) {
-            Integer inviteFailedCode = extractFailedInviteCode(log);
+        handle(message);
+        return message;
+    }
 
-            if (inviteFailedCode != null && !Arrays.asList(IGNORED_STATUS_CODES).contains(inviteFailedCode)) {
-                sendInviteFailedBroadcast(inviteFailedCode);
-            }
+    /**
+     * Perform various tasks based on a SIP message.
+     *
+     * @param message
+     */
+    public void handle(SipMessage message) {
+        Integer inviteFailedCode = extractFailedInviteCode(message);
+
+        if (inviteFailedCode != null) {
+            sendInviteFailedBroadcast(inviteFailedCode);
         }
     }
 
@@ -63,34 +74,31 @@ public class SipLogHandler {
     }
 
     /**
-     * Checks to see if the packet being inspected is an INVITE with a failed status code.
+     * Checks to see if the message is a response to an INVITE with a failed status code.
      *
-     * @param log
-     * @return
+     * @param message
+     * @return The status code, or null when the INVITE did not fail or the code is ignored.
      */
-    private Integer extractFailedInviteCode(String log) {
-        ArrayList<String> matches = StringUtil.extractCaptureGroups(log, "([0-9]{3})\\/([A-Z]+)");
-
-        if (matches.isEmpty()) {
+    static Integer extractFailedInviteCode(SipMessage message) {
+        if (!message.isResponse() || !"INVITE".equals(message.getCSeqMethod())) {
             return null;
         }
 
-        String code = matches.get(0);
-        String method = matches.get(1);
-
-        if (!method.equals("INVITE")) {
+        int code = message.getStatusCode();
+        if (code < 400 || code >= 600 || isIgnored(code)) {
             return null;
         }
 
-        if (!code.startsWith("4") && !code.startsWith("5")) {
-            return null;
-        }
-
-        return Integer.valueOf(code);
+        return code;
     }
 
-    private boolean isInvite(String log) {
-        return log.contains("INVITE");
+    private static boolean isIgnored(int statusCode) {
+        for (int ignored : IGNORED_STATUS_CODES) {
+            if (ignored == statusCode) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
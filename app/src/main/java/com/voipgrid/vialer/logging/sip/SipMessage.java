@@ -0,0 +1,246 @@
+package com.voipgrid.vialer.logging.sip;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The parts of a SIP message that are used for call diagnostics. A message is parsed from a
+ * pjsip log entry of a sent or received packet, or from the packet itself, in a single pass over
+ * the start line and the headers. The body is never read.
+ */
+public final class SipMessage {
+
+    private static final String STATUS_LINE_PREFIX = "SIP/2.0 ";
+    private static final String REQUEST_LINE_SUFFIX = " SIP/2.0";
+    private static final String REQUEST_SUMMARY = "Request msg ";
+    private static final String RESPONSE_SUMMARY = "Response msg ";
+
+    private final String mMethod;
+    private final int mStatusCode;
+    private final String mCSeqMethod;
+    private final List<String> mReasons;
+
+    private SipMessage(String method, int statusCode, String cSeqMethod, List<String> reasons) {
+        mMethod = method;
+        mStatusCode = statusCode;
+        mCSeqMethod = cSeqMethod;
+        mReasons = reasons;
+    }
+
+    /**
+     * @return The method of a request, null for a response.
+     */
+    public String getMethod() {
+        return mMethod;
+    }
+
+    /**
+     * @return The status code of a response, 0 for a request.
+     */
+    public int getStatusCode() {
+        return mStatusCode;
+    }
+
+    public boolean isResponse() {
+        return mStatusCode != 0;
+    }
+
+    /**
+     * @return The method in the CSeq header, the method of the request a response belongs to.
+     */
+    public String getCSeqMethod() {
+        return mCSeqMethod;
+    }
+
+    /**
+     * @return The values of the Reason headers in the order of the message, a message can have
+     * one for each protocol, e.g. SIP and Q.850.
+     */
+    public List<String> getReasons() {
+        return mReasons;
+    }
+
+    /**
+     * Parse a pjsip log entry or a SIP packet.
+     *
+     * @param text
+     * @return The message, or null when the text is not a SIP message.
+     */
+    public static SipMessage parse(String text) {
+        if (text == null) {
+            return null;
+        }
+
+        String method = null;
+        int statusCode = 0;
+        String cSeqMethod = null;
+        List<String> reasons = null;
+
+        int length = text.length();
+        int lineEnd = lineEnd(text, 0);
+        int start = 0;
+
+        // The summary pjsip logs before the packet, e.g.
+        // "RX 552 bytes Response msg 401/REGISTER/cseq=47512 (rdata0x7c) from TLS 10.0.0.1:5061:".
+        int summary = indexOf(text, REQUEST_SUMMARY, lineEnd);
+        boolean response = false;
+        if (summary < 0) {
+            summary = indexOf(text, RESPONSE_SUMMARY, lineEnd);
+            response = summary >= 0;
+        }
+
+        if (summary >= 0) {
+            int token = summary
+                    + (response ? RESPONSE_SUMMARY.length() : REQUEST_SUMMARY.length());
+
+            if (response) {
+                statusCode = parseStatusCode(text, token, lineEnd);
+                token += 4;
+            }
+            int tokenEnd = tokenEnd(text, token, lineEnd, '/');
+            if (tokenEnd > token) {
+                if (response) {
+                    cSeqMethod = text.substring(token, tokenEnd);
+                } else {
+                    method = text.substring(token, tokenEnd);
+                }
+            }
+            start = lineEnd + 1;
+        }
+
+        boolean startLine = true;
+        while (start < length) {
+            lineEnd = lineEnd(text, start);
+            int lineStart = skipWhitespace(text, start, lineEnd);
+            int contentEnd = trimEnd(text, lineStart, lineEnd);
+
+            if (lineStart == contentEnd) {
+                if (startLine) {
+                    start = lineEnd + 1;
+                    continue;
+                }
+                // The end of the headers.
+                break;
+            }
+
+            if (startLine) {
+                startLine = false;
+
+                if (text.startsWith(STATUS_LINE_PREFIX, lineStart)) {
+                    statusCode = parseStatusCode(text, lineStart + STATUS_LINE_PREFIX.length(),
+                            contentEnd);
+                } else if (contentEnd - lineStart > REQUEST_LINE_SUFFIX.length()
+                        && text.startsWith(REQUEST_LINE_SUFFIX,
+                                contentEnd - REQUEST_LINE_SUFFIX.length())) {
+                    method = text.substring(lineStart, tokenEnd(text, lineStart, contentEnd, ' '));
+                } else if (summary < 0) {
+                    return null;
+                } else {
+                    // The summary without the packet.
+                    break;
+                }
+            } else if (isWantedHeader(text.charAt(lineStart))) {
+                int colon = tokenEnd(text, lineStart, contentEnd, ':');
+                if (colon == contentEnd) {
+                    start = lineEnd + 1;
+                    continue;
+                }
+                int nameEnd = trimEnd(text, lineStart, colon);
+                int valueStart = skipWhitespace(text, colon + 1, contentEnd);
+
+                if (isHeader(text, lineStart, nameEnd, "CSeq", null)) {
+                    int methodStart = skipWhitespace(text,
+                            tokenEnd(text, valueStart, contentEnd, ' '), contentEnd);
+                    cSeqMethod = text.substring(methodStart, contentEnd);
+                } else if (isHeader(text, lineStart, nameEnd, "Reason", null)) {
+                    if (reasons == null) {
+                        reasons = new ArrayList<>(1);
+                    }
+                    reasons.add(text.substring(valueStart, contentEnd));
+                }
+            }
+
+            start = lineEnd + 1;
+        }
+
+        if (method == null && statusCode == 0) {
+            return null;
+        }
+
+        return new SipMessage(method, statusCode, cSeqMethod,
+                reasons != null ? Collections.unmodifiableList(reasons)
+                        : Collections.<String>emptyList());
+    }
+
+    private static int parseStatusCode(String text, int index, int end) {
+        if (index + 3 > end) {
+            return 0;
+        }
+
+        int code = 0;
+        for (int i = index; i < index + 3; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            code = code * 10 + (c - '0');
+        }
+        return code;
+    }
+
+    /**
+     * Whether a header line can be one of the parsed headers, only these are split.
+     */
+    private static boolean isWantedHeader(char first) {
+        return first == 'C' || first == 'c' || first == 'R' || first == 'r';
+    }
+
+    private static boolean isHeader(String text, int start, int end, String name,
+            String compactName) {
+        int length = end - start;
+
+        return (length == name.length() && text.regionMatches(true, start, name, 0, length))
+                || (compactName != null && length == compactName.length()
+                        && text.regionMatches(true, start, compactName, 0, length));
+    }
+
+    /**
+     * Find the last occurrence of search that ends before the end, without looking further.
+     */
+    private static int indexOf(String text, String search, int end) {
+        return text.lastIndexOf(search, end - search.length());
+    }
+
+    private static int lineEnd(String text, int start) {
+        int end = text.indexOf('\n', start);
+        return end < 0 ? text.length() : end;
+    }
+
+    private static int tokenEnd(String text, int start, int end, char terminator) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == terminator) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static int skipWhitespace(String text, int start, int end) {
+        while (start < end && isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(String text, int start, int end) {
+        while (end > start && isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+}
@@ -50,7 +50,6 @@ public class Caller {
      * @return String The name of the calling class.
      */
     private String getShortCallingClass() {
-        String[] parts = getCallingClass().split("\\.");
-        return parts[parts.length - 1];
+        return getCallingClass().substring(getCallingClass().lastIndexOf('.') + 1);
     }
 }
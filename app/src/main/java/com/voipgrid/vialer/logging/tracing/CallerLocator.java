@@ -2,9 +2,42 @@ package com.voipgrid.vialer.logging.tracing;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CallerLocator {
 
+    /**
+     * How the caller of a log line is found, walking the stack trace is the most expensive part
+     * of logging a line.
+     */
+    public enum Mode {
+        /**
+         * The stack trace of every line is walked on the thread that logs.
+         */
+        EXACT,
+
+        /**
+         * The stack of every line is captured on the thread that logs, the stack trace is only
+         * walked on the thread that processes the line. The result is the same as EXACT, but it
+         * still creates a Throwable for every line. This is the default.
+         */
+        DEFERRED,
+
+        /**
+         * The caller is found for the first line of every level and reused for the next lines,
+         * even when they are logged from another place.
+         */
+        PER_SITE,
+
+        /**
+         * The caller is found for one in every sample rate lines, the other lines reuse it even
+         * when they are logged from another place. Only for when the cost matters more than
+         * the tags.
+         */
+        SAMPLED,
+    }
+
     /**
      * A list of translations, if the key is found in the class name of the Caller, it will
      * automatically be translated into the value before being returned. This is to make it easier
@@ -14,10 +47,26 @@ public class CallerLocator {
      */
     private static final HashMap<String, Caller> translations = new HashMap<>();
 
+    /**
+     * The translation of every class that was looked up, a class without a translation maps to
+     * NO_TRANSLATION.
+     */
+    private static final ConcurrentHashMap<String, Caller> translatedClasses =
+            new ConcurrentHashMap<>();
+
+    private static final Caller NO_TRANSLATION = new Caller("", null, 0);
+
     static {
         translations.put("SipLogWriter", new Caller("Pjsip", null, 0));
     }
 
+    // The formatted caller of every level, used by PER_SITE.
+    private final ConcurrentHashMap<String, String> mSiteTags = new ConcurrentHashMap<>();
+
+    // The number of lines and the last found caller, used by SAMPLED.
+    private final AtomicInteger mLines = new AtomicInteger();
+    private volatile String mSampledTag;
+
     /**
      * Finds information about where in the code the log statement came from. Performing this task frequently can
      * impact performance.
@@ -25,7 +74,57 @@ public class CallerLocator {
      * @return The Caller that started this logging event.
      */
     public Caller locate() {
-        StackTraceElement trace = findLastRelevantTrace(createStackTrace());
+        return resolve(createStackTrace());
+    }
+
+    /**
+     * Finds the formatted caller of a log line in the given mode. The DEFERRED mode is treated
+     * as EXACT, use {@link #capture()} and {@link #resolve(Throwable)} for it.
+     *
+     * @param level The level of the line, PER_SITE reuses the caller per level.
+     * @param mode
+     * @param sampleRate Every how many lines SAMPLED finds the caller.
+     * @return The formatted caller.
+     */
+    public String locateTag(String level, Mode mode, int sampleRate) {
+        switch (mode) {
+            case PER_SITE:
+                String tag = mSiteTags.get(level);
+                if (tag == null) {
+                    tag = locate().format();
+                    mSiteTags.put(level, tag);
+                }
+                return tag;
+            case SAMPLED:
+                String sampledTag = mSampledTag;
+                if (mLines.getAndIncrement() % sampleRate == 0 || sampledTag == null) {
+                    sampledTag = locate().format();
+                    mSampledTag = sampledTag;
+                }
+                return sampledTag;
+            default:
+                return locate().format();
+        }
+    }
+
+    /**
+     * Captures the stack of the calling thread without walking it, this is much cheaper than
+     * {@link #locate()}.
+     *
+     * @return The captured stack, to be resolved with {@link #resolve(Throwable)}.
+     */
+    public static Throwable capture() {
+        return new Throwable();
+    }
+
+    /**
+     * Finds the caller in a captured stack, this can be done on any thread.
+     *
+     * @param capture
+     * @return The Caller that started this logging event.
+     */
+    public static Caller resolve(Throwable capture) {
+        StackTraceElement trace = findLastRelevantTrace(capture.getStackTrace());
 
         Caller caller = new Caller(trace.getClassName(), trace.getMethodName(), trace.getLineNumber());
 
@@ -38,7 +137,7 @@ public class CallerLocator {
      * @param trace
      * @return The most relevant StackTraceElement.
      */
-    private StackTraceElement findLastRelevantTrace(StackTraceElement[] trace) {
+    private static StackTraceElement findLastRelevantTrace(StackTraceElement[] trace) {
         for(StackTraceElement e : trace) {
             if(e.getClassName().contains(".logging.")) continue;
 
@@ -55,20 +154,27 @@ public class CallerLocator {
      * @param caller
      * @return Caller The translated caller if found, otherwise the original caller.
      */
-    private Caller applyTranslations(Caller caller) {
-        for(Map.Entry<String, Caller> entry : translations.entrySet()) {
-            if(caller.getCallingClass().contains(entry.getKey())) {
-                return entry.getValue();
+    private static Caller applyTranslations(Caller caller) {
+        Caller translation = translatedClasses.get(caller.getCallingClass());
+
+        if (translation == null) {
+            translation = NO_TRANSLATION;
+            for(Map.Entry<String, Caller> entry : translations.entrySet()) {
+                if(caller.getCallingClass().contains(entry.getKey())) {
+                    translation = entry.getValue();
+                    break;
+                }
             }
+            translatedClasses.put(caller.getCallingClass(), translation);
         }
 
-        return caller;
+        return translation == NO_TRANSLATION ? caller : translation;
     }
 
     /**
      * Generates a stack trace that we will use to find the caller.
      */
-    private StackTraceElement[] createStackTrace() {
-        return new Throwable().getStackTrace();
+    private Throwable createStackTrace() {
+        return new Throwable();
     }
 }
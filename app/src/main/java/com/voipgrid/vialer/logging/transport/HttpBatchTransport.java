@@ -0,0 +1,554 @@
+package com.voipgrid.vialer.logging.transport;
+
+import android.content.Context;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import okhttp3.ConnectionPool;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Sends log lines in batches with HTTP POST requests. Lines are collected until a batch has the
+ * maximum number of lines or bytes, or until its oldest line waited the maximum delay. Every
+ * batch is sent gzipped as one request body with a line per log line.
+ *
+ * A single background thread sends the batches one at a time, so the requests reuse one
+ * persistent connection. Failed batches are retried with an exponential backoff, while sending
+ * fails the sealed batches are queued up to a limit after which the oldest are dropped. The
+ * thread stops when the transport is closed.
+ */
+public class HttpBatchTransport implements LogTransport {
+
+    public static final int DEFAULT_MAX_BATCH_LINES = 200;
+    public static final int DEFAULT_MAX_BATCH_BYTES = 64 * 1024;
+    public static final long DEFAULT_MAX_BATCH_DELAY_MILLIS = 5000;
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 1000;
+    public static final long CLOSE_TIMEOUT_MILLIS = 2000;
+
+    private static final int MAX_QUEUED_BATCHES = 32;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long MAX_BACKOFF_MILLIS = 60 * 1000;
+
+    private static final MediaType TEXT = MediaType.parse("text/plain; charset=utf-8");
+
+    private final OkHttpClient mClient;
+    private final String mUrl;
+    private final int mMaxBatchLines;
+    private final int mMaxBatchBytes;
+    private final long mMaxBatchDelayMillis;
+    private final long mInitialBackoffMillis;
+    private final StatsListener mStatsListener;
+    private final long mStatsIntervalMillis;
+
+    private final Object mLock = new Object();
+    private final ArrayDeque<List<String>> mBatches = new ArrayDeque<>();
+    private List<String> mPending = new ArrayList<>();
+    private int mPendingBytes;
+    private long mPendingSince;
+    private boolean mSending;
+    private boolean mClosed;
+    private Thread mSender;
+    private long mStartedAt;
+    private long mStatsReportedAt;
+
+    private final AtomicLong mBatchesSent = new AtomicLong();
+    private final AtomicLong mLinesSent = new AtomicLong();
+    private final AtomicLong mLinesDropped = new AtomicLong();
+    private final AtomicLong mBytesOnWire = new AtomicLong();
+    private final AtomicLong mUncompressedBytes = new AtomicLong();
+    private final AtomicLong mRetries = new AtomicLong();
+
+    private enum Result {
+        SENT, RETRY, REJECTED
+    }
+
+    /**
+     * Receives the statistics of a transport, on its sender thread or when it is closed.
+     */
+    public interface StatsListener {
+        void onStats(HttpBatchTransport transport);
+    }
+
+    public static class Builder {
+        private final String mUrl;
+        private OkHttpClient mClient;
+        private int mMaxBatchLines = DEFAULT_MAX_BATCH_LINES;
+        private int mMaxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+        private long mMaxBatchDelayMillis = DEFAULT_MAX_BATCH_DELAY_MILLIS;
+        private long mInitialBackoffMillis = DEFAULT_INITIAL_BACKOFF_MILLIS;
+        private StatsListener mStatsListener;
+        private long mStatsIntervalMillis;
+
+        public Builder(String url) {
+            mUrl = url;
+        }
+
+        public Builder client(OkHttpClient client) {
+            mClient = client;
+            return this;
+        }
+
+        public Builder maxBatchLines(int maxBatchLines) {
+            mMaxBatchLines = maxBatchLines;
+            return this;
+        }
+
+        public Builder maxBatchBytes(int maxBatchBytes) {
+            mMaxBatchBytes = maxBatchBytes;
+            return this;
+        }
+
+        public Builder maxBatchDelayMillis(long maxBatchDelayMillis) {
+            mMaxBatchDelayMillis = maxBatchDelayMillis;
+            return this;
+        }
+
+        public Builder initialBackoffMillis(long initialBackoffMillis) {
+            mInitialBackoffMillis = initialBackoffMillis;
+            return this;
+        }
+
+        /**
+         * Report the statistics after a batch was sent at most once per interval, and when
+         * the transport is closed.
+         */
+        public Builder statsListener(StatsListener statsListener, long intervalMillis) {
+            mStatsListener = statsListener;
+            mStatsIntervalMillis = intervalMillis;
+            return this;
+        }
+
+        public HttpBatchTransport build() {
+            return new HttpBatchTransport(this);
+        }
+    }
+
+    private HttpBatchTransport(Builder builder) {
+        mClient = builder.mClient != null ? builder.mClient : createClient();
+        mUrl = builder.mUrl;
+        mMaxBatchLines = builder.mMaxBatchLines;
+        mMaxBatchBytes = builder.mMaxBatchBytes;
+        mMaxBatchDelayMillis = builder.mMaxBatchDelayMillis;
+        mInitialBackoffMillis = builder.mInitialBackoffMillis;
+        mStatsListener = builder.mStatsListener;
+        mStatsIntervalMillis = builder.mStatsIntervalMillis;
+    }
+
+    /**
+     * Creates transports that share one client, and so one connection.
+     *
+     * @param urlFormat The url of the logging environment, with %1$s in place of the token.
+     * @return
+     */
+    public static LogTransport.Factory factory(String urlFormat) {
+        return factory(urlFormat, null, 0);
+    }
+
+    /**
+     * Creates transports that share one client and report their statistics to the listener.
+     *
+     * @param urlFormat The url of the logging environment, with %1$s in place of the token.
+     * @param statsListener
+     * @param statsIntervalMillis
+     * @return
+     */
+    public static LogTransport.Factory factory(String urlFormat, StatsListener statsListener,
+            long statsIntervalMillis) {
+        OkHttpClient client = createClient();
+
+        return (String token, Context context) -> new Builder(String.format(urlFormat, token))
+                .client(client)
+                .statsListener(statsListener, statsIntervalMillis)
+                .build();
+    }
+
+    private static OkHttpClient createClient() {
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(1, 5, TimeUnit.MINUTES))
+                .build();
+    }
+
+    @Override
+    public void send(String line) {
+        synchronized (mLock) {
+            if (mClosed) {
+                mLinesDropped.incrementAndGet();
+                return;
+            }
+
+            if (mSender == null) {
+                mStartedAt = System.currentTimeMillis();
+                mStatsReportedAt = mStartedAt;
+                mSender = new Thread(this::sendBatches, "HttpBatchTransport");
+                mSender.setDaemon(true);
+                mSender.setPriority(Thread.MIN_PRIORITY);
+                mSender.start();
+            }
+
+            if (mPending.isEmpty()) {
+                mPendingSince = System.currentTimeMillis();
+                mLock.notifyAll();
+            }
+            mPending.add(line);
+            mPendingBytes += utf8Length(line) + 1;
+
+            if (mPending.size() >= mMaxBatchLines || mPendingBytes >= mMaxBatchBytes) {
+                seal();
+            }
+        }
+    }
+
+    /**
+     * Send the lines as one batch on the calling thread, without retries or queueing. The
+     * batches of {@link #send(String)} are not affected.
+     *
+     * @param lines
+     * @return TRUE when the server accepted the batch.
+     */
+    @Override
+    public boolean sendNow(List<String> lines) {
+        byte[] body;
+        try {
+            body = compress(lines);
+        } catch (IOException e) {
+            return false;
+        }
+
+        mBytesOnWire.addAndGet(body.length);
+        if (post(body) != Result.SENT) {
+            return false;
+        }
+
+        mBatchesSent.incrementAndGet();
+        mLinesSent.addAndGet(lines.size());
+        return true;
+    }
+
+    /**
+     * Send the lines that are waiting for a batch to fill up, and wait until all batches are
+     * sent or dropped.
+     *
+     * @param timeoutMillis
+     * @return FALSE when the batches were not sent within the timeout.
+     */
+    public boolean flush(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        synchronized (mLock) {
+            if (!mPending.isEmpty()) {
+                seal();
+            }
+
+            while (!mBatches.isEmpty() || mSending) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    mLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Send what is queued within {@link #CLOSE_TIMEOUT_MILLIS} and stop the sender thread.
+     * Lines that are sent after closing, or that were not sent in time, are dropped.
+     */
+    @Override
+    public void close() {
+        flush(CLOSE_TIMEOUT_MILLIS);
+
+        Thread sender;
+        synchronized (mLock) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+
+            mLinesDropped.addAndGet(mPending.size());
+            for (List<String> batch : mBatches) {
+                mLinesDropped.addAndGet(batch.size());
+            }
+            mPending = new ArrayList<>();
+            mPendingBytes = 0;
+            mBatches.clear();
+
+            sender = mSender;
+            mLock.notifyAll();
+        }
+
+        if (sender != null) {
+            sender.interrupt();
+        }
+        if (mStatsListener != null) {
+            mStatsListener.onStats(this);
+        }
+    }
+
+    /**
+     * @return The number of batches that were accepted by the server.
+     */
+    public long getBatchesSent() {
+        return mBatchesSent.get();
+    }
+
+    /**
+     * @return The number of lines that were accepted by the server.
+     */
+    public long getLinesSent() {
+        return mLinesSent.get();
+    }
+
+    /**
+     * @return The number of lines that were dropped because they could not be sent or queued.
+     */
+    public long getLinesDropped() {
+        return mLinesDropped.get();
+    }
+
+    /**
+     * @return The number of compressed bytes in the request bodies, including retries.
+     */
+    public long getBytesOnWire() {
+        return mBytesOnWire.get();
+    }
+
+    /**
+     * @return The number of bytes in the batches before compression.
+     */
+    public long getUncompressedBytes() {
+        return mUncompressedBytes.get();
+    }
+
+    /**
+     * @return The number of times a batch was sent again after a failure.
+     */
+    public long getRetries() {
+        return mRetries.get();
+    }
+
+    /**
+     * @return The average number of batches accepted per second since the first line was sent.
+     */
+    public double getBatchesPerSecond() {
+        long startedAt;
+        synchronized (mLock) {
+            startedAt = mStartedAt;
+        }
+
+        long elapsed = System.currentTimeMillis() - startedAt;
+        return startedAt > 0 && elapsed > 0 ? mBatchesSent.get() * 1000.0 / elapsed : 0;
+    }
+
+    /**
+     * @return A summary of the statistics of this transport.
+     */
+    public String getStats() {
+        return String.format(Locale.ROOT, "%d batches (%.2f/s) with %d lines, %d bytes on the "
+                        + "wire for %d bytes of lines, %d retries, %d lines dropped",
+                getBatchesSent(), getBatchesPerSecond(), getLinesSent(), getBytesOnWire(),
+                getUncompressedBytes(), getRetries(), getLinesDropped());
+    }
+
+    /**
+     * Queue the pending lines as a batch, must be called while holding the lock.
+     */
+    private void seal() {
+        if (mBatches.size() >= MAX_QUEUED_BATCHES) {
+            mLinesDropped.addAndGet(mBatches.pollFirst().size());
+        }
+        mBatches.addLast(mPending);
+        mPending = new ArrayList<>();
+        mPendingBytes = 0;
+        mLock.notifyAll();
+    }
+
+    private void sendBatches() {
+        while (true) {
+            List<String> batch;
+            try {
+                batch = takeBatch();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                upload(batch);
+            } catch (Exception e) {
+                mLinesDropped.addAndGet(batch.size());
+            }
+
+            synchronized (mLock) {
+                mSending = false;
+                mLock.notifyAll();
+            }
+
+            reportStatsIfDue();
+        }
+    }
+
+    private void reportStatsIfDue() {
+        if (mStatsListener == null) {
+            return;
+        }
+
+        synchronized (mLock) {
+            long now = System.currentTimeMillis();
+            if (now - mStatsReportedAt < mStatsIntervalMillis) {
+                return;
+            }
+            mStatsReportedAt = now;
+        }
+
+        try {
+            mStatsListener.onStats(this);
+        } catch (Exception e) {
+            // Avoid crashing the app in background logging.
+        }
+    }
+
+    /**
+     * Wait for a sealed batch, the pending lines are sealed when they waited the maximum delay.
+     */
+    private List<String> takeBatch() throws InterruptedException {
+        synchronized (mLock) {
+            while (mBatches.isEmpty()) {
+                if (mClosed) {
+                    throw new InterruptedException();
+                }
+                if (mPending.isEmpty()) {
+                    mLock.wait();
+                    continue;
+                }
+
+                long remaining = mPendingSince + mMaxBatchDelayMillis - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    seal();
+                } else {
+                    mLock.wait(remaining);
+                }
+            }
+
+            mSending = true;
+            return mBatches.pollFirst();
+        }
+    }
+
+    private void upload(List<String> batch) throws IOException {
+        byte[] body = compress(batch);
+        long backoff = mInitialBackoffMillis;
+
+        for (int attempt = 1; ; attempt++) {
+            mBytesOnWire.addAndGet(body.length);
+            Result result = post(body);
+
+            if (result == Result.SENT) {
+                mBatchesSent.incrementAndGet();
+                mLinesSent.addAndGet(batch.size());
+                return;
+            }
+
+            if (result == Result.REJECTED || attempt == MAX_ATTEMPTS) {
+                mLinesDropped.addAndGet(batch.size());
+                return;
+            }
+
+            mRetries.incrementAndGet();
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                mLinesDropped.addAndGet(batch.size());
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    private Result post(byte[] body) {
+        Request request = new Request.Builder()
+                .url(mUrl)
+                .header("Content-Encoding", "gzip")
+                .post(RequestBody.create(TEXT, body))
+                .build();
+
+        Response response = null;
+        try {
+            response = mClient.newCall(request).execute();
+            if (response.isSuccessful()) {
+                return Result.SENT;
+            }
+            return response.code() >= 500 || response.code() == 429 ? Result.RETRY
+                    : Result.REJECTED;
+        } catch (IOException e) {
+            return Result.RETRY;
+        } finally {
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+
+    private byte[] compress(List<String> batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new GZIPOutputStream(bytes), "UTF-8"));
+
+        long uncompressed = 0;
+        for (String line : batch) {
+            writer.write(line);
+            writer.write('\n');
+            uncompressed += utf8Length(line) + 1;
+        }
+        writer.close();
+
+        mUncompressedBytes.addAndGet(uncompressed);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Count the bytes of a line in UTF-8 without encoding it, an unpaired surrogate is written
+     * as one replacement byte.
+     */
+    static int utf8Length(String line) {
+        int length = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                length += 3;
+            } else if (Character.isHighSurrogate(c) && i + 1 < line.length()
+                    && Character.isLowSurrogate(line.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 1;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,44 @@
+package com.voipgrid.vialer.logging.transport;
+
+import com.logentries.logger.AsyncLoggingWorker;
+
+import java.util.List;
+
+/**
+ * Sends every line on its own through a LogEntries worker.
+ */
+public class LogEntriesTransport implements LogTransport {
+
+    private final AsyncLoggingWorker mWorker;
+
+    public LogEntriesTransport(AsyncLoggingWorker worker) {
+        mWorker = worker;
+    }
+
+    /**
+     * @param worker
+     * @return The transport, or null when there is no worker.
+     */
+    public static LogEntriesTransport wrap(AsyncLoggingWorker worker) {
+        return worker == null ? null : new LogEntriesTransport(worker);
+    }
+
+    @Override
+    public void send(String line) {
+        mWorker.addLineToQueue(line);
+    }
+
+    /**
+     * The worker never confirms that a line was received, so the lines are not sent and
+     * have to be kept by the caller.
+     */
+    @Override
+    public boolean sendNow(List<String> lines) {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        mWorker.close();
+    }
+}
@@ -0,0 +1,45 @@
+package com.voipgrid.vialer.logging.transport;
+
+import android.content.Context;
+
+import java.util.List;
+
+/**
+ * Delivers log lines to a remote logging environment.
+ */
+public interface LogTransport {
+
+    /**
+     * Creates the transport of a logging environment.
+     */
+    interface Factory {
+
+        /**
+         * @param token The token of the logging environment.
+         * @param context
+         * @return The transport, or null when it could not be created.
+         */
+        LogTransport create(String token, Context context);
+    }
+
+    /**
+     * Queue a line to be sent, this does not wait for the network.
+     *
+     * @param line
+     */
+    void send(String line);
+
+    /**
+     * Send the lines on the calling thread and wait for the environment to accept them.
+     *
+     * @param lines
+     * @return TRUE when the environment confirmed that it accepted the lines.
+     */
+    boolean sendNow(List<String> lines);
+
+    /**
+     * Stop the transport and its threads, lines that are queued are sent first when that does
+     * not take long. A closed transport can not be used again.
+     */
+    void close();
+}
@@ -16,6 +16,7 @@ import android.util.Log;
 import android.view.KeyEvent;
 
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 
 /**
  * Class is responsible for in call where the audio will be routed to.
@@ -76,7 +77,7 @@ class AudioRouter {
         mContext = context;
         mAudioManager = audioManager;
 
-        mLogger = new Logger(AudioRouter.class);
+        mLogger = LoggerFactory.getLogger(AudioRouter.class);
         mLogger.d("AudioRouter()");
 
         registerForBluetoothScoIntentBroadcast();
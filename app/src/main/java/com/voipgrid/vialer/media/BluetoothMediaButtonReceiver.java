@@ -7,6 +7,7 @@ import android.view.KeyEvent;
 
 import com.voipgrid.vialer.bluetooth.BluetoothKeyNormalizer;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 
 
 public class BluetoothMediaButtonReceiver extends BroadcastReceiver {
@@ -39,7 +40,7 @@ public class BluetoothMediaButtonReceiver extends BroadcastReceiver {
         mContext = context;
 
         if (sMLogger == null) {
-            sMLogger = new Logger(BluetoothMediaButtonReceiver.class);
+            sMLogger = LoggerFactory.getLogger(BluetoothMediaButtonReceiver.class);
         }
 
         if (keyEvent.getAction() != KeyEvent.ACTION_DOWN) return;
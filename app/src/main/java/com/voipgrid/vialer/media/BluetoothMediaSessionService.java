@@ -14,6 +14,7 @@ import android.support.v4.media.session.PlaybackStateCompat;
 import android.view.KeyEvent;
 
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.util.NotificationHelper;
 
 public class BluetoothMediaSessionService extends Service {
@@ -34,7 +35,7 @@ public class BluetoothMediaSessionService extends Service {
     @Override
     public void onCreate() {
         mContext = this;
-        mLogger = new Logger(BluetoothMediaSessionService.class);
+        mLogger = LoggerFactory.getLogger(BluetoothMediaSessionService.class);
         mLogger.v("onCreate()");
         MediaSessionCompat session = new MediaSessionCompat(this, TAG);
         PlaybackStateCompat.Builder stateBuilder = new PlaybackStateCompat.Builder();
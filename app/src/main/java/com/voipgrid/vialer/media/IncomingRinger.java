@@ -10,6 +10,7 @@ import android.os.Vibrator;
 import android.provider.Settings;
 
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 
 import java.io.IOException;
 
@@ -32,7 +33,7 @@ class IncomingRinger {
         mActivity = activity;
         mContext = context;
         mAudioManager = audioManager;
-        mLogger = new Logger(IncomingRinger.class);
+        mLogger = LoggerFactory.getLogger(IncomingRinger.class);
 
         mLogger.d("IncomingRinger()");
 
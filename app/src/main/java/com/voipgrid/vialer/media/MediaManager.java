@@ -5,6 +5,7 @@ import android.content.Context;
 import android.media.AudioManager;
 
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.statistics.AppState;
 
 /**
@@ -52,7 +53,7 @@ public class MediaManager implements
         mContext = context;
         mAudioChangedInterfaceListener = audioChangedInterface;
 
-        mLogger = new Logger(MediaManager.class);
+        mLogger = LoggerFactory.getLogger(MediaManager.class);
 
         setAudioManager();
 
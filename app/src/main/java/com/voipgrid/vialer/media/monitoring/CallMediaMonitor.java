@@ -2,52 +2,73 @@ package com.voipgrid.vialer.media.monitoring;
 
 import com.voipgrid.vialer.logging.InternetConnectionDiagnosticsLogger;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.sip.SipCall;
-import com.voipgrid.vialer.sip.mos.MosCalculator;
+import com.voipgrid.vialer.sip.mos.MosEstimator;
 
 import org.pjsip.pjsua2.CallOpParam;
 
+import java.util.Locale;
+
 /**
  * Responsible for analyzing the media packets sent/received during a call
  * and reporting errors and/or re-sending invites to correct any problem
  * that may have occurred.
+ *
+ * The packet stats are sampled by the shared {@link MediaStatsSampler} into a ring, all checks
+ * read the samples from the ring. The call is sampled every second until there is audio in
+ * both directions, less often while the audio is fine and rarely while the call is on hold.
  */
-public class CallMediaMonitor implements Runnable {
+public class CallMediaMonitor implements MediaStatsSampler.Target {
 
     private final SipCall mSipCall;
     private final Logger mLogger;
-    private final MosCalculator mMosCalculator;
+    private final MosEstimator mMosEstimator = new MosEstimator();
+    private final PacketStatsRing mPacketStatsRing = new PacketStatsRing();
     private InternetConnectionDiagnosticsLogger mInternetConnectionDiagnosticsLogger;
 
     /**
-     * Simply holds the last packet stats that have been fetched.
-     *
+     * Records the packet stats when a reinvite was attempted so we can see
+     * if the reinvite has fixed the issue.
      */
-    private PacketStats mMostRecentPacketStats;
+    private PacketStats mPacketStatsWhenAttemptingReinvite;
 
     /**
-     * Track the packet stats at select intervals so we can send
-     * reinvites if the audio appears to have stopped during a
-     * call.
+     * Whether the estimated MOS is below {@link MosEstimator#POOR_MOS}.
      */
-    private PacketStats mLastTrackedStats;
+    private boolean mDegraded;
 
     /**
-     * Records the packet stats when a reinvite was attempted so we can see
-     * if the reinvite has fixed the issue.
+     * Whether the call was on hold at the last sample, the MOS is not estimated while no audio
+     * is expected.
      */
-    private PacketStats mPacketStatsWhenAttemptingReinvite;
+    private boolean mWasOnHold;
 
     /**
-     * The delay between checking the packet stats in milliseconds. This should not be changed
-     * without updating the other timers.
+     * The call durations at which the last check for missing audio was done and at which the
+     * audio was last reported.
      */
-    private static final int QUERY_PACKET_STATS_INTERVAL_S = 1;
+    private int mLastNoAudioCheck;
+    private int mLastAudioReport;
+
+    /**
+     * The interval between samples while the audio is not fine in both directions.
+     */
+    private static final long SAMPLE_INTERVAL_MILLIS = 1000;
+
+    /**
+     * The interval between samples while there is audio in both directions.
+     */
+    private static final long STEADY_SAMPLE_INTERVAL_MILLIS = 2000;
+
+    /**
+     * The interval between samples while the call is on hold, audio is not expected.
+     */
+    private static final long ON_HOLD_SAMPLE_INTERVAL_MILLIS = 5000;
 
     /**
      * The frequency at which the current packet stats for a call should
-     * be reported to the logger, this occurs when there is audio, in seconds. This
-     * will not cause stats to be reported any quicker than {@value QUERY_PACKET_STATS_INTERVAL_S}.
+     * be reported to the logger, this occurs when there is audio, in seconds.
      */
     private static final int REPORT_PACKET_STATS_EVERY_S = 10;
 
@@ -59,37 +80,101 @@ public class CallMediaMonitor implements Runnable {
 
     public CallMediaMonitor(SipCall sipCall) {
         mSipCall = sipCall;
-        mLogger = new Logger(this.getClass());
+        mLogger = LoggerFactory.getLogger(this.getClass());
         mInternetConnectionDiagnosticsLogger = new InternetConnectionDiagnosticsLogger();
-        mMosCalculator = new MosCalculator();
+    }
+
+    /**
+     * Start sampling the media of the call on the shared sampler.
+     */
+    public void start() {
+        MediaStatsSampler.get().start(this);
+    }
+
+    /**
+     * Stop sampling and take a last sample for the metrics at the end of the call, without
+     * acting on it.
+     */
+    public void stop() {
+        MediaStatsSampler.get().stop(this);
+
+        PacketStats packetStats = mSipCall.getMediaPacketStats();
+        if (packetStats != null) {
+            mPacketStatsRing.add(packetStats);
+        }
+    }
+
+    @Override
+    public boolean isActive() {
+        return mSipCall != null && mSipCall.isConnected();
     }
 
     @Override
-    public void run() {
-        while (shouldBeMonitoringMedia()) {
-            calculateMos();
+    public boolean sample() {
+        boolean onHold = mSipCall.isOnHold();
+        if (onHold) {
+            mWasOnHold = true;
+        } else {
+            if (mWasOnHold) {
+                // The window would rate the time on hold as lost audio.
+                mMosEstimator.resetWindow();
+                mWasOnHold = false;
+            }
+            estimateMos();
+        }
 
-            mMostRecentPacketStats = mSipCall.getMediaPacketStats();
+        PacketStats packetStats = mSipCall.getMediaPacketStats();
 
-            if (mMostRecentPacketStats == null) break;
+        if (packetStats == null) return false;
+
+        mPacketStatsRing.add(packetStats);
+
+        if (!onHold) {
+            handleMediaPacketStats(packetStats);
+        }
+        return true;
+    }
 
-            handleMediaPacketStats(mMostRecentPacketStats);
+    @Override
+    public long getSamplingIntervalMillis() {
+        if (mSipCall.isOnHold()) {
+            return ON_HOLD_SAMPLE_INTERVAL_MILLIS;
+        }
 
-            sleep(QUERY_PACKET_STATS_INTERVAL_S * 1000);
+        PacketStats packetStats = mPacketStatsRing.latest();
+        if (packetStats == null || mPacketStatsWhenAttemptingReinvite != null
+                || !packetStats.hasTwoWayAudio()) {
+            return SAMPLE_INTERVAL_MILLIS;
         }
+        return STEADY_SAMPLE_INTERVAL_MILLIS;
     }
 
     /**
-     * Calculate the MOS and update it on the call object.
+     * Add a sample to the MOS estimate, update it on the call object and log when the quality
+     * of the call degrades or recovers.
      *
      */
-    private void calculateMos() {
-        if (!mSipCall.hasCalculatedMos()) {
-            Double mos = mMosCalculator.calculate(mSipCall);
-
-            if (mos != null) {
-                mSipCall.setMos(mos);
+    private void estimateMos() {
+        try {
+            if (!mMosEstimator.addSample(mSipCall.getStreamStat(0), mSipCall.getStreamInfo(0))
+                    || !mMosEstimator.hasEstimate()) {
+                return;
             }
+        } catch (Exception e) {
+            return;
+        }
+
+        double mos = mMosEstimator.getMos();
+        mSipCall.setMos(mos);
+
+        if (mDegraded != mos < MosEstimator.POOR_MOS) {
+            mDegraded = !mDegraded;
+            mLogger.w(String.format(Locale.US,
+                    "Call quality %s, MOS %.2f with %.1f%% packet loss, %.0f ms jitter and %.0f ms"
+                            + " round trip time",
+                    mDegraded ? "degraded" : "recovered", mos,
+                    mMosEstimator.getPacketLossPercentage(), mMosEstimator.getJitterMillis(),
+                    mMosEstimator.getRoundTripMillis()));
         }
     }
 
@@ -100,22 +185,24 @@ public class CallMediaMonitor implements Runnable {
     private void handleMediaPacketStats(PacketStats packetStats) {
         // If all audio is missing from a call then send a re-invite
         if (packetStats.getCollectionTime() != 0 && packetStats.isEitherSideMissingAudio()) {
-            mLogger.w("There is NO audio " + mSipCall.getCallDuration()
+            mLogger.w("There is NO audio " + packetStats.getCollectionTime()
                     + " sec into the call. Trying a reinvite");
             attemptCallReinvite(packetStats);
             return;
         }
 
-        if (shouldTrackThesePacketStats()) {
-            PacketStats packetStatsForLastInterval = packetStats.difference(mLastTrackedStats);
+        int collectionTime = packetStats.getCollectionTime();
+        if (collectionTime - mLastNoAudioCheck >= CHECK_FOR_NO_AUDIO_IN_PREVIOUS_S) {
+            PacketStats previous = mPacketStatsRing.atOrBefore(
+                    collectionTime - CHECK_FOR_NO_AUDIO_IN_PREVIOUS_S);
 
-            // If there has been no audio since our last interval this means that audio may have
-            // dropped and we should send a reinvite.
-            if (mLastTrackedStats != null && packetStatsForLastInterval.isMissingAllAudio()) {
-                handleNoAudioDetected(packetStats);
+            // If there has been no audio since the start of the interval this means that audio
+            // may have dropped and we should send a reinvite.
+            if (previous != null && packetStats.difference(previous).isMissingAllAudio()) {
+                handleNoAudioDetected(previous, packetStats);
             }
 
-            mLastTrackedStats = packetStats;
+            mLastNoAudioCheck = collectionTime;
         }
 
         // If we have previously attempted a reinvite, check if we have had any audio packets
@@ -128,16 +215,18 @@ public class CallMediaMonitor implements Runnable {
             mPacketStatsWhenAttemptingReinvite = null;
         }
 
-        if (packetStats.hasAudio() && isTimeToReportAudioStats()) {
+        if (packetStats.hasAudio()
+                && collectionTime - mLastAudioReport >= REPORT_PACKET_STATS_EVERY_S) {
             mLogger.i(
                     "There is audio in the last " + REPORT_PACKET_STATS_EVERY_S + " seconds rxPkt: "
                             + packetStats.getReceived() + " and txPkt: " + packetStats.getSent());
+            mLastAudioReport = collectionTime;
         }
     }
 
-    private void handleNoAudioDetected(PacketStats packetStats) {
+    private void handleNoAudioDetected(PacketStats previous, PacketStats packetStats) {
         mLogger.w("There has been NO audio between "
-                + mLastTrackedStats.getCollectionTime() + "s and "
+                + previous.getCollectionTime() + "s and "
                 + packetStats.getCollectionTime() + "s. Trying a reinvite");
 
         mInternetConnectionDiagnosticsLogger.log();
@@ -159,65 +248,15 @@ public class CallMediaMonitor implements Runnable {
         }
     }
 
-    /**
-     * Check if we should track the current packet stats, this means updating
-     * the tracked stats
-     *
-     * @return TRUE if stats should be reported, otherwise false.
-     */
-    private boolean shouldTrackThesePacketStats() {
-        return intervalShouldBeTriggered(CHECK_FOR_NO_AUDIO_IN_PREVIOUS_S);
-    }
-
-    /**
-     * Check the current call duration to determine if we should be reporting stats or not,
-     * it should be checked ever {@value REPORT_PACKET_STATS_EVERY_S} seconds.
-     *
-     * @return TRUE if stats should be reported, otherwise false.
-     */
-    private boolean isTimeToReportAudioStats() {
-        return intervalShouldBeTriggered(REPORT_PACKET_STATS_EVERY_S);
-    }
-
-    /**
-     * Returns TRUE if the current interval should be triggered based on the call duration.
-     *
-     * For example, an interval of 5 seconds should be triggered on 5, 10, 15, 20, 25, 30 etc.
-     *
-     * @param interval The interval to check for
-     * @return TRUE if the interval is ready to be triggered
-     */
-    private boolean intervalShouldBeTriggered(int interval) {
-        if (mSipCall.getCallDuration() == 0) {
-            return false;
-        }
-
-        return (mSipCall.getCallDuration() % interval) == 0;
-    }
-
-    /**
-     * Check that the call is still alive, if it is we should be monitoring it.
-     *
-     * @return TRUE if we should be monitoring the call media, otherwise false.
-     */
-    private boolean shouldBeMonitoringMedia() {
-        return mSipCall != null && mSipCall.isConnected();
+    public PacketStats getMostRecentPacketStats() {
+        return mPacketStatsRing.latest();
     }
 
-    /**
-     * Sleep the current thread for the given number of milliseconds.
-     *
-     * @param milliseconds The number of milliseconds to sleep the current thread for.
-     */
-    private void sleep(int milliseconds) {
-        try {
-            Thread.sleep(milliseconds);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+    public PacketStatsRing getPacketStatsRing() {
+        return mPacketStatsRing;
     }
 
-    public PacketStats getMostRecentPacketStats() {
-        return mMostRecentPacketStats;
+    public MosEstimator getMosEstimator() {
+        return mMosEstimator;
     }
 }
@@ -0,0 +1,154 @@
+package com.voipgrid.vialer.media.monitoring;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the media of all active calls on one shared thread, instead of a thread per call. The
+ * sampler wakes up once per tick while there are calls and samples every call whose interval
+ * has passed, so calls that are sampled at the same rate share a wake up. Every call decides
+ * its own interval after each sample, depending on the state of the call.
+ */
+public class MediaStatsSampler {
+
+    static final long TICK_MILLIS = 1000;
+
+    private static MediaStatsSampler sInstance;
+
+    private final ScheduledExecutorService mExecutor;
+    private final List<Entry> mEntries = new ArrayList<>();
+    private ScheduledFuture<?> mTicks;
+
+    /**
+     * A call that is sampled, the methods are called on the sampler thread.
+     */
+    public interface Target {
+        /**
+         * @return FALSE when the call has ended and should no longer be sampled.
+         */
+        boolean isActive();
+
+        /**
+         * Take a sample and act on it.
+         *
+         * @return FALSE when no sample could be taken and sampling should stop.
+         */
+        boolean sample();
+
+        /**
+         * @return The time until the next sample, rounded to a whole number of ticks.
+         */
+        long getSamplingIntervalMillis();
+    }
+
+    private static class Entry {
+        private final Target mTarget;
+        private long mNextSampleAt;
+
+        private Entry(Target target, long nextSampleAt) {
+            mTarget = target;
+            mNextSampleAt = nextSampleAt;
+        }
+    }
+
+    MediaStatsSampler(ScheduledExecutorService executor) {
+        mExecutor = executor;
+    }
+
+    public static synchronized MediaStatsSampler get() {
+        if (sInstance == null) {
+            sInstance = new MediaStatsSampler(Executors.newSingleThreadScheduledExecutor(
+                    runnable -> new Thread(runnable, "MediaStatsSampler")));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Start sampling a call, the first sample is taken on the next tick.
+     *
+     * @param target
+     */
+    public synchronized void start(Target target) {
+        for (Entry entry : mEntries) {
+            if (entry.mTarget == target) {
+                return;
+            }
+        }
+        mEntries.add(new Entry(target, 0));
+
+        if (mTicks == null) {
+            mTicks = mExecutor.scheduleAtFixedRate(() -> tick(now()), 0, TICK_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop sampling a call, a sample that is being taken is finished.
+     *
+     * @param target
+     */
+    public synchronized void stop(Target target) {
+        Iterator<Entry> entries = mEntries.iterator();
+        while (entries.hasNext()) {
+            if (entries.next().mTarget == target) {
+                entries.remove();
+            }
+        }
+        stopTicksWhenIdle();
+    }
+
+    synchronized int getTargetCount() {
+        return mEntries.size();
+    }
+
+    /**
+     * Sample every call that is due. The calls are sampled outside the lock, so starting and
+     * stopping a call does not wait for a sample.
+     *
+     * @param now The current time in milliseconds.
+     */
+    void tick(long now) {
+        List<Entry> due = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : mEntries) {
+                // Ticks can be a little early, a call that is almost due is sampled now.
+                if (entry.mNextSampleAt <= now + TICK_MILLIS / 2) {
+                    due.add(entry);
+                }
+            }
+        }
+
+        for (Entry entry : due) {
+            Target target = entry.mTarget;
+            boolean sampling;
+            try {
+                sampling = target.isActive() && target.sample();
+            } catch (Exception e) {
+                sampling = false;
+            }
+
+            if (sampling) {
+                entry.mNextSampleAt = now + Math.max(TICK_MILLIS,
+                        target.getSamplingIntervalMillis());
+            } else {
+                stop(target);
+            }
+        }
+    }
+
+    private void stopTicksWhenIdle() {
+        if (mEntries.isEmpty() && mTicks != null) {
+            mTicks.cancel(false);
+            mTicks = null;
+        }
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
@@ -0,0 +1,70 @@
+package com.voipgrid.vialer.media.monitoring;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Fixed size time series of the packet stats of a call, ordered by collection time. When the
+ * ring is full a new sample overwrites the oldest one. Samples are written by the media stats
+ * sampler and read by the checks that run during and at the end of the call.
+ */
+public class PacketStatsRing {
+
+    /**
+     * Enough samples for a minute of the call at the fastest sampling interval.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final PacketStats[] mSamples;
+
+    // The index the next sample is written to.
+    private int mNext;
+    private int mSize;
+
+    public PacketStatsRing() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PacketStatsRing(int capacity) {
+        mSamples = new PacketStats[capacity];
+    }
+
+    public synchronized void add(PacketStats packetStats) {
+        mSamples[mNext] = packetStats;
+        mNext = (mNext + 1) % mSamples.length;
+        mSize = Math.min(mSize + 1, mSamples.length);
+    }
+
+    /**
+     * @return The most recent sample, or null when nothing was sampled.
+     */
+    public synchronized @Nullable PacketStats latest() {
+        return mSize == 0 ? null : get(0);
+    }
+
+    /**
+     * Find the sample that was taken at a time of the call or the closest before it.
+     *
+     * @param collectionTime The duration of the call in seconds.
+     * @return The sample, or null when the oldest sample in the ring is more recent.
+     */
+    public synchronized @Nullable PacketStats atOrBefore(int collectionTime) {
+        for (int age = 0; age < mSize; age++) {
+            PacketStats packetStats = get(age);
+            if (packetStats.getCollectionTime() <= collectionTime) {
+                return packetStats;
+            }
+        }
+        return null;
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * @param age 0 for the latest sample, 1 for the one before it, etc.
+     */
+    private PacketStats get(int age) {
+        return mSamples[(mNext - 1 - age + mSamples.length) % mSamples.length];
+    }
+}
@@ -17,6 +17,7 @@ import com.voipgrid.vialer.api.ServiceGenerator;
 import com.voipgrid.vialer.api.models.PhoneAccount;
 import com.voipgrid.vialer.api.models.SystemUser;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.util.AccountHelper;
 import com.voipgrid.vialer.util.JsonStorage;
 
@@ -143,7 +144,7 @@ public class MiddlewareHelper {
      * @param context
      */
     public static void unregister(final Context context) {
-        final Logger logger = new Logger(MiddlewareHelper.class);
+        final Logger logger = LoggerFactory.getLogger(MiddlewareHelper.class);
 
         SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
         String token = preferences.getString(CURRENT_TOKEN, "");
@@ -199,7 +200,7 @@ public class MiddlewareHelper {
      * @param context Context
      */
     public static void registerAtMiddleware(Context context) {
-        Logger logger = new Logger(MiddlewareHelper.class);
+        Logger logger = LoggerFactory.getLogger(MiddlewareHelper.class);
 
         String refreshedToken = FirebaseInstanceId.getInstance().getToken();
         logger.d("New refresh token: " + refreshedToken);
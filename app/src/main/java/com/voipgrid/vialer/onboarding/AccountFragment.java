@@ -16,6 +16,7 @@ import android.widget.EditText;
 import com.voipgrid.vialer.R;
 import com.voipgrid.vialer.api.models.SystemUser;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.util.JsonStorage;
 import com.voipgrid.vialer.util.PhoneNumberUtils;
 
@@ -104,7 +105,7 @@ public class AccountFragment extends OnboardingFragment implements
             // TODO Find a better solution for this (VIALA-575) in future.
             if (outGoingNumber == null || outGoingNumber.isEmpty()) {
                 // Forced logging due to user not being able to set/unset it at this point.
-                mLogger = new Logger(AccountFragment.class).forceRemoteLogging(true);
+                mLogger = LoggerFactory.getLogger(AccountFragment.class).forceRemoteLogging(true);
                 mLogger.d("no outGoingNumber");
                 SystemUser systemUser = (SystemUser) new JsonStorage(getActivity()).get(SystemUser.class);
                 outGoingNumber = systemUser.getOutgoingCli();
@@ -26,6 +26,7 @@ import com.voipgrid.vialer.api.models.MobileNumber;
 import com.voipgrid.vialer.api.models.PhoneAccount;
 import com.voipgrid.vialer.api.models.SystemUser;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.logging.RemoteLoggingActivity;
 import com.voipgrid.vialer.middleware.MiddlewareHelper;
 import com.voipgrid.vialer.models.PasswordResetParams;
@@ -72,7 +73,7 @@ public class SetupActivity extends RemoteLoggingActivity implements
         mPreferences = new Preferences(this);
 
         // Forced logging due to user not being able to set/unset it at this point.
-        mLogger = new Logger(SetupActivity.class).forceRemoteLogging(true);
+        mLogger = LoggerFactory.getLogger(SetupActivity.class).forceRemoteLogging(true);
 
         Fragment gotoFragment = null;
         Integer fragmentId = null;
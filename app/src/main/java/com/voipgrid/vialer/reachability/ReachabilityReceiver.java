@@ -7,6 +7,7 @@ import android.content.IntentFilter;
 import android.net.ConnectivityManager;
 
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 
 
 public class ReachabilityReceiver extends BroadcastReceiver {
@@ -17,7 +18,7 @@ public class ReachabilityReceiver extends BroadcastReceiver {
 
     public ReachabilityReceiver(Context context) {
         mContext = context;
-        mLogger = new Logger(ReachabilityReceiver.class);
+        mLogger = LoggerFactory.getLogger(ReachabilityReceiver.class);
     }
 
     public void startListening() {
@@ -3,15 +3,27 @@ package com.voipgrid.vialer.sip;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 
+import com.voipgrid.vialer.Preferences;
 import com.voipgrid.vialer.VialerApplication;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.logging.sip.SipLogHandler;
+import com.voipgrid.vialer.statistics.LatencyHistogram;
 import com.voipgrid.vialer.statistics.VialerStatistics;
 import com.voipgrid.vialer.util.BroadcastReceiverManager;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
- * Regularly checks that a call has been setup after receiving a push notification.
+ * Checks that a call has been setup after receiving a push notification. The SipService tells
+ * the checker when the incoming call arrives, if that does not happen in time the call failed
+ * to setup. The latency from the push notification to the call is kept in a histogram.
  */
 public class CallSetupChecker {
 
@@ -19,27 +31,39 @@ public class CallSetupChecker {
      * The number of seconds that we wait for a call before we determine that it has failed
      * to setup.
      */
-    private static final int MILLISECONDS_ALLOWED_BEFORE_CALL_FAILED_TO_SETUP = 5000;
+    static final int MILLISECONDS_ALLOWED_BEFORE_CALL_FAILED_TO_SETUP = 5000;
 
-    /**
-     * The time between each check that is performed, this should be set to a low enough value
-     * that it will always catch a call that has been active for even a short amount of time.
-     */
-    private static final int CHECK_INTERVAL_IN_MILLISECONDS = 50;
+    private static final Reporter sStatisticsReporter = new StatisticsReporter();
 
     private final String mRequestToken;
     private final String mMessageStartTime;
     private final String mAttempt;
-    private long mCheckStartTime;
+    private final long mPushReceivedTime;
     private final Logger mLogger;
-    private SipService mSipService;
-    private BroadcastReceiverManager mBroadcastReceiverManager;
+    private final Handler mHandler;
+    private final BroadcastReceiverManager mBroadcastReceiverManager;
+    private final Reporter mReporter;
 
     /**
-     * Controls the call checking loop, if this is ever set to false, checking for the call will stop.
-     *
+     * Reports the outcome of a check, every check reports exactly one outcome.
      */
-    private boolean continueChecking = true;
+    interface Reporter {
+        /**
+         * @param checker
+         * @param latencyMillis The time from the push message to the call, or -1 when the time
+         *                      the push message was received is not known.
+         */
+        void callSetup(CallSetupChecker checker, long latencyMillis);
+
+        void noCallReceived(CallSetupChecker checker);
+
+        void callFailedWithSipError(CallSetupChecker checker, int sipErrorCode);
+    }
+
+    /**
+     * Set by whatever finishes the check first: the call, a sip error or the timeout.
+     */
+    private final AtomicBoolean mFinished = new AtomicBoolean(false);
 
     /**
      * Broadcast receiver that will listen for a sip error code from the logs, if found will send the metrics for call
@@ -49,23 +73,38 @@ public class CallSetupChecker {
     private BroadcastReceiver mSipErrorCodeReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
-            continueChecking = false;
-            mBroadcastReceiverManager.unregisterReceiver(this);
-            VialerStatistics.incomingCallFailedDueToSipError(
-                    mRequestToken,
-                    mMessageStartTime,
-                    mAttempt,
-                    intent.getIntExtra(SipLogHandler.EXTRA_SIP_ERROR_CODE, 0)
-            );
+            if (!finish()) {
+                return;
+            }
+
+            mReporter.callFailedWithSipError(CallSetupChecker.this,
+                    intent.getIntExtra(SipLogHandler.EXTRA_SIP_ERROR_CODE, 0));
         }
     };
 
-    private CallSetupChecker (String requestToken, String messageStartTime, String attempt) {
+    private final Runnable mTimeout = new Runnable() {
+        @Override
+        public void run() {
+            if (!finish()) {
+                return;
+            }
+
+            mReporter.noCallReceived(CallSetupChecker.this);
+            mLogger.e("Unable to confirm call from fcm message (" + mRequestToken + ") was setup correctly");
+        }
+    };
+
+    CallSetupChecker(String requestToken, String messageStartTime, String attempt,
+            long pushReceivedTime, Handler handler,
+            BroadcastReceiverManager broadcastReceiverManager, Reporter reporter) {
         mRequestToken = requestToken;
         mMessageStartTime = messageStartTime;
         mAttempt = attempt;
-        mBroadcastReceiverManager = BroadcastReceiverManager.fromContext(VialerApplication.get());
-        mLogger = new Logger(this.getClass());
+        mPushReceivedTime = pushReceivedTime;
+        mHandler = handler;
+        mBroadcastReceiverManager = broadcastReceiverManager;
+        mReporter = reporter;
+        mLogger = LoggerFactory.getLogger(this.getClass());
     }
 
     /**
@@ -74,82 +113,115 @@ public class CallSetupChecker {
      * @param requestToken
      * @param messageStartTime
      * @param attempt
+     * @param pushReceivedTime The elapsed realtime the push message was received, 0 when not known.
      * @return
      */
-    public static CallSetupChecker withPushMessageInformation(String requestToken, String messageStartTime, String attempt) {
-        return new CallSetupChecker(requestToken, messageStartTime, attempt);
+    public static CallSetupChecker withPushMessageInformation(String requestToken, String messageStartTime, String attempt, long pushReceivedTime) {
+        return new CallSetupChecker(requestToken, messageStartTime, attempt, pushReceivedTime,
+                new Handler(Looper.getMainLooper()),
+                BroadcastReceiverManager.fromContext(VialerApplication.get()),
+                sStatisticsReporter);
     }
 
     /**
-     * Starts a new thread that will regularly check that the sip service is handling the call.
+     * Start waiting for the call, without a thread of its own.
      *
      */
     public void start(SipService sipService) {
-        mSipService = sipService;
+        start();
+        sipService.expectIncomingCall(this);
+    }
 
-        mCheckStartTime = System.currentTimeMillis();
+    /**
+     * Start the timeout and listen for sip errors, the call is passed to
+     * {@link #onIncomingCall(String)}.
+     */
+    void start() {
+        if (mPushReceivedTime <= 0) {
+            mLogger.w("No receive time for fcm message (" + mRequestToken + "), the call setup latency is not recorded");
+        }
 
-        new Thread(this::loop).start();
+        mBroadcastReceiverManager.registerReceiverViaLocalBroadcastManager(mSipErrorCodeReceiver, SipLogHandler.INVITE_FAILED_WITH_SIP_ERROR_CODE);
+        mHandler.postDelayed(mTimeout, MILLISECONDS_ALLOWED_BEFORE_CALL_FAILED_TO_SETUP);
     }
 
     /**
-     * Calls the check method continuously.
+     * Called by the SipService when an incoming call arrives, finishes the check when it is the call
+     * from the push message.
      *
+     * @param call
      */
-    private void loop() {
-        mBroadcastReceiverManager.registerReceiverViaLocalBroadcastManager(mSipErrorCodeReceiver, SipLogHandler.INVITE_FAILED_WITH_SIP_ERROR_CODE);
-
-        while (continueChecking) {
-            check();
-        }
+    void onIncomingCall(SipCall call) {
+        onIncomingCall(call.getMiddlewareKey());
     }
 
     /**
-     * Looks for whether or not the call is active in the SipService or if we have reached the maximum allowed time for checking.
-     *
-     * @return Return a boolean depending on whether or not we should continue checking for the call.
+     * @param middlewareKey The token of the push message the incoming call belongs to.
      */
-    private void check() {
-        if (isSipServiceHandlingOurCall()){
-            mLogger.i("Confirmed call from fcm message (" + mRequestToken + ") has been setup");
-            continueChecking = false;
+    void onIncomingCall(String middlewareKey) {
+        if (!mRequestToken.equals(middlewareKey) || !finish()) {
+            return;
         }
 
-        if (hasMaximumAllowedTimeExpired()) {
-            VialerStatistics.noCallReceivedFromAsteriskAfterOkToMiddleware(mRequestToken, mMessageStartTime, mAttempt);
-            mLogger.e("Unable to confirm call from fcm message (" + mRequestToken + ") was setup correctly");
-            continueChecking = false;
-        }
+        mLogger.i("Confirmed call from fcm message (" + mRequestToken + ") has been setup");
 
-        sleep();
+        mReporter.callSetup(this, mPushReceivedTime > 0
+                ? SystemClock.elapsedRealtime() - mPushReceivedTime : -1);
     }
 
     /**
-     * Determine if we have been checking for longer than the allowed time.
+     * Stop listening for the outcomes of the check.
      *
-     * @return
+     * @return FALSE when the check had already finished.
      */
-    private boolean hasMaximumAllowedTimeExpired() {
-        return System.currentTimeMillis() >= (mCheckStartTime + MILLISECONDS_ALLOWED_BEFORE_CALL_FAILED_TO_SETUP);
-    }
+    private boolean finish() {
+        if (!mFinished.compareAndSet(false, true)) {
+            return false;
+        }
 
-    /**
-     * Check if the SipService is currently busy with the call we are checking for.
-     */
-    private boolean isSipServiceHandlingOurCall() {
-        return mSipService != null && mSipService.getCurrentCall() != null && mRequestToken.equals(
-                mSipService.getCurrentCall().getMiddlewareKey());
+        mHandler.removeCallbacks(mTimeout);
+        mBroadcastReceiverManager.unregisterReceiver(mSipErrorCodeReceiver);
+        return true;
     }
 
     /**
-     * Sleep the current thread for the specified check interval.
-     *
+     * Sends the outcome to the statistics, the latency is added to the histogram of all calls
+     * on a background thread.
      */
-    private void sleep() {
-        try {
-            Thread.sleep(CHECK_INTERVAL_IN_MILLISECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+    private static class StatisticsReporter implements Reporter {
+
+        /**
+         * Loads, updates and stores the latency histogram, one call at a time.
+         */
+        private final Executor mLatencyExecutor = Executors.newSingleThreadExecutor();
+
+        @Override
+        public void callSetup(CallSetupChecker checker, long latencyMillis) {
+            if (latencyMillis < 0) {
+                return;
+            }
+
+            mLatencyExecutor.execute(() -> {
+                Preferences preferences = VialerApplication.get().component().getPreferences();
+                LatencyHistogram histogram = LatencyHistogram.decode(
+                        preferences.getCallSetupLatency());
+                histogram.record(latencyMillis);
+                preferences.setCallSetupLatency(histogram.encode());
+
+                checker.mLogger.i("Call setup took " + latencyMillis + "ms from the push message, all calls: " + histogram.summarize());
+            });
+        }
+
+        @Override
+        public void noCallReceived(CallSetupChecker checker) {
+            VialerStatistics.noCallReceivedFromAsteriskAfterOkToMiddleware(
+                    checker.mRequestToken, checker.mMessageStartTime, checker.mAttempt);
+        }
+
+        @Override
+        public void callFailedWithSipError(CallSetupChecker checker, int sipErrorCode) {
+            VialerStatistics.incomingCallFailedDueToSipError(checker.mRequestToken,
+                    checker.mMessageStartTime, checker.mAttempt, sipErrorCode);
         }
     }
 }
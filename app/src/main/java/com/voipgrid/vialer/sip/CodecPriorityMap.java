@@ -2,6 +2,7 @@ package com.voipgrid.vialer.sip;
 
 import com.voipgrid.vialer.Preferences;
 import com.voipgrid.vialer.VialerApplication;
+import com.voipgrid.vialer.sip.codec.Codec;
 
 import java.util.HashMap;
 
@@ -13,15 +14,26 @@ public class CodecPriorityMap extends HashMap<String, Short> {
     }
 
     /**
-     * Return the standard codec priority map.
+     * Return the standard codec priority map, with the codec the user prefers.
      *
      * @return
      */
     public static CodecPriorityMap get() {
         Preferences preferences = VialerApplication.get().component().getPreferences();
+        return forCodec(Codec.fromPreference(preferences.getAudioCodec()));
+    }
+
+    /**
+     * Return the codec priority map that only enables one codec.
+     *
+     * @param enabled
+     * @return
+     */
+    public static CodecPriorityMap forCodec(Codec enabled) {
         CodecPriorityMap codecPriorityMap = new CodecPriorityMap();
-        codecPriorityMap.put("opus/48000", preferences.getAudioCodec() == Preferences.AUDIO_CODEC_OPUS ? CODEC_PRIORITY_MAX : CODEC_DISABLED);
-        codecPriorityMap.put("ilbc/8000", preferences.getAudioCodec() == Preferences.AUDIO_CODEC_ILBC ? CODEC_PRIORITY_MAX : CODEC_DISABLED);
+        for (Codec codec : Codec.values()) {
+            codecPriorityMap.put(codec.getCodecId(), codec == enabled ? CODEC_PRIORITY_MAX : CODEC_DISABLED);
+        }
         return codecPriorityMap;
     }
 
@@ -0,0 +1,134 @@
+package com.voipgrid.vialer.sip;
+
+/**
+ * Keeps the PJSIP endpoint and its transport alive for a while after a call, so a call that
+ * follows soon after does not have to create, init and start the library again. The endpoint is
+ * only reused when it was started with the same configuration and is still healthy, and it is
+ * destroyed when it was used for too many calls or its memory grew too much.
+ *
+ * There is one endpoint at a time, it is acquired when the SipService starts and released when
+ * the SipService stops. All methods are called on the thread the endpoint was created on.
+ */
+class EndpointLifecycleManager<E extends ManagedEndpoint> {
+
+    private final ManagedEndpoint.IdleTimer mIdleTimer;
+    private final long mIdleWindowMillis;
+    private final int mMaxCalls;
+    private final long mMaxMemoryGrowthBytes;
+
+    private E mEndpoint;
+    private String mConfiguration;
+    private long mInitialMemoryBytes;
+    private int mCalls;
+    private boolean mInUse;
+    private String mLastDecision = "none";
+
+    private final Runnable mIdleWindowExpired = () -> {
+        synchronized (EndpointLifecycleManager.this) {
+            if (!mInUse) {
+                destroy("idle window expired");
+            }
+        }
+    };
+
+    /**
+     * @param idleTimer
+     * @param idleWindowMillis The time an endpoint is kept after a call, 0 to destroy it directly.
+     * @param maxCalls The number of calls an endpoint is used for.
+     * @param maxMemoryGrowthBytes The growth of the memory of an endpoint that is accepted.
+     */
+    EndpointLifecycleManager(ManagedEndpoint.IdleTimer idleTimer, long idleWindowMillis,
+            int maxCalls, long maxMemoryGrowthBytes) {
+        mIdleTimer = idleTimer;
+        mIdleWindowMillis = idleWindowMillis;
+        mMaxCalls = maxCalls;
+        mMaxMemoryGrowthBytes = maxMemoryGrowthBytes;
+    }
+
+    /**
+     * Get an endpoint for a call, the warm endpoint when it can be reused or a new one.
+     *
+     * @param configuration Everything the endpoint was configured with, an endpoint is only
+     *                      reused for the same configuration.
+     * @param factory Creates and starts a new endpoint.
+     * @return
+     * @throws Exception When a new endpoint could not be created.
+     */
+    synchronized E acquire(String configuration, ManagedEndpoint.Factory<E> factory)
+            throws Exception {
+        mIdleTimer.cancel();
+
+        String reason = "no warm endpoint";
+        if (mEndpoint != null && !configuration.equals(mConfiguration)) {
+            reason = "configuration changed";
+            destroy(reason);
+        } else if (mEndpoint != null && !mEndpoint.isHealthy()) {
+            reason = "warm endpoint not healthy";
+            destroy(reason);
+        }
+
+        if (mEndpoint != null) {
+            mLastDecision = "reused after " + mCalls + " calls";
+        } else {
+            mEndpoint = factory.create();
+            mConfiguration = configuration;
+            mInitialMemoryBytes = mEndpoint.getMemoryUsageBytes();
+            mCalls = 0;
+            mLastDecision = "created, " + reason;
+        }
+
+        mInUse = true;
+        return mEndpoint;
+    }
+
+    /**
+     * The call has ended, keep the endpoint warm for the idle window when it can be reused.
+     *
+     * @param endpoint The endpoint from {@link #acquire(String, ManagedEndpoint.Factory)}.
+     */
+    synchronized void release(E endpoint) {
+        if (endpoint != mEndpoint) {
+            endpoint.destroy();
+            return;
+        }
+
+        mInUse = false;
+        mCalls++;
+
+        if (mIdleWindowMillis <= 0) {
+            destroy("not kept warm");
+        } else if (mCalls >= mMaxCalls) {
+            destroy("used for " + mCalls + " calls");
+        } else if (mEndpoint.getMemoryUsageBytes() - mInitialMemoryBytes > mMaxMemoryGrowthBytes) {
+            destroy("memory grew too much");
+        } else if (!mEndpoint.isHealthy()) {
+            destroy("not healthy");
+        } else {
+            mLastDecision = "kept warm for " + mIdleWindowMillis + "ms";
+            mIdleTimer.schedule(mIdleWindowExpired, mIdleWindowMillis);
+        }
+    }
+
+    synchronized boolean isWarm() {
+        return mEndpoint != null && !mInUse;
+    }
+
+    /**
+     * @return What was done with the endpoint last and why, for the log.
+     */
+    synchronized String getLastDecision() {
+        return mLastDecision;
+    }
+
+    private void destroy(String reason) {
+        E endpoint = mEndpoint;
+        mEndpoint = null;
+        mConfiguration = null;
+        mInUse = false;
+        mLastDecision = "destroyed, " + reason;
+
+        if (endpoint != null) {
+            endpoint.destroy();
+        }
+    }
+}
@@ -6,6 +6,7 @@ import android.content.Intent;
 import android.os.Handler;
 
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 
 import org.pjsip.pjsua2.Endpoint;
 import org.pjsip.pjsua2.IpChangeParam;
@@ -33,7 +34,7 @@ public class IpSwitchMonitor extends BroadcastReceiver {
     private Handler mHandler;
 
     public IpSwitchMonitor() {
-        mLogger = new Logger(this.getClass());
+        mLogger = LoggerFactory.getLogger(this.getClass());
         mHandler = new Handler();
     }
 
@@ -0,0 +1,41 @@
+package com.voipgrid.vialer.sip;
+
+/**
+ * The parts of a started PJSIP endpoint that the {@link EndpointLifecycleManager} needs to keep
+ * it warm between calls. On the JVM a fake implements it, so the lifecycle can be tested without
+ * the native library.
+ */
+interface ManagedEndpoint {
+
+    /**
+     * @return FALSE when the endpoint or its transport stopped working and it should not be
+     * used for another call.
+     */
+    boolean isHealthy();
+
+    /**
+     * @return The memory the endpoint uses now, compared with what it used when it started.
+     */
+    long getMemoryUsageBytes();
+
+    /**
+     * Stop the endpoint and free everything it holds, it can not be used afterwards.
+     */
+    void destroy();
+
+    /**
+     * Creates and starts an endpoint.
+     */
+    interface Factory<E extends ManagedEndpoint> {
+        E create() throws Exception;
+    }
+
+    /**
+     * Runs the expiry of the idle window, on the thread the endpoint was created on.
+     */
+    interface IdleTimer {
+        void schedule(Runnable expired, long delayMillis);
+
+        void cancel();
+    }
+}
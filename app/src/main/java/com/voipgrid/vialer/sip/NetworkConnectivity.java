@@ -7,6 +7,7 @@ import android.content.Intent;
 import com.voipgrid.vialer.VialerApplication;
 import com.voipgrid.vialer.calling.NetworkAvailabilityActivity;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.util.NetworkUtil;
 
 import javax.inject.Inject;
@@ -21,7 +22,7 @@ public class NetworkConnectivity extends BroadcastReceiver {
 
 
     public NetworkConnectivity() {
-        mLogger = new Logger(this.getClass());
+        mLogger = LoggerFactory.getLogger(this.getClass());
     }
 
     @Override
@@ -0,0 +1,108 @@
+package com.voipgrid.vialer.sip;
+
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import org.pjsip.pjsua2.pjsua_state;
+
+/**
+ * A started {@link VialerEndpoint} with its transport and log writer, as kept warm by the
+ * {@link EndpointLifecycleManager} between calls.
+ */
+class PjsipEndpoint implements ManagedEndpoint {
+
+    private static EndpointLifecycleManager<PjsipEndpoint> sLifecycleManager;
+
+    private final VialerEndpoint mEndpoint;
+    private final int mTransportId;
+    @Nullable private final SipLogWriter mSipLogWriter;
+
+    PjsipEndpoint(VialerEndpoint endpoint, int transportId, @Nullable SipLogWriter sipLogWriter) {
+        mEndpoint = endpoint;
+        mTransportId = transportId;
+        mSipLogWriter = sipLogWriter;
+    }
+
+    /**
+     * @return The manager of the endpoint of the app, the endpoints are kept warm on the main
+     * thread.
+     */
+    static synchronized EndpointLifecycleManager<PjsipEndpoint> getLifecycleManager() {
+        if (sLifecycleManager == null) {
+            sLifecycleManager = new EndpointLifecycleManager<>(
+                    new HandlerIdleTimer(new Handler(Looper.getMainLooper())),
+                    SipConstants.ENDPOINT_IDLE_WINDOW_MS,
+                    SipConstants.ENDPOINT_MAX_CALLS,
+                    SipConstants.ENDPOINT_MAX_MEMORY_GROWTH_BYTES);
+        }
+        return sLifecycleManager;
+    }
+
+    VialerEndpoint getEndpoint() {
+        return mEndpoint;
+    }
+
+    /**
+     * @return The log writer of the endpoint, null when pjsip logging is not enabled.
+     */
+    @Nullable SipLogWriter getSipLogWriter() {
+        return mSipLogWriter;
+    }
+
+    @Override
+    public boolean isHealthy() {
+        try {
+            return mEndpoint.libGetState() == pjsua_state.PJSUA_STATE_RUNNING
+                    && mEndpoint.transportGetInfo(mTransportId) != null;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Most of the native heap of the app is pjsip, the growth of the heap is a good enough
+     * measure of what the endpoint holds on to.
+     */
+    @Override
+    public long getMemoryUsageBytes() {
+        return Debug.getNativeHeapAllocatedSize();
+    }
+
+    @Override
+    public void destroy() {
+        try {
+            mEndpoint.libDestroy();
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            mEndpoint.delete();
+        }
+    }
+
+    private static class HandlerIdleTimer implements IdleTimer {
+        private final Handler mHandler;
+        private Runnable mExpired;
+
+        private HandlerIdleTimer(Handler handler) {
+            mHandler = handler;
+        }
+
+        @Override
+        public void schedule(Runnable expired, long delayMillis) {
+            cancel();
+            mExpired = expired;
+            mHandler.postDelayed(expired, delayMillis);
+        }
+
+        @Override
+        public void cancel() {
+            if (mExpired != null) {
+                mHandler.removeCallbacks(mExpired);
+                mExpired = null;
+            }
+        }
+    }
+}
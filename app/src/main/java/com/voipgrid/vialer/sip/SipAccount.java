@@ -47,6 +47,7 @@ class SipAccount extends org.pjsip.pjsua2.Account {
             Intent incomingCallDetails = mSipService.getIncomingCallDetails();
             sipCall.setMiddlewareKey(incomingCallDetails.getStringExtra(SipConstants.EXTRA_REQUEST_TOKEN));
             sipCall.setMessageStartTime(incomingCallDetails.getStringExtra(MESSAGE_START_TIME));
+            mSipService.onIncomingCallArrived(sipCall);
         }
     }
 
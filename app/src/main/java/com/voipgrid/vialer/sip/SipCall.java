@@ -11,9 +11,11 @@ import com.voipgrid.vialer.analytics.AnalyticsApplication;
 import com.voipgrid.vialer.analytics.AnalyticsHelper;
 import com.voipgrid.vialer.logging.LogHelper;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.sip.SipMessage;
 import com.voipgrid.vialer.media.monitoring.CallMediaMonitor;
 import com.voipgrid.vialer.media.monitoring.PacketStats;
 import com.voipgrid.vialer.sip.SipConstants.CallMissedReason;
+import com.voipgrid.vialer.sip.mos.MosEstimator;
 import com.voipgrid.vialer.statistics.CallCompletionStatsDispatcher;
 import com.voipgrid.vialer.statistics.VialerStatistics;
 import com.voipgrid.vialer.util.ConnectivityHelper;
@@ -98,14 +100,20 @@ public class SipCall extends org.pjsip.pjsua2.Call {
         if (mCurrentCallState.equals(SipConstants.CALL_INCOMING_RINGING)) {
             // Early state. Is where a call is being cancelled or completed elsewhere.
             String packet = prm.getE().getBody().getTsxState().getSrc().getRdata().getWholeMsg();
-            if (!packet.isEmpty()) {
+            SipMessage message = SipMessage.parse(packet);
+            if (message != null) {
                 CallMissedReason reason = CallMissedReason.UNKNOWN;
-                if (packet.contains(CallMissedReason.CALL_ORIGINATOR_CANCEL.toString())) {
-                    reason = CallMissedReason.CALL_ORIGINATOR_CANCEL;
-                    VialerStatistics.incomingCallWasCancelledByOriginator(this);
-                } else if (packet.contains(CallMissedReason.CALL_COMPLETED_ELSEWHERE.toString())) {
-                    reason = CallMissedReason.CALL_COMPLETED_ELSEWHERE;
-                    VialerStatistics.incomingCallWasCompletedElsewhere(this);
+                // A message can have a Reason header for each protocol, any of them can match.
+                for (String reasonHeader : message.getReasons()) {
+                    if (reasonHeader.contains(CallMissedReason.CALL_ORIGINATOR_CANCEL.toString())) {
+                        reason = CallMissedReason.CALL_ORIGINATOR_CANCEL;
+                        VialerStatistics.incomingCallWasCancelledByOriginator(this);
+                        break;
+                    } else if (reasonHeader.contains(CallMissedReason.CALL_COMPLETED_ELSEWHERE.toString())) {
+                        reason = CallMissedReason.CALL_COMPLETED_ELSEWHERE;
+                        VialerStatistics.incomingCallWasCompletedElsewhere(this);
+                        break;
+                    }
                 }
 
                 if (reason != CallMissedReason.UNKNOWN) {
@@ -528,8 +536,10 @@ public class SipCall extends org.pjsip.pjsua2.Call {
         mCallIsConnected = true;
         mCurrentCallState = SipConstants.CALL_CONNECTED_MESSAGE;
         mSipBroadcaster.broadcastCallStatus(getIdentifier(), SipConstants.CALL_CONNECTED_MESSAGE);
-        mCallMediaMonitor = new CallMediaMonitor(this);
-        new Thread(mCallMediaMonitor).start();
+        if (mCallMediaMonitor == null) {
+            mCallMediaMonitor = new CallMediaMonitor(this);
+            mCallMediaMonitor.start();
+        }
     }
 
     /**
@@ -541,6 +551,12 @@ public class SipCall extends org.pjsip.pjsua2.Call {
         return PacketStats.Builder.fromSipCall(this);
     }
 
+    /**
+     * Get the most recent sample of the media packets sent/received for this call, at the end
+     * of the call this is taken when the call was disconnected.
+     *
+     * @return
+     */
     public @Nullable PacketStats getLastMediaPacketStats() {
         if (mCallMediaMonitor == null) {
             return null;
@@ -549,10 +565,25 @@ public class SipCall extends org.pjsip.pjsua2.Call {
         return mCallMediaMonitor.getMostRecentPacketStats();
     }
 
+    /**
+     * @return The estimate of the quality of the call, null when the call never connected.
+     */
+    public @Nullable MosEstimator getMosEstimator() {
+        if (mCallMediaMonitor == null) {
+            return null;
+        }
+
+        return mCallMediaMonitor.getMosEstimator();
+    }
+
     private void onCallDisconnected() {
         mLogger.d("onCallDisconnected");
+        if (mCallMediaMonitor != null) {
+            mCallMediaMonitor.stop();
+        }
         sendMos();
         sendBandwidth();
+        mSipService.getSipConfig().recordCallQuality(this);
 
         // Play end of call beep only when the remote party hangs up and the call was connected.
         if (!mUserHangup && mCallIsConnected && !mCallIsTransferred) {
@@ -565,6 +596,7 @@ public class SipCall extends org.pjsip.pjsua2.Call {
         mCurrentCallState = SipConstants.CALL_DISCONNECTED_MESSAGE;
         mSipBroadcaster.broadcastCallStatus(getIdentifier(), SipConstants.CALL_DISCONNECTED_MESSAGE);
         new CallCompletionStatsDispatcher().callDidComplete(this);
+        mSipService.getSipConfig().reportSipLogForwarding();
     }
 
     private void onCallInvalidState(Throwable fault) {
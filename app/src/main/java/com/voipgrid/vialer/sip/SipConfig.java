@@ -5,8 +5,11 @@ import static org.pjsip.pjsua2.pjsua_call_flag.PJSUA_CALL_REINIT_MEDIA;
 import static org.pjsip.pjsua2.pjsua_call_flag.PJSUA_CALL_UPDATE_CONTACT;
 import static org.pjsip.pjsua2.pjsua_call_flag.PJSUA_CALL_UPDATE_VIA;
 
+import android.content.Context;
 import android.content.Intent;
 import android.net.ConnectivityManager;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
 import androidx.annotation.NonNull;
 import android.util.Log;
 
@@ -23,7 +26,14 @@ import com.voipgrid.vialer.api.models.PhoneAccount;
 import com.voipgrid.vialer.fcm.RemoteMessageData;
 import com.voipgrid.vialer.logging.LogHelper;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.logging.sip.SipLogHandler;
+import com.voipgrid.vialer.sip.codec.CallQualityHistory;
+import com.voipgrid.vialer.sip.codec.Codec;
+import com.voipgrid.vialer.sip.codec.CodecDecision;
+import com.voipgrid.vialer.sip.codec.CodecPolicy;
+import com.voipgrid.vialer.sip.codec.NetworkKey;
+import com.voipgrid.vialer.sip.mos.MosEstimator;
 import com.voipgrid.vialer.util.BroadcastReceiverManager;
 import com.voipgrid.vialer.util.ConnectivityHelper;
 import com.voipgrid.vialer.util.UserAgent;
@@ -34,6 +44,7 @@ import org.pjsip.pjsua2.AuthCredInfo;
 import org.pjsip.pjsua2.CallOpParam;
 import org.pjsip.pjsua2.CodecInfo;
 import org.pjsip.pjsua2.CodecInfoVector;
+import org.pjsip.pjsua2.CodecOpusConfig;
 import org.pjsip.pjsua2.EpConfig;
 import org.pjsip.pjsua2.LogConfig;
 import org.pjsip.pjsua2.MediaConfig;
@@ -58,6 +69,7 @@ import retrofit2.Response;
 public class SipConfig implements AccountStatus {
 
     private final BroadcastReceiverManager mBroadcastReceiverManager;
+    private PjsipEndpoint mPjsipEndpoint;
     private VialerEndpoint mEndpoint;
     private PhoneAccount mPhoneAccount;
     private Logger mLogger;
@@ -68,15 +80,24 @@ public class SipConfig implements AccountStatus {
 
     private boolean mHasRespondedToMiddleware = false;
 
+    // The network the codec was chosen for and the quality of earlier calls.
+    private NetworkKey mCallNetwork;
+    private CallQualityHistory mCallQualityHistory;
+
     private IpSwitchMonitor mIpSwitchMonitor;
 
     private static final String TRANSPORT_TYPE_SECURE = "tls";
     private static final String TRANSPORT_TYPE_STANDARD = "tcp";
 
+    /**
+     * The number of media samples a call needs to count in the call quality history.
+     */
+    private static final int MIN_CALL_QUALITY_SAMPLES = 5;
+
     public SipConfig(Preferences preferences, IpSwitchMonitor ipSwitchMonitor,
             BroadcastReceiverManager broadcastReceiverManager) {
         mBroadcastReceiverManager = broadcastReceiverManager;
-        mLogger = new Logger(this);
+        mLogger = LoggerFactory.getLogger(this.getClass());
         mPreferences = preferences;
         mIpSwitchMonitor = ipSwitchMonitor;
     }
@@ -110,7 +131,7 @@ public class SipConfig implements AccountStatus {
     void initLibrary(Listener listener) {
         try {
             loadPjsip();
-            mEndpoint = createEndpoint();
+            acquireEndpoint();
             setCodecPrio();
             mSipAccount = createSipAccount();
             startNetworkingListener();
@@ -121,6 +142,42 @@ public class SipConfig implements AccountStatus {
         listener.pjSipDidLoad();
     }
 
+    /**
+     * Use the endpoint that was kept warm after the previous call, or create a new one.
+     *
+     * @throws Exception
+     */
+    private void acquireEndpoint() throws Exception {
+        EndpointLifecycleManager<PjsipEndpoint> lifecycleManager =
+                PjsipEndpoint.getLifecycleManager();
+        mPjsipEndpoint = lifecycleManager.acquire(getEndpointConfiguration(), this::createEndpoint);
+        mLogger.i("PJSIP endpoint " + lifecycleManager.getLastDecision());
+
+        mEndpoint = mPjsipEndpoint.getEndpoint();
+        mSipLogWriter = mPjsipEndpoint.getSipLogWriter();
+        if (mSipLogWriter != null) {
+            mSipLogWriter.enabledRemoteLogging(mLogger);
+        }
+    }
+
+    /**
+     * Everything the endpoint is configured with when it is created, a warm endpoint is only
+     * reused when this has not changed. The network is part of it, so a warm endpoint is never
+     * used on another network.
+     *
+     * @return
+     */
+    private String getEndpointConfiguration() {
+        return getSipTransportType()
+                + " stun:" + mPreferences.hasStunEnabled()
+                + " logging:" + isSipLoggingEnabled()
+                + " network:" + ConnectivityHelper.get(mSipService).getConnectionType();
+    }
+
+    private boolean isSipLoggingEnabled() {
+        return BuildConfig.DEBUG || mSipService.getPreferences().remoteLoggingIsActive();
+    }
+
     private void startNetworkingListener() {
         mBroadcastReceiverManager.registerReceiverViaGlobalBroadcastManager(
                 mIpSwitchMonitor.init(mSipService, mEndpoint),
@@ -197,10 +254,12 @@ public class SipConfig implements AccountStatus {
      * @param endpointConfig
      */
     private void setSipLogging(EpConfig endpointConfig) {
-        endpointConfig.getLogConfig().setLevel(SipConstants.SIP_LOG_LEVEL);
+        mSipLogWriter = new SipLogWriter();
+        // Entries that no category forwards are not logged by pjsip at all.
+        endpointConfig.getLogConfig().setLevel(Math.min(SipConstants.SIP_LOG_LEVEL,
+                mSipLogWriter.getForwardingPolicy().getMaxLevel()));
         endpointConfig.getLogConfig().setConsoleLevel(SipConstants.SIP_CONSOLE_LOG_LEVEL);
         LogConfig logConfig = endpointConfig.getLogConfig();
-        mSipLogWriter = new SipLogWriter();
         mSipLogWriter.enabledRemoteLogging(mLogger);
         logConfig.setWriter(mSipLogWriter);
         logConfig.setDecor(logConfig.getDecor() &
@@ -214,7 +273,7 @@ public class SipConfig implements AccountStatus {
      * @return
      * @throws LibraryInitFailedException
      */
-    private VialerEndpoint createEndpoint() throws LibraryInitFailedException {
+    private PjsipEndpoint createEndpoint() throws LibraryInitFailedException {
         mLogger.d("createEndpoint");
         VialerEndpoint endpoint = new VialerEndpoint();
         EpConfig endpointConfig = new EpConfig();
@@ -231,7 +290,7 @@ public class SipConfig implements AccountStatus {
             throw new LibraryInitFailedException();
         }
 
-        if (BuildConfig.DEBUG || mSipService.getPreferences().remoteLoggingIsActive()) {
+        if (isSipLoggingEnabled()) {
             setSipLogging(endpointConfig);
         }
 
@@ -250,8 +309,9 @@ public class SipConfig implements AccountStatus {
         }
 
         TransportConfig transportConfig = createTransportConfig();
+        int transportId;
         try {
-            endpoint.transportCreate(getTransportType(), transportConfig);
+            transportId = endpoint.transportCreate(getTransportType(), transportConfig);
             endpoint.libStart();
         } catch (Exception exception) {
             mLogger.e("Unable to start the PJSIP library");
@@ -259,7 +319,7 @@ public class SipConfig implements AccountStatus {
             throw new LibraryInitFailedException();
         }
 
-        return endpoint;
+        return new PjsipEndpoint(endpoint, transportId, mSipLogWriter);
     }
 
     /**
@@ -332,11 +392,14 @@ public class SipConfig implements AccountStatus {
     }
 
     /**
-     * Set the priority of codecs to use.
+     * Set the priority of codecs to use, and the Opus settings, for the network the call is on.
      */
     private void setCodecPrio() {
         try {
-            CodecPriorityMap codecPriorityMap = CodecPriorityMap.get();
+            CodecDecision decision = decideCodec();
+            mLogger.i("Codec for a call on " + mCallNetwork + ": " + decision);
+
+            CodecPriorityMap codecPriorityMap = CodecPriorityMap.forCodec(decision.getCodec());
             CodecInfoVector codecList = mEndpoint.codecEnum();
             String codecId;
             CodecInfo info;
@@ -348,11 +411,75 @@ public class SipConfig implements AccountStatus {
                 prio = codecPriorityMap.findCodecPriority(codecId);
                 mEndpoint.codecSetPriority(codecId, prio != null ? prio : CodecPriorityMap.CODEC_DISABLED);
             }
+
+            if (decision.getCodec() == Codec.OPUS) {
+                CodecOpusConfig opusConfig = mEndpoint.getCodecOpusConfig();
+                opusConfig.setBit_rate(decision.getOpusBitrate());
+                opusConfig.setComplexity(decision.getOpusComplexity());
+                opusConfig.setPacket_loss(decision.getOpusExpectedPacketLoss());
+                mEndpoint.setCodecOpusConfig(opusConfig);
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    private CodecDecision decideCodec() {
+        mCallQualityHistory = CallQualityHistory.decode(mPreferences.getCallQualityHistory());
+        mCallNetwork = findCallNetwork();
+
+        CodecDecision decision = new CodecPolicy(mCallQualityHistory).decide(mCallNetwork,
+                Codec.fromPreference(mPreferences.getAudioCodec()));
+        mPreferences.setCallQualityHistory(mCallQualityHistory.encode());
+        return decision;
+    }
+
+    /**
+     * @return The network calls are made on now, or null without a connection.
+     */
+    private NetworkKey findCallNetwork() {
+        ConnectivityHelper.Connection connection =
+                ConnectivityHelper.get(mSipService).getConnectionType();
+
+        String ssid = null;
+        if (connection == ConnectivityHelper.Connection.WIFI) {
+            WifiManager wifiManager = (WifiManager) mSipService.getApplicationContext()
+                    .getSystemService(Context.WIFI_SERVICE);
+            WifiInfo wifiInfo = wifiManager != null ? wifiManager.getConnectionInfo() : null;
+            ssid = wifiInfo != null ? wifiInfo.getSSID() : null;
+        }
+        return NetworkKey.fromConnection(connection, ssid);
+    }
+
+    /**
+     * Add the quality of a finished call to the history of the network the codec was chosen
+     * for, so the codec for the next call on that network can be chosen better.
+     *
+     * @param call
+     */
+    void recordCallQuality(SipCall call) {
+        MosEstimator mosEstimator = call.getMosEstimator();
+        Codec codec = Codec.fromCodecName(call.getCodec());
+        if (mCallNetwork == null || mCallQualityHistory == null || codec == null
+                || mosEstimator == null
+                || mosEstimator.getSampleCount() < MIN_CALL_QUALITY_SAMPLES) {
+            return;
+        }
+
+        mCallQualityHistory.record(mCallNetwork, codec, mosEstimator.getAverageMos(),
+                mosEstimator.getCallPacketLossPercentage());
+        mPreferences.setCallQualityHistory(mCallQualityHistory.encode());
+    }
+
+    /**
+     * Log how many pjsip log lines were forwarded and suppressed since the last report.
+     */
+    void reportSipLogForwarding() {
+        if (mSipLogWriter != null) {
+            mSipLogWriter.reportForwarding();
+        }
+    }
+
     /**
      * Clean/destroy all the resources the proper way.
      */
@@ -364,16 +491,19 @@ public class SipConfig implements AccountStatus {
             mSipLogWriter.disableRemoteLogging();
         }
 
-        // Destroy Endpoint.
-        if(mEndpoint != null) {
-            try {
-                mEndpoint.libDestroy();
-            } catch (Exception e) {
-                e.printStackTrace();
-            } finally {
-                mEndpoint.delete();
-                mEndpoint = null;
-            }
+        // The account belongs to this service, the endpoint can be kept warm for the next call.
+        if (mSipAccount != null) {
+            mSipAccount.delete();
+            mSipAccount = null;
+        }
+
+        if (mPjsipEndpoint != null) {
+            EndpointLifecycleManager<PjsipEndpoint> lifecycleManager =
+                    PjsipEndpoint.getLifecycleManager();
+            lifecycleManager.release(mPjsipEndpoint);
+            mLogger.i("PJSIP endpoint " + lifecycleManager.getLastDecision());
+            mPjsipEndpoint = null;
+            mEndpoint = null;
         }
     }
 
@@ -441,7 +571,9 @@ public class SipConfig implements AccountStatus {
             }
         });
 
-        CallSetupChecker.withPushMessageInformation(token, messageStartTime, attempt).start(mSipService);
+        CallSetupChecker.withPushMessageInformation(token, messageStartTime, attempt,
+                incomingCallDetails.getLongExtra(SipConstants.EXTRA_PUSH_RECEIVED_TIME, 0))
+                .start(mSipService);
     }
 
     @Override
@@ -95,6 +95,7 @@ public interface SipConstants {
 
     String EXTRA_RESPONSE_URL = "EXTRA_RESPONSE_URL";
     String EXTRA_REQUEST_TOKEN = "EXTRA_REQUEST_TOKEN";
+    String EXTRA_PUSH_RECEIVED_TIME = "EXTRA_PUSH_RECEIVED_TIME";
 
     String SERVICE_STOPPED = "SERVICE_STOPPED";
 
@@ -129,4 +130,11 @@ public interface SipConstants {
     int SIP_LOG_LEVEL = 10;
     // For PJSIP debugging purpose 4 is a reasonable value.
     int SIP_CONSOLE_LOG_LEVEL = 4;
+
+    // The time the endpoint is kept warm after a call, 0 to destroy it directly.
+    long ENDPOINT_IDLE_WINDOW_MS = 60000;
+    // The number of calls an endpoint is used for before a new one is created.
+    int ENDPOINT_MAX_CALLS = 20;
+    // The growth of the native heap after which the endpoint is not kept warm.
+    long ENDPOINT_MAX_MEMORY_GROWTH_BYTES = 16 * 1024 * 1024;
 }
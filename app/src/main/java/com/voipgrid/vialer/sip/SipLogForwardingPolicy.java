@@ -0,0 +1,225 @@
+package com.voipgrid.vialer.sip;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which pjsip log lines are forwarded to the logger. Every category of lines has a
+ * maximum pjsip log level, a sample rate and a token bucket that limits the number of lines per
+ * second. Lines above the highest level of all categories are not logged by pjsip at all.
+ *
+ * The number of forwarded and suppressed lines is counted per category until the counters are
+ * reported.
+ */
+public class SipLogForwardingPolicy {
+
+    /**
+     * A rate of lines per second that does not limit.
+     */
+    public static final double UNLIMITED = 0;
+
+    /**
+     * The length of the time pjsip logs before every entry, e.g. "12:30:01.123 ".
+     */
+    static final int TIMESTAMP_LENGTH = 13;
+
+    /**
+     * The senders in pjsip log entries about media, after the timestamp.
+     */
+    private static final String[] MEDIA_SENDERS = {
+            "pjsua_media.c", "strm", "rtp", "rtcp", "srtp", "transport_srtp", "ec0", "jbuf",
+            "snd", "conference.c", "wsola", "sound_port", "opus", "speex", "codec", "media",
+            "pjmedia", "aud", "vid",
+    };
+
+    public enum Category {
+        /**
+         * Sent and received SIP messages.
+         */
+        SIP,
+
+        /**
+         * Audio streams, codecs, RTP and sound devices.
+         */
+        MEDIA,
+
+        OTHER,
+    }
+
+    private final Rule[] mRules = new Rule[Category.values().length];
+
+    private static class Rule {
+        private final int mMaxLevel;
+        private final int mSampleRate;
+        private final TokenBucket mTokenBucket;
+
+        private final AtomicLong mSeen = new AtomicLong();
+        private final AtomicLong mForwarded = new AtomicLong();
+        private final AtomicLong mSuppressed = new AtomicLong();
+
+        private Rule(int maxLevel, int sampleRate, double linesPerSecond, int burst) {
+            mMaxLevel = maxLevel;
+            mSampleRate = Math.max(1, sampleRate);
+            mTokenBucket = linesPerSecond == UNLIMITED ? null
+                    : new TokenBucket(linesPerSecond, burst);
+        }
+
+        private boolean accept(int level, long nowNanos) {
+            if (level > mMaxLevel) {
+                return false;
+            }
+            if (mSampleRate > 1 && mSeen.getAndIncrement() % mSampleRate != 0) {
+                return false;
+            }
+            return mTokenBucket == null || mTokenBucket.tryAcquire(nowNanos);
+        }
+    }
+
+    /**
+     * Allows a number of lines per second with bursts up to a maximum.
+     */
+    private static class TokenBucket {
+        private final double mTokensPerNano;
+        private final double mCapacity;
+
+        private double mTokens;
+        private long mLastRefill = Long.MIN_VALUE;
+
+        private TokenBucket(double linesPerSecond, int burst) {
+            mTokensPerNano = linesPerSecond / TimeUnit.SECONDS.toNanos(1);
+            mCapacity = Math.max(1, burst);
+            mTokens = mCapacity;
+        }
+
+        private synchronized boolean tryAcquire(long nowNanos) {
+            if (mLastRefill != Long.MIN_VALUE && nowNanos > mLastRefill) {
+                mTokens = Math.min(mCapacity, mTokens + (nowNanos - mLastRefill) * mTokensPerNano);
+            }
+            mLastRefill = nowNanos;
+
+            if (mTokens < 1) {
+                return false;
+            }
+            mTokens--;
+            return true;
+        }
+    }
+
+    public static class Builder {
+        private final Rule[] mRules = new Rule[Category.values().length];
+
+        public Builder() {
+            for (Category category : Category.values()) {
+                mRules[category.ordinal()] = new Rule(Integer.MAX_VALUE, 1, UNLIMITED, 0);
+            }
+        }
+
+        /**
+         * @param category
+         * @param maxLevel The highest pjsip log level that is forwarded.
+         * @param sampleRate Forward one in this many lines.
+         * @param linesPerSecond The maximum rate of forwarded lines, or {@link #UNLIMITED}.
+         * @param burst The number of lines that can be forwarded at once within the rate.
+         * @return
+         */
+        public Builder category(Category category, int maxLevel, int sampleRate,
+                double linesPerSecond, int burst) {
+            mRules[category.ordinal()] = new Rule(maxLevel, sampleRate, linesPerSecond, burst);
+            return this;
+        }
+
+        public SipLogForwardingPolicy build() {
+            return new SipLogForwardingPolicy(mRules);
+        }
+    }
+
+    private SipLogForwardingPolicy(Rule[] rules) {
+        System.arraycopy(rules, 0, mRules, 0, rules.length);
+    }
+
+    /**
+     * Forward every SIP message, one in ten media lines and limit the rate of all other lines.
+     *
+     * @return
+     */
+    public static SipLogForwardingPolicy createDefault() {
+        return new Builder()
+                .category(Category.SIP, 5, 1, UNLIMITED, 0)
+                .category(Category.MEDIA, 4, 10, 5, 20)
+                .category(Category.OTHER, 5, 1, 50, 200)
+                .build();
+    }
+
+    /**
+     * @return The highest level of all categories, pjsip does not need to log above it.
+     */
+    public int getMaxLevel() {
+        int maxLevel = 0;
+        for (Rule rule : mRules) {
+            maxLevel = Math.max(maxLevel, rule.mMaxLevel);
+        }
+        return maxLevel;
+    }
+
+    /**
+     * Find the category of a pjsip log entry that is not a SIP message from its sender.
+     *
+     * @param entry The entry including the timestamp.
+     * @return
+     */
+    public static Category categorize(String entry) {
+        for (String sender : MEDIA_SENDERS) {
+            if (entry.startsWith(sender, TIMESTAMP_LENGTH)) {
+                return Category.MEDIA;
+            }
+        }
+        return Category.OTHER;
+    }
+
+    /**
+     * Decide whether a line is forwarded and count it.
+     *
+     * @param category
+     * @param level The pjsip log level of the line.
+     * @return
+     */
+    public boolean shouldForward(Category category, int level) {
+        return shouldForward(category, level, System.nanoTime());
+    }
+
+    boolean shouldForward(Category category, int level, long nowNanos) {
+        Rule rule = mRules[category.ordinal()];
+
+        if (rule.accept(level, nowNanos)) {
+            rule.mForwarded.incrementAndGet();
+            return true;
+        }
+        rule.mSuppressed.incrementAndGet();
+        return false;
+    }
+
+    long getForwardedCount(Category category) {
+        return mRules[category.ordinal()].mForwarded.get();
+    }
+
+    long getSuppressedCount(Category category) {
+        return mRules[category.ordinal()].mSuppressed.get();
+    }
+
+    /**
+     * Describe the counters of every category and start counting again.
+     *
+     * @return
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder("Forwarded pjsip log lines:");
+        for (Category category : Category.values()) {
+            Rule rule = mRules[category.ordinal()];
+            report.append(String.format(Locale.US, " %s %d forwarded, %d suppressed;",
+                    category, rule.mForwarded.getAndSet(0), rule.mSuppressed.getAndSet(0)));
+        }
+        report.setLength(report.length() - 1);
+        return report.toString();
+    }
+}
@@ -2,15 +2,35 @@ package com.voipgrid.vialer.sip;
 
 import com.voipgrid.vialer.logging.Logger;
 import com.voipgrid.vialer.logging.sip.SipLogHandler;
+import com.voipgrid.vialer.logging.sip.SipMessage;
 
 import org.pjsip.pjsua2.LogEntry;
 import org.pjsip.pjsua2.LogWriter;
 
+/**
+ * Forwards the pjsip log to the logger. Every entry is handled by the {@link SipLogHandler}, the
+ * {@link SipLogForwardingPolicy} decides which entries are logged. Entries that are not
+ * forwarded are not copied or passed to the logger.
+ */
 public class SipLogWriter extends LogWriter {
     private Logger mLogger;
 
     private SipLogHandler mSipLogHandler = new SipLogHandler();
 
+    private final SipLogForwardingPolicy mForwardingPolicy;
+
+    public SipLogWriter() {
+        this(SipLogForwardingPolicy.createDefault());
+    }
+
+    public SipLogWriter(SipLogForwardingPolicy forwardingPolicy) {
+        mForwardingPolicy = forwardingPolicy;
+    }
+
+    SipLogForwardingPolicy getForwardingPolicy() {
+        return mForwardingPolicy;
+    }
+
     void enabledRemoteLogging(Logger logger) {
         mLogger = logger;
     }
@@ -20,32 +40,52 @@ public class SipLogWriter extends LogWriter {
         mLogger = null;
     }
 
+    /**
+     * Log the number of forwarded and suppressed lines since the last report.
+     */
+    void reportForwarding() {
+        Logger logger = mLogger;
+        if (logger != null) {
+            logger.i(mForwardingPolicy.report());
+        }
+    }
+
     @Override
     public void write(LogEntry entry) {
-        Integer pjsipLogLevel = entry.getLevel();
-        String logString = entry.getMsg().substring(13);
+        int pjsipLogLevel = entry.getLevel();
+        String entryString = entry.getMsg();
 
-        mSipLogHandler.handle(logString);
+        SipMessage message = mSipLogHandler.handle(entryString);
 
-        if (mLogger == null) {
+        Logger logger = mLogger;
+        if (logger == null) {
             return;
         }
 
+        SipLogForwardingPolicy.Category category = message != null
+                ? SipLogForwardingPolicy.Category.SIP
+                : SipLogForwardingPolicy.categorize(entryString);
+        if (!mForwardingPolicy.shouldForward(category, pjsipLogLevel)) {
+            return;
+        }
+
+        String logString = entryString.substring(SipLogForwardingPolicy.TIMESTAMP_LENGTH);
+
         switch (pjsipLogLevel){
             case 1:
-                mLogger.e(logString);
+                logger.e(logString);
                 break;
             case 2:
-                mLogger.w(logString);
+                logger.w(logString);
                 break;
             case 3:
-                mLogger.i(logString);
+                logger.i(logString);
                 break;
             case 4:
-                mLogger.d(logString);
+                logger.d(logString);
                 break;
             default:
-                mLogger.v(logString);
+                logger.v(logString);
                 break;
         }
     }
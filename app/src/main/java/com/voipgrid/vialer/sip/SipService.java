@@ -25,6 +25,7 @@ import com.voipgrid.vialer.calling.CallingConstants;
 import com.voipgrid.vialer.calling.IncomingCallActivity;
 import com.voipgrid.vialer.dialer.ToneGenerator;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.util.BroadcastReceiverManager;
 import com.voipgrid.vialer.util.JsonStorage;
 import com.voipgrid.vialer.util.NotificationHelper;
@@ -51,7 +52,7 @@ public class SipService extends Service implements SipConfig.Listener {
     private Preferences mPreferences;
     private Logger mLogger;
     private SipBroadcaster mSipBroadcaster;
-    private SipCall mCurrentCall;
+    private volatile SipCall mCurrentCall;
     private SipCall mInitialCall;
     private NativeCallManager mNativeCallManager;
 
@@ -62,6 +63,7 @@ public class SipService extends Service implements SipConfig.Listener {
     private Handler mCheckServiceHandler;
     private Runnable mCheckServiceRunnable;
     @Nullable private Intent mIntent;
+    @Nullable private volatile CallSetupChecker mCallSetupChecker;
 
     @Inject SipConfig mSipConfig;
     @Inject protected BroadcastReceiverManager mBroadcastReceiverManager;
@@ -159,7 +161,7 @@ public class SipService extends Service implements SipConfig.Listener {
         mSipBroadcaster = new SipBroadcaster(this);
 
         mPreferences = new Preferences(this);
-        mLogger = new Logger(SipService.class);
+        mLogger = LoggerFactory.getLogger(SipService.class);
         mNativeCallManager = new NativeCallManager((TelephonyManager) getSystemService(Context.TELEPHONY_SERVICE));
 
         mLogger.d("onCreate");
@@ -432,6 +434,33 @@ public class SipService extends Service implements SipConfig.Listener {
         return mCurrentCall;
     }
 
+    /**
+     * Wait for the incoming call the middleware announced, the checker is told when it arrives.
+     *
+     * @param callSetupChecker
+     */
+    void expectIncomingCall(CallSetupChecker callSetupChecker) {
+        mCallSetupChecker = callSetupChecker;
+
+        // The call may have arrived before the checker, then it is not told by the call.
+        SipCall currentCall = mCurrentCall;
+        if (currentCall != null) {
+            callSetupChecker.onIncomingCall(currentCall);
+        }
+    }
+
+    /**
+     * An incoming call arrived, with the details of the push message that announced it.
+     *
+     * @param call
+     */
+    void onIncomingCallArrived(SipCall call) {
+        CallSetupChecker callSetupChecker = mCallSetupChecker;
+        if (callSetupChecker != null) {
+            callSetupChecker.onIncomingCall(call);
+        }
+    }
+
     /**
      * Removes the call from the list and deletes it. If there are no calls left stop
      * the service.
@@ -1,6 +1,7 @@
 package com.voipgrid.vialer.sip;
 
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 
 import org.pjsip.pjsua2.CallOpParam;
 import org.pjsip.pjsua2.Endpoint;
@@ -14,7 +15,7 @@ public class VialerEndpoint extends Endpoint {
 
     VialerEndpoint() {
         super();
-        mLogger = new Logger(this.getClass());
+        mLogger = LoggerFactory.getLogger(this.getClass());
     }
 
     @Override
@@ -0,0 +1,232 @@
+package com.voipgrid.vialer.sip.codec;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The quality of the finished calls per network and codec. For every combination the number of
+ * calls and a moving average of the MOS and the packet loss are kept, recent calls weigh the
+ * most. Only the networks that were used most recently are kept, so the history stays small
+ * enough to store as a single preference.
+ *
+ * For every network the calls that were set up with the other codec since the preferred codec
+ * was last retried are counted as well, whether or not their quality was recorded.
+ */
+public class CallQualityHistory {
+
+    static final int MAX_NETWORKS = 16;
+
+    /**
+     * The weight of a new call in the moving averages.
+     */
+    static final double WEIGHT = 0.3;
+
+    private static final char RECORD_SEPARATOR = ';';
+    private static final char FIELD_SEPARATOR = ' ';
+    private static final String CALLS_WITH_OTHER_CODEC = "other";
+
+    // The networks in the order they were used, the least recently used first.
+    private final LinkedHashMap<NetworkKey, Network> mNetworks =
+            new LinkedHashMap<>(MAX_NETWORKS, 0.75f, true);
+
+    private static final class Network {
+        private final Record[] mRecords = new Record[Codec.values().length];
+        private int mCallsWithOtherCodec;
+    }
+
+    /**
+     * The quality of the calls with one codec on one network.
+     */
+    public static final class Record {
+        private final int mCalls;
+        private final double mMos;
+        private final double mPacketLossPercentage;
+
+        Record(int calls, double mos, double packetLossPercentage) {
+            mCalls = calls;
+            mMos = mos;
+            mPacketLossPercentage = packetLossPercentage;
+        }
+
+        public int getCalls() {
+            return mCalls;
+        }
+
+        /**
+         * @return The moving average of the MOS of the calls.
+         */
+        public double getMos() {
+            return mMos;
+        }
+
+        /**
+         * @return The moving average of the packet loss of the calls.
+         */
+        public double getPacketLossPercentage() {
+            return mPacketLossPercentage;
+        }
+
+        private Record add(double mos, double packetLossPercentage) {
+            return new Record(mCalls == Integer.MAX_VALUE ? mCalls : mCalls + 1,
+                    WEIGHT * mos + (1 - WEIGHT) * mMos,
+                    WEIGHT * packetLossPercentage + (1 - WEIGHT) * mPacketLossPercentage);
+        }
+    }
+
+    /**
+     * Add the quality of a finished call.
+     *
+     * @param network
+     * @param codec
+     * @param mos The MOS of the call.
+     * @param packetLossPercentage The packet loss of the call.
+     */
+    public synchronized void record(NetworkKey network, Codec codec, double mos,
+            double packetLossPercentage) {
+        Record[] records = getOrAdd(network).mRecords;
+
+        Record record = records[codec.ordinal()];
+        records[codec.ordinal()] = record == null ? new Record(1, mos, packetLossPercentage)
+                : record.add(mos, packetLossPercentage);
+    }
+
+    /**
+     * @return The quality of the calls with a codec on a network, or null when there were none.
+     */
+    public synchronized Record get(NetworkKey network, Codec codec) {
+        Network history = mNetworks.get(network);
+        return history == null ? null : history.mRecords[codec.ordinal()];
+    }
+
+    /**
+     * Count a call that is set up with the other codec than the preferred codec.
+     *
+     * @param network
+     * @return The calls with the other codec since the preferred codec was last retried.
+     */
+    public synchronized int addCallWithOtherCodec(NetworkKey network) {
+        Network history = getOrAdd(network);
+        if (history.mCallsWithOtherCodec < Integer.MAX_VALUE) {
+            history.mCallsWithOtherCodec++;
+        }
+        return history.mCallsWithOtherCodec;
+    }
+
+    /**
+     * The preferred codec is retried, start counting the calls with the other codec again.
+     *
+     * @param network
+     */
+    public synchronized void resetCallsWithOtherCodec(NetworkKey network) {
+        Network history = mNetworks.get(network);
+        if (history != null) {
+            history.mCallsWithOtherCodec = 0;
+        }
+    }
+
+    synchronized int getNetworkCount() {
+        return mNetworks.size();
+    }
+
+    /**
+     * @return The history as text, e.g. "lte opus 12 3.92 1.5;lte other 4;wifi:3f9a0c1b ilbc 3
+     * 4.01 0.2".
+     */
+    public synchronized String encode() {
+        StringBuilder encoded = new StringBuilder();
+        for (Map.Entry<NetworkKey, Network> network : mNetworks.entrySet()) {
+            for (Codec codec : Codec.values()) {
+                Record record = network.getValue().mRecords[codec.ordinal()];
+                if (record == null) {
+                    continue;
+                }
+                if (encoded.length() > 0) {
+                    encoded.append(RECORD_SEPARATOR);
+                }
+                encoded.append(network.getKey().encode()).append(FIELD_SEPARATOR)
+                        .append(codec.name().toLowerCase(Locale.US)).append(FIELD_SEPARATOR)
+                        .append(record.mCalls).append(FIELD_SEPARATOR)
+                        .append(String.format(Locale.US, "%.2f", record.mMos))
+                        .append(FIELD_SEPARATOR)
+                        .append(String.format(Locale.US, "%.1f", record.mPacketLossPercentage));
+            }
+
+            int callsWithOtherCodec = network.getValue().mCallsWithOtherCodec;
+            if (callsWithOtherCodec > 0) {
+                if (encoded.length() > 0) {
+                    encoded.append(RECORD_SEPARATOR);
+                }
+                encoded.append(network.getKey().encode()).append(FIELD_SEPARATOR)
+                        .append(CALLS_WITH_OTHER_CODEC).append(FIELD_SEPARATOR)
+                        .append(callsWithOtherCodec);
+            }
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Read a history from text, records that can not be read are skipped.
+     *
+     * @param encoded The text from {@link #encode()}, or null.
+     * @return
+     */
+    public static CallQualityHistory decode(String encoded) {
+        CallQualityHistory history = new CallQualityHistory();
+        if (encoded == null || encoded.isEmpty()) {
+            return history;
+        }
+
+        for (String line : encoded.split(String.valueOf(RECORD_SEPARATOR))) {
+            String[] fields = line.split(String.valueOf(FIELD_SEPARATOR));
+            NetworkKey network = fields.length > 0 ? NetworkKey.decode(fields[0]) : null;
+            if (network == null) {
+                continue;
+            }
+
+            try {
+                if (fields.length == 3 && CALLS_WITH_OTHER_CODEC.equals(fields[1])) {
+                    int callsWithOtherCodec = Integer.parseInt(fields[2]);
+                    if (callsWithOtherCodec > 0) {
+                        history.getOrAdd(network).mCallsWithOtherCodec = callsWithOtherCodec;
+                    }
+                    continue;
+                }
+                if (fields.length != 5) {
+                    continue;
+                }
+
+                Codec codec = Codec.valueOf(fields[1].toUpperCase(Locale.US));
+                Record record = new Record(Integer.parseInt(fields[2]),
+                        Double.parseDouble(fields[3]), Double.parseDouble(fields[4]));
+                if (record.mCalls <= 0) {
+                    continue;
+                }
+
+                history.getOrAdd(network).mRecords[codec.ordinal()] = record;
+            } catch (IllegalArgumentException e) {
+                // Skip the record, this also covers the NumberFormatException.
+            }
+        }
+        return history;
+    }
+
+    private Network getOrAdd(NetworkKey network) {
+        Network history = mNetworks.get(network);
+        if (history == null) {
+            history = new Network();
+            mNetworks.put(network, history);
+            evictLeastRecentlyUsed();
+        }
+        return history;
+    }
+
+    private void evictLeastRecentlyUsed() {
+        Iterator<NetworkKey> networks = mNetworks.keySet().iterator();
+        while (mNetworks.size() > MAX_NETWORKS && networks.hasNext()) {
+            networks.next();
+            networks.remove();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.voipgrid.vialer.sip.codec;
+
+import com.voipgrid.vialer.Preferences;
+
+/**
+ * The audio codecs the app can use for calls.
+ */
+public enum Codec {
+    OPUS("opus/48000"),
+    ILBC("ilbc/8000");
+
+    private final String mCodecId;
+
+    Codec(String codecId) {
+        mCodecId = codecId;
+    }
+
+    /**
+     * @return The id of the codec in pjsip, without the channel count.
+     */
+    public String getCodecId() {
+        return mCodecId;
+    }
+
+    /**
+     * @return The other codec, the alternative when this codec does not work well.
+     */
+    public Codec other() {
+        return this == OPUS ? ILBC : OPUS;
+    }
+
+    public static Codec fromPreference(@Preferences.AudioCodec int audioCodec) {
+        return audioCodec == Preferences.AUDIO_CODEC_OPUS ? OPUS : ILBC;
+    }
+
+    /**
+     * Find the codec of a stream.
+     *
+     * @param codecName The codec name of a stream, e.g. "opus" or "iLBC/8000".
+     * @return The codec, or null when it is not one of ours.
+     */
+    public static Codec fromCodecName(String codecName) {
+        if (codecName == null) {
+            return null;
+        }
+
+        String name = nameOf(codecName);
+        for (Codec codec : values()) {
+            if (nameOf(codec.mCodecId).equalsIgnoreCase(name)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    private static String nameOf(String codecId) {
+        int slash = codecId.indexOf('/');
+        return slash < 0 ? codecId : codecId.substring(0, slash);
+    }
+}
@@ -0,0 +1,55 @@
+package com.voipgrid.vialer.sip.codec;
+
+import java.util.Locale;
+
+/**
+ * The codec and the Opus settings to use for the next call.
+ */
+public final class CodecDecision {
+
+    private final Codec mCodec;
+    private final int mOpusBitrate;
+    private final int mOpusComplexity;
+    private final int mOpusExpectedPacketLoss;
+    private final String mReason;
+
+    CodecDecision(Codec codec, int opusBitrate, int opusComplexity, int opusExpectedPacketLoss,
+            String reason) {
+        mCodec = codec;
+        mOpusBitrate = opusBitrate;
+        mOpusComplexity = opusComplexity;
+        mOpusExpectedPacketLoss = opusExpectedPacketLoss;
+        mReason = reason;
+    }
+
+    public Codec getCodec() {
+        return mCodec;
+    }
+
+    /**
+     * @return The target bitrate of Opus in bits per second.
+     */
+    public int getOpusBitrate() {
+        return mOpusBitrate;
+    }
+
+    /**
+     * @return The complexity of the Opus encoder, 0 to 10.
+     */
+    public int getOpusComplexity() {
+        return mOpusComplexity;
+    }
+
+    /**
+     * @return The packet loss percentage Opus adds forward error correction for.
+     */
+    public int getOpusExpectedPacketLoss() {
+        return mOpusExpectedPacketLoss;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s (%s), opus %d bps, complexity %d, %d%% loss",
+                mCodec, mReason, mOpusBitrate, mOpusComplexity, mOpusExpectedPacketLoss);
+    }
+}
@@ -0,0 +1,170 @@
+package com.voipgrid.vialer.sip.codec;
+
+import com.voipgrid.vialer.sip.mos.MosEstimator;
+
+/**
+ * Chooses the codec and the Opus settings for a call from the quality of earlier calls on the
+ * same network.
+ *
+ * The codec the user prefers is used, unless the calls with it on this network are poor. Then
+ * the other codec is tried until there are enough calls to compare them, after which the codec
+ * with the clearly better calls is used. While using the other codec the preferred codec is
+ * tried again every {@link #RETRY_PREFERRED_EVERY} calls, so a network that improved is noticed.
+ * The calls are counted when they are decided, a retried call that is too short to record still
+ * counts as the retry.
+ *
+ * The Opus bitrate starts from the type of network and steps down when the calls with Opus on
+ * the network lose packets or are poor, and up when they are good.
+ */
+public class CodecPolicy {
+
+    /**
+     * The number of calls before the history of a network is trusted.
+     */
+    static final int MIN_CALLS = 3;
+
+    /**
+     * Above this MOS the quality of calls is good, there is room for a higher bitrate.
+     */
+    static final double GOOD_MOS = 4.0;
+
+    /**
+     * The difference in MOS for the other codec to be considered better.
+     */
+    static final double SWITCH_MARGIN = 0.2;
+
+    static final int RETRY_PREFERRED_EVERY = 10;
+
+    /**
+     * Above this packet loss a lower Opus bitrate is used.
+     */
+    static final double HIGH_PACKET_LOSS = 5.0;
+
+    /**
+     * Below this packet loss a higher Opus bitrate can be used.
+     */
+    static final double LOW_PACKET_LOSS = 1.0;
+
+    static final int MAX_EXPECTED_PACKET_LOSS = 20;
+
+    /**
+     * The Opus settings from the lowest to the highest bitrate. A low bitrate gets a higher
+     * complexity to keep the quality up.
+     */
+    enum OpusTier {
+        LOW(12000, 10),
+        MEDIUM(20000, 8),
+        HIGH(32000, 8);
+
+        final int mBitrate;
+        final int mComplexity;
+
+        OpusTier(int bitrate, int complexity) {
+            mBitrate = bitrate;
+            mComplexity = complexity;
+        }
+
+        private OpusTier step(int steps) {
+            OpusTier[] tiers = values();
+            return tiers[Math.max(0, Math.min(tiers.length - 1, ordinal() + steps))];
+        }
+    }
+
+    private final CallQualityHistory mHistory;
+
+    public CodecPolicy(CallQualityHistory history) {
+        mHistory = history;
+    }
+
+    /**
+     * Decide how to set up the next call, the decision is counted in the history.
+     *
+     * @param network The network of the call, or null when it is not known.
+     * @param preferred The codec the user prefers.
+     * @return
+     */
+    public CodecDecision decide(NetworkKey network, Codec preferred) {
+        if (network == null) {
+            return new CodecDecision(preferred, OpusTier.MEDIUM.mBitrate,
+                    OpusTier.MEDIUM.mComplexity, 0, "unknown network");
+        }
+
+        CallQualityHistory.Record preferredRecord = mHistory.get(network, preferred);
+        CallQualityHistory.Record otherRecord = mHistory.get(network, preferred.other());
+
+        Codec codec = preferred;
+        String reason = "preferred";
+        if (isTrusted(preferredRecord) && preferredRecord.getMos() < MosEstimator.POOR_MOS) {
+            if (!isTrusted(otherRecord)) {
+                codec = preferred.other();
+                reason = "preferred is poor, trying other";
+            } else if (otherRecord.getMos() > preferredRecord.getMos() + SWITCH_MARGIN) {
+                if (mHistory.addCallWithOtherCodec(network) >= RETRY_PREFERRED_EVERY) {
+                    mHistory.resetCallsWithOtherCodec(network);
+                    reason = "retrying preferred";
+                } else {
+                    codec = preferred.other();
+                    reason = "other is better";
+                }
+            } else {
+                reason = "preferred is poor, other is not better";
+            }
+        }
+
+        OpusTier tier = decideOpusTier(network, mHistory.get(network, Codec.OPUS));
+        return new CodecDecision(codec, tier.mBitrate, tier.mComplexity,
+                expectedPacketLoss(network, mHistory.get(network, Codec.OPUS)), reason);
+    }
+
+    private static OpusTier decideOpusTier(NetworkKey network, CallQualityHistory.Record opus) {
+        OpusTier tier = initialTier(network.getType());
+        if (!isTrusted(opus)) {
+            return tier;
+        }
+
+        if (opus.getPacketLossPercentage() > HIGH_PACKET_LOSS
+                || opus.getMos() < MosEstimator.POOR_MOS) {
+            return tier.step(-1);
+        }
+        if (opus.getPacketLossPercentage() < LOW_PACKET_LOSS && opus.getMos() >= GOOD_MOS) {
+            return tier.step(1);
+        }
+        return tier;
+    }
+
+    private static OpusTier initialTier(NetworkKey.Type type) {
+        switch (type) {
+            case WIFI:
+            case LTE:
+                return OpusTier.HIGH;
+            case THREE_G:
+                return OpusTier.MEDIUM;
+            default:
+                return OpusTier.LOW;
+        }
+    }
+
+    /**
+     * The packet loss of the Opus calls on the network, or what is usual for its type.
+     */
+    private static int expectedPacketLoss(NetworkKey network, CallQualityHistory.Record opus) {
+        if (isTrusted(opus)) {
+            return (int) Math.min(MAX_EXPECTED_PACKET_LOSS,
+                    Math.round(opus.getPacketLossPercentage()));
+        }
+
+        switch (network.getType()) {
+            case WIFI:
+            case LTE:
+                return 1;
+            case THREE_G:
+                return 5;
+            default:
+                return 10;
+        }
+    }
+
+    private static boolean isTrusted(CallQualityHistory.Record record) {
+        return record != null && record.getCalls() >= MIN_CALLS;
+    }
+}
@@ -0,0 +1,152 @@
+package com.voipgrid.vialer.sip.codec;
+
+import com.voipgrid.vialer.util.ConnectivityHelper;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Identifies the network a call runs on, to keep the quality of calls per network. Mobile
+ * networks are identified by their type, WiFi networks by a hash of their SSID so the names of
+ * the networks are not stored.
+ */
+public final class NetworkKey {
+
+    public enum Type {
+        WIFI("wifi"),
+        LTE("lte"),
+        THREE_G("3g"),
+        SLOW("slow");
+
+        private final String mName;
+
+        Type(String name) {
+            mName = name;
+        }
+    }
+
+    /**
+     * The SSID Android reports when the app may not know it.
+     */
+    private static final String UNKNOWN_SSID = "<unknown ssid>";
+
+    private static final char SEPARATOR = ':';
+
+    private final Type mType;
+    private final String mSsidHash;
+
+    private NetworkKey(Type type, String ssidHash) {
+        mType = type;
+        mSsidHash = ssidHash;
+    }
+
+    public static NetworkKey of(Type type) {
+        return new NetworkKey(type, null);
+    }
+
+    /**
+     * @param ssid The SSID as reported by Android, with or without quotes.
+     * @return The key of the WiFi network, of all WiFi networks when the SSID is unknown.
+     */
+    public static NetworkKey wifi(String ssid) {
+        if (ssid != null && ssid.length() > 1 && ssid.startsWith("\"") && ssid.endsWith("\"")) {
+            ssid = ssid.substring(1, ssid.length() - 1);
+        }
+        if (ssid == null || ssid.isEmpty() || UNKNOWN_SSID.equals(ssid)) {
+            return of(Type.WIFI);
+        }
+        return new NetworkKey(Type.WIFI, hash(ssid));
+    }
+
+    /**
+     * @param connection
+     * @param ssid The SSID when connected to WiFi.
+     * @return The key of the network, or null when there is no connection.
+     */
+    public static NetworkKey fromConnection(ConnectivityHelper.Connection connection,
+            String ssid) {
+        switch (connection) {
+            case WIFI:
+                return wifi(ssid);
+            case LTE:
+                return of(Type.LTE);
+            case HSDPA:
+            case HSPAP:
+            case HSUPA:
+            case EVDO_B:
+                return of(Type.THREE_G);
+            case SLOW:
+                return of(Type.SLOW);
+            default:
+                return null;
+        }
+    }
+
+    public Type getType() {
+        return mType;
+    }
+
+    /**
+     * @return The key as stored, e.g. "lte" or "wifi:3f9a0c1b".
+     */
+    public String encode() {
+        return mSsidHash == null ? mType.mName : mType.mName + SEPARATOR + mSsidHash;
+    }
+
+    /**
+     * @param encoded
+     * @return The key, or null when the text is not an encoded key.
+     */
+    public static NetworkKey decode(String encoded) {
+        int separator = encoded.indexOf(SEPARATOR);
+        String name = separator < 0 ? encoded : encoded.substring(0, separator);
+
+        for (Type type : Type.values()) {
+            if (type.mName.equals(name)) {
+                return new NetworkKey(type, separator < 0 ? null : encoded.substring(separator + 1));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof NetworkKey)) {
+            return false;
+        }
+        NetworkKey other = (NetworkKey) o;
+        return mType == other.mType
+                && (mSsidHash == null ? other.mSsidHash == null : mSsidHash.equals(other.mSsidHash));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * mType.hashCode() + (mSsidHash == null ? 0 : mSsidHash.hashCode());
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+
+    /**
+     * The first 4 bytes of the SHA-256 of the SSID, enough to tell the networks of a user apart.
+     */
+    private static String hash(String ssid) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(ssid.getBytes("UTF-8"));
+            StringBuilder hash = new StringBuilder(8);
+            for (int i = 0; i < 4; i++) {
+                hash.append(Character.forDigit((digest[i] >> 4) & 0xf, 16))
+                        .append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return hash.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            return Integer.toHexString(ssid.hashCode());
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.voipgrid.vialer.sip.mos;
+
+import static java.lang.Math.exp;
+import static java.lang.Math.log10;
+import static java.lang.Math.pow;
+import static java.lang.Math.sqrt;
+
+/**
+ * The E-model (ITU-T G.107) that rates the transmission quality of a call as an R-factor and
+ * converts it to a Mean-Opinion-Score (MOS). The parameters of the terminals and the room are
+ * fixed when the model is created, the parts of the model that only depend on them are
+ * calculated once. The model holds no state, so one model can rate any number of calls at the
+ * same time.
+ */
+class EModel {
+
+    // Send loudness rating (dB)
+    private final double SLR = 8.0;
+
+    // Receive loudness rating (dB)
+    private final double RLR = 2.0;
+
+    // Sidetone masking rating (dB)
+    private final double STMR = 15.0;
+
+    // D-Value of telephone, send side
+    private final double Ds = 3.0;
+
+    // D-Value of telephone, receiver side
+    private final double Dr = 3.0;
+
+    // Talker echo loudness rating (ms)
+    private final double TELR = 65.0;
+
+    // Weighted echo path loss (ms)
+    private final double WEPL = 110.0;
+
+    // Number of quantization distortion units
+    private final double qdu = 1.0;
+
+    // Circuit noise referred to 0 dBr-point (dBm0p)
+    private final double Nc = -70.0;
+
+    // Noise floor at the receive side (dBm0p)
+    private final double Nfor = -64.0;
+
+    // Room noise at the send side (db(A))
+    private final double Ps = 35.0;
+
+    // Room noise at the receive side (db(A))
+    private final double Pr = 35.0;
+
+    // Listener sidetone rating (dB)
+    private final double LSTR = Dr + STMR;
+    private final double OLR = SLR + RLR;
+
+    // The total noise power (No) and the basic signal-to-noise ratio (Ro).
+    private final double No;
+    private final double Ro;
+
+    // The impairments of the quantization (Iq) and of a too loud connection (Iolr).
+    private final double Iq;
+    private final double Iolr;
+
+    EModel() {
+        No = calculateNoise();
+        Ro = 15.0 - 1.5 * (SLR + No);
+        Iq = calculateQuantizationImpairment();
+        Iolr = calculateLoudnessImpairment();
+    }
+
+    /**
+     * Rate a call.
+     *
+     * @param codec The codec of the audio stream.
+     * @param jitterMillis The jitter of both directions together.
+     * @param roundTripMillis
+     * @param packetLossPercentage The loss of both directions together.
+     * @param burstRatio How bursty the loss is, 1 for random loss.
+     * @return The MOS between 1 and 4.5, or 0 when the call is not rated.
+     */
+    double calculateMos(CodecValues.CodecValue codec, double jitterMillis,
+            double roundTripMillis, double packetLossPercentage, double burstRatio) {
+        return toMos(calculateRFactor(codec, jitterMillis, roundTripMillis, packetLossPercentage,
+                burstRatio));
+    }
+
+    /**
+     * Calculate the R-factor of a call, R = Ro - Is - Id - Ie. The delays are based on the The
+     * Prognosis model.
+     */
+    double calculateRFactor(CodecValues.CodecValue codec, double jitterMillis,
+            double roundTripMillis, double packetLossPercentage, double burstRatio) {
+        double packetSize = codec.getPacketSize();
+        double frameSize = codec.getFrameSize();
+        double codecVariant = 5;
+
+        double Towtd = roundTripMillis / 2.0;
+        double Tenc = (packetSize + 0.2f * frameSize) + codecVariant;
+        double Tdec = frameSize + jitterMillis;
+
+        // Mean one-way delay of the echo path (T), round-trip delay in a 4-wire loop (Tr) and
+        // absolute delay in echo-free connections (Ta), all in ms.
+        double T = Tenc + Towtd + Tdec;
+        double Tr = Tenc + 2 * Towtd + Tdec;
+        double Ta = Tenc + Towtd + Tdec;
+
+        double Ist = calculateSidetoneImpairment(T);
+        double Is = Iolr + Ist + Iq;
+        double Id = calculateDelayImpairmentFactor(T, Tr, Ta, Ist);
+        double Ie = calculateEquipmentImpairment(codec, packetLossPercentage, burstRatio);
+
+        return Ro - Is - Id - Ie;
+    }
+
+    static double toMos(double R) {
+        if (R > 100) {
+            return 4.5;
+        }
+        if (R > 0) {
+            return 1 + R * 0.035 + R * (R - 60.0) * (100.0 - R) * 7.0 * pow(10.0, -6.0);
+        }
+        return 0.0;
+    }
+
+    /**
+     * Calculate the total noise power, No.
+     */
+    private double calculateNoise() {
+        double Nfo = Nfor + RLR;
+
+        double Nos = Ps - SLR - Ds - 100.0f + 0.004 * pow((Ps - OLR - Ds - 14.0), 2.0);
+        double Pre = Pr + 10 * log10(1.0 + pow(10.0, ((10.0 - LSTR) / 10.0f))) / log10(10.0);
+        double Nor = RLR - 121.0 + Pre + 0.008 * pow(Pre - 35.0, 2.0);
+        return 10 * log10(
+                pow(10, (Nc / 10.0)) +
+                        pow(10, (Nos / 10.0)) +
+                        pow(10, (Nor / 10.0)) +
+                        pow(10, (Nfo / 10.0))
+        );
+    }
+
+    /**
+     * Calculate the quantization impairment, Iq, part of the simultaneous impairments.
+     */
+    private double calculateQuantizationImpairment() {
+        double Q;
+        if (qdu < 1.0) {
+            Q = 37.0 - 15.0 * log10(1.0) / log10(10.0);
+        } else {
+            Q = 37.0 - 15.0 * log10(qdu) / log10(10.0);
+        }
+        double G = 1.07 + 0.258 * Q + 0.0602 * pow(Q, 2);
+        double Z = 46.0 / 30.0 - G / 40.0;
+        double Y = (Ro - 100.0) / 15.0 + 46.0 / 8.4 - G / 9.0;
+        return 15.0 * log10(1 + pow(10, Y) + pow(10, Z));
+    }
+
+    /**
+     * Calculate the impairment of a too loud connection, Iolr, part of the simultaneous
+     * impairments.
+     */
+    private double calculateLoudnessImpairment() {
+        double Xolr = OLR + 0.2 * (64.0 + No - RLR);
+        return 20 * (pow( 1 + pow(Xolr / 8.0, 8.0), 1.0 / 8.0) - Xolr / 8);
+    }
+
+    /**
+     * Calculate the impairment of a non-optimum sidetone, Ist, part of the simultaneous
+     * impairments. It depends on the delay of the echo.
+     */
+    private double calculateSidetoneImpairment(double T) {
+        double STMRo = -10 * log10(pow(10, -STMR / 10.0) + exp(-T / 4.0) * pow(10, -TELR / 10.0));
+        return 12 * pow( 1 + pow( (STMRo - 13.0) / 6.0, 8), 1.0 / 8.0) -28 * pow( 1 + pow( (STMRo + 1) / 19.4, 35), 1.0 / 35.0) -13 * pow( 1 + pow( (STMRo - 3) / 33.0, 13), 1.0 / 13.0) + 29;
+    }
+
+    /**
+     * Calculate the delay impairment factor, Id.
+     *
+     * Representing all the impairments due to delay of voice signals.
+     */
+    private double calculateDelayImpairmentFactor(double T, double Tr, double Ta, double Ist) {
+        double Rle = 10.5 * (WEPL + 7) * pow(Tr + 1, -0.25);
+        double X;
+
+        if (Ta == 0.0) {
+            X = 0.0;
+        } else {
+            X = log10(Ta / 100.0) / log10(2);
+        }
+
+        double Idd;
+        if (Ta <= 100.0) {
+            Idd = 0;
+        } else {
+            Idd = 25.0f * (pow(1.0f + pow(X, 6.0f), 1.0f / 6.0f ) -3.0f * pow(1.0f + pow(X / 3.0f, 6.0f), 1.0f / 6.0f) + 2.0f);
+        }
+
+        double Idle = (Ro - Rle) / 2.0f + sqrt((pow(Ro - Rle, 2.0f) / 4.0f) + 169);
+        double TERV = TELR - 40.0f * log10((1.0f + T / 10.0f) / (1.0f + T / 150.0f)) + 6.0f * exp( -0.3f * pow(T, 2));
+        double TERVs = TERV + (Ist / 2);
+        double Roe = -1.5 * (No - RLR);
+
+        double Re;
+        if (STMR < 9.0f) {
+            Re = 80 + 2.5 * (TERVs - 14);
+        } else {
+            Re = 80 + 2.5 * (TERV - 14);
+        }
+
+        double Idte;
+
+        if (T < 1.0) {
+            Idte = 0.0;
+        } else {
+            Idte = ((Roe - Re) / 2.0 + sqrt(pow(Roe - Re, 2) / 4.0f + 100.0) - 1.0) * (1.0 - exp(-T));
+        }
+
+        if (STMR > 20.0f) {
+            double Idtes = sqrt((pow(Idte, 2)) + (pow(Ist, 2)));
+            return Idtes + Idle + Idd;
+        }
+        return Idte + Idle + Idd;
+    }
+
+    /**
+     * Calculate the equipment impairment factor, Ie, from the impairment of the codec and the
+     * packet loss.
+     */
+    private double calculateEquipmentImpairment(CodecValues.CodecValue codec,
+            double packetLossPercentage, double burstRatio) {
+        double codecImpairment = codec.getImpairment();
+        double bpl = codec.getBpl();
+        double ppl = packetLossPercentage;
+        return codecImpairment + (95 - codecImpairment) * (ppl / (ppl / burstRatio + bpl));
+    }
+}
@@ -0,0 +1,242 @@
+package com.voipgrid.vialer.sip.mos;
+
+import org.pjsip.pjsua2.RtcpStat;
+import org.pjsip.pjsua2.RtcpStreamStat;
+import org.pjsip.pjsua2.StreamInfo;
+import org.pjsip.pjsua2.StreamStat;
+
+/**
+ * Estimates the Mean-Opinion-Score (MOS) of a call continuously, over a sliding window of the
+ * most recent samples of the stream statistics. The packet loss is the loss between the oldest
+ * and the newest sample in the window, the jitter, round trip time and burst ratio are the
+ * averages of the samples in the window. The estimate is updated with every sample, so a
+ * degrading call is noticed while it is still going on.
+ *
+ * The samples are kept in fixed arrays, adding a sample does not allocate.
+ */
+public class MosEstimator {
+
+    public static final int DEFAULT_WINDOW_SIZE = 10;
+
+    /**
+     * Below this MOS many users are dissatisfied with the quality of the call.
+     */
+    public static final double POOR_MOS = 3.1;
+
+    private static final EModel sEModel = new EModel();
+
+    private final EModel mEModel;
+    private final int mWindowSize;
+
+    // The cumulative counters of every sample, with the counters before the first sample.
+    private final long[] mRxPackets;
+    private final long[] mRxLost;
+    private final long[] mTxPackets;
+    private final long[] mTxLost;
+
+    private final double[] mJitterMillis;
+    private final double[] mRoundTripMillis;
+    private final double[] mBurstRatio;
+
+    // The samples in the window since the start of the call or the last reset.
+    private int mWindowSamples;
+    private boolean mBaselinePending;
+
+    private int mSamples;
+    private double mMos;
+    private double mPacketLossPercentage;
+    private double mAverageJitterMillis;
+    private double mAverageRoundTripMillis;
+    private double mMosSum;
+
+    public MosEstimator() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize The number of samples the estimate is based on.
+     */
+    public MosEstimator(int windowSize) {
+        this(sEModel, windowSize);
+    }
+
+    MosEstimator(EModel eModel, int windowSize) {
+        mEModel = eModel;
+        mWindowSize = windowSize;
+        mRxPackets = new long[windowSize + 1];
+        mRxLost = new long[windowSize + 1];
+        mTxPackets = new long[windowSize + 1];
+        mTxLost = new long[windowSize + 1];
+        mJitterMillis = new double[windowSize];
+        mRoundTripMillis = new double[windowSize];
+        mBurstRatio = new double[windowSize];
+    }
+
+    /**
+     * Add a sample of the statistics of the audio stream of a call.
+     *
+     * @param streamStat
+     * @param streamInfo
+     * @return FALSE when the codec of the stream is not known and the sample is ignored.
+     */
+    public boolean addSample(StreamStat streamStat, StreamInfo streamInfo) {
+        CodecValues.CodecValue codec = CodecValues.getCodecValue(streamInfo);
+        if (codec == null) {
+            return false;
+        }
+
+        RtcpStat rtcpStat = streamStat.getRtcp();
+        RtcpStreamStat rxStat = rtcpStat.getRxStat();
+        RtcpStreamStat txStat = rtcpStat.getTxStat();
+
+        addSample(codec, rxStat.getPkt(), rxStat.getLoss(), txStat.getPkt(), txStat.getLoss(),
+                rxStat.getJitterUsec().getLast() / 1000.0
+                        + txStat.getJitterUsec().getLast() / 1000.0,
+                rtcpStat.getRttUsec().getLast() / 1000.0,
+                streamStat.getJbuf().getAvgBurst());
+        return true;
+    }
+
+    /**
+     * Add a sample and update the estimate.
+     *
+     * @param codec
+     * @param rxPackets The number of packets received since the start of the call.
+     * @param rxLost The number of received packets that were lost since the start of the call.
+     * @param txPackets The number of packets sent since the start of the call.
+     * @param txLost The number of sent packets that were lost since the start of the call.
+     * @param jitterMillis The current jitter of both directions together.
+     * @param roundTripMillis The current round trip time.
+     * @param burstRatio How bursty the loss is, 1 or less for random loss.
+     */
+    synchronized void addSample(CodecValues.CodecValue codec, long rxPackets, long rxLost,
+            long txPackets, long txLost, double jitterMillis, double roundTripMillis,
+            double burstRatio) {
+        if (mBaselinePending) {
+            // The counters after a reset are where the new window starts.
+            mBaselinePending = false;
+            mWindowSamples = 0;
+            setCounters(0, rxPackets, rxLost, txPackets, txLost);
+            return;
+        }
+
+        mSamples++;
+        mWindowSamples++;
+
+        setCounters(mWindowSamples % (mWindowSize + 1), rxPackets, rxLost, txPackets, txLost);
+
+        int values = (mWindowSamples - 1) % mWindowSize;
+        mJitterMillis[values] = jitterMillis;
+        mRoundTripMillis[values] = roundTripMillis;
+        mBurstRatio[values] = Math.max(1, burstRatio);
+
+        int window = Math.min(mWindowSamples, mWindowSize);
+        int oldest = (mWindowSamples - window) % (mWindowSize + 1);
+
+        mPacketLossPercentage = lossPercentage(rxPackets - mRxPackets[oldest],
+                rxLost - mRxLost[oldest])
+                + lossPercentage(txPackets - mTxPackets[oldest], txLost - mTxLost[oldest]);
+        mAverageJitterMillis = average(mJitterMillis, window);
+        mAverageRoundTripMillis = average(mRoundTripMillis, window);
+
+        mMos = mEModel.calculateMos(codec, mAverageJitterMillis, mAverageRoundTripMillis,
+                mPacketLossPercentage, average(mBurstRatio, window));
+        mMosSum += mMos;
+    }
+
+    /**
+     * Start a new window, e.g. when a call is resumed after it was on hold. The next sample
+     * only marks the start of the window, the samples after it are rated. The average MOS of
+     * the call keeps the samples before the reset.
+     */
+    public synchronized void resetWindow() {
+        mBaselinePending = true;
+        mMos = 0;
+        mPacketLossPercentage = 0;
+        mAverageJitterMillis = 0;
+        mAverageRoundTripMillis = 0;
+    }
+
+    /**
+     * @return The number of samples that were rated.
+     */
+    public synchronized int getSampleCount() {
+        return mSamples;
+    }
+
+    /**
+     * @return TRUE when there is an estimate, after the first sample of a known codec.
+     */
+    public synchronized boolean hasEstimate() {
+        return mMos > 0;
+    }
+
+    /**
+     * @return The MOS over the window between 1 and 4.5, or 0 when there is no estimate.
+     */
+    public synchronized double getMos() {
+        return mMos;
+    }
+
+    /**
+     * @return The average of the estimates of all samples, the MOS of the call so far.
+     */
+    public synchronized double getAverageMos() {
+        return mSamples == 0 ? 0 : mMosSum / mSamples;
+    }
+
+    /**
+     * @return The packet loss of both directions together since the start of the call.
+     */
+    public synchronized double getCallPacketLossPercentage() {
+        if (mSamples == 0) {
+            return 0;
+        }
+
+        int latest = mWindowSamples % (mWindowSize + 1);
+        return lossPercentage(mRxPackets[latest], mRxLost[latest])
+                + lossPercentage(mTxPackets[latest], mTxLost[latest]);
+    }
+
+    /**
+     * @return The packet loss of both directions together over the window.
+     */
+    public synchronized double getPacketLossPercentage() {
+        return mPacketLossPercentage;
+    }
+
+    public synchronized double getJitterMillis() {
+        return mAverageJitterMillis;
+    }
+
+    public synchronized double getRoundTripMillis() {
+        return mAverageRoundTripMillis;
+    }
+
+    private void setCounters(int index, long rxPackets, long rxLost, long txPackets,
+            long txLost) {
+        mRxPackets[index] = rxPackets;
+        mRxLost[index] = rxLost;
+        mTxPackets[index] = txPackets;
+        mTxLost[index] = txLost;
+    }
+
+    /**
+     * A direction where no packets were expected has no loss, e.g. while the other side sends
+     * no audio. When packets were expected but none arrived, all of them are lost.
+     */
+    private static double lossPercentage(long packets, long lost) {
+        if (packets <= 0) {
+            return lost > 0 ? 100.0 : 0;
+        }
+        return ((double) lost / packets) * 100.0f;
+    }
+
+    private static double average(double[] values, int count) {
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += values[i];
+        }
+        return sum / count;
+    }
+}
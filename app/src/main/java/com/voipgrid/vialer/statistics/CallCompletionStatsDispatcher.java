@@ -11,7 +11,7 @@ public class CallCompletionStatsDispatcher {
      * @param call
      */
     public void callDidComplete(SipCall call) {
-        PacketStats callPacketStats = call.getMediaPacketStats();
+        PacketStats callPacketStats = call.getLastMediaPacketStats();
 
         if (callPacketStats == null) {
             return;
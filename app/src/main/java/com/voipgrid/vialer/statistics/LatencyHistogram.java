@@ -0,0 +1,153 @@
+package com.voipgrid.vialer.statistics;
+
+import java.util.Locale;
+
+/**
+ * Histogram of latencies in milliseconds with a fixed relative precision, in the style of an HDR
+ * histogram. Latencies below {@link #SUB_BUCKETS} milliseconds are counted exactly, above that
+ * every power of two is split into {@link #SUB_BUCKETS} / 2 buckets, so the error is at most
+ * about 6%. Latencies above {@link #MAX_LATENCY_MILLIS} are counted as the maximum.
+ *
+ * The histogram only holds counts, so it can be kept for as long as the app is installed and
+ * stored as a single preference.
+ */
+public class LatencyHistogram {
+
+    static final int SUB_BUCKETS = 32;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int SUB_BUCKET_BITS = 5;
+
+    static final long MAX_LATENCY_MILLIS = (1 << 17) - 1;
+
+    private static final int BUCKETS = indexOf(MAX_LATENCY_MILLIS) + 1;
+
+    private static final char RECORD_SEPARATOR = ',';
+    private static final char FIELD_SEPARATOR = ':';
+
+    private final long[] mCounts = new long[BUCKETS];
+    private long mTotalCount;
+    private long mMaxMillis;
+
+    /**
+     * Count a latency.
+     *
+     * @param latencyMillis
+     */
+    public synchronized void record(long latencyMillis) {
+        long latency = Math.max(0, Math.min(MAX_LATENCY_MILLIS, latencyMillis));
+        mCounts[indexOf(latency)]++;
+        mTotalCount++;
+        mMaxMillis = Math.max(mMaxMillis, latency);
+    }
+
+    public synchronized long getTotalCount() {
+        return mTotalCount;
+    }
+
+    public synchronized long getMaxMillis() {
+        return mMaxMillis;
+    }
+
+    /**
+     * @param percentile Between 0 and 100, e.g. 99 for the latency 99% of the calls stay under.
+     * @return The highest latency in the bucket of the percentile, or 0 when nothing is counted.
+     */
+    public synchronized long getValueAtPercentile(double percentile) {
+        if (mTotalCount == 0) {
+            return 0;
+        }
+
+        long countAtPercentile = Math.max(1,
+                (long) Math.ceil(Math.min(100, percentile) / 100 * mTotalCount));
+        long count = 0;
+        for (int index = 0; index < BUCKETS; index++) {
+            count += mCounts[index];
+            if (count >= countAtPercentile) {
+                return Math.min(mMaxMillis, highestValueOf(index));
+            }
+        }
+        return mMaxMillis;
+    }
+
+    /**
+     * @return The median and the tail, e.g. "p50 850ms, p90 1210ms, p99 2300ms, max 2410ms (40)".
+     */
+    public synchronized String summarize() {
+        return String.format(Locale.US, "p50 %dms, p90 %dms, p99 %dms, max %dms (%d)",
+                getValueAtPercentile(50), getValueAtPercentile(90), getValueAtPercentile(99),
+                mMaxMillis, mTotalCount);
+    }
+
+    /**
+     * @return The buckets that have counts, e.g. "12:3,40:1", and the maximum as bucket -1.
+     */
+    public synchronized String encode() {
+        StringBuilder encoded = new StringBuilder();
+        encoded.append(-1).append(FIELD_SEPARATOR).append(mMaxMillis);
+        for (int index = 0; index < BUCKETS; index++) {
+            if (mCounts[index] > 0) {
+                encoded.append(RECORD_SEPARATOR).append(index).append(FIELD_SEPARATOR)
+                        .append(mCounts[index]);
+            }
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Read a histogram from text, buckets that can not be read are skipped.
+     *
+     * @param encoded The text from {@link #encode()}, or null.
+     * @return
+     */
+    public static LatencyHistogram decode(String encoded) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        if (encoded == null || encoded.isEmpty()) {
+            return histogram;
+        }
+
+        for (String bucket : encoded.split(String.valueOf(RECORD_SEPARATOR))) {
+            int separator = bucket.indexOf(FIELD_SEPARATOR);
+            if (separator < 0) {
+                continue;
+            }
+
+            try {
+                int index = Integer.parseInt(bucket.substring(0, separator));
+                long value = Long.parseLong(bucket.substring(separator + 1));
+                if (index == -1) {
+                    histogram.mMaxMillis = Math.max(0, Math.min(MAX_LATENCY_MILLIS, value));
+                } else if (index >= 0 && index < BUCKETS && value > 0) {
+                    histogram.mCounts[index] = value;
+                    histogram.mTotalCount += value;
+                }
+            } catch (NumberFormatException e) {
+                // Skip the bucket.
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Latencies below {@link #SUB_BUCKETS} have a bucket each, above that the bucket is found
+     * from the highest bit and the {@link #SUB_BUCKET_BITS} - 1 bits below it.
+     */
+    static int indexOf(long latency) {
+        if (latency < SUB_BUCKETS) {
+            return (int) latency;
+        }
+
+        int shift = (63 - Long.numberOfLeadingZeros(latency)) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS
+                + (int) ((latency >> shift) - HALF_SUB_BUCKETS);
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -5,9 +5,6 @@ import android.database.Cursor;
 import android.database.MatrixCursor;
 import android.provider.ContactsContract;
 import androidx.loader.content.AsyncTaskLoader;
-import android.util.Base64;
-
-import com.voipgrid.vialer.logging.Logger;
 
 import java.util.List;
 
@@ -64,41 +61,17 @@ public class ContactCursorLoader extends AsyncTaskLoader<Cursor> {
             else {
                 label = ContactsContract.CommonDataKinds.Phone.getTypeLabel(mContext.getResources(), type, "").toString();
             }
-            addResult = false;
-
             if (mT9Query.length() != 0) {
-                // Only allowed T9 chars for name matching.
-                if (mT9Query.substring(0, 1).matches("[2-9]")) {
-                    if (T9NameMatcher.T9QueryMatchesName(mT9Query, displayName)) {
-                        addResult = true;
-                        try {
-                            displayName = T9NameMatcher.highlightMatchedPart(mT9Query, displayName);
-                        } catch (Exception e) {
-                            // TODO: Remove this piece of code if we find the bug. Until then
-                            // force remote logging.
-                            Logger logger = new Logger(ContactCursorLoader.class).forceRemoteLogging(true);
-                            logger.e(e.getClass().getSimpleName());
-                            logger.e("QUERY: " + mT9Query);
-                            logger.e("DISPLAYNAME: " + displayName);
-                            // Log displayname B64 encoded in case of formatting done by our logging.
-                            logger.e("ENCODED DISPLAYNAME: " + Base64.encodeToString(displayName.getBytes(), 0));
-                            // Displayname will be shown without highlighting.
-                        }
-                    }
+                addResult = match.hasNameMatch() || match.hasNumberMatch();
+
+                if (match.hasNameMatch()) {
+                    displayName = T9NameMatcher.highlight(displayName,
+                            match.getNameMatchStart(), match.getNameMatchEnd());
                 }
 
-                if (number != null) {
-                    if (number.startsWith("+") && number.length() >= 3) {
-                        if(("0" + number.substring(3)).startsWith(mT9Query)) {
-                            addResult = true;
-                            number = "<b>" + number.substring(0, mT9Query.length() + 2) + "</b>" + number.substring(mT9Query.length() + 2);
-                        }
-                    }
-
-                    if (number.startsWith(mT9Query)) {
-                        addResult = true;
-                        number = "<b>" + number.substring(0, mT9Query.length()) + "</b>" + number.substring(mT9Query.length());
-                    }
+                if (match.hasNumberMatch()) {
+                    number = T9NameMatcher.highlight(number,
+                            match.getNumberMatchStart(), match.getNumberMatchEnd());
                 }
             } else {
                 // No query so add all 20 results.
@@ -156,10 +129,15 @@ public class ContactCursorLoader extends AsyncTaskLoader<Cursor> {
             return null;
         }
 
-        // Setup database handler.
-        T9DatabaseHelper t9Database = new T9DatabaseHelper(mContext);
+        List<T9Match> matches;
+        T9SearchEngine searchEngine = T9SearchEngine.getInstance();
 
-        List<T9Match> matches = t9Database.getT9Matches(mT9Query);
+        if (searchEngine.isLoaded()) {
+            matches = searchEngine.getT9Matches(mT9Query);
+        } else {
+            // Index is not loaded yet, fall back to the database.
+            matches = new T9DatabaseHelper(mContext).getT9Matches(mT9Query);
+        }
 
         // Populate a new cursor that is UI friendly.
         populateMatrixCursor(matches);
@@ -0,0 +1,287 @@
+package com.voipgrid.vialer.t9;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.voipgrid.vialer.contacts.SyncContact;
+import com.voipgrid.vialer.contacts.SyncContactNumber;
+import com.voipgrid.vialer.t9.T9DatabaseHelper.T9ContactColumns;
+import com.voipgrid.vialer.t9.T9DatabaseHelper.T9QueryColumns;
+import com.voipgrid.vialer.t9.T9DatabaseHelper.Tables;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes synced contacts to the t9 database in batches. All batches share one writable
+ * connection and the same compiled statements, every batch is written in a single transaction.
+ * Only the rows of the added and removed contacts are touched.
+ */
+public class T9BatchWriter {
+
+    /**
+     * SQLite allows at most 999 bind arguments per statement, the deletes of a batch bind one
+     * argument per contact.
+     */
+    public static final int MAX_BATCH_SIZE = 500;
+
+    private final SQLiteDatabase mDb;
+    private final int mBatchSize;
+
+    private final SQLiteStatement mContactInsert;
+    private final SQLiteStatement mQueryInsert;
+
+    private final List<SyncContact> mPending = new ArrayList<>();
+    private final List<Long> mPendingRemovals = new ArrayList<>();
+    private final Set<Long> mChangedContactIds = new HashSet<>();
+    private final List<Runnable> mSearchIndexUpdates = new ArrayList<>();
+    private boolean mRemoveAll;
+
+    private T9SearchEngine.Builder mSearchIndexBuilder;
+
+    T9BatchWriter(SQLiteDatabase db, int batchSize) {
+        mDb = db;
+        mBatchSize = Math.max(1, Math.min(batchSize, MAX_BATCH_SIZE));
+
+        mContactInsert = db.compileStatement("INSERT INTO " + Tables.T9_CONTACT + " (" +
+                T9ContactColumns.DATA_ID + ", " +        // 1
+                T9ContactColumns.CONTACT_ID + ", " +     // 2
+                T9ContactColumns.LOOKUP_KEY + ", " +     // 3
+                T9ContactColumns.DISPLAY_NAME + ", " +   // 4
+                T9ContactColumns.THUMBNAIL_URI + ", " +  // 5
+                T9ContactColumns.NUMBER + "," +          // 6
+                T9ContactColumns.TYPE + ", " +           // 7
+                T9ContactColumns.LABEL  + ") " +         // 8
+                " VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+
+        mQueryInsert = db.compileStatement("INSERT INTO " + Tables.T9_QUERY + " (" +
+                T9QueryColumns.CONTACT_ID + ", " +  // 1
+                T9QueryColumns.T9_QUERY + ", " +    // 2
+                T9QueryColumns.SORT_KEY + ") " +    // 3
+                " VALUES (?, ?, ?)");
+    }
+
+    /**
+     * Also add every written row to the builder, so the changes can be applied to the search
+     * index without reading the database again. The rows of a batch are added once its
+     * transaction is committed.
+     *
+     * @param builder
+     * @return this To allow method chaining.
+     */
+    public T9BatchWriter setSearchIndexBuilder(T9SearchEngine.Builder builder) {
+        mSearchIndexBuilder = builder;
+        return this;
+    }
+
+    /**
+     * Queue a contact to replace its current entries in the t9 database. The batch is written
+     * when it is full.
+     *
+     * @param syncContact Contact to be synced.
+     */
+    public void add(SyncContact syncContact) {
+        mPending.add(syncContact);
+        mChangedContactIds.add(syncContact.getContactId());
+
+        flushIfFull();
+    }
+
+    /**
+     * Queue a contact to be removed from the t9 database.
+     *
+     * @param contactId Id of the removed contact.
+     */
+    public void remove(long contactId) {
+        mPendingRemovals.add(contactId);
+        mChangedContactIds.add(contactId);
+
+        flushIfFull();
+    }
+
+    /**
+     * Remove all entries from the t9 database in the transaction of the first batch, so a
+     * search never sees the database empty. Until the last batch is written a search only
+     * finds the contacts of the batches written so far.
+     */
+    public void removeAll() {
+        mRemoveAll = true;
+    }
+
+    /**
+     * @return The ids of all contacts that were added or removed.
+     */
+    public Set<Long> getChangedContactIds() {
+        return mChangedContactIds;
+    }
+
+    /**
+     * Write all queued contacts in one transaction. When the transaction fails the contacts stay
+     * queued and the exception is thrown to the caller.
+     */
+    public void flush() {
+        if (mPending.isEmpty() && mPendingRemovals.isEmpty() && !mRemoveAll) {
+            return;
+        }
+
+        mSearchIndexUpdates.clear();
+        mDb.beginTransaction();
+        try {
+            if (mRemoveAll) {
+                mDb.delete(Tables.T9_CONTACT, null, null);
+                mDb.delete(Tables.T9_QUERY, null, null);
+            } else {
+                List<Long> removals = new ArrayList<>(mPendingRemovals);
+                for (SyncContact syncContact : mPending) {
+                    removals.add(syncContact.getContactId());
+                }
+                removeContactEntries(removals);
+            }
+
+            for (SyncContact syncContact : mPending) {
+                insertPhoneNumberQueries(syncContact);
+                insertDisplayNameQueries(syncContact);
+            }
+
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+
+        // The batch is committed, only now its rows may end up in the search index.
+        for (Runnable update : mSearchIndexUpdates) {
+            update.run();
+        }
+        mSearchIndexUpdates.clear();
+        mRemoveAll = false;
+        mPending.clear();
+        mPendingRemovals.clear();
+    }
+
+    private void flushIfFull() {
+        if (mPending.size() + mPendingRemovals.size() >= mBatchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Write the remaining contacts and release the statements and the connection.
+     */
+    public void close() {
+        try {
+            flush();
+        } finally {
+            mContactInsert.close();
+            mQueryInsert.close();
+            mDb.close();
+        }
+    }
+
+    /**
+     * Remove all entries for the given contacts.
+     *
+     * @param contactIds Ids of the contacts to remove.
+     */
+    private void removeContactEntries(List<Long> contactIds) {
+        if (contactIds.isEmpty()) {
+            return;
+        }
+
+        String[] args = new String[contactIds.size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = Long.toString(contactIds.get(i));
+        }
+        String contactIdsIn = " IN (" + placeholders(args.length) + ")";
+
+        mDb.delete(Tables.T9_CONTACT, T9ContactColumns.CONTACT_ID + contactIdsIn, args);
+        mDb.delete(Tables.T9_QUERY, T9QueryColumns.CONTACT_ID + contactIdsIn, args);
+    }
+
+    /**
+     * Function for inserting the contact records and T9 queries for phone numbers.
+     *
+     * @param syncContact Contact with phone numbers.
+     */
+    private void insertPhoneNumberQueries(SyncContact syncContact) {
+        List<SyncContactNumber> numbers = syncContact.getNumbers();
+
+        SyncContactNumber number;
+        ArrayList<String> numberQueries;
+
+        for (int i = 0; i < numbers.size(); i++) {
+            number = numbers.get(i);
+
+            // Insert contact record for number.
+            mContactInsert.bindLong(1, number.getDataId());
+            mContactInsert.bindLong(2, syncContact.getContactId());
+            if (syncContact.getLookupKey() != null) {
+                mContactInsert.bindString(3, syncContact.getLookupKey());
+            }
+            mContactInsert.bindString(4, syncContact.getDisplayName());
+            if (syncContact.getThumbnailUri() != null) {
+                mContactInsert.bindString(5, syncContact.getThumbnailUri());
+            }
+            mContactInsert.bindString(6, number.getNumber());
+            mContactInsert.bindLong(7, number.getType());
+            if (number.getLabel() != null) {
+                mContactInsert.bindString(8, number.getLabel());
+            }
+            mContactInsert.executeInsert();
+            mContactInsert.clearBindings();
+
+            if (mSearchIndexBuilder != null) {
+                SyncContactNumber written = number;
+                mSearchIndexUpdates.add(() -> mSearchIndexBuilder.addContactNumber(
+                        syncContact.getContactId(), syncContact.getLookupKey(),
+                        syncContact.getDisplayName(), syncContact.getThumbnailUri(),
+                        written.getNumber(), written.getType(), written.getLabel()));
+            }
+
+            // Insert queries for phone numbers.
+            numberQueries = T9Query.generateT9NumberQueries(number.getNumber());
+
+            for (int j = 0; j < numberQueries.size(); j++) {
+                insertQuery(syncContact, numberQueries.get(j));
+            }
+        }
+    }
+
+    /**
+     * Function for inserting T9 queries for the contacts name.
+     *
+     * @param syncContact The contact with a name.
+     */
+    private void insertDisplayNameQueries(SyncContact syncContact) {
+        // Computes a list of prefixes of a given contact name.
+        ArrayList<String> nameQueries = T9Query.generateT9NameQueries(syncContact.getDisplayName());
+
+        for (int i = 0; i < nameQueries.size(); i++) {
+            insertQuery(syncContact, nameQueries.get(i));
+        }
+    }
+
+    private void insertQuery(SyncContact syncContact, String query) {
+        mQueryInsert.bindLong(1, syncContact.getContactId());
+        mQueryInsert.bindString(2, query);
+        if (syncContact.getDisplayName() != null) {
+            mQueryInsert.bindString(3, syncContact.getDisplayName());
+        }
+        mQueryInsert.executeInsert();
+        mQueryInsert.clearBindings();
+
+        if (mSearchIndexBuilder != null) {
+            mSearchIndexUpdates.add(
+                    () -> mSearchIndexBuilder.addQuery(syncContact.getContactId(), query));
+        }
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        return placeholders.toString();
+    }
+}
@@ -4,11 +4,8 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-import android.database.sqlite.SQLiteStatement;
 import android.provider.BaseColumns;
 
-import com.voipgrid.vialer.contacts.SyncContact;
-import com.voipgrid.vialer.contacts.SyncContactNumber;
 import com.voipgrid.vialer.contacts.SyncUtils;
 
 import java.util.ArrayList;
@@ -18,7 +15,7 @@ import java.util.List;
  * Helper class for accessing the t9 contact database.
  */
 public class T9DatabaseHelper extends SQLiteOpenHelper {
-    public static final int DATABASE_VERSION = 2;
+    public static final int DATABASE_VERSION = 3;
     public static final String DATABASE_NAME = "t9.db";
 
     private static final int MAX_RESULTS = 20;
@@ -58,8 +55,36 @@ public class T9DatabaseHelper extends SQLiteOpenHelper {
     public interface T9QueryColumns extends BaseColumns {
         String T9_QUERY = "t9_query";
         String CONTACT_ID = "contact_id";
+        /**
+         * Copy of the display name of the contact, so the matches can be sorted without
+         * reading the t9_contact table.
+         */
+        String SORT_KEY = "sort_key";
     }
 
+    /**
+     * Finds the first 20 contacts with a t9 query in the range [?, ?) and returns their
+     * numbers. The range scan and the sort only read the t9_query_index.
+     */
+    static final String MATCHES_QUERY = "SELECT " +
+            "c." + T9ContactColumns.CONTACT_ID + ", " +     // 0
+            "c." + T9ContactColumns.LOOKUP_KEY + ", " +     // 1
+            "c." + T9ContactColumns.DISPLAY_NAME + ", " +   // 2
+            "c." + T9ContactColumns.THUMBNAIL_URI + ", " +  // 3
+            "c." + T9ContactColumns.NUMBER + ", " +         // 4
+            "c." + T9ContactColumns.TYPE + ", " +           // 5
+            "c." + T9ContactColumns.LABEL +                 // 6
+            " FROM (SELECT DISTINCT " +
+                    T9QueryColumns.SORT_KEY + ", " + T9QueryColumns.CONTACT_ID +
+                    " FROM " + Tables.T9_QUERY +
+                    " WHERE " + T9QueryColumns.T9_QUERY + " >= ?" +
+                    " AND " + T9QueryColumns.T9_QUERY + " < ?" +
+                    " ORDER BY " + T9QueryColumns.SORT_KEY + ", " + T9QueryColumns.CONTACT_ID +
+                    " LIMIT " + MAX_RESULTS + ") q" +
+            " JOIN " + Tables.T9_CONTACT + " c" +
+            " ON c." + T9ContactColumns.CONTACT_ID + " = q." + T9QueryColumns.CONTACT_ID +
+            " ORDER BY q." + T9QueryColumns.SORT_KEY + ", q." + T9QueryColumns.CONTACT_ID;
+
     @Override
     public void onCreate(SQLiteDatabase db) {
         setupTables(db);
@@ -67,6 +92,11 @@ public class T9DatabaseHelper extends SQLiteOpenHelper {
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion == 2 && newVersion == 3) {
+            upgradeToVersion3(db);
+            return;
+        }
+
         // Data is re-creatable so it is safe to drop the db on an upgrade.
         dropTables(db);
         onCreate(db);
@@ -97,26 +127,61 @@ public class T9DatabaseHelper extends SQLiteOpenHelper {
                 T9ContactColumns.LABEL + " TEXT" +
                 ");");
 
-        db.execSQL("CREATE TABLE " + Tables.T9_QUERY + " (" +
-                T9QueryColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
-                T9QueryColumns.T9_QUERY + " TEXT COLLATE NOCASE, " +
-                T9QueryColumns.CONTACT_ID + " INTEGER" +
-                ");");
-
+        createQueryTable(db);
 
         db.execSQL("CREATE INDEX IF NOT EXISTS contact_contact_id_index ON " +
                 Tables.T9_CONTACT + " (" + T9ContactColumns.CONTACT_ID  + ");");
 
-        db.execSQL("CREATE INDEX IF NOT EXISTS contact_sort_index ON " +
-                Tables.T9_CONTACT + " (" + T9ContactColumns.DISPLAY_NAME + ");");
+        createQueryIndexes(db);
+    }
 
+    /**
+     * Create the t9_query table. The queries only contain digits and a +, they are compared
+     * byte by byte so all queries with a prefix form one range.
+     * @param db
+     */
+    private void createQueryTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + Tables.T9_QUERY + " (" +
+                T9QueryColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                T9QueryColumns.T9_QUERY + " TEXT, " +
+                T9QueryColumns.CONTACT_ID + " INTEGER, " +
+                T9QueryColumns.SORT_KEY + " TEXT" +
+                ");");
+    }
+
+    private void createQueryIndexes(SQLiteDatabase db) {
+        // Covers the range scan of the matches query.
         db.execSQL("CREATE INDEX IF NOT EXISTS t9_query_index ON " +
-                Tables.T9_QUERY + " (" + T9QueryColumns.T9_QUERY + ");");
+                Tables.T9_QUERY + " (" + T9QueryColumns.T9_QUERY + ", " +
+                T9QueryColumns.SORT_KEY + ", " + T9QueryColumns.CONTACT_ID + ");");
 
         db.execSQL("CREATE INDEX IF NOT EXISTS t9_query_contact_id_index ON " +
                 Tables.T9_QUERY + " (" + T9QueryColumns.CONTACT_ID + ");");
     }
 
+    /**
+     * Rebuild the t9_query table with the sort key from the existing data, so no contact sync
+     * is needed.
+     * @param db
+     */
+    private void upgradeToVersion3(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + Tables.T9_QUERY + " RENAME TO t9_query_v2");
+        createQueryTable(db);
+        db.execSQL("INSERT INTO " + Tables.T9_QUERY + " (" +
+                T9QueryColumns.T9_QUERY + ", " +
+                T9QueryColumns.CONTACT_ID + ", " +
+                T9QueryColumns.SORT_KEY + ")" +
+                " SELECT q." + T9QueryColumns.T9_QUERY + ", q." + T9QueryColumns.CONTACT_ID +
+                ", (SELECT c." + T9ContactColumns.DISPLAY_NAME +
+                " FROM " + Tables.T9_CONTACT + " c" +
+                " WHERE c." + T9ContactColumns.CONTACT_ID + " = q." + T9QueryColumns.CONTACT_ID +
+                " LIMIT 1)" +
+                " FROM t9_query_v2 q");
+        db.execSQL("DROP TABLE t9_query_v2");
+        db.execSQL("DROP INDEX IF EXISTS contact_sort_index");
+        createQueryIndexes(db);
+    }
+
     /**
      * Function to drop the database tables.
      * @param db
@@ -143,157 +208,18 @@ public class T9DatabaseHelper extends SQLiteOpenHelper {
         db.execSQL("ANALYZE " + Tables.T9_CONTACT);
         db.execSQL("ANALYZE " + Tables.T9_QUERY);
         db.execSQL("ANALYZE contact_contact_id_index");
-        db.execSQL("ANALYZE contact_sort_index");
         db.execSQL("ANALYZE t9_query_index");
         db.execSQL("ANALYZE t9_query_contact_id_index");
     }
 
     /**
-     * Function to insert a contact in the t9 contact table.
-     * @param syncContact Contact to be synced.
-     */
-    public void insertT9Contact(SyncContact syncContact) {
-        SQLiteDatabase db = getReadableDatabase();
-        insertPhoneNumberQueries(db, syncContact);
-        insertDisplayNameQueries(db, syncContact);
-        db.close();
-    }
-
-    /**
-     * Function to update a t9 contact. This deletes all old entries and creates new ones with
-     * the new data.
-     * @param syncContact Contact to be synced.
-     */
-    public void updateT9Contact(SyncContact syncContact) {
-        SQLiteDatabase db = getReadableDatabase();
-        removeContactEntries(db, syncContact);
-        db.close();
-        insertT9Contact(syncContact);
-    }
-
-    /**
-     * Function that tries to remove all entries for the given contact.
-     * @param db
-     * @param syncContact Contact to remove.
-     */
-    private void removeContactEntries(SQLiteDatabase db, SyncContact syncContact) {
-        // Multiple deletes to try and delete the contact even though the contact_id has changed.
-        // This introduces a bug where contacts with the exact same name but different contacts
-        // get deleted as well.
-        int contactDeleteResult = db.delete(Tables.T9_CONTACT, T9ContactColumns.CONTACT_ID + "=" +
-                        syncContact.getContactId(), null);
-        int queryDeleteResults = db.delete(Tables.T9_QUERY, T9ContactColumns.CONTACT_ID + "=" +
-                syncContact.getContactId(), null);
-
-        // Nothing deleted yet, try delete by name.
-        if (contactDeleteResult == 0 && queryDeleteResults == 0) {
-            db.delete(Tables.T9_QUERY,
-                    T9QueryColumns.CONTACT_ID + " IN " +
-                            "(SELECT " + T9ContactColumns.CONTACT_ID + " FROM " + Tables.T9_CONTACT +
-                            " WHERE " + T9ContactColumns.DISPLAY_NAME + " = ?)",
-                    new String[] {syncContact.getDisplayName()});
-            db.delete(Tables.T9_CONTACT,
-                    T9ContactColumns.DISPLAY_NAME + " = ?",
-                    new String[] {syncContact.getDisplayName()});
-        }
-    }
-
-    /**
-     * Function for inserting T9 queries for phone numbers.
-     * @param db
-     * @param syncContact Contact with phone numbers.
-     */
-    private void insertPhoneNumberQueries(SQLiteDatabase db, SyncContact syncContact) {
-        List<SyncContactNumber> numbers = syncContact.getNumbers();
-
-        try {
-            final String contactSqlInsert = "INSERT INTO " + Tables.T9_CONTACT + " (" +
-                    T9ContactColumns.DATA_ID + ", " +        // 1
-                    T9ContactColumns.CONTACT_ID + ", " +     // 2
-                    T9ContactColumns.LOOKUP_KEY + ", " +     // 3
-                    T9ContactColumns.DISPLAY_NAME + ", " +   // 4
-                    T9ContactColumns.THUMBNAIL_URI + ", " +  // 5
-                    T9ContactColumns.NUMBER + "," +          // 6
-                    T9ContactColumns.TYPE + ", " +           // 7
-                    T9ContactColumns.LABEL  + ") " +         // 8
-                    " VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-            final SQLiteStatement contactInsert = db.compileStatement(contactSqlInsert);
-
-            final String querySqlInsert = "INSERT INTO " + Tables.T9_QUERY + " (" +
-                    T9QueryColumns.CONTACT_ID + ", " +  // 1
-                    T9QueryColumns.T9_QUERY  + ") " +   // 2
-                    " VALUES (?, ?)";
-            final SQLiteStatement queryInsert = db.compileStatement(querySqlInsert);
-
-            SyncContactNumber number;
-            ArrayList<String> numberQueries;
-            String query;
-
-            for (int i = 0; i < numbers.size(); i++) {
-                number = numbers.get(i);
-
-                // Insert contact record for number.
-                contactInsert.bindLong(1, number.getDataId());
-                contactInsert.bindLong(2, syncContact.getContactId());
-                if (syncContact.getLookupKey() != null) {
-                    contactInsert.bindString(3, syncContact.getLookupKey());
-                }
-                contactInsert.bindString(4, syncContact.getDisplayName());
-                if (syncContact.getThumbnailUri() != null) {
-                    contactInsert.bindString(5, syncContact.getThumbnailUri());
-                }
-                contactInsert.bindString(6, number.getNumber());
-                contactInsert.bindLong(7, number.getType());
-                if (number.getLabel() != null) {
-                    contactInsert.bindString(8, number.getLabel());
-                }
-                contactInsert.executeInsert();
-                contactInsert.clearBindings();
-
-                // Insert queries for phone numbers.
-                numberQueries = T9Query.generateT9NumberQueries(number.getNumber());
-
-                for (int j = 0; j < numberQueries.size(); j++) {
-                    query = numberQueries.get(j);
-                    queryInsert.bindLong(1, syncContact.getContactId());
-                    queryInsert.bindString(2, query);
-
-                    queryInsert.executeInsert();
-                    queryInsert.clearBindings();
-                }
-            }
-        } finally {
-
-        }
-    }
-
-    /**
-     * Function for inserting T9 queries for the contacts name.
-     * @param db
-     * @param syncContact The contact with a name.
+     * Function to start a bulk update of t9 contacts. Every contact added to the writer
+     * replaces all old entries of that contact.
+     * @param batchSize The number of contacts written per transaction.
+     * @return Writer that must be closed when the sync is done.
      */
-    private void insertDisplayNameQueries(SQLiteDatabase db, SyncContact syncContact) {
-        try {
-            final String sqlInsert = "INSERT INTO " + Tables.T9_QUERY + " (" +
-                    T9QueryColumns.CONTACT_ID + ", " +
-                    T9QueryColumns.T9_QUERY  + ") " +
-                    " VALUES (?, ?)";
-            final SQLiteStatement insert = db.compileStatement(sqlInsert);
-
-            // Computes a list of prefixes of a given contact name.
-            ArrayList<String> T9NameQueries =
-                    T9Query.generateT9NameQueries(syncContact.getDisplayName());
-            String query;
-            for (int i = 0; i < T9NameQueries.size(); i++) {
-                query = T9NameQueries.get(i);
-                insert.bindLong(1, syncContact.getContactId());
-                insert.bindString(2, query);
-                insert.executeInsert();
-                insert.clearBindings();
-            }
-        } finally {
-
-        }
+    public T9BatchWriter openBatchWriter(int batchSize) {
+        return new T9BatchWriter(getWritableDatabase(), batchSize);
     }
 
     /**
@@ -310,26 +236,8 @@ public class T9DatabaseHelper extends SQLiteOpenHelper {
             return matchList;
         }
 
-        // Match as 'starts with'.
-        String prefixQuery = T9Query + "%";
-
-        final Cursor cursor = db.rawQuery(
-                "SELECT " +
-                T9ContactColumns.CONTACT_ID + ", " +     // 0
-                T9ContactColumns.LOOKUP_KEY + ", " +     // 1
-                T9ContactColumns.DISPLAY_NAME + ", " +   // 2
-                T9ContactColumns.THUMBNAIL_URI + ", " +  // 3
-                T9ContactColumns.NUMBER + ", " +         // 4
-                T9ContactColumns.TYPE + ", " +           // 5
-                T9ContactColumns.LABEL +                 // 6
-                " FROM " + Tables.T9_CONTACT + " WHERE " +
-                        T9ContactColumns.CONTACT_ID + " IN " +
-                        " (SELECT " + T9QueryColumns.CONTACT_ID +
-                        " FROM " + Tables.T9_QUERY +
-                        " WHERE " + Tables.T9_QUERY + "." + T9QueryColumns.T9_QUERY +
-                        " LIKE '" + prefixQuery + "')" +
-                " ORDER BY " + T9ContactColumns.DISPLAY_NAME + " ASC",
-                null);
+        final Cursor cursor = db.rawQuery(MATCHES_QUERY,
+                new String[] {T9Query, getPrefixUpperBound(T9Query)});
 
         if (cursor == null) {
             return matchList;
@@ -355,6 +263,7 @@ public class T9DatabaseHelper extends SQLiteOpenHelper {
                 continue;
             }
             matchList.add(match);
+            T9NameMatcher.findMatchedParts(match);
         }
 
         // Close resources.
@@ -364,6 +273,76 @@ public class T9DatabaseHelper extends SQLiteOpenHelper {
         return matchList;
     }
 
+    /**
+     * Get the smallest string that is bigger than all strings starting with the prefix.
+     * @param prefix
+     * @return
+     */
+    static String getPrefixUpperBound(String prefix) {
+        if (prefix.isEmpty()) {
+            return String.valueOf(Character.MAX_VALUE);
+        }
+        int last = prefix.length() - 1;
+        return prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+    }
+
+    /**
+     * Function that reads all contacts and t9 queries into the builder of the in-memory
+     * search index.
+     * @param builder
+     */
+    public void populateSearchIndex(T9SearchEngine.Builder builder) {
+        SQLiteDatabase db = getReadableDatabase();
+
+        if (db == null) {
+            // Database not ready yet.
+            return;
+        }
+
+        Cursor cursor = db.rawQuery(
+                "SELECT " +
+                T9ContactColumns.CONTACT_ID + ", " +     // 0
+                T9ContactColumns.LOOKUP_KEY + ", " +     // 1
+                T9ContactColumns.DISPLAY_NAME + ", " +   // 2
+                T9ContactColumns.THUMBNAIL_URI + ", " +  // 3
+                T9ContactColumns.NUMBER + ", " +         // 4
+                T9ContactColumns.TYPE + ", " +           // 5
+                T9ContactColumns.LABEL +                 // 6
+                " FROM " + Tables.T9_CONTACT,
+                null);
+
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                builder.addContactNumber(
+                        cursor.getLong(0),    // contactId
+                        cursor.getString(1),  // lookupKey
+                        cursor.getString(2),  // displayName
+                        cursor.getString(3),  // thumbnailUri
+                        cursor.getString(4),  // number
+                        cursor.getInt(5),     // type
+                        cursor.getString(6)   // label
+                );
+            }
+            cursor.close();
+        }
+
+        cursor = db.rawQuery(
+                "SELECT " +
+                T9QueryColumns.CONTACT_ID + ", " +  // 0
+                T9QueryColumns.T9_QUERY +           // 1
+                " FROM " + Tables.T9_QUERY,
+                null);
+
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                builder.addQuery(cursor.getLong(0), cursor.getString(1));
+            }
+            cursor.close();
+        }
+
+        db.close();
+    }
+
     /**
      * Searches the database for a single random contact.
      *
@@ -0,0 +1,247 @@
+package com.voipgrid.vialer.t9;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+
+/**
+ * Converts names to T9 keys with a lookup table. The encoded name is written into buffers that
+ * are reused for the next name, so an instance must not be shared between threads.
+ */
+public class T9Encoder {
+
+    /**
+     * ASCII char -> T9 digit, 0 for chars that have no digit.
+     */
+    private static final char[] ASCII_TO_DIGIT = new char[128];
+
+    static {
+        String[] letters = {"", "", "abc", "def", "ghi", "jkl", "mno", "pqrs", "tuv", "wxyz"};
+
+        for (int digit = 2; digit < letters.length; digit++) {
+            for (int i = 0; i < letters[digit].length(); i++) {
+                char letter = letters[digit].charAt(i);
+                ASCII_TO_DIGIT[letter] = (char) ('0' + digit);
+                ASCII_TO_DIGIT[Character.toUpperCase(letter)] = (char) ('0' + digit);
+            }
+        }
+
+        for (char c = '0'; c <= '9'; c++) {
+            ASCII_TO_DIGIT[c] = c;
+        }
+    }
+
+    private char[] mKeys = new char[64];
+    private int mLength;
+
+    // Index in the display name of the char each key digit was created from.
+    private int[] mKeySources = new int[64];
+
+    // Offset in mKeys where the part of the name after each space starts.
+    private int[] mPartStarts = new int[8];
+    private int mParts;
+
+    /**
+     * Get the T9 digit for an ASCII char.
+     *
+     * @param c
+     * @return The digit, or 0 if the char has no T9 digit.
+     */
+    public static char digitFor(char c) {
+        return c < 128 ? ASCII_TO_DIGIT[c] : 0;
+    }
+
+    /**
+     * Encode the name. For the name `Henk de Boer` this creates the key `4365332637` and the
+     * parts starting at `henk`, `de` and `boer`.
+     *
+     * @param displayName
+     * @return this To allow method chaining.
+     */
+    public T9Encoder encode(String displayName) {
+        mLength = 0;
+        mParts = 0;
+
+        ensureKeyCapacity(displayName.length());
+
+        // Parts are separated by a single space, trailing empty parts are ignored like
+        // String.split(" ") does.
+        boolean partHasChars = false;
+        int partStart = 0;
+        int partsWithChars = 0;
+
+        for (int i = 0; i < displayName.length(); i++) {
+            char c = displayName.charAt(i);
+
+            if (c == ' ') {
+                addPart(partStart);
+                if (partHasChars) {
+                    partsWithChars = mParts;
+                }
+                partStart = mLength;
+                partHasChars = false;
+                continue;
+            }
+
+            partHasChars = true;
+
+            if (c < 128) {
+                addKey(ASCII_TO_DIGIT[c], i);
+            } else {
+                // Normalize special chars to their normal counterparts Eg: ë -> e. This is done
+                // per char so every key digit can be traced back to the display name.
+                String normalized = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+                for (int j = 0; j < normalized.length(); j++) {
+                    addKey(digitForNonAscii(normalized.charAt(j)), i);
+                }
+            }
+        }
+
+        addPart(partStart);
+        if (partHasChars || displayName.length() == 0) {
+            partsWithChars = mParts;
+        }
+        mParts = partsWithChars;
+
+        return this;
+    }
+
+    /**
+     * Get the start of the part of the display name matched by a query on the given key.
+     *
+     * @param index The index of the matched key.
+     * @return The index in the display name of the first matched char.
+     */
+    public int getMatchStart(int index) {
+        return mKeySources[mPartStarts[index]];
+    }
+
+    /**
+     * Get the end of the part of the display name matched by a query on the given key.
+     *
+     * @param index The index of the matched key.
+     * @param queryLength The length of the matched query.
+     * @return The index in the display name after the last matched char.
+     */
+    public int getMatchEnd(int index, int queryLength) {
+        return mKeySources[mPartStarts[index] + queryLength - 1] + 1;
+    }
+
+    /**
+     * @return The number of T9 keys of the encoded name.
+     */
+    public int getKeyCount() {
+        return mParts;
+    }
+
+    /**
+     * Get one of the T9 keys of the encoded name, key 0 is the whole name.
+     *
+     * @param index
+     * @return
+     */
+    public String getKey(int index) {
+        int start = mPartStarts[index];
+        return new String(mKeys, start, mLength - start);
+    }
+
+    /**
+     * Get the offset in the key of the whole name where the given key starts.
+     *
+     * @param index
+     * @return
+     */
+    public int getKeyStart(int index) {
+        return mPartStarts[index];
+    }
+
+    /**
+     * @return All T9 keys of the encoded name.
+     */
+    public ArrayList<String> getKeys() {
+        ArrayList<String> keys = new ArrayList<>(mParts);
+        for (int i = 0; i < mParts; i++) {
+            keys.add(getKey(i));
+        }
+        return keys;
+    }
+
+    /**
+     * Check if one of the T9 keys of the encoded name starts with the query.
+     *
+     * @param query
+     * @return The index of the first key that matches, or -1.
+     */
+    public int findKeyStartingWith(String query) {
+        for (int i = 0; i < mParts; i++) {
+            if (keyStartsWith(mPartStarts[i], query)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean keyStartsWith(int start, String query) {
+        if (mLength - start < query.length()) {
+            return false;
+        }
+        for (int i = 0; i < query.length(); i++) {
+            if (mKeys[start + i] != query.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addKey(char digit, int source) {
+        if (digit == 0) {
+            return;
+        }
+        if (mLength == mKeys.length) {
+            ensureKeyCapacity(mLength + 1);
+        }
+        mKeys[mLength] = digit;
+        mKeySources[mLength] = source;
+        mLength++;
+    }
+
+    private static char digitForNonAscii(char c) {
+        if (c < 128) {
+            return ASCII_TO_DIGIT[c];
+        }
+        if (Character.isDigit(c)) {
+            return c;
+        }
+        if (isMark(c)) {
+            return 0;
+        }
+        return digitFor(Character.toLowerCase(c));
+    }
+
+    private void addPart(int start) {
+        if (mParts == mPartStarts.length) {
+            int[] partStarts = new int[mPartStarts.length * 2];
+            System.arraycopy(mPartStarts, 0, partStarts, 0, mParts);
+            mPartStarts = partStarts;
+        }
+        mPartStarts[mParts++] = start;
+    }
+
+    private void ensureKeyCapacity(int capacity) {
+        if (mKeys.length < capacity) {
+            int length = Math.max(capacity, mKeys.length * 2);
+            char[] keys = new char[length];
+            int[] keySources = new int[length];
+            System.arraycopy(mKeys, 0, keys, 0, mLength);
+            System.arraycopy(mKeySources, 0, keySources, 0, mLength);
+            mKeys = keys;
+            mKeySources = keySources;
+        }
+    }
+
+    private static boolean isMark(char c) {
+        int type = Character.getType(c);
+        return type == Character.NON_SPACING_MARK
+                || type == Character.ENCLOSING_MARK
+                || type == Character.COMBINING_SPACING_MARK;
+    }
+}
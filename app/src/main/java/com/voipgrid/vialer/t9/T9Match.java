@@ -14,6 +14,12 @@ public class T9Match {
 
     private String mT9Query;
 
+    // Matched parts of the display name and number, -1 when the query does not match them.
+    private int mNameMatchStart = -1;
+    private int mNameMatchEnd = -1;
+    private int mNumberMatchStart = -1;
+    private int mNumberMatchEnd = -1;
+
     public T9Match(long contactId, String lookupKey, String displayName, String thumbnailUri,
                    String number, int type, String label, String t9Query) {
         setContactId(contactId);
@@ -90,6 +96,46 @@ public class T9Match {
         this.mLabel = label;
     }
 
+    /**
+     * @return Whether the t9 query matches the display name.
+     */
+    public boolean hasNameMatch() {
+        return mNameMatchStart >= 0;
+    }
+
+    public int getNameMatchStart() {
+        return mNameMatchStart;
+    }
+
+    public int getNameMatchEnd() {
+        return mNameMatchEnd;
+    }
+
+    void setNameMatch(int start, int end) {
+        mNameMatchStart = start;
+        mNameMatchEnd = end;
+    }
+
+    /**
+     * @return Whether the t9 query matches the number.
+     */
+    public boolean hasNumberMatch() {
+        return mNumberMatchStart >= 0;
+    }
+
+    public int getNumberMatchStart() {
+        return mNumberMatchStart;
+    }
+
+    public int getNumberMatchEnd() {
+        return mNumberMatchEnd;
+    }
+
+    void setNumberMatch(int start, int end) {
+        mNumberMatchStart = start;
+        mNumberMatchEnd = end;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
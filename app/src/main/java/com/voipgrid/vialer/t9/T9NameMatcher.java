@@ -1,9 +1,5 @@
 package com.voipgrid.vialer.t9;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-
 /**
  * Class to match a T9Query to a name.
  */
@@ -16,16 +12,45 @@ public class T9NameMatcher {
      * @return Whether the t9 query matched the display name.
      */
     public static boolean T9QueryMatchesName(String query, String displayName) {
-        ArrayList<String> possibleQueries = T9Query.generateT9NameQueries(displayName);
+        return T9Query.getEncoder().encode(displayName).findKeyStartingWith(query) >= 0;
+    }
 
-        Collections.sort(possibleQueries, new T9QueryComparator());
+    /**
+     * Function that finds the parts of the display name and number that are matched by the
+     * t9 query of the match and stores their offsets on the match.
+     * @param match The match to find the matched parts for.
+     */
+    public static void findMatchedParts(T9Match match) {
+        String query = match.getT9Query();
 
-        for (int i = 0; i < possibleQueries.size(); i++) {
-            if (possibleQueries.get(i).startsWith(query)){
-                return true;
+        if (query == null || query.length() == 0) {
+            return;
+        }
+
+        // Only allowed T9 chars for name matching.
+        char first = query.charAt(0);
+        if (first >= '2' && first <= '9' && match.getDisplayName() != null) {
+            T9Encoder encoder = T9Query.getEncoder().encode(match.getDisplayName());
+            int key = encoder.findKeyStartingWith(query);
+            if (key >= 0) {
+                match.setNameMatch(encoder.getMatchStart(key),
+                        encoder.getMatchEnd(key, query.length()));
             }
         }
-        return false;
+
+        String number = match.getNumber();
+
+        if (number == null) {
+            return;
+        }
+
+        // A +XX12345678 number is also matched as 012345678.
+        if (number.startsWith("+") && number.length() >= 3 && query.charAt(0) == '0'
+                && number.startsWith(query.substring(1), 3)) {
+            match.setNumberMatch(0, query.length() + 2);
+        } else if (number.startsWith(query)) {
+            match.setNumberMatch(0, query.length());
+        }
     }
 
     /**
@@ -35,67 +60,55 @@ public class T9NameMatcher {
      * @return Name with <b></b> tags.
      */
     public static String highlightMatchedPart(String t9Query, String displayName) {
-        ArrayList<String> possibleQueries = T9Query.generateT9NameQueries(displayName);
+        T9Encoder encoder = T9Query.getEncoder().encode(displayName);
+        int key = encoder.findKeyStartingWith(t9Query);
 
-        String queryOfWholeName = possibleQueries.get(0);
-
-        int start = adjustStartBasedOnSpaces(displayName, queryOfWholeName.indexOf(t9Query));
-        int end = start + t9Query.length();
-
-        // Add a empty space behind the displayname to be able to substring untill the last char
-        // without causing outofboundexceptions.
-        return placeBoldingTags(displayName + " ", start, end, end-start);
-    }
-
-    /**
-     * Calculates the number of spaces in the display name before the start value and increases
-     * start based on this value.
-     *
-     * @param displayName
-     * @param start
-     * @return The value of start adjusted based on the number of spaces.
-     */
-    private static int adjustStartBasedOnSpaces(String displayName, int start) {
-        String substr = displayName.substring(0, start);
-
-        int spaceCount = substr.length() - substr.replace(" ", "").length();
+        if (key < 0) {
+            return highlight(displayName, 0, 0);
+        }
 
-        return start + spaceCount;
+        return highlight(displayName, encoder.getMatchStart(key),
+                encoder.getMatchEnd(key, t9Query.length()));
     }
 
     /**
-     * Recursively builds a string with the correct highlighting.
+     * Function that surrounds a part of the text with <b></b>, the text is escaped so it can
+     * safely be used as html.
+     * @param text The text to highlight.
+     * @param start Index of the first highlighted char.
+     * @param end Index after the last highlighted char, equal to start for no highlighting.
+     * @return Text with <b></b> tags.
      */
-    private static String placeBoldingTags(String fullString, int start, int end, int charCount) {
-        // Replace special chars that impact the regexes used for substrings.
-        fullString = fullString.replaceAll("[*+?^<>|$\\\\]", " ");
-        String highlightString = fullString.substring(start, end);
-
-        int charsInHighlight = highlightString.replaceAll("[^A-Za-z]","").length();
-        // Increase the endIndex if our highlightString is now to small.
-        if (charsInHighlight < charCount) {
-            return placeBoldingTags(fullString, start, end+1, charCount);
+    public static String highlight(String text, int start, int end) {
+        StringBuilder builder = new StringBuilder(text.length() + 7);
+
+        appendEscaped(builder, text, 0, start);
+        if (end > start) {
+            builder.append("<b>");
+            appendEscaped(builder, text, start, end);
+            builder.append("</b>");
         }
+        appendEscaped(builder, text, end, text.length());
 
-        // Clean up the front of the string.
-        if (!Character.isLetter(highlightString.charAt(0))) {
-            return placeBoldingTags(fullString, start+1, end, charCount);
-        }
-
-        String preHighlight = fullString.split(highlightString)[0];
-        String pastHighlight = fullString.split(highlightString)[1];
-
-        String result = preHighlight + "<b>" + highlightString + "</b>" + pastHighlight;
-        return result;
+        return builder.toString();
     }
 
-    /**
-     * Custom Comparator to sort the list based on string length DESC.
-     */
-    private static class T9QueryComparator implements Comparator<String> {
-        public int compare(String s1, String s2) {
-            return s2.length() - s1.length();
+    private static void appendEscaped(StringBuilder builder, String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    builder.append("&lt;");
+                    break;
+                case '>':
+                    builder.append("&gt;");
+                    break;
+                case '&':
+                    builder.append("&amp;");
+                    break;
+                default:
+                    builder.append(c);
+            }
         }
     }
-
 }
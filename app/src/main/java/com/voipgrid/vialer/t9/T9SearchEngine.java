@@ -0,0 +1,747 @@
+package com.voipgrid.vialer.t9;
+
+import android.content.Context;
+
+import com.voipgrid.vialer.util.CallingCode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-memory T9 search engine. The T9 queries from the t9 database are loaded once into sorted
+ * arrays so a key press is answered with a binary search instead of a database query.
+ */
+public class T9SearchEngine {
+
+    private static final int MAX_RESULTS = 20;
+
+    /**
+     * The number of trailing digits used to look up phone numbers, so national and
+     * international notations of a number find the same contact.
+     */
+    static final int PHONE_NUMBER_KEY_LENGTH = 9;
+
+    private static T9SearchEngine sInstance;
+
+    private final ExecutorService mLoadExecutor = Executors.newSingleThreadExecutor();
+
+    private volatile Index mIndex;
+
+    /**
+     * The calling code of the country of the SIM, e.g. +31, used to read national numbers as
+     * international numbers. Null while it is unknown.
+     */
+    private volatile String mHomeCallingCode;
+
+    /**
+     * The number of loads that are running and the delta syncs that were applied meanwhile. A
+     * load may have read the database before a delta was written, so the deltas are applied to
+     * the loaded index again.
+     */
+    private int mLoads;
+    private final List<PendingUpdate> mPendingUpdates = new ArrayList<>();
+
+    /**
+     * The key range of the previous search, used to narrow the next search when the user
+     * types another digit.
+     */
+    private Index mPreviousIndex;
+    private String mPreviousQuery;
+    private int mPreviousFrom;
+    private int mPreviousTo;
+
+    T9SearchEngine() {
+    }
+
+    public static synchronized T9SearchEngine getInstance() {
+        if (sInstance == null) {
+            sInstance = new T9SearchEngine();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Whether the index has been loaded and can be used for searching.
+     *
+     * @return TRUE if searches can be done.
+     */
+    public boolean isLoaded() {
+        return mIndex != null;
+    }
+
+    /**
+     * (Re)load the index from the t9 database on a background thread.
+     *
+     * @param context
+     */
+    public void reloadInBackground(Context context) {
+        final Context applicationContext = context.getApplicationContext();
+        mLoadExecutor.execute(() -> {
+            setHomeCallingCode(CallingCode.getSystemCallingCode(applicationContext));
+            reload(new T9DatabaseHelper(applicationContext));
+        });
+    }
+
+    /**
+     * Set the calling code of the home country, national numbers of the reverse lookup are
+     * compared as numbers in that country.
+     *
+     * @param callingCode The calling code, e.g. +31, or null or empty when it is unknown.
+     */
+    public void setHomeCallingCode(String callingCode) {
+        mHomeCallingCode = callingCode;
+    }
+
+    /**
+     * (Re)load the index from the t9 database on the calling thread.
+     *
+     * @param t9Database The database to read the contacts and queries from.
+     */
+    public void reload(T9DatabaseHelper t9Database) {
+        synchronized (this) {
+            mLoads++;
+        }
+
+        Index index = null;
+        try {
+            Builder builder = new Builder();
+            t9Database.populateSearchIndex(builder);
+            index = builder.build();
+        } finally {
+            finishLoad(index);
+        }
+    }
+
+    /**
+     * Apply the changes of a delta sync to the index without reading the t9 database.
+     *
+     * @param changedContactIds The contacts that were removed or replaced.
+     * @param additions The new rows and queries of the replaced contacts.
+     */
+    public synchronized void update(Set<Long> changedContactIds, Builder additions) {
+        Index changes = additions.build();
+        if (mLoads > 0) {
+            mPendingUpdates.add(new PendingUpdate(changedContactIds, changes));
+        }
+
+        // Without an index and a load, the next load reads the changes from the database.
+        if (mIndex != null) {
+            setIndex(mIndex.merge(changedContactIds, changes));
+        }
+    }
+
+    /**
+     * Use a loaded index with the delta syncs that were applied during the load. Merging a
+     * delta that the load already read gives the same index.
+     *
+     * @param index The loaded index, or null when the load failed.
+     */
+    private synchronized void finishLoad(Index index) {
+        mLoads--;
+        if (index != null) {
+            for (PendingUpdate update : mPendingUpdates) {
+                index = index.merge(update.mChangedContactIds, update.mChanges);
+            }
+            setIndex(index);
+        }
+        if (mLoads == 0) {
+            mPendingUpdates.clear();
+        }
+    }
+
+    /**
+     * Replace the index that is used for searching.
+     *
+     * @param index
+     */
+    public synchronized void setIndex(Index index) {
+        mIndex = index;
+        mPreviousIndex = null;
+        mPreviousQuery = null;
+    }
+
+    /**
+     * Function that finds the contacts that match the t9 query. The results are the same as
+     * {@link T9DatabaseHelper#getT9Matches(String)}.
+     *
+     * @param t9Query
+     * @return Up to 20 matches ordered by display name.
+     */
+    public synchronized List<T9Match> getT9Matches(String t9Query) {
+        Index index = mIndex;
+
+        if (index == null) {
+            return new ArrayList<>();
+        }
+
+        int from = 0;
+        int to = index.mKeys.length;
+
+        // A query that extends the previous query can only match within the previous range.
+        if (index == mPreviousIndex && t9Query.startsWith(mPreviousQuery)) {
+            from = mPreviousFrom;
+            to = mPreviousTo;
+        }
+
+        int start = index.findStart(t9Query, from, to);
+        int end = index.findEnd(t9Query, start, to);
+
+        mPreviousIndex = index;
+        mPreviousQuery = t9Query;
+        mPreviousFrom = start;
+        mPreviousTo = end;
+
+        return index.collectMatches(t9Query, start, end);
+    }
+
+    /**
+     * Reverse lookup of the contact that has the phone number, used for caller identification.
+     * The last digits of the number find the candidates, the whole number decides which one
+     * it is, so numbers that only differ in their country or area code are not mixed up.
+     *
+     * @param number The phone number in any notation.
+     * @return A match with the contact and the synced number, or null if no contact has the
+     * number or the index is not loaded.
+     */
+    public T9Match findContactByPhoneNumber(String number) {
+        Index index = mIndex;
+        String key = getPhoneNumberKey(number);
+
+        if (index == null || key == null) {
+            return null;
+        }
+
+        Integer first = index.mNumberRows.get(key);
+        for (int row = first != null ? first : -1; row >= 0; row = index.mNextNumberRows[row]) {
+            if (isSamePhoneNumber(number, index.mNumbers[row], mHomeCallingCode)) {
+                return index.createMatch(row, null);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compare two phone numbers written in any notation without a home country, a national
+     * number is the same as that number in every country.
+     *
+     * @see #isSamePhoneNumber(String, String, String)
+     */
+    static boolean isSamePhoneNumber(String number1, String number2) {
+        return isSamePhoneNumber(number1, number2, null);
+    }
+
+    /**
+     * Compare two phone numbers written in any notation. With a home country both numbers are
+     * compared in E.164, a national number is the number in the home country, e.g. 0612345678,
+     * 0031612345678 and +31612345678 are the same number in the Netherlands. Without a home
+     * country an international number is the same as a national number when it is the
+     * national number with a country code instead of the trunk prefix 0.
+     *
+     * @param number1
+     * @param number2
+     * @param homeCallingCode The calling code of the home country, e.g. +31, or null.
+     * @return TRUE if both are the same number.
+     */
+    static boolean isSamePhoneNumber(String number1, String number2, String homeCallingCode) {
+        String normalized1 = toE164(normalizePhoneNumber(number1), homeCallingCode);
+        String normalized2 = toE164(normalizePhoneNumber(number2), homeCallingCode);
+        if (normalized1 == null || normalized2 == null) {
+            return false;
+        }
+
+        boolean international1 = normalized1.startsWith("+");
+        boolean international2 = normalized2.startsWith("+");
+        if (international1 == international2) {
+            return normalized1.equals(normalized2);
+        }
+
+        String international = international1 ? normalized1 : normalized2;
+        String national = international1 ? normalized2 : normalized1;
+        if (!national.startsWith("0") || national.startsWith("00")) {
+            return false;
+        }
+
+        // The digits left before the national significant number are the country code.
+        int countryCodeLength = international.length() - 1 - (national.length() - 1);
+        return countryCodeLength >= 1 && countryCodeLength <= 3
+                && international.endsWith(national.substring(1));
+    }
+
+    /**
+     * Write a normalized national number as an international number of the home country.
+     *
+     * @param normalized A number as returned by {@link #normalizePhoneNumber(String)}.
+     * @param homeCallingCode The calling code of the home country, e.g. +31, or null.
+     * @return The international number, or the number itself if it can not be converted.
+     */
+    static String toE164(String normalized, String homeCallingCode) {
+        if (normalized == null || homeCallingCode == null || !homeCallingCode.startsWith("+")
+                || homeCallingCode.length() < 2 || !normalized.startsWith("0")) {
+            return normalized;
+        }
+        return homeCallingCode + normalized.substring(1);
+    }
+
+    /**
+     * Normalize a phone number to its digits, with a leading + for international numbers. The
+     * international prefix 00 becomes a + and a trunk prefix written as (0) is left out.
+     *
+     * @param number
+     * @return The normalized number, or null if the number has no digits.
+     */
+    static String normalizePhoneNumber(String number) {
+        if (number == null) {
+            return null;
+        }
+
+        StringBuilder normalized = new StringBuilder(number.length());
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c == '(' && number.startsWith("(0)", i)) {
+                i += 2;
+            } else if (c == '+' && normalized.length() == 0) {
+                normalized.append(c);
+            } else if (c >= '0' && c <= '9') {
+                normalized.append(c);
+            }
+        }
+
+        if (normalized.length() > 2 && normalized.charAt(0) == '0' && normalized.charAt(1) == '0') {
+            normalized.replace(0, 2, "+");
+        }
+        return normalized.length() > 0 && !"+".contentEquals(normalized)
+                ? normalized.toString() : null;
+    }
+
+    /**
+     * Get the key of a phone number in the reverse lookup, the last digits of the number.
+     *
+     * @param number
+     * @return The key, or null if the number has no digits.
+     */
+    static String getPhoneNumberKey(String number) {
+        if (number == null) {
+            return null;
+        }
+
+        char[] key = new char[PHONE_NUMBER_KEY_LENGTH];
+        int length = 0;
+        for (int i = number.length() - 1; i >= 0 && length < key.length; i--) {
+            char c = number.charAt(i);
+            if (c >= '0' && c <= '9') {
+                key[key.length - ++length] = c;
+            }
+        }
+
+        return length > 0 ? new String(key, key.length - length, length) : null;
+    }
+
+    /**
+     * Immutable search index. The keys are sorted so all keys starting with a query form one
+     * continuous range. Every key refers to a contact group, the groups are sorted by display
+     * name so the lowest group numbers are the first results.
+     */
+    public static class Index {
+        private final String[] mKeys;
+        private final int[] mKeyGroups;
+
+        // Offsets of the first row of each group, with one extra entry for the end.
+        private final int[] mGroupRowStart;
+
+        private final long[] mContactIds;
+        private final String[] mLookupKeys;
+        private final String[] mDisplayNames;
+        private final String[] mThumbnailUris;
+        private final String[] mNumbers;
+        private final int[] mTypes;
+        private final String[] mLabels;
+
+        // Phone number key -> first row with the key, the next row with the same key, or -1.
+        private final Map<String, Integer> mNumberRows;
+        private final int[] mNextNumberRows;
+
+        private Index(String[] keys, int[] keyGroups, int[] groupRowStart, long[] contactIds,
+                String[] lookupKeys, String[] displayNames, String[] thumbnailUris,
+                String[] numbers, int[] types, String[] labels) {
+            mKeys = keys;
+            mKeyGroups = keyGroups;
+            mGroupRowStart = groupRowStart;
+            mContactIds = contactIds;
+            mLookupKeys = lookupKeys;
+            mDisplayNames = displayNames;
+            mThumbnailUris = thumbnailUris;
+            mNumbers = numbers;
+            mTypes = types;
+            mLabels = labels;
+            mNumberRows = new HashMap<>(numbers.length * 2);
+            mNextNumberRows = new int[numbers.length];
+
+            // Link the rows from the last to the first, so the first row comes first.
+            for (int row = numbers.length - 1; row >= 0; row--) {
+                String key = getPhoneNumberKey(numbers[row]);
+                Integer next = key != null ? mNumberRows.put(key, row) : null;
+                mNextNumberRows[row] = next != null ? next : -1;
+            }
+        }
+
+        /**
+         * @return The number of keys in this index.
+         */
+        public int size() {
+            return mKeys.length;
+        }
+
+        /**
+         * Find the first key in the range that is not smaller than the query.
+         */
+        private int findStart(String query, int from, int to) {
+            int low = from;
+            int high = to;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (comparePrefix(mKeys[mid], query) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Find the first key in the range that is bigger than the query and does not start
+         * with it.
+         */
+        private int findEnd(String query, int from, int to) {
+            int low = from;
+            int high = to;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (comparePrefix(mKeys[mid], query) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Compares the key with a prefix, keys that start with the prefix are equal.
+         */
+        private static int comparePrefix(String key, String prefix) {
+            int length = Math.min(key.length(), prefix.length());
+            for (int i = 0; i < length; i++) {
+                char k = key.charAt(i);
+                char p = prefix.charAt(i);
+                if (k != p) {
+                    return k - p;
+                }
+            }
+            return key.length() < prefix.length() ? -1 : 0;
+        }
+
+        /**
+         * Create a new index without the rows and keys of the removed contacts and with those
+         * of the other index. Both indexes are already sorted so this is a linear merge.
+         *
+         * @param removedContactIds Contacts to leave out of this index.
+         * @param other Index with contacts that are not in this index after the removal.
+         * @return The merged index.
+         */
+        Index merge(Set<Long> removedContactIds, Index other) {
+            int groups = mGroupRowStart.length - 1;
+            int otherGroups = other.mGroupRowStart.length - 1;
+            int[] groupMapping = new int[groups];
+            int[] otherGroupMapping = new int[otherGroups];
+
+            int rowCount = other.mContactIds.length;
+            for (int group = 0; group < groups; group++) {
+                if (removedContactIds.contains(mContactIds[mGroupRowStart[group]])) {
+                    groupMapping[group] = -1;
+                } else {
+                    rowCount += mGroupRowStart[group + 1] - mGroupRowStart[group];
+                }
+            }
+
+            Index merged = new Index(null, null, new int[groups + otherGroups + 1],
+                    new long[rowCount], new String[rowCount], new String[rowCount],
+                    new String[rowCount], new String[rowCount], new int[rowCount],
+                    new String[rowCount]);
+
+            // Merge the groups in display name order.
+            int group = nextGroup(groupMapping, 0);
+            int otherGroup = 0;
+            int mergedGroups = 0;
+            int mergedRows = 0;
+            while (group < groups || otherGroup < otherGroups) {
+                boolean takeOther = group == groups || (otherGroup < otherGroups
+                        && compareGroups(other, otherGroup, this, group) < 0);
+                Index source = takeOther ? other : this;
+                int sourceGroup = takeOther ? otherGroup : group;
+
+                merged.mGroupRowStart[mergedGroups] = mergedRows;
+                mergedRows = merged.copyRows(mergedRows, source,
+                        source.mGroupRowStart[sourceGroup], source.mGroupRowStart[sourceGroup + 1]);
+
+                if (takeOther) {
+                    otherGroupMapping[otherGroup++] = mergedGroups++;
+                } else {
+                    groupMapping[group] = mergedGroups++;
+                    group = nextGroup(groupMapping, group + 1);
+                }
+            }
+            merged.mGroupRowStart[mergedGroups] = mergedRows;
+
+            // Merge the sorted keys.
+            int keyCount = other.mKeys.length;
+            for (int key = 0; key < mKeys.length; key++) {
+                if (groupMapping[mKeyGroups[key]] >= 0) {
+                    keyCount++;
+                }
+            }
+            String[] keys = new String[keyCount];
+            int[] keyGroups = new int[keyCount];
+            int key = 0;
+            int otherKey = 0;
+            for (int i = 0; i < keyCount; i++) {
+                while (key < mKeys.length && groupMapping[mKeyGroups[key]] < 0) {
+                    key++;
+                }
+                if (key == mKeys.length || (otherKey < other.mKeys.length
+                        && other.mKeys[otherKey].compareTo(mKeys[key]) < 0)) {
+                    keys[i] = other.mKeys[otherKey];
+                    keyGroups[i] = otherGroupMapping[other.mKeyGroups[otherKey++]];
+                } else {
+                    keys[i] = mKeys[key];
+                    keyGroups[i] = groupMapping[mKeyGroups[key++]];
+                }
+            }
+
+            return new Index(keys, keyGroups,
+                    Arrays.copyOf(merged.mGroupRowStart, mergedGroups + 1), merged.mContactIds,
+                    merged.mLookupKeys, merged.mDisplayNames, merged.mThumbnailUris,
+                    merged.mNumbers, merged.mTypes, merged.mLabels);
+        }
+
+        private static int nextGroup(int[] groupMapping, int group) {
+            while (group < groupMapping.length && groupMapping[group] < 0) {
+                group++;
+            }
+            return group;
+        }
+
+        private int copyRows(int offset, Index source, int from, int to) {
+            int length = to - from;
+            System.arraycopy(source.mContactIds, from, mContactIds, offset, length);
+            System.arraycopy(source.mLookupKeys, from, mLookupKeys, offset, length);
+            System.arraycopy(source.mDisplayNames, from, mDisplayNames, offset, length);
+            System.arraycopy(source.mThumbnailUris, from, mThumbnailUris, offset, length);
+            System.arraycopy(source.mNumbers, from, mNumbers, offset, length);
+            System.arraycopy(source.mTypes, from, mTypes, offset, length);
+            System.arraycopy(source.mLabels, from, mLabels, offset, length);
+            return offset + length;
+        }
+
+        private static int compareGroups(Index index1, int group1, Index index2, int group2) {
+            int row1 = index1.mGroupRowStart[group1];
+            int row2 = index2.mGroupRowStart[group2];
+            return compareRows(index1.mDisplayNames[row1], index1.mContactIds[row1],
+                    index2.mDisplayNames[row2], index2.mContactIds[row2]);
+        }
+
+        private T9Match createMatch(int row, String t9Query) {
+            return new T9Match(
+                    mContactIds[row],
+                    mLookupKeys[row],
+                    mDisplayNames[row],
+                    mThumbnailUris[row],
+                    mNumbers[row],
+                    mTypes[row],
+                    mLabels[row],
+                    t9Query
+            );
+        }
+
+        private List<T9Match> collectMatches(String t9Query, int start, int end) {
+            List<T9Match> matchList = new ArrayList<>();
+
+            BitSet groups = new BitSet(mGroupRowStart.length - 1);
+            for (int i = start; i < end; i++) {
+                groups.set(mKeyGroups[i]);
+            }
+
+            T9Match match;
+
+            for (int group = groups.nextSetBit(0);
+                    group >= 0 && matchList.size() < MAX_RESULTS;
+                    group = groups.nextSetBit(group + 1)) {
+                for (int row = mGroupRowStart[group];
+                        row < mGroupRowStart[group + 1] && matchList.size() < MAX_RESULTS;
+                        row++) {
+                    match = createMatch(row, t9Query);
+
+                    // We do not want duplicates.
+                    if (matchList.contains(match)) {
+                        continue;
+                    }
+                    matchList.add(match);
+                    T9NameMatcher.findMatchedParts(match);
+                }
+            }
+
+            return matchList;
+        }
+    }
+
+    /**
+     * A delta sync that happened while the index was loaded, it is applied to the loaded index.
+     */
+    private static class PendingUpdate {
+        private final Set<Long> mChangedContactIds;
+        private final Index mChanges;
+
+        private PendingUpdate(Set<Long> changedContactIds, Index changes) {
+            mChangedContactIds = changedContactIds;
+            mChanges = changes;
+        }
+    }
+
+    /**
+     * Collects the rows of the t9 database and builds an {@link Index} from them.
+     */
+    public static class Builder {
+        private final List<Row> mRows = new ArrayList<>();
+        private final List<String> mQueries = new ArrayList<>();
+        private final List<Long> mQueryContactIds = new ArrayList<>();
+
+        /**
+         * Add a row of the t9_contact table.
+         */
+        public Builder addContactNumber(long contactId, String lookupKey, String displayName,
+                String thumbnailUri, String number, int type, String label) {
+            mRows.add(new Row(contactId, lookupKey, displayName, thumbnailUri, number, type,
+                    label));
+            return this;
+        }
+
+        /**
+         * Add a row of the t9_query table.
+         */
+        public Builder addQuery(long contactId, String query) {
+            mQueries.add(query);
+            mQueryContactIds.add(contactId);
+            return this;
+        }
+
+        public Index build() {
+            // Sort by display name like the database query does, the contact id keeps the rows
+            // of one contact together.
+            Row[] rows = mRows.toArray(new Row[0]);
+            Arrays.sort(rows, new RowComparator());
+
+            int rowCount = rows.length;
+            long[] contactIds = new long[rowCount];
+            String[] lookupKeys = new String[rowCount];
+            String[] displayNames = new String[rowCount];
+            String[] thumbnailUris = new String[rowCount];
+            String[] numbers = new String[rowCount];
+            int[] types = new int[rowCount];
+            String[] labels = new String[rowCount];
+
+            Map<Long, Integer> contactGroups = new HashMap<>();
+            int[] groupRowStart = new int[rowCount + 1];
+            int groupCount = 0;
+
+            for (int i = 0; i < rowCount; i++) {
+                Row row = rows[i];
+                contactIds[i] = row.mContactId;
+                lookupKeys[i] = row.mLookupKey;
+                displayNames[i] = row.mDisplayName;
+                thumbnailUris[i] = row.mThumbnailUri;
+                numbers[i] = row.mNumber;
+                types[i] = row.mType;
+                labels[i] = row.mLabel;
+
+                if (i == 0 || rows[i - 1].mContactId != row.mContactId) {
+                    contactGroups.put(row.mContactId, groupCount);
+                    groupRowStart[groupCount] = i;
+                    groupCount++;
+                }
+            }
+            groupRowStart[groupCount] = rowCount;
+            groupRowStart = Arrays.copyOf(groupRowStart, groupCount + 1);
+
+            // Queries of contacts without a number can never be a result.
+            List<Integer> usableQueries = new ArrayList<>(mQueries.size());
+            for (int i = 0; i < mQueries.size(); i++) {
+                if (mQueries.get(i) != null && contactGroups.containsKey(mQueryContactIds.get(i))) {
+                    usableQueries.add(i);
+                }
+            }
+
+            Integer[] order = usableQueries.toArray(new Integer[0]);
+            Arrays.sort(order, (a, b) -> mQueries.get(a).compareTo(mQueries.get(b)));
+
+            String[] keys = new String[order.length];
+            int[] keyGroups = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                keys[i] = mQueries.get(order[i]);
+                keyGroups[i] = contactGroups.get(mQueryContactIds.get(order[i]));
+            }
+
+            return new Index(keys, keyGroups, groupRowStart, contactIds, lookupKeys,
+                    displayNames, thumbnailUris, numbers, types, labels);
+        }
+    }
+
+    private static class Row {
+        private final long mContactId;
+        private final String mLookupKey;
+        private final String mDisplayName;
+        private final String mThumbnailUri;
+        private final String mNumber;
+        private final int mType;
+        private final String mLabel;
+
+        private Row(long contactId, String lookupKey, String displayName, String thumbnailUri,
+                String number, int type, String label) {
+            mContactId = contactId;
+            mLookupKey = lookupKey;
+            mDisplayName = displayName;
+            mThumbnailUri = thumbnailUri;
+            mNumber = number;
+            mType = type;
+            mLabel = label;
+        }
+    }
+
+    /**
+     * Sorts rows on display name (NULL first, like SQLite) and then on contact id.
+     */
+    private static class RowComparator implements Comparator<Row> {
+        public int compare(Row r1, Row r2) {
+            return compareRows(r1.mDisplayName, r1.mContactId, r2.mDisplayName, r2.mContactId);
+        }
+    }
+
+    private static int compareRows(String displayName1, long contactId1, String displayName2,
+            long contactId2) {
+        if (displayName1 == null || displayName2 == null) {
+            if (displayName1 != null) return 1;
+            if (displayName2 != null) return -1;
+        } else {
+            int result = displayName1.compareTo(displayName2);
+            if (result != 0) return result;
+        }
+        return Long.compare(contactId1, contactId2);
+    }
+}
@@ -15,6 +15,7 @@ import com.voipgrid.vialer.api.ServiceGenerator;
 import com.voipgrid.vialer.api.models.SystemUser;
 import com.voipgrid.vialer.api.models.TwoStepCallStatus;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.models.ClickToDialParams;
 import com.voipgrid.vialer.util.JsonStorage;
 import com.voipgrid.vialer.util.LoginRequiredActivity;
@@ -53,7 +54,7 @@ public class TwoStepCallActivity extends LoginRequiredActivity implements View.O
 
         mApi = ServiceGenerator.createApiService(this);
 
-        mLogger = new Logger(TwoStepCallActivity.class);
+        mLogger = LoggerFactory.getLogger(TwoStepCallActivity.class);
 
         String numberToCall = getIntent().getStringExtra(NUMBER_TO_CALL);
 
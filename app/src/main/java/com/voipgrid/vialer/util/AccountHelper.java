@@ -9,6 +9,7 @@ import com.voipgrid.vialer.cryptography.Encrypter;
 import com.voipgrid.vialer.cryptography.LegacyAsymmetricEncrypter;
 import com.voipgrid.vialer.cryptography.LegacyAsymmetricToSymmetricPorter;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 
 /**
  * Class used in handling account information for a user. Encrypt/decrypt credentials that
@@ -26,7 +27,7 @@ public class AccountHelper {
 
     public AccountHelper(Context context) {
         mPrefs = PreferenceManager.getDefaultSharedPreferences(context);
-        mLogger = new Logger(AccountHelper.class);
+        mLogger = LoggerFactory.getLogger(AccountHelper.class);
         mEncrypter = new Encrypter(context);
         mEncryptionPorter = new LegacyAsymmetricToSymmetricPorter(
                 mEncrypter,
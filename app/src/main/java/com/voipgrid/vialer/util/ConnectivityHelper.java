@@ -124,9 +124,19 @@ public class ConnectivityHelper {
      * @return String representation of the connection type.
      */
     public String getConnectionTypeString() {
+        return getConnectionTypeString(getConnectionType());
+    }
+
+    /**
+     * Get a connection type as string.
+     *
+     * @param connection
+     * @return String representation of the connection type.
+     */
+    public static String getConnectionTypeString(Connection connection) {
         String connectionString;
 
-        switch (getConnectionType()) {
+        switch (connection) {
             case WIFI:
                 connectionString = Connection.WIFI.toString();
                 break;
@@ -5,7 +5,7 @@ import android.os.Bundle;
 import androidx.annotation.Nullable;
 
 import com.voipgrid.vialer.Preferences;
-import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.logging.RemoteLoggingActivity;
 import com.voipgrid.vialer.onboarding.SetupActivity;
 
@@ -28,7 +28,7 @@ public class LoginRequiredActivity extends RemoteLoggingActivity {
 
         Preferences prefs = new Preferences(this);
         if (!prefs.isLoggedIn() && prefs.finishedOnboarding()) {
-            new Logger(LoginRequiredActivity.class).w("Not logged in anymore! Redirecting to onboarding");
+            LoggerFactory.getLogger(LoginRequiredActivity.class).w("Not logged in anymore! Redirecting to onboarding");
             // Go to onboarding.
             Intent intent = new Intent(new Intent(this, SetupActivity.class));
             intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
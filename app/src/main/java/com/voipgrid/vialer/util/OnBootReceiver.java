@@ -5,13 +5,14 @@ import android.content.Context;
 import android.content.Intent;
 
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 import com.voipgrid.vialer.middleware.MiddlewareHelper;
 
 
 public class OnBootReceiver extends BroadcastReceiver {
     @Override
     public void onReceive(Context context, Intent intent) {
-        Logger logger = new Logger(OnBootReceiver.class);
+        Logger logger = LoggerFactory.getLogger(OnBootReceiver.class);
         logger.e("onBootReceiver");
 
         MiddlewareHelper.registerAtMiddleware(context);
@@ -12,6 +12,7 @@ import android.view.WindowManager;
 
 import com.voipgrid.vialer.R;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 
 /**
  * Class to help with the disabling of the screen during a call.
@@ -25,7 +26,7 @@ public class ProximitySensorHelper implements SensorEventListener, View.OnClickL
 
     public ProximitySensorHelper(Context context) {
         mContext = context;
-        mLogger = new Logger(ProximitySensorHelper.class);
+        mLogger = LoggerFactory.getLogger(ProximitySensorHelper.class);
         mLogger.v("ProximitySensorHelper");
 
         mSensorManager = (SensorManager) mContext.getSystemService(Context.SENSOR_SERVICE);
@@ -14,6 +14,7 @@ import com.voipgrid.vialer.Preferences;
 import com.voipgrid.vialer.api.models.PhoneAccount;
 import com.voipgrid.vialer.api.models.SystemUser;
 import com.voipgrid.vialer.logging.Logger;
+import com.voipgrid.vialer.logging.LoggerFactory;
 
 /**
  * Class to setup the app to work with the newest code.
@@ -45,7 +46,7 @@ public class UpdateHelper extends AsyncTask<Void, Void, Void> {
         mPreferences = new Preferences(mContext);
         this.mListener = listener;
 
-        mLogger = new Logger(UpdateHelper.class);
+        mLogger = LoggerFactory.getLogger(UpdateHelper.class);
     }
 
     @Override
@@ -0,0 +1,38 @@
+package com.voipgrid.vialer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the recorded fixtures in the test resources.
+ */
+public class Fixtures {
+
+    /**
+     * Read a fixture as text.
+     *
+     * @param relativeTo The class the name of the fixture is relative to.
+     * @param fixture The name of the fixture, e.g. "pjsip.log".
+     * @return
+     * @throws IOException When the fixture can not be read.
+     */
+    public static String read(Class<?> relativeTo, String fixture) throws IOException {
+        InputStream in = relativeTo.getResourceAsStream(fixture);
+        if (in == null) {
+            throw new IOException("Fixture not found: " + fixture);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        try {
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toString("UTF-8");
+    }
+}
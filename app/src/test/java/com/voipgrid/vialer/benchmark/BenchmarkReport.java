@@ -0,0 +1,96 @@
+package com.voipgrid.vialer.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Collects the results of the benchmarks in a machine readable report, so the results of two
+ * builds can be compared. Every result is appended to the file in the benchmark.report system
+ * property as a line of JSON, e.g.
+ *
+ * {"benchmark":"Buffer.add (at capacity)","nsPerOp":41.7,"bytesPerOp":32.0,"operations":10000}
+ *
+ * bytesPerOp is null when the JVM can not measure allocations. Without the property the
+ * results are only printed.
+ */
+public class BenchmarkReport {
+
+    public static final String REPORT_PROPERTY = "benchmark.report";
+
+    private static BenchmarkReport sInstance;
+
+    private final File mFile;
+
+    BenchmarkReport(File file) {
+        mFile = file;
+    }
+
+    public static synchronized BenchmarkReport get() {
+        if (sInstance == null) {
+            String path = System.getProperty(REPORT_PROPERTY);
+            sInstance = new BenchmarkReport(path == null || path.isEmpty() ? null : new File(path));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Append a result to the report.
+     *
+     * @param benchmark The name of the benchmark.
+     * @param nanosPerOperation
+     * @param bytesPerOperation NaN when unknown.
+     * @param operations The number of operations per iteration.
+     */
+    public synchronized void add(String benchmark, double nanosPerOperation,
+            double bytesPerOperation, int operations) {
+        if (mFile == null) {
+            return;
+        }
+
+        String line = String.format(Locale.US,
+                "{\"benchmark\":%s,\"nsPerOp\":%.1f,\"bytesPerOp\":%s,\"operations\":%d}\n",
+                quote(benchmark), nanosPerOperation,
+                Double.isNaN(bytesPerOperation) ? "null"
+                        : String.format(Locale.US, "%.1f", bytesPerOperation),
+                operations);
+
+        File directory = mFile.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Can not create " + directory);
+        }
+
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(mFile, true), "UTF-8");
+            writer.write(line);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not write the benchmark report " + mFile, e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,146 @@
+package com.voipgrid.vialer.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal JMH style harness for benchmarks that run as unit tests. The operation is run for a
+ * number of warmup iterations so the JIT can compile it, then for a number of measured
+ * iterations. Results are consumed by a black hole so the JIT can not remove the work.
+ *
+ * Next to the time the bytes allocated during the measured iterations are measured, when the JVM
+ * supports it. These are the bytes of the threads that are alive at the end of the measured
+ * iterations, a thread that ends during them is not counted. Every result is added to the {@link BenchmarkReport}.
+ */
+public class MicroBenchmark {
+
+    private static final int DEFAULT_WARMUP_ITERATIONS = 5;
+    private static final int DEFAULT_MEASURE_ITERATIONS = 10;
+    private static final int DEFAULT_OPERATIONS_PER_ITERATION = 10000;
+
+    private final String mName;
+    private int mWarmupIterations = DEFAULT_WARMUP_ITERATIONS;
+    private int mMeasureIterations = DEFAULT_MEASURE_ITERATIONS;
+    private int mOperationsPerIteration = DEFAULT_OPERATIONS_PER_ITERATION;
+
+    private volatile int mBlackHole;
+    private double mBytesPerOperation = Double.NaN;
+
+    /**
+     * The benchmarked operation, the invocation counter can be used to vary the input.
+     */
+    public interface Operation {
+        Object run(int invocation) throws Exception;
+    }
+
+    public MicroBenchmark(String name) {
+        mName = name;
+    }
+
+    public MicroBenchmark warmupIterations(int warmupIterations) {
+        mWarmupIterations = warmupIterations;
+        return this;
+    }
+
+    public MicroBenchmark measureIterations(int measureIterations) {
+        mMeasureIterations = measureIterations;
+        return this;
+    }
+
+    public MicroBenchmark operationsPerIteration(int operationsPerIteration) {
+        mOperationsPerIteration = operationsPerIteration;
+        return this;
+    }
+
+    /**
+     * Run the operation, print the result and add it to the report.
+     *
+     * @param operation
+     * @return The average time per operation in nanoseconds of the fastest iteration.
+     */
+    public double run(Operation operation) throws Exception {
+        for (int i = 0; i < mWarmupIterations; i++) {
+            iteration(operation);
+        }
+
+        long best = Long.MAX_VALUE;
+        Map<Long, Long> allocatedBefore = allocatedBytes();
+        for (int i = 0; i < mMeasureIterations; i++) {
+            best = Math.min(best, iteration(operation));
+        }
+        Map<Long, Long> allocatedAfter = allocatedBytes();
+
+        double nanosPerOperation = (double) best / mOperationsPerIteration;
+        mBytesPerOperation = allocatedBefore == null || allocatedAfter == null ? Double.NaN
+                : (double) allocatedBetween(allocatedBefore, allocatedAfter)
+                        / ((long) mMeasureIterations * mOperationsPerIteration);
+
+        System.out.println(String.format("%s: %.1f ns/op, %.1f bytes/op", mName,
+                nanosPerOperation, mBytesPerOperation));
+        BenchmarkReport.get().add(mName, nanosPerOperation, mBytesPerOperation,
+                mOperationsPerIteration);
+        return nanosPerOperation;
+    }
+
+    /**
+     * @return The average number of bytes allocated per operation of the last run, NaN when the
+     * JVM can not measure allocations.
+     */
+    public double getBytesPerOperation() {
+        return mBytesPerOperation;
+    }
+
+    private long iteration(Operation operation) throws Exception {
+        int blackHole = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < mOperationsPerIteration; i++) {
+            Object result = operation.run(i);
+            blackHole += result == null ? 0 : result.hashCode();
+        }
+        long elapsed = System.nanoTime() - start;
+        mBlackHole += blackHole;
+        return elapsed;
+    }
+
+    /**
+     * The bytes allocated so far by every live thread by thread id, so the work an operation
+     * hands off to another thread is included. Returns null when the JVM does not support it.
+     */
+    private static Map<Long, Long> allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        if (!allocations.isThreadAllocatedMemorySupported()
+                || !allocations.isThreadAllocatedMemoryEnabled()) {
+            return null;
+        }
+
+        long[] ids = threads.getAllThreadIds();
+        long[] allocated = allocations.getThreadAllocatedBytes(ids);
+        Map<Long, Long> allocatedByThread = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (allocated[i] >= 0) {
+                allocatedByThread.put(ids[i], allocated[i]);
+            }
+        }
+        return allocatedByThread;
+    }
+
+    /**
+     * Sum what every thread allocated between the snapshots, so a thread that ends does not
+     * lower the sum. A thread that started in between counts from zero.
+     */
+    private static long allocatedBetween(Map<Long, Long> before, Map<Long, Long> after) {
+        long total = 0;
+        for (Map.Entry<Long, Long> thread : after.entrySet()) {
+            Long allocatedBefore = before.get(thread.getKey());
+            total += thread.getValue() - (allocatedBefore != null ? allocatedBefore : 0);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,69 @@
+package com.voipgrid.vialer.contacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class ChangeDebouncerTest {
+
+    private ScheduledExecutorService mExecutor;
+    private ScheduledFuture<?> mPending;
+    private Runnable mAction;
+    private ChangeDebouncer mDebouncer;
+
+    @Before
+    public void setUp() {
+        mExecutor = mock(ScheduledExecutorService.class);
+        mPending = mock(ScheduledFuture.class);
+        mAction = mock(Runnable.class);
+        doReturn(mPending).when(mExecutor).schedule(any(Runnable.class), anyLong(),
+                any(TimeUnit.class));
+        mDebouncer = new ChangeDebouncer(mExecutor, mAction, 2000, 10000);
+    }
+
+    @Test
+    public void it_waits_for_the_changes_to_stop() {
+        when(mPending.cancel(false)).thenReturn(true);
+
+        assertEquals(2000, mDebouncer.onChange(0));
+        assertEquals(2000, mDebouncer.onChange(1500));
+
+        // The first action is replaced.
+        verify(mPending).cancel(false);
+        verify(mExecutor, times(2)).schedule(mAction, 2000, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void it_runs_at_most_the_maximum_delay_after_the_first_change() {
+        when(mPending.cancel(false)).thenReturn(true);
+
+        mDebouncer.onChange(0);
+        mDebouncer.onChange(7000);
+
+        assertEquals(1000, mDebouncer.onChange(9000));
+        assertEquals(0, mDebouncer.onChange(12000));
+    }
+
+    @Test
+    public void a_change_after_the_action_started_starts_a_new_burst() {
+        mDebouncer.onChange(0);
+
+        // The action already started and can not be cancelled.
+        when(mPending.cancel(false)).thenReturn(false);
+
+        assertEquals(2000, mDebouncer.onChange(15000));
+        assertEquals(2000, mDebouncer.onChange(25000));
+    }
+}
@@ -0,0 +1,85 @@
+package com.voipgrid.vialer.contacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.provider.ContactsContract;
+
+import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 26)
+public class ContactImageLoaderTest {
+
+    private static final String NUMBER = "06 12345678";
+
+    private Context mContext;
+    private Contacts mContacts;
+    private ContactImageLoader mLoader;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mContacts = mock(Contacts.class);
+        when(mContacts.getContactNameByPhoneNumber(NUMBER)).thenReturn("Henk");
+        when(mContacts.getContactImageByPhoneNumber(NUMBER))
+                .thenReturn(Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888));
+        mLoader = new ContactImageLoader(mContext, mContacts);
+    }
+
+    @Test
+    public void it_evicts_the_callers_after_a_sync() throws InterruptedException {
+        loadCaller();
+        assertEquals("Henk", mLoader.getCachedCaller(NUMBER).getDisplayName());
+        assertNotNull(mLoader.getCachedPhoto(NUMBER));
+
+        LocalBroadcastManager.getInstance(mContext).sendBroadcastSync(
+                new Intent(ContactsSyncTask.CONTACTS_SYNCED_BROADCAST));
+
+        assertNull(mLoader.getCachedCaller(NUMBER));
+        assertNull(mLoader.getCachedPhoto(NUMBER));
+    }
+
+    @Test
+    public void it_evicts_the_callers_when_the_contacts_change() throws InterruptedException {
+        loadCaller();
+
+        mContext.getContentResolver().notifyChange(ContactsContract.Contacts.CONTENT_URI, null);
+
+        assertNull(mLoader.getCachedCaller(NUMBER));
+        assertNull(mLoader.getCachedPhoto(NUMBER));
+    }
+
+    @Test
+    public void it_keeps_the_avatars() {
+        Bitmap avatar = mLoader.getAvatar("H", NUMBER);
+
+        mLoader.evictContacts();
+
+        assertSame(avatar, mLoader.getAvatar("H", NUMBER));
+    }
+
+    /**
+     * Look up the caller and wait until it is cached by the background thread.
+     */
+    private void loadCaller() throws InterruptedException {
+        mLoader.loadCaller(NUMBER, () -> {});
+        for (int i = 0; i < 100 && mLoader.getCachedCaller(NUMBER) == null; i++) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.voipgrid.vialer.contacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.Manifest;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.provider.ContactsContract;
+
+import com.voipgrid.vialer.logging.TestLoggerFactory;
+import com.voipgrid.vialer.t9.T9BatchWriter;
+import com.voipgrid.vialer.t9.T9DatabaseHelper;
+import com.voipgrid.vialer.t9.T9Match;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 26)
+public class ContactsSyncTaskTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private Context mContext;
+    private T9DatabaseHelper mT9Database;
+    private FakeContactsSyncTask mSyncTask;
+    private long mLastSync;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        Shadows.shadowOf(RuntimeEnvironment.application)
+                .grantPermissions(Manifest.permission.READ_CONTACTS);
+        TestLoggerFactory.useContext(mContext);
+
+        mT9Database = new T9DatabaseHelper(mContext);
+        T9BatchWriter t9Writer = mT9Database.openBatchWriter(T9BatchWriter.MAX_BATCH_SIZE);
+        t9Writer.add(contact(1, "Henk", "0612345678"));
+        t9Writer.add(contact(2, "Bakker", "0201234567"));
+        t9Writer.close();
+
+        mLastSync = System.currentTimeMillis() - HOUR;
+        SyncUtils.setLastSync(mContext, mLastSync);
+        SyncUtils.setRequiresFullContactSync(mContext, false);
+
+        mSyncTask = new FakeContactsSyncTask(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        mT9Database.close();
+        mContext.deleteDatabase(T9DatabaseHelper.DATABASE_NAME);
+        TestLoggerFactory.reset();
+    }
+
+    @Test
+    public void it_syncs_the_changed_and_deleted_contacts() {
+        long now = System.currentTimeMillis();
+        mSyncTask.setContacts(contacts(
+                new Object[] {1, "a", "Anna", null, now},
+                new Object[] {3, "c", "Henk de Boer", null, now}));
+        mSyncTask.setNumbers(numbers(
+                new Object[] {1, 10, "0612345678", 2, null},
+                new Object[] {3, 30, "0301234567", 2, null}));
+        mSyncTask.setDeletedContacts(deletedContacts(new Object[] {2}));
+
+        mSyncTask.syncChanges();
+
+        assertEquals("Anna", mT9Database.getT9Matches("2662").get(0).getDisplayName());
+        List<T9Match> matches = mT9Database.getT9Matches("4365");
+        assertEquals(1, matches.size());
+        assertEquals(3, matches.get(0).getContactId());
+        assertEquals(0, mT9Database.getT9Matches("225537").size());
+
+        // Only what changed since the last sync is queried.
+        assertTrue(mSyncTask.getSelection(ContactsContract.DeletedContacts.CONTENT_URI)
+                .endsWith("> " + mLastSync));
+        assertTrue(mSyncTask.getSelection(ContactsContract.Contacts.CONTENT_URI)
+                .endsWith("> " + mLastSync));
+        assertTrue(Long.parseLong(SyncUtils.getLastSync(mContext)) > mLastSync);
+        assertFalse(SyncUtils.requiresFullContactSync(mContext));
+    }
+
+    @Test
+    public void a_full_sync_removes_the_deleted_contacts_and_skips_the_unchanged_contacts() {
+        // Contact 1 has not changed since the last sync, so it is not written again.
+        mSyncTask.setContacts(contacts(
+                new Object[] {1, "a", "Anna", null, mLastSync - HOUR}));
+        mSyncTask.setNumbers(numbers(
+                new Object[] {1, 10, "0612345678", 2, null}));
+        mSyncTask.setDeletedContacts(deletedContacts(new Object[] {2}));
+
+        mSyncTask.fullSync();
+
+        assertEquals(1, mT9Database.getT9Matches("4365").size());
+        assertEquals(0, mT9Database.getT9Matches("2662").size());
+        assertEquals(0, mT9Database.getT9Matches("225537").size());
+        assertFalse(SyncUtils.requiresFullContactSync(mContext));
+    }
+
+    @Test
+    public void a_full_sync_that_can_not_know_the_deleted_contacts_requires_the_next_full_sync() {
+        mLastSync = System.currentTimeMillis()
+                - ContactsContract.DeletedContacts.DAYS_KEPT_MILLISECONDS - HOUR;
+        SyncUtils.setLastSync(mContext, mLastSync);
+        mSyncTask.setContacts(contacts());
+        mSyncTask.setNumbers(numbers());
+
+        mSyncTask.fullSync();
+
+        // The deleted contacts are no longer kept by the contacts provider.
+        assertNull(mSyncTask.getSelection(ContactsContract.DeletedContacts.CONTENT_URI));
+        assertTrue(SyncUtils.requiresFullContactSync(mContext));
+        assertEquals(1, mT9Database.getT9Matches("225537").size());
+    }
+
+    @Test
+    public void a_required_full_sync_writes_every_contact_again() {
+        SyncUtils.setRequiresFullContactSync(mContext, true);
+        mSyncTask.setContacts(contacts(
+                new Object[] {1, "a", "Henk", null, mLastSync - HOUR}));
+        mSyncTask.setNumbers(numbers(
+                new Object[] {1, 10, "0612345678", 2, null}));
+
+        mSyncTask.fullSync();
+
+        assertEquals(1, mT9Database.getT9Matches("4365").size());
+        assertEquals(0, mT9Database.getT9Matches("225537").size());
+        assertNull(mSyncTask.getSelection(ContactsContract.DeletedContacts.CONTENT_URI));
+        assertFalse(SyncUtils.requiresFullContactSync(mContext));
+    }
+
+    @Test
+    public void a_full_sync_merges_the_numbers_with_the_contacts() {
+        SyncUtils.setRequiresFullContactSync(mContext, true);
+        // Contact 1 has no numbers, contact 3 is not synced and 5 has numbers for two contacts.
+        mSyncTask.setContacts(contacts(
+                new Object[] {1, "a", "Henk", null, mLastSync},
+                new Object[] {2, "b", "Anna", null, mLastSync},
+                new Object[] {4, "d", "Kees", null, mLastSync},
+                new Object[] {5, "e", "Jan", null, mLastSync}));
+        mSyncTask.setNumbers(numbers(
+                new Object[] {2, 20, "0201234567", 2, null},
+                new Object[] {3, 30, "0301234567", 2, null},
+                new Object[] {3, 31, "0307654321", 2, null},
+                new Object[] {4, 40, "0401234567", 2, null},
+                new Object[] {5, 50, "0501234567", 2, null},
+                new Object[] {5, 51, "0507654321", 1, null},
+                new Object[] {6, 60, "0601234567", 2, null}));
+
+        mSyncTask.fullSync();
+
+        assertEquals(0, mT9Database.getT9Matches("4365").size());
+        assertNumbers("2662", 2, "0201234567");
+        assertEquals(0, mT9Database.getT9Matches("0301234567").size());
+        assertEquals(0, mT9Database.getT9Matches("0307654321").size());
+        assertNumbers("5337", 4, "0401234567");
+        assertNumbers("526", 5, "0501234567", "0507654321");
+        assertEquals(0, mT9Database.getT9Matches("0601234567").size());
+
+        // The numbers are not queried per contact.
+        assertNull(mSyncTask.getSelection(ContactsContract.CommonDataKinds.Phone.CONTENT_URI));
+    }
+
+    @Test
+    public void a_full_sync_skips_the_numbers_of_unchanged_contacts() {
+        mSyncTask.setContacts(contacts(
+                new Object[] {1, "a", "Henk", null, mLastSync - HOUR},
+                new Object[] {2, "b", "Anna", null, mLastSync + HOUR}));
+        mSyncTask.setNumbers(numbers(
+                new Object[] {1, 10, "0611111111", 2, null},
+                new Object[] {1, 11, "0622222222", 2, null},
+                new Object[] {2, 20, "0201234567", 2, null}));
+
+        mSyncTask.fullSync();
+
+        // The numbers of the unchanged contact 1 are skipped, not added to contact 2.
+        assertNumbers("4365", 1, "0612345678");
+        assertEquals(0, mT9Database.getT9Matches("0611111111").size());
+        assertNumbers("2662", 2, "0201234567");
+    }
+
+    private static SyncContact contact(long contactId, String displayName, String number) {
+        SyncContact syncContact = new SyncContact(contactId, null, displayName, null);
+        syncContact.addNumber(new SyncContactNumber(contactId * 10, number, 2, null));
+        return syncContact;
+    }
+
+    /**
+     * Assert that exactly these numbers are synced for the contact found by the query.
+     */
+    private void assertNumbers(String t9Query, long contactId, String... numbers) {
+        Set<String> synced = new HashSet<>();
+        for (T9Match match : mT9Database.getT9Matches(t9Query)) {
+            assertEquals(contactId, match.getContactId());
+            synced.add(match.getNumber());
+        }
+        assertEquals(new HashSet<>(Arrays.asList(numbers)), synced);
+    }
+
+    private static MatrixCursor contacts(Object[]... rows) {
+        return cursor(ContactsSyncTask.getContactProjection(), rows);
+    }
+
+    private static MatrixCursor numbers(Object[]... rows) {
+        return cursor(ContactsSyncTask.getPhoneNumberProjection(), rows);
+    }
+
+    private static MatrixCursor deletedContacts(Object[]... rows) {
+        return cursor(new String[] {ContactsContract.DeletedContacts.CONTACT_ID}, rows);
+    }
+
+    private static MatrixCursor cursor(String[] columns, Object[]... rows) {
+        MatrixCursor cursor = new MatrixCursor(columns);
+        for (Object[] row : rows) {
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    /**
+     * Answers the queries of the sync with cursors instead of the contacts provider.
+     */
+    private static class FakeContactsSyncTask extends ContactsSyncTask {
+        private final Map<Uri, Cursor> mCursors = new HashMap<>();
+        private final Map<Uri, String> mSelections = new HashMap<>();
+
+        FakeContactsSyncTask(Context context) {
+            super(context);
+        }
+
+        void setContacts(Cursor contacts) {
+            mCursors.put(ContactsContract.Contacts.CONTENT_URI, contacts);
+        }
+
+        void setNumbers(Cursor numbers) {
+            mCursors.put(ContactsContract.CommonDataKinds.Phone.CONTENT_URI, numbers);
+        }
+
+        void setDeletedContacts(Cursor deletedContacts) {
+            mCursors.put(ContactsContract.DeletedContacts.CONTENT_URI, deletedContacts);
+        }
+
+        String getSelection(Uri uri) {
+            return mSelections.get(uri);
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection,
+                String[] selectionArgs, String sortOrder) {
+            mSelections.put(uri, selection);
+            return mCursors.remove(uri);
+        }
+    }
+}
@@ -1,9 +1,17 @@
 package com.voipgrid.vialer.logging;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public class BufferTest {
 
     @Test
@@ -55,6 +63,149 @@ public class BufferTest {
         assertEquals(0, buffer.get().size());
     }
 
+    @Test
+    public void it_drains_the_buffer() {
+        Buffer buffer = new Buffer(3);
+        buffer.add("first log");
+        buffer.add("second log");
+        buffer.add("third log");
+        buffer.add("fourth log");
+
+        List<String> logs = buffer.drain();
+
+        assertEquals(3, logs.size());
+        assertEquals("second log", logs.get(0));
+        assertEquals("fourth log", logs.get(2));
+        assertEquals(0, buffer.get().size());
+        assertEquals(0, buffer.getBytes());
+
+        buffer.add("fifth log");
+        assertEquals("fifth log", buffer.drain().get(0));
+    }
+
+    @Test
+    public void it_removes_the_oldest_logs_when_the_byte_limit_is_reached() {
+        Buffer buffer = new Buffer(100, Buffer.sizeOf("0123456789") * 2);
+        buffer.add("0123456789");
+        buffer.add("abcdefghij");
+        buffer.add("ABCDEFGHIJ");
+
+        List<String> logs = buffer.get();
+
+        assertEquals(2, logs.size());
+        assertEquals("abcdefghij", logs.get(0));
+        assertEquals(Buffer.sizeOf("0123456789") * 2, buffer.getBytes());
+    }
+
+    @Test
+    public void it_keeps_every_log_of_concurrent_writers() throws Exception {
+        int threads = 8, logsPerThread = 10000;
+        Buffer buffer = new Buffer(threads * logsPerThread, Long.MAX_VALUE);
+
+        runConcurrently(threads, thread -> {
+            for (int i = 0; i < logsPerThread; i++) {
+                buffer.add(thread + ":" + i);
+            }
+        });
+
+        List<String> logs = buffer.drain();
+        assertEquals(threads * logsPerThread, logs.size());
+        assertEquals(threads * logsPerThread, new HashSet<>(logs).size());
+        assertInOrderPerThread(logs, threads);
+        assertEquals(0, buffer.getBytes());
+    }
+
+    @Test
+    public void it_never_loses_or_duplicates_logs_while_draining_concurrently() throws Exception {
+        int threads = 8, logsPerThread = 20000;
+        Buffer buffer = new Buffer(threads * logsPerThread, Long.MAX_VALUE);
+        List<String> drained = new ArrayList<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        Thread drainer = new Thread(() -> {
+            while (writing.get()) {
+                drained.addAll(buffer.drain());
+            }
+        });
+        drainer.start();
+
+        runConcurrently(threads, thread -> {
+            for (int i = 0; i < logsPerThread; i++) {
+                buffer.add(thread + ":" + i);
+            }
+        });
+
+        writing.set(false);
+        drainer.join();
+        drained.addAll(buffer.drain());
+
+        assertEquals(threads * logsPerThread, drained.size());
+        assertEquals(threads * logsPerThread, new HashSet<>(drained).size());
+        assertInOrderPerThread(drained, threads);
+    }
+
+    @Test
+    public void it_stays_within_its_bounds_with_concurrent_writers() throws Exception {
+        int threads = 8, logsPerThread = 20000;
+        long maxBytes = Buffer.sizeOf("0:00000") * 50;
+        Buffer buffer = new Buffer(64, maxBytes);
+
+        runConcurrently(threads, thread -> {
+            for (int i = 0; i < logsPerThread; i++) {
+                buffer.add(String.format("%d:%05d", thread, i % 100000));
+            }
+        });
+
+        List<String> logs = buffer.get();
+        long bytes = 0;
+        for (String log : logs) {
+            bytes += Buffer.sizeOf(log);
+        }
+
+        assertTrue(logs.size() <= 64);
+        assertTrue(buffer.getBytes() <= maxBytes);
+        assertEquals(bytes, buffer.getBytes());
+        assertInOrderPerThread(logs, threads);
+    }
+
+    private interface Writer {
+        void write(int thread);
+    }
+
+    private void runConcurrently(int threads, Writer writer) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            Thread writerThread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                writer.write(thread);
+            });
+            writerThread.start();
+            writers.add(writerThread);
+        }
+        start.countDown();
+        for (Thread writerThread : writers) {
+            writerThread.join();
+        }
+    }
+
+    private void assertInOrderPerThread(List<String> logs, int threads) {
+        int[] last = new int[threads];
+        Arrays.fill(last, -1);
+        for (String log : logs) {
+            String[] parts = log.split(":");
+            int thread = Integer.parseInt(parts[0]);
+            int index = Integer.parseInt(parts[1]);
+            assertTrue(log, index > last[thread]);
+            last[thread] = index;
+        }
+    }
+
     private void addStringsToBuffer(Buffer buffer, int amount) {
         for (int i = 0; i < amount; i++) {
             buffer.add("A test string");
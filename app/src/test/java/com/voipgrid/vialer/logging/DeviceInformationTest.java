@@ -0,0 +1,81 @@
+package com.voipgrid.vialer.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.telephony.TelephonyManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DeviceInformationTest {
+
+    @Mock Context context;
+
+    @Mock ConnectivityManager connectivityManager;
+
+    @Mock TelephonyManager telephonyManager;
+
+    @Mock NetworkInfo networkInfo;
+
+    private DeviceInformation classUnderTest;
+
+    @Before
+    public void setUp() {
+        when(context.getSystemService(Context.CONNECTIVITY_SERVICE)).thenReturn(connectivityManager);
+        when(context.getSystemService(Context.TELEPHONY_SERVICE)).thenReturn(telephonyManager);
+        when(connectivityManager.getActiveNetworkInfo()).thenReturn(networkInfo);
+        when(networkInfo.isConnected()).thenReturn(true);
+        when(networkInfo.getType()).thenReturn(ConnectivityManager.TYPE_MOBILE);
+        when(networkInfo.getSubtype()).thenReturn(TelephonyManager.NETWORK_TYPE_LTE);
+        when(telephonyManager.getNetworkOperatorName()).thenReturn("KPN");
+        classUnderTest = new DeviceInformation(context);
+    }
+
+    @Test
+    public void it_only_queries_the_network_once() {
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("4G (KPN)", classUnderTest.getConnectionType());
+        }
+
+        verify(connectivityManager, times(1)).getActiveNetworkInfo();
+        verify(telephonyManager, times(1)).getNetworkOperatorName();
+    }
+
+    @Test
+    public void it_queries_the_network_again_after_a_connectivity_change() {
+        assertEquals("4G (KPN)", classUnderTest.getConnectionType());
+
+        when(networkInfo.getType()).thenReturn(ConnectivityManager.TYPE_WIFI);
+        assertEquals("4G (KPN)", classUnderTest.getConnectionType());
+
+        classUnderTest.onConnectivityChanged();
+        assertEquals("Wifi", classUnderTest.getConnectionType());
+        assertEquals("Wifi", classUnderTest.getConnectionType());
+        verify(connectivityManager, times(2)).getActiveNetworkInfo();
+    }
+
+    @Test
+    public void it_does_not_keep_a_lookup_that_started_before_a_connectivity_change() {
+        when(telephonyManager.getNetworkOperatorName()).thenAnswer(invocation -> {
+            // The device switches to wifi while the mobile network is looked up.
+            when(networkInfo.getType()).thenReturn(ConnectivityManager.TYPE_WIFI);
+            classUnderTest.onConnectivityChanged();
+            return "KPN";
+        });
+
+        assertEquals("4G (KPN)", classUnderTest.getConnectionType());
+        assertEquals("Wifi", classUnderTest.getConnectionType());
+        assertEquals("Wifi", classUnderTest.getConnectionType());
+        verify(connectivityManager, times(2)).getActiveNetworkInfo();
+    }
+}
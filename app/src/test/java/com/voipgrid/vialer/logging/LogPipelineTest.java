@@ -0,0 +1,193 @@
+package com.voipgrid.vialer.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import com.voipgrid.vialer.logging.file.LogSpool;
+import com.voipgrid.vialer.logging.formatting.LogFormatter;
+import com.voipgrid.vialer.logging.transport.LogTransport;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LogPipelineTest {
+
+    @Mock LogFormatter logFormatter;
+
+    @Mock LogComposer logComposer;
+
+    @Mock DeviceInformation deviceInformation;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> remoteMessages = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> composingThreads = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch composing = new CountDownLatch(1);
+    private CountDownLatch blocked = new CountDownLatch(0);
+
+    private VialerLogger vialerLogger = new VialerLogger(null, (LogTransport.Factory) null) {
+        @Override
+        public void log(List<String> messages) {
+            remoteMessages.addAll(messages);
+        }
+    };
+
+    private Buffer buffer = new Buffer(10);
+
+    @Before
+    public void setUp() throws Exception {
+        when(logFormatter.applyAllFormatters(anyString(), anyString())).thenAnswer(
+                invocation -> invocation.getArgument(1));
+        when(logComposer.compose(anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+            composingThreads.add(Thread.currentThread().getName());
+            composing.countDown();
+            blocked.await();
+            return invocation.getArgument(0) + " " + invocation.getArgument(2);
+        });
+    }
+
+    @Test
+    public void it_composes_the_events_on_the_pipeline_thread() {
+        LogPipeline pipeline = new LogPipeline(logFormatter, logComposer, () -> vialerLogger,
+                buffer);
+
+        assertTrue(pipeline.enqueue(event("first", true)));
+        assertTrue(pipeline.enqueue(event("second", false)));
+        assertTrue(pipeline.flush(1000));
+
+        assertEquals(Collections.singletonList("DEBUG first"), remoteMessages);
+        assertEquals(Collections.singletonList("DEBUG second"), buffer.get());
+        assertEquals(Arrays.asList("LogPipeline", "LogPipeline"), composingThreads);
+        assertEquals(2, pipeline.getProcessedCount());
+        assertEquals(0, pipeline.getDroppedCount());
+    }
+
+    @Test
+    public void it_drops_the_newest_events_when_the_queue_is_full() throws Exception {
+        blocked = new CountDownLatch(1);
+        LogPipeline pipeline = new LogPipeline(logFormatter, logComposer, () -> vialerLogger,
+                buffer, 2, LogPipeline.OverflowPolicy.DROP_NEWEST);
+
+        pipeline.enqueue(event("1", true));
+        composing.await();
+        assertTrue(pipeline.enqueue(event("2", true)));
+        assertTrue(pipeline.enqueue(event("3", true)));
+        assertFalse(pipeline.enqueue(event("4", true)));
+        blocked.countDown();
+
+        assertTrue(pipeline.flush(1000));
+        assertEquals(Arrays.asList("DEBUG 1", "DEBUG 2", "DEBUG 3"), remoteMessages);
+        assertEquals(3, pipeline.getProcessedCount());
+        assertEquals(1, pipeline.getDroppedCount());
+    }
+
+    @Test
+    public void it_drops_the_oldest_events_when_the_queue_is_full() throws Exception {
+        blocked = new CountDownLatch(1);
+        LogPipeline pipeline = new LogPipeline(logFormatter, logComposer, () -> vialerLogger,
+                buffer, 2, LogPipeline.OverflowPolicy.DROP_OLDEST);
+
+        pipeline.enqueue(event("1", true));
+        composing.await();
+        pipeline.enqueue(event("2", true));
+        pipeline.enqueue(event("3", true));
+        assertTrue(pipeline.enqueue(event("4", true)));
+        blocked.countDown();
+
+        assertTrue(pipeline.flush(1000));
+        assertEquals(Arrays.asList("DEBUG 1", "DEBUG 3", "DEBUG 4"), remoteMessages);
+        assertEquals(3, pipeline.getProcessedCount());
+        assertEquals(1, pipeline.getDroppedCount());
+    }
+
+    @Test
+    public void it_accounts_for_every_event_of_concurrent_producers() throws Exception {
+        int threads = 8, eventsPerThread = 5000;
+        LogPipeline pipeline = new LogPipeline(logFormatter, logComposer, () -> vialerLogger,
+                buffer, 256, LogPipeline.OverflowPolicy.DROP_NEWEST);
+
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < eventsPerThread; i++) {
+                    pipeline.enqueue(event(String.valueOf(i), true));
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertTrue(pipeline.flush(5000));
+        assertEquals(threads * eventsPerThread,
+                pipeline.getProcessedCount() + pipeline.getDroppedCount());
+        assertEquals(pipeline.getProcessedCount(), remoteMessages.size());
+    }
+
+    @Test
+    public void it_spools_the_remote_events_while_offline() {
+        LogSpool spool = new LogSpool(folder.getRoot(), 1024, 4096);
+        LogPipeline pipeline = new LogPipeline(logFormatter, logComposer, () -> vialerLogger,
+                buffer, spool, deviceInformation, null, () -> false, 16,
+                LogPipeline.OverflowPolicy.DROP_NEWEST);
+
+        when(deviceInformation.isConnected()).thenReturn(false);
+        pipeline.enqueue(event("offline", true));
+        pipeline.enqueue(event("buffered", false));
+        assertTrue(pipeline.flush(1000));
+
+        when(deviceInformation.isConnected()).thenReturn(true);
+        pipeline.enqueue(event("online", true));
+        assertTrue(pipeline.flush(1000));
+
+        assertEquals(Collections.singletonList("DEBUG online"), remoteMessages);
+        assertEquals(Collections.singletonList("DEBUG buffered"), buffer.get());
+
+        List<String> spooled = new ArrayList<>();
+        spool.drain(spooled::addAll);
+        assertEquals(1, spooled.size());
+        assertTrue(spooled.get(0).startsWith("DEBUG offline (FROM LOG SPOOL, LOGGED AT "));
+    }
+
+    @Test
+    public void it_sets_up_on_the_pipeline_thread_before_the_first_event() {
+        List<String> setUpThreads = new ArrayList<>();
+        boolean[] remoteByDefault = {false};
+        LogPipeline pipeline = new LogPipeline(logFormatter, logComposer, () -> vialerLogger,
+                buffer, null, null, () -> {
+                    setUpThreads.add(Thread.currentThread().getName());
+                    remoteByDefault[0] = true;
+                }, () -> remoteByDefault[0], 16, LogPipeline.OverflowPolicy.DROP_NEWEST);
+
+        // Logged before the remote logging preference was read.
+        pipeline.enqueue(event("unknown", null));
+        pipeline.enqueue(event("buffered", false));
+        assertTrue(pipeline.flush(1000));
+
+        assertEquals(Collections.singletonList("LogPipeline"), setUpThreads);
+        assertEquals(Collections.singletonList("DEBUG unknown"), remoteMessages);
+        assertEquals(Collections.singletonList("DEBUG buffered"), buffer.get());
+    }
+
+    private static LogEvent event(String message, Boolean remote) {
+        return new LogEvent(Logger.DEBUG_TAG, "Tag", message, remote);
+    }
+}
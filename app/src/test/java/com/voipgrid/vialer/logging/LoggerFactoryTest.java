@@ -0,0 +1,71 @@
+package com.voipgrid.vialer.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import android.content.Context;
+
+import com.voipgrid.vialer.logging.tracing.CallerLocator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LoggerFactoryTest {
+
+    @Mock Context context;
+
+    private LoggerFactory loggerFactory;
+
+    @Before
+    public void setUp() {
+        loggerFactory = new LoggerFactory(context);
+        LoggerFactory.setInstance(loggerFactory);
+    }
+
+    @After
+    public void tearDown() {
+        LoggerFactory.setInstance(null);
+    }
+
+    @Test
+    public void constructing_10000_loggers_does_not_touch_the_disk() {
+        for (int i = 0; i < 10000; i++) {
+            LoggerFactory.getLogger(LoggerFactoryTest.class);
+            new Logger(this);
+            loggerFactory.getLogger("Tag" + i).forceRemoteLogging(true).disableConsoleLogging();
+        }
+
+        // The log file, the preferences and the resources are all accessed through the context.
+        verifyZeroInteractions(context);
+    }
+
+    @Test
+    public void it_finds_the_exact_callers_by_default() {
+        assertEquals(CallerLocator.Mode.DEFERRED, loggerFactory.getCallerMode());
+    }
+
+    @Test
+    public void it_shares_one_logger_per_tag() {
+        Logger logger = LoggerFactory.getLogger(LoggerFactoryTest.class);
+
+        assertSame(logger, LoggerFactory.getLogger(LoggerFactoryTest.class));
+        assertSame(logger, loggerFactory.getLogger("LoggerFactoryTest"));
+        assertNotSame(logger, LoggerFactory.getLogger(LoggerFactory.class));
+    }
+
+    @Test
+    public void configuring_a_shared_logger_returns_a_new_logger() {
+        Logger logger = LoggerFactory.getLogger(LoggerFactoryTest.class);
+
+        assertNotSame(logger, logger.forceRemoteLogging(true));
+        assertNotSame(logger, logger.disableConsoleLogging());
+        assertSame(logger, LoggerFactory.getLogger(LoggerFactoryTest.class));
+    }
+}
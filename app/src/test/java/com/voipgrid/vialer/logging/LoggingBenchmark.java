@@ -0,0 +1,185 @@
+package com.voipgrid.vialer.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.voipgrid.vialer.Fixtures;
+import com.voipgrid.vialer.benchmark.MicroBenchmark;
+import com.voipgrid.vialer.logging.formatting.LogFormatter;
+import com.voipgrid.vialer.logging.tracing.CallerLocator;
+import com.voipgrid.vialer.logging.transport.LogTransport;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the time and the allocated bytes per line of every part of the logging subsystem:
+ * {@link Logger}, {@link LogFormatter}, {@link LogComposer}, {@link CallerLocator} and
+ * {@link Buffer}. The results are added to the benchmark report, see
+ * {@link com.voipgrid.vialer.benchmark.BenchmarkReport}. Benchmarks only run with
+ * -PrunBenchmarks.
+ */
+public class LoggingBenchmark {
+
+    private static final String PJSIP_TAG = "Pjsip";
+
+    /**
+     * The pipeline is flushed after this many lines, so the queue never overflows and the time
+     * includes processing the lines on the pipeline thread.
+     */
+    private static final int LINES_PER_FLUSH = 256;
+
+    private static String[] sSipMessages;
+    private static String[] sLines;
+
+    private final AtomicLong mRemoteLines = new AtomicLong();
+
+    @BeforeClass
+    public static void loadFixtures() throws IOException {
+        List<String> messages = new ArrayList<>();
+        messages.addAll(Arrays.asList(
+                Fixtures.read(LoggingBenchmark.class, "formatting/pjsip.log").split("\n\n")));
+        messages.addAll(Arrays.asList(
+                Fixtures.read(LoggingBenchmark.class, "sip/sip_traffic.log").split("\n\n")));
+        sSipMessages = messages.toArray(new String[messages.size()]);
+
+        sLines = new String[] {
+                "Starting call with id 3",
+                "Received a push notification with 4 keys",
+                "onCallStateChanged: CONFIRMED",
+                "Registration state changed to 200 OK (expires in 120 seconds)",
+        };
+    }
+
+    @Test
+    public void benchmark_logger() throws Exception {
+        double local = measureLogger("Logger.d (remote logging off)", false);
+        double remote = measureLogger("Logger.d (remote logging on)", true);
+
+        assertTrue(local < remote);
+    }
+
+    @Test
+    public void benchmark_format_sip_packets() throws Exception {
+        LogFormatter logFormatter = new LogFormatter();
+
+        new MicroBenchmark("LogFormatter.applyAllFormatters (SIP packets)")
+                .operationsPerIteration(5000)
+                .run(i -> logFormatter.applyAllFormatters(PJSIP_TAG,
+                        sSipMessages[i % sSipMessages.length]));
+        new MicroBenchmark("LogFormatter.applyAllFormatters (other lines)")
+                .run(i -> logFormatter.applyAllFormatters("SipService", sLines[i % sLines.length]));
+    }
+
+    @Test
+    public void benchmark_compose() throws Exception {
+        LogComposer logComposer = new LogComposer(new FixedDeviceInformation(), "identifier",
+                "6.3.0");
+
+        new MicroBenchmark("LogComposer.compose").run(i ->
+                logComposer.compose(Logger.DEBUG_TAG, "SipService", sLines[i % sLines.length]));
+    }
+
+    @Test
+    public void benchmark_locate_caller() throws Exception {
+        CallerLocator callerLocator = new CallerLocator();
+
+        new MicroBenchmark("CallerLocator.locate").run(i -> callerLocator.locate());
+    }
+
+    @Test
+    public void benchmark_buffer_at_capacity() throws Exception {
+        Buffer buffer = new Buffer();
+        for (int i = 0; i < 1000; i++) {
+            buffer.add(sLines[i % sLines.length]);
+        }
+
+        new MicroBenchmark("Buffer.add (at capacity)").run(i -> {
+            buffer.add(sLines[i % sLines.length]);
+            return null;
+        });
+
+        assertEquals(100, buffer.get().size());
+    }
+
+    /**
+     * Log lines through a logger with the pipeline of the app, without console logging which is
+     * not available on the JVM.
+     */
+    private double measureLogger(String name, boolean remoteLoggingEnabled) throws Exception {
+        VialerLogger vialerLogger = new VialerLogger(null, (LogTransport.Factory) null) {
+            @Override
+            public void log(List<String> messages) {
+                mRemoteLines.addAndGet(messages.size());
+            }
+        };
+        LogPipeline pipeline = new LogPipeline(new LogFormatter(),
+                new LogComposer(new FixedDeviceInformation(), "identifier", "6.3.0"),
+                () -> vialerLogger, new Buffer());
+        Logger logger = new Logger("SipService", new FixedLoggerFactory(pipeline,
+                remoteLoggingEnabled)).disableConsoleLogging();
+
+        double nanosPerLine = new MicroBenchmark(name).run(i -> {
+            logger.d(sLines[i % sLines.length]);
+            if (i % LINES_PER_FLUSH == LINES_PER_FLUSH - 1) {
+                pipeline.flush(1000);
+            }
+            return null;
+        });
+        pipeline.flush(1000);
+
+        assertEquals(0, pipeline.getDroppedCount());
+        return nanosPerLine;
+    }
+
+    /**
+     * A factory with a fixed pipeline and remote logging preference, so no context is needed.
+     */
+    private static class FixedLoggerFactory extends LoggerFactory {
+        private final LogPipeline mPipeline;
+        private final boolean mRemoteLoggingEnabled;
+
+        private FixedLoggerFactory(LogPipeline pipeline, boolean remoteLoggingEnabled) {
+            super(null);
+            mPipeline = pipeline;
+            mRemoteLoggingEnabled = remoteLoggingEnabled;
+        }
+
+        @Override
+        LogPipeline getPipeline() {
+            return mPipeline;
+        }
+
+        @Override
+        Boolean isRemoteLoggingEnabled() {
+            return mRemoteLoggingEnabled;
+        }
+    }
+
+    private static class FixedDeviceInformation extends DeviceInformation {
+        private FixedDeviceInformation() {
+            super(null);
+        }
+
+        @Override
+        public String getDeviceName() {
+            return "Google Pixel 3";
+        }
+
+        @Override
+        public String getConnectionType() {
+            return "WiFi";
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+    }
+}
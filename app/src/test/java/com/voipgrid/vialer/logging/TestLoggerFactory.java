@@ -0,0 +1,22 @@
+package com.voipgrid.vialer.logging;
+
+import android.content.Context;
+
+/**
+ * Lets tests outside of the logging package log without the application being created.
+ */
+public class TestLoggerFactory {
+
+    /**
+     * Log through a factory that uses the context instead of the application.
+     *
+     * @param context
+     */
+    public static void useContext(Context context) {
+        LoggerFactory.setInstance(new LoggerFactory(context));
+    }
+
+    public static void reset() {
+        LoggerFactory.setInstance(null);
+    }
+}
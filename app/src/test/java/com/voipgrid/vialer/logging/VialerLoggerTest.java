@@ -1,5 +1,6 @@
 package com.voipgrid.vialer.logging;
 
+import static org.junit.Assert.assertFalse;
 import static org.mockito.ArgumentMatchers.anyObject;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.never;
@@ -16,6 +17,8 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.Collections;
+
 @RunWith(MockitoJUnitRunner.class)
 public class VialerLoggerTest {
 
@@ -61,4 +64,25 @@ public class VialerLoggerTest {
         classUnderTest.initialize(new String[] {"invalidToken"});
         classUnderTest.log("A log message");
     }
+
+    @Test
+    public void it_does_not_confirm_messages_sent_through_log_entries() {
+        when(logEntriesFactory.createLogger("token1", context)).thenReturn(loggingWorker1);
+        classUnderTest.initialize(new String[] {"token1"});
+
+        assertFalse(classUnderTest.logAndConfirm(Collections.singletonList("A log message")));
+        verify(loggingWorker1, never()).addLineToQueue(anyString());
+    }
+
+    @Test
+    public void it_closes_the_transports_of_all_environments() {
+        when(logEntriesFactory.createLogger(anyString(), anyObject())).thenReturn(loggingWorker1, loggingWorker2);
+        classUnderTest.initialize(new String[] {"token1"});
+        classUnderTest.logToEnvironment("token2", "A log message");
+
+        classUnderTest.close();
+
+        verify(loggingWorker1).close();
+        verify(loggingWorker2).close();
+    }
 }
@@ -0,0 +1,95 @@
+package com.voipgrid.vialer.logging.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class LogSpoolTest {
+
+    private static final int SEGMENT_BYTES = 64;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File(folder.getRoot(), "spool");
+    }
+
+    @Test
+    public void it_drains_the_records_in_order_across_segments() {
+        LogSpool spool = new LogSpool(directory, SEGMENT_BYTES, 1024);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            expected.add("line " + i);
+            spool.append("line " + i);
+        }
+        spool.flush();
+
+        assertTrue(directory.listFiles().length > 1);
+        assertEquals(expected, drainAll(spool));
+        assertTrue(spool.isEmpty());
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void it_evicts_the_oldest_segments_when_full() {
+        LogSpool spool = new LogSpool(directory, SEGMENT_BYTES, 3 * SEGMENT_BYTES);
+        for (int i = 0; i < 100; i++) {
+            spool.append("line " + i);
+        }
+        spool.flush();
+
+        assertTrue(spool.getBytes() <= 3 * SEGMENT_BYTES);
+        List<String> drained = drainAll(spool);
+        assertEquals("line 99", drained.get(drained.size() - 1));
+        assertTrue(drained.size() < 100);
+    }
+
+    @Test
+    public void it_keeps_the_records_written_before_a_torn_record() throws Exception {
+        LogSpool spool = new LogSpool(directory, 1024, 4096);
+        spool.append("first");
+        spool.append("second");
+        spool.flush();
+
+        File segment = directory.listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - 2);
+        }
+
+        assertEquals(Arrays.asList("first"), drainAll(new LogSpool(directory, 1024, 4096)));
+    }
+
+    @Test
+    public void it_keeps_the_segments_that_failed_to_upload() {
+        LogSpool spool = new LogSpool(directory, 1024, 4096);
+        spool.append("first");
+        spool.flush();
+
+        assertEquals(0, spool.drain(records -> false));
+        spool.append("second");
+        spool.flush();
+
+        assertEquals(Arrays.asList("first", "second"),
+                drainAll(new LogSpool(directory, 1024, 4096)));
+    }
+
+    private List<String> drainAll(LogSpool spool) {
+        List<String> drained = new ArrayList<>();
+        spool.drain(records -> drained.addAll(records));
+        return drained;
+    }
+}
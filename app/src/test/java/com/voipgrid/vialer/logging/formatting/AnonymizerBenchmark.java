@@ -0,0 +1,52 @@
+package com.voipgrid.vialer.logging.formatting;
+
+import static org.junit.Assert.assertTrue;
+
+import com.voipgrid.vialer.Fixtures;
+import com.voipgrid.vialer.benchmark.MicroBenchmark;
+import com.voipgrid.vialer.logging.formatting.formatters.SipLogAnonymizer;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Compares the speed of the {@link SipLogAnonymizer}, which uses the single pass
+ * {@link Anonymizer}, with the patterns it used before, over recorded pjsip log messages.
+ * Benchmarks only run with -PrunBenchmarks, the output is compared in {@link AnonymizerTest}.
+ */
+public class AnonymizerBenchmark {
+
+    private static final String TAG = "Pjsip";
+
+    private static String[] sMessages;
+    private static long sBytes;
+
+    private final SipLogAnonymizer mSipLogAnonymizer = new SipLogAnonymizer();
+
+    @BeforeClass
+    public static void loadFixtures() throws IOException {
+        sMessages = Fixtures.read(AnonymizerBenchmark.class, "pjsip.log").split("\n\n");
+        for (String message : sMessages) {
+            sBytes += message.length();
+        }
+    }
+
+    @Test
+    public void benchmark_anonymize_pjsip_log() throws Exception {
+        double legacy = new MicroBenchmark("SipLogAnonymizer (Pattern per rule)")
+                .operationsPerIteration(5000)
+                .run(i -> LegacySipLogAnonymizer.format(sMessages[i % sMessages.length]));
+        double anonymizer = new MicroBenchmark("SipLogAnonymizer (Anonymizer)")
+                .operationsPerIteration(5000)
+                .run(i -> mSipLogAnonymizer.format(TAG, sMessages[i % sMessages.length]));
+
+        double averageBytes = (double) sBytes / sMessages.length;
+        System.out.println(String.format("Throughput: %.1f MB/s (Pattern per rule), "
+                        + "%.1f MB/s (Anonymizer)",
+                averageBytes * 1000 / legacy, averageBytes * 1000 / anonymizer));
+
+        assertTrue(anonymizer < legacy);
+    }
+}
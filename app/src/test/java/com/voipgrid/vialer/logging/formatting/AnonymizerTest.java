@@ -0,0 +1,62 @@
+package com.voipgrid.vialer.logging.formatting;
+
+import static com.voipgrid.vialer.logging.formatting.Anonymizer.Rule.between;
+import static com.voipgrid.vialer.logging.formatting.Anonymizer.Rule.number;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.voipgrid.vialer.Fixtures;
+import com.voipgrid.vialer.logging.formatting.formatters.SipLogAnonymizer;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class AnonymizerTest {
+
+    private final Anonymizer anonymizer = new Anonymizer(
+            number("sip:", "sip:USER"),
+            between("To:", ">", "To: <ANONYMIZED>"),
+            between("Digest username=\"", "\"", "Digest username=\"<USERNAME>\""),
+            between("username=", "&", "username=<USERNAME>")
+    );
+
+    @Test
+    public void it_returns_the_message_when_nothing_matches() {
+        String message = "Call-ID: 34eb776d3b733462150cc4b23516245a@voipgrid.nl";
+
+        assertSame(message, anonymizer.anonymize(message));
+    }
+
+    @Test
+    public void it_replaces_numbers_with_an_optional_plus_sign() {
+        assertEquals("sip:USER@voipgrid.nl sip:USER@voipgrid.nl sip:+abc sip:",
+                anonymizer.anonymize("sip:0102003041@voipgrid.nl sip:+31508009000@voipgrid.nl sip:+abc sip:"));
+    }
+
+    @Test
+    public void it_only_replaces_up_to_the_terminator_on_the_same_line() {
+        assertEquals("To: <ANONYMIZED>;tag=1\nTo: sip:USER@voipgrid.nl\nTo:>",
+                anonymizer.anonymize("To: <sip:198710033@voipgrid.nl>;tag=1\n"
+                        + "To: sip:198710033@voipgrid.nl\nTo:>"));
+        assertEquals("To: <ANONYMIZED>", anonymizer.anonymize("To:>>"));
+    }
+
+    @Test
+    public void the_leftmost_match_wins_and_is_not_matched_again() {
+        assertEquals("Digest username=\"<USERNAME>\", uri=\"sip:USER\"&",
+                anonymizer.anonymize("Digest username=\"129800041\", uri=\"sip:129800041\"&"));
+        assertEquals("?username=<USERNAME>token=abc",
+                anonymizer.anonymize("?username=129800041&token=abc"));
+    }
+
+    @Test
+    public void the_sip_log_anonymizer_gives_the_same_output_as_the_patterns() throws IOException {
+        SipLogAnonymizer sipLogAnonymizer = new SipLogAnonymizer();
+
+        for (String message : Fixtures.read(AnonymizerTest.class, "pjsip.log").split("\n\n")) {
+            assertEquals(LegacySipLogAnonymizer.format(message),
+                    sipLogAnonymizer.format("Pjsip", message));
+        }
+    }
+}
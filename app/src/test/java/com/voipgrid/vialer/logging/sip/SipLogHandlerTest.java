@@ -0,0 +1,48 @@
+package com.voipgrid.vialer.logging.sip;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.voipgrid.vialer.Fixtures;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class SipLogHandlerTest {
+
+    private static String[] sEntries;
+
+    @BeforeClass
+    public static void loadFixtures() throws IOException {
+        sEntries = Fixtures.read(SipLogHandlerTest.class, "sip_traffic.log").split("\n\n");
+    }
+
+    @Test
+    public void it_finds_the_code_of_a_failed_invite() {
+        assertEquals(Integer.valueOf(486), failedInviteCode("486 Busy Here"));
+        assertEquals(Integer.valueOf(487), failedInviteCode("487 Request Terminated"));
+    }
+
+    @Test
+    public void it_ignores_proxy_authentication() {
+        assertNull(failedInviteCode("407 Proxy Authentication Required"));
+    }
+
+    @Test
+    public void it_ignores_successful_responses_and_requests() {
+        assertNull(failedInviteCode("180 Ringing"));
+        assertNull(failedInviteCode("200 OK"));
+        assertNull(SipLogHandler.extractFailedInviteCode(SipMessage.parse(sEntries[0])));
+    }
+
+    private static Integer failedInviteCode(String statusLine) {
+        for (String entry : sEntries) {
+            if (entry.contains("SIP/2.0 " + statusLine)) {
+                return SipLogHandler.extractFailedInviteCode(SipMessage.parse(entry));
+            }
+        }
+        throw new IllegalArgumentException("No response " + statusLine);
+    }
+}
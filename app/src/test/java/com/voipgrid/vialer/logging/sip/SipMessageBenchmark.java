@@ -0,0 +1,98 @@
+package com.voipgrid.vialer.logging.sip;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.voipgrid.vialer.Fixtures;
+import com.voipgrid.vialer.benchmark.MicroBenchmark;
+import com.voipgrid.vialer.util.StringUtil;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Compares finding failed INVITEs with the {@link SipMessage} parser to the contains scans and
+ * pattern that {@link SipLogHandler} used before, over captured INVITE, 180, 200 and 487 traffic.
+ * Benchmarks only run with -PrunBenchmarks.
+ */
+public class SipMessageBenchmark {
+
+    private static String[] sEntries;
+
+    @BeforeClass
+    public static void loadFixtures() throws IOException {
+        sEntries = Fixtures.read(SipMessageBenchmark.class, "sip_traffic.log").split("\n\n");
+    }
+
+    @Test
+    public void the_parser_finds_the_same_failed_invites_as_the_pattern() {
+        for (String entry : sEntries) {
+            Integer legacy = LegacySipLogHandler.extractFailedInviteCode(entry);
+            SipMessage message = SipMessage.parse(entry);
+            Integer parsed = message != null ? SipLogHandler.extractFailedInviteCode(message) : null;
+
+            // The pattern never ignored 407 because of the int[] in Arrays.asList.
+            assertEquals(legacy != null && legacy == 407 ? null : legacy, parsed);
+        }
+    }
+
+    @Test
+    public void benchmark_handle_sip_traffic() throws Exception {
+        double legacy = new MicroBenchmark("SipLogHandler (contains and pattern)")
+                .warmupIterations(20)
+                .operationsPerIteration(20000)
+                .run(i -> LegacySipLogHandler.handle(sEntries[i % sEntries.length]));
+        double parser = new MicroBenchmark("SipLogHandler (SipMessage)")
+                .warmupIterations(20)
+                .operationsPerIteration(20000)
+                .run(i -> handle(sEntries[i % sEntries.length]));
+
+        assertTrue(parser < legacy);
+    }
+
+    private static Object handle(String log) {
+        SipMessage message = SipMessage.parse(log);
+        if (message == null) {
+            return log.contains("Error sending RTP: Network is unreachable");
+        }
+        return SipLogHandler.extractFailedInviteCode(message);
+    }
+
+    /**
+     * The checks of SipLogHandler before the SipMessage parser.
+     */
+    private static class LegacySipLogHandler {
+
+        static Object handle(String log) {
+            boolean networkUnavailable = log.contains("Error sending RTP: Network is unreachable");
+            if (log.contains("INVITE")) {
+                return extractFailedInviteCode(log);
+            }
+            return networkUnavailable;
+        }
+
+        static Integer extractFailedInviteCode(String log) {
+            if (!log.contains("INVITE")) {
+                return null;
+            }
+
+            ArrayList<String> matches = StringUtil.extractCaptureGroups(log,
+                    "([0-9]{3})\\/([A-Z]+)");
+            if (matches.isEmpty()) {
+                return null;
+            }
+
+            String code = matches.get(0);
+            if (!matches.get(1).equals("INVITE")) {
+                return null;
+            }
+            if (!code.startsWith("4") && !code.startsWith("5")) {
+                return null;
+            }
+            return Integer.valueOf(code);
+        }
+    }
+}
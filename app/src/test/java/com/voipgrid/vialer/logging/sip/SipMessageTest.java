@@ -0,0 +1,79 @@
+package com.voipgrid.vialer.logging.sip;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.voipgrid.vialer.Fixtures;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class SipMessageTest {
+
+    static String[] sEntries;
+
+    @BeforeClass
+    public static void loadFixtures() throws IOException {
+        sEntries = Fixtures.read(SipMessageTest.class, "sip_traffic.log").split("\n\n");
+    }
+
+    @Test
+    public void it_parses_a_logged_request() {
+        SipMessage message = SipMessage.parse(sEntries[0]);
+
+        assertEquals("INVITE", message.getMethod());
+        assertEquals(0, message.getStatusCode());
+        assertEquals("INVITE", message.getCSeqMethod());
+        assertTrue(message.getReasons().isEmpty());
+    }
+
+    @Test
+    public void it_parses_a_logged_response() {
+        SipMessage message = SipMessage.parse(sEntries[2]);
+
+        assertNull(message.getMethod());
+        assertEquals(180, message.getStatusCode());
+        assertEquals("INVITE", message.getCSeqMethod());
+    }
+
+    @Test
+    public void it_parses_a_packet() {
+        SipMessage message = SipMessage.parse("CANCEL sip:129800041@10.0.0.12 SIP/2.0\r\n"
+                + "Via: SIP/2.0/TLS 192.168.1.1:5061;branch=z9hG4bKf906\r\n"
+                + "i: 5b2b8c1e@voipgrid.nl\r\n"
+                + "cseq: 102 CANCEL\r\n"
+                + "Reason: SIP;cause=200;text=\"Call completed elsewhere\"\r\n"
+                + "Content-Length: 0\r\n\r\n");
+
+        assertEquals("CANCEL", message.getMethod());
+        assertEquals("CANCEL", message.getCSeqMethod());
+        assertEquals(Collections.singletonList("SIP;cause=200;text=\"Call completed elsewhere\""),
+                message.getReasons());
+    }
+
+    @Test
+    public void it_keeps_every_reason_header() {
+        SipMessage message = SipMessage.parse("CANCEL sip:129800041@10.0.0.12 SIP/2.0\r\n"
+                + "i: 5b2b8c1e@voipgrid.nl\r\n"
+                + "CSeq: 102 CANCEL\r\n"
+                + "Reason: SIP;cause=200;text=\"Call completed elsewhere\"\r\n"
+                + "reason: Q.850;cause=16;text=\"Normal call clearing\"\r\n"
+                + "Content-Length: 0\r\n\r\n");
+
+        assertEquals(Arrays.asList("SIP;cause=200;text=\"Call completed elsewhere\"",
+                "Q.850;cause=16;text=\"Normal call clearing\""), message.getReasons());
+    }
+
+    @Test
+    public void it_does_not_parse_other_log_entries() {
+        assertNull(SipMessage.parse("pjsua_call.c  .Call 0 state changed to CONFIRMED"));
+        assertNull(SipMessage.parse("pjsua_call.c  .Call 0 is DISCONNECTED [reason=486 (Busy Here)]"));
+        assertNull(SipMessage.parse(""));
+        assertNull(SipMessage.parse(null));
+    }
+}
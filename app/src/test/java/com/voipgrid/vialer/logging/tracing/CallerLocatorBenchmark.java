@@ -0,0 +1,63 @@
+package com.voipgrid.vialer.logging.tracing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.voipgrid.vialer.benchmark.MicroBenchmark;
+
+import org.junit.Test;
+
+/**
+ * Measures the cost per log line of finding the caller in every mode of {@link CallerLocator}.
+ * The lines are logged from a stack of a realistic depth. Benchmarks only run with
+ * -PrunBenchmarks.
+ */
+public class CallerLocatorBenchmark {
+
+    private static final int STACK_DEPTH = 40;
+
+    @Test
+    public void the_deferred_mode_finds_the_same_caller() throws Exception {
+        CallerLocator callerLocator = new CallerLocator();
+
+        assertEquals(atDepth(STACK_DEPTH, () -> callerLocator.locate().format()),
+                atDepth(STACK_DEPTH,
+                        () -> CallerLocator.resolve(CallerLocator.capture()).format()));
+    }
+
+    @Test
+    public void benchmark_locate_caller_per_line() throws Exception {
+        CallerLocator callerLocator = new CallerLocator();
+
+        double exact = measure("CallerLocator EXACT", () ->
+                callerLocator.locateTag("DEBUG", CallerLocator.Mode.EXACT, 1));
+        double capture = measure("CallerLocator DEFERRED (on the logging thread)",
+                CallerLocator::capture);
+        measure("CallerLocator DEFERRED (capture and resolve)", () ->
+                CallerLocator.resolve(CallerLocator.capture()).format());
+        double perSite = measure("CallerLocator PER_SITE", () ->
+                callerLocator.locateTag("DEBUG", CallerLocator.Mode.PER_SITE, 1));
+        double sampled = measure("CallerLocator SAMPLED (1 in 20)", () ->
+                callerLocator.locateTag("DEBUG", CallerLocator.Mode.SAMPLED, 20));
+
+        assertTrue(capture < exact);
+        assertTrue(perSite < exact);
+        assertTrue(sampled < exact);
+    }
+
+    private static double measure(String name, Line line) throws Exception {
+        return atDepth(STACK_DEPTH, () -> new MicroBenchmark(name).run(i -> line.log()));
+    }
+
+    private interface Line {
+        Object log() throws Exception;
+    }
+
+    private static <T> T atDepth(int depth, Depth<T> operation) throws Exception {
+        return depth == 0 ? operation.run() : atDepth(depth - 1, operation);
+    }
+
+    private interface Depth<T> {
+        T run() throws Exception;
+    }
+}
@@ -0,0 +1,60 @@
+package com.voipgrid.vialer.logging.tracing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class CallerLocatorTest {
+
+    @Test
+    public void it_resolves_a_captured_stack_to_the_first_caller_outside_logging() {
+        Throwable capture = stack(
+                new StackTraceElement("com.voipgrid.vialer.logging.Logger", "d", "Logger.java", 150),
+                new StackTraceElement("com.voipgrid.vialer.sip.SipService", "onCreate",
+                        "SipService.java", 120));
+
+        assertEquals("SipService(120)::onCreate()", CallerLocator.resolve(capture).format());
+    }
+
+    @Test
+    public void it_translates_the_sip_log_writer_to_pjsip() {
+        Throwable capture = stack(
+                new StackTraceElement("com.voipgrid.vialer.logging.Logger", "i", "Logger.java", 160),
+                new StackTraceElement("com.voipgrid.vialer.sip.SipLogWriter", "writeLog",
+                        "SipLogWriter.java", 40));
+
+        assertEquals("Pjsip", CallerLocator.resolve(capture).format());
+        assertEquals("Pjsip", CallerLocator.resolve(capture).format());
+    }
+
+    @Test
+    public void it_reuses_the_caller_per_level_in_per_site_mode() {
+        CallerLocator callerLocator = new CallerLocator();
+
+        String debug = callerLocator.locateTag("DEBUG", CallerLocator.Mode.PER_SITE, 1);
+
+        assertSame(debug, callerLocator.locateTag("DEBUG", CallerLocator.Mode.PER_SITE, 1));
+        assertNotSame(debug, callerLocator.locateTag("INFO", CallerLocator.Mode.PER_SITE, 1));
+    }
+
+    @Test
+    public void it_finds_the_caller_once_per_sample_in_sampled_mode() {
+        CallerLocator callerLocator = new CallerLocator();
+
+        String first = callerLocator.locateTag("DEBUG", CallerLocator.Mode.SAMPLED, 3);
+
+        assertSame(first, callerLocator.locateTag("DEBUG", CallerLocator.Mode.SAMPLED, 3));
+        assertSame(first, callerLocator.locateTag("DEBUG", CallerLocator.Mode.SAMPLED, 3));
+        String fourth = callerLocator.locateTag("DEBUG", CallerLocator.Mode.SAMPLED, 3);
+        assertNotSame(first, fourth);
+        assertEquals(first, fourth);
+    }
+
+    private static Throwable stack(StackTraceElement... trace) {
+        Throwable capture = new Throwable();
+        capture.setStackTrace(trace);
+        return capture;
+    }
+}
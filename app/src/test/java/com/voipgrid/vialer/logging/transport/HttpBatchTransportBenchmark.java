@@ -0,0 +1,84 @@
+package com.voipgrid.vialer.logging.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Sends the log lines of a call with SIP logging to the {@link LogCollectorServer}, once with a
+ * request per line and once in gzipped batches, and reports the bytes on the wire and the
+ * batches per second. Benchmarks only run with -PrunBenchmarks.
+ */
+public class HttpBatchTransportBenchmark {
+
+    private static final int LINES = 5000;
+
+    /**
+     * A request per line is too slow to send all lines without dropping most of them.
+     */
+    private static final int PER_LINE_LINES = 200;
+
+    /**
+     * Wait for the sent lines this often when sending a request per line, so the queue of
+     * batches does not overflow.
+     */
+    private static final int PER_LINE_FLUSH_INTERVAL = 16;
+
+    private LogCollectorServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LogCollectorServer();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void benchmark_batched_upload() {
+        HttpBatchTransport perLine = upload(new HttpBatchTransport.Builder(server.getUrl("line"))
+                .maxBatchLines(1), "Request per line", PER_LINE_LINES, PER_LINE_FLUSH_INTERVAL);
+        HttpBatchTransport batched = upload(new HttpBatchTransport.Builder(server.getUrl("batch")),
+                "Gzipped batches", LINES, LINES);
+
+        assertEquals(PER_LINE_LINES, perLine.getLinesSent());
+        assertEquals(LINES, batched.getLinesSent());
+        assertTrue(batched.getBytesOnWire() * 5 / LINES
+                < perLine.getUncompressedBytes() / PER_LINE_LINES);
+    }
+
+    private HttpBatchTransport upload(HttpBatchTransport.Builder builder, String name,
+            int lines, int flushInterval) {
+        HttpBatchTransport transport = builder.build();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < lines; i++) {
+            transport.send(line(i));
+            if (i % flushInterval == flushInterval - 1) {
+                transport.flush(60000);
+            }
+        }
+        assertTrue(transport.flush(60000));
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(String.format("%s: %d requests, %d bytes on the wire for %d bytes "
+                        + "of lines, %.0f batches/s, %.0f lines/s, %d lines dropped",
+                name, transport.getBatchesSent(), transport.getBytesOnWire(),
+                transport.getUncompressedBytes(), transport.getBatchesSent() / seconds,
+                transport.getLinesSent() / seconds, transport.getLinesDropped()));
+        transport.close();
+        return transport;
+    }
+
+    private static String line(int i) {
+        return "DEBUG SipService [" + i + "] pjsua_core.c  .TX 512 bytes Request msg "
+                + "OPTIONS/cseq=" + i + " (tdta0x7f) to UDP 185.30.12.2:5060: OPTIONS "
+                + "sip:sip.example.com SIP/2.0 Via: SIP/2.0/UDP 10.0.0.2:5060;rport;branch="
+                + "z9hG4bKPj" + (i * 7919) + " Max-Forwards: 70 CSeq: " + i + " OPTIONS";
+    }
+}
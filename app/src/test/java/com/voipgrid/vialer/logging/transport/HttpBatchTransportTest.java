@@ -0,0 +1,165 @@
+package com.voipgrid.vialer.logging.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class HttpBatchTransportTest {
+
+    private LogCollectorServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LogCollectorServer();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void it_sends_the_lines_in_batches_over_one_connection() {
+        HttpBatchTransport transport = new HttpBatchTransport.Builder(server.getUrl("token"))
+                .maxBatchLines(10)
+                .build();
+
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 95; i++) {
+            lines.add("line " + i);
+            transport.send("line " + i);
+        }
+
+        assertTrue(transport.flush(5000));
+        assertEquals(lines, server.getLines());
+        assertEquals(10, server.getRequestCount());
+        assertEquals(10, transport.getBatchesSent());
+        assertEquals(1, server.getConnectionCount());
+        assertTrue(transport.getBytesOnWire() < transport.getUncompressedBytes());
+    }
+
+    @Test
+    public void it_sends_an_incomplete_batch_after_the_maximum_delay() throws Exception {
+        HttpBatchTransport transport = new HttpBatchTransport.Builder(server.getUrl("token"))
+                .maxBatchDelayMillis(50)
+                .build();
+
+        transport.send("first");
+        transport.send("second");
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getLines().size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Arrays.asList("first", "second"), server.getLines());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void it_retries_a_batch_when_the_server_fails() {
+        HttpBatchTransport transport = new HttpBatchTransport.Builder(server.getUrl("token"))
+                .initialBackoffMillis(1)
+                .build();
+        server.failNextRequests(503, 500);
+
+        transport.send("line");
+
+        assertTrue(transport.flush(5000));
+        assertEquals(Collections.singletonList("line"), server.getLines());
+        assertEquals(3, server.getRequestCount());
+        assertEquals(2, transport.getRetries());
+        assertEquals(0, transport.getLinesDropped());
+    }
+
+    @Test
+    public void it_drops_a_batch_that_is_rejected() {
+        HttpBatchTransport transport = new HttpBatchTransport.Builder(server.getUrl("token"))
+                .initialBackoffMillis(1)
+                .build();
+        server.failNextRequests(400);
+
+        transport.send("rejected");
+        assertTrue(transport.flush(5000));
+        transport.send("accepted");
+        assertTrue(transport.flush(5000));
+
+        assertEquals(Collections.singletonList("accepted"), server.getLines());
+        assertEquals(1, transport.getLinesDropped());
+        assertEquals(0, transport.getRetries());
+    }
+
+    @Test
+    public void it_confirms_the_lines_that_are_sent_now() {
+        HttpBatchTransport transport = new HttpBatchTransport.Builder(server.getUrl("token"))
+                .build();
+
+        assertTrue(transport.sendNow(Arrays.asList("first", "second")));
+
+        assertEquals(Arrays.asList("first", "second"), server.getLines());
+        assertEquals(1, transport.getBatchesSent());
+    }
+
+    @Test
+    public void it_does_not_confirm_lines_that_the_server_failed_to_accept() {
+        HttpBatchTransport transport = new HttpBatchTransport.Builder(server.getUrl("token"))
+                .build();
+        server.failNextRequests(503);
+
+        assertFalse(transport.sendNow(Collections.singletonList("line")));
+
+        assertEquals(0, transport.getBatchesSent());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void it_stops_the_sender_thread_when_closed() throws Exception {
+        List<HttpBatchTransport> reported = new ArrayList<>();
+        HttpBatchTransport transport = new HttpBatchTransport.Builder(server.getUrl("token"))
+                .statsListener(reported::add, Long.MAX_VALUE)
+                .build();
+        Set<Thread> threads = new HashSet<>(Thread.getAllStackTraces().keySet());
+        transport.send("line");
+        Thread sender = findNewThread(threads, "HttpBatchTransport");
+
+        transport.close();
+        sender.join(5000);
+        transport.send("after closing");
+
+        assertFalse(sender.isAlive());
+        assertEquals(Collections.singletonList("line"), server.getLines());
+        assertEquals(1, transport.getLinesDropped());
+        assertEquals(Collections.singletonList(transport), reported);
+    }
+
+    @Test
+    public void it_counts_the_bytes_of_the_lines_in_utf8() {
+        HttpBatchTransport transport = new HttpBatchTransport.Builder(server.getUrl("token"))
+                .build();
+
+        assertTrue(transport.sendNow(Collections.singletonList("caf\u00e9 \u20ac \ud83d\ude00")));
+
+        // 5 + 1 + 3 + 1 + 4 bytes and the newline.
+        assertEquals(15, transport.getUncompressedBytes());
+        assertEquals(3, HttpBatchTransport.utf8Length("\ud83dab"));
+    }
+
+    private static Thread findNewThread(Set<Thread> existing, String name) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (name.equals(thread.getName()) && !existing.contains(thread)) {
+                return thread;
+            }
+        }
+        throw new AssertionError("No new thread " + name);
+    }
+}
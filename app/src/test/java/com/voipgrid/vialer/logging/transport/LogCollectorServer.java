@@ -0,0 +1,121 @@
+package com.voipgrid.vialer.logging.transport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A local stand-in for the log upload server. It accepts gzipped batches of lines and records
+ * the lines, the requests and the connections they came in on.
+ */
+class LogCollectorServer {
+
+    private final HttpServer mServer;
+    private final List<String> mLines = Collections.synchronizedList(new ArrayList<>());
+    private final Set<Integer> mClientPorts = Collections.synchronizedSet(new HashSet<>());
+    private final ConcurrentLinkedQueue<Integer> mResponseCodes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mRequests = new AtomicInteger();
+
+    LogCollectorServer() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext("/logs/", this::handle);
+        mServer.start();
+    }
+
+    /**
+     * @param token
+     * @return The url the lines of the token are posted to.
+     */
+    String getUrl(String token) {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/logs/" + token;
+    }
+
+    /**
+     * Respond to the next requests with these codes instead of 204, the lines of those requests
+     * are not recorded.
+     *
+     * @param codes
+     */
+    void failNextRequests(int... codes) {
+        for (int code : codes) {
+            mResponseCodes.add(code);
+        }
+    }
+
+    List<String> getLines() {
+        synchronized (mLines) {
+            return new ArrayList<>(mLines);
+        }
+    }
+
+    int getRequestCount() {
+        return mRequests.get();
+    }
+
+    /**
+     * @return The number of different connections that requests came in on.
+     */
+    int getConnectionCount() {
+        return mClientPorts.size();
+    }
+
+    void stop() {
+        mServer.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        mRequests.incrementAndGet();
+        mClientPorts.add(exchange.getRemoteAddress().getPort());
+
+        InputStream body = new ByteArrayInputStream(read(exchange.getRequestBody()));
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            body = new GZIPInputStream(body);
+        }
+
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, "UTF-8"));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+
+        Integer code = mResponseCodes.poll();
+        if (code == null) {
+            mLines.addAll(lines);
+            code = 204;
+        }
+
+        exchange.sendResponseHeaders(code, -1);
+        exchange.close();
+    }
+
+    /**
+     * Read the whole body, the connection is only kept alive when nothing is left unread.
+     */
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
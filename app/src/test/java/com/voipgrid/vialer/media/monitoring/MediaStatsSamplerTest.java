@@ -0,0 +1,111 @@
+package com.voipgrid.vialer.media.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MediaStatsSamplerTest {
+
+    @Mock ScheduledExecutorService executor;
+
+    @Mock ScheduledFuture<?> ticks;
+
+    private MediaStatsSampler sampler;
+
+    @Before
+    public void setUp() {
+        doReturn(ticks).when(executor).scheduleAtFixedRate(any(Runnable.class), anyLong(),
+                eq(MediaStatsSampler.TICK_MILLIS), eq(TimeUnit.MILLISECONDS));
+        sampler = new MediaStatsSampler(executor);
+    }
+
+    @Test
+    public void it_shares_one_schedule_between_calls() {
+        FakeCall first = new FakeCall(1000);
+        FakeCall second = new FakeCall(1000);
+        sampler.start(first);
+        sampler.start(second);
+
+        sampler.tick(0);
+        sampler.tick(1000);
+
+        assertEquals(2, first.mSamples);
+        assertEquals(2, second.mSamples);
+        verify(executor, times(1)).scheduleAtFixedRate(any(Runnable.class), anyLong(),
+                anyLong(), any(TimeUnit.class));
+    }
+
+    @Test
+    public void it_samples_every_call_at_its_own_interval() {
+        FakeCall fast = new FakeCall(1000);
+        FakeCall slow = new FakeCall(5000);
+        sampler.start(fast);
+        sampler.start(slow);
+
+        // Ticks are not exactly on time.
+        for (long now = 0; now < 10000; now += 1000) {
+            sampler.tick(now - 3);
+        }
+
+        assertEquals(10, fast.mSamples);
+        assertEquals(2, slow.mSamples);
+    }
+
+    @Test
+    public void it_stops_ticking_when_no_calls_are_left() {
+        FakeCall ended = new FakeCall(1000);
+        FakeCall stopped = new FakeCall(1000);
+        sampler.start(ended);
+        sampler.start(stopped);
+
+        ended.mActive = false;
+        sampler.tick(0);
+        assertEquals(0, ended.mSamples);
+        assertEquals(1, sampler.getTargetCount());
+
+        sampler.stop(stopped);
+        assertEquals(0, sampler.getTargetCount());
+        verify(ticks).cancel(false);
+    }
+
+    private static class FakeCall implements MediaStatsSampler.Target {
+        private final long mInterval;
+        private boolean mActive = true;
+        private int mSamples;
+
+        private FakeCall(long interval) {
+            mInterval = interval;
+        }
+
+        @Override
+        public boolean isActive() {
+            return mActive;
+        }
+
+        @Override
+        public boolean sample() {
+            mSamples++;
+            return true;
+        }
+
+        @Override
+        public long getSamplingIntervalMillis() {
+            return mInterval;
+        }
+    }
+}
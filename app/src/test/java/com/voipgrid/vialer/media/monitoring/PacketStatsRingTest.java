@@ -0,0 +1,51 @@
+package com.voipgrid.vialer.media.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class PacketStatsRingTest {
+
+    @Test
+    public void it_returns_the_latest_sample() {
+        PacketStatsRing ring = new PacketStatsRing(4);
+        assertNull(ring.latest());
+
+        PacketStats first = new PacketStats(10, 10, 1);
+        PacketStats second = new PacketStats(20, 20, 2);
+        ring.add(first);
+        ring.add(second);
+
+        assertSame(second, ring.latest());
+        assertEquals(2, ring.size());
+    }
+
+    @Test
+    public void it_finds_the_sample_at_or_before_a_time() {
+        PacketStatsRing ring = new PacketStatsRing(8);
+        PacketStats at2 = new PacketStats(20, 20, 2);
+        PacketStats at4 = new PacketStats(40, 40, 4);
+        ring.add(new PacketStats(0, 0, 0));
+        ring.add(at2);
+        ring.add(at4);
+
+        assertSame(at4, ring.atOrBefore(4));
+        assertSame(at2, ring.atOrBefore(3));
+        assertNull(ring.atOrBefore(-1));
+    }
+
+    @Test
+    public void it_overwrites_the_oldest_samples_when_full() {
+        PacketStatsRing ring = new PacketStatsRing(3);
+        for (int time = 0; time < 10; time++) {
+            ring.add(new PacketStats(time, time, time));
+        }
+
+        assertEquals(3, ring.size());
+        assertEquals(9, ring.latest().getCollectionTime());
+        assertEquals(7, ring.atOrBefore(7).getCollectionTime());
+        assertNull(ring.atOrBefore(6));
+    }
+}
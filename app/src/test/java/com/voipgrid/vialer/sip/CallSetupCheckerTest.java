@@ -0,0 +1,146 @@
+package com.voipgrid.vialer.sip;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+
+import com.voipgrid.vialer.logging.TestLoggerFactory;
+import com.voipgrid.vialer.logging.sip.SipLogHandler;
+import com.voipgrid.vialer.util.BroadcastReceiverManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 26)
+public class CallSetupCheckerTest {
+
+    private static final String TOKEN = "a1b2c3";
+
+    private Context mContext;
+    private CallSetupChecker.Reporter mReporter;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        TestLoggerFactory.useContext(mContext);
+        mReporter = mock(CallSetupChecker.Reporter.class);
+    }
+
+    @After
+    public void tearDown() {
+        TestLoggerFactory.reset();
+    }
+
+    @Test
+    public void it_reports_the_latency_of_the_call_once() {
+        CallSetupChecker checker = start(SystemClock.elapsedRealtime() - 1200);
+
+        checker.onIncomingCall(TOKEN);
+        checker.onIncomingCall(TOKEN);
+        timeout();
+
+        verify(mReporter).callSetup(checker, 1200);
+        verifyNoMoreInteractions(mReporter);
+    }
+
+    @Test
+    public void it_reports_a_call_without_a_push_receive_time() {
+        CallSetupChecker checker = start(0);
+
+        checker.onIncomingCall(TOKEN);
+
+        verify(mReporter).callSetup(checker, -1);
+    }
+
+    @Test
+    public void it_reports_no_call_received_after_the_timeout_once() {
+        CallSetupChecker checker = start(SystemClock.elapsedRealtime());
+
+        ShadowLooper.idleMainLooper(
+                CallSetupChecker.MILLISECONDS_ALLOWED_BEFORE_CALL_FAILED_TO_SETUP - 1,
+                TimeUnit.MILLISECONDS);
+        verify(mReporter, never()).noCallReceived(any(CallSetupChecker.class));
+
+        timeout();
+        checker.onIncomingCall(TOKEN);
+        timeout();
+
+        verify(mReporter).noCallReceived(checker);
+        verifyNoMoreInteractions(mReporter);
+    }
+
+    @Test
+    public void it_ignores_the_call_of_another_push_message() {
+        CallSetupChecker checker = start(SystemClock.elapsedRealtime());
+
+        checker.onIncomingCall("d4e5f6");
+        checker.onIncomingCall((String) null);
+        timeout();
+
+        verify(mReporter, never()).callSetup(any(CallSetupChecker.class), anyLong());
+        verify(mReporter).noCallReceived(checker);
+    }
+
+    @Test
+    public void it_reports_a_sip_error_once() {
+        CallSetupChecker checker = start(SystemClock.elapsedRealtime());
+
+        sendSipError(486);
+        sendSipError(503);
+        checker.onIncomingCall(TOKEN);
+        timeout();
+
+        verify(mReporter).callFailedWithSipError(checker, 486);
+        verifyNoMoreInteractions(mReporter);
+    }
+
+    @Test
+    public void it_stops_listening_for_sip_errors_after_the_call() {
+        CallSetupChecker checker = start(SystemClock.elapsedRealtime());
+
+        checker.onIncomingCall(TOKEN);
+        sendSipError(486);
+
+        verify(mReporter, never()).callFailedWithSipError(any(CallSetupChecker.class), anyInt());
+    }
+
+    private CallSetupChecker start(long pushReceivedTime) {
+        CallSetupChecker checker = new CallSetupChecker(TOKEN, "1546300800.123", "1",
+                pushReceivedTime, new Handler(Looper.getMainLooper()),
+                BroadcastReceiverManager.fromContext(mContext), mReporter);
+        checker.start();
+        return checker;
+    }
+
+    private void timeout() {
+        ShadowLooper.idleMainLooper(CallSetupChecker.MILLISECONDS_ALLOWED_BEFORE_CALL_FAILED_TO_SETUP,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void sendSipError(int sipErrorCode) {
+        LocalBroadcastManager.getInstance(mContext).sendBroadcastSync(
+                new Intent(SipLogHandler.INVITE_FAILED_WITH_SIP_ERROR_CODE)
+                        .putExtra(SipLogHandler.EXTRA_SIP_ERROR_CODE, sipErrorCode));
+    }
+}
@@ -0,0 +1,182 @@
+package com.voipgrid.vialer.sip;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class EndpointLifecycleManagerTest {
+
+    private static final String CONFIGURATION = "tls stun:true network:WIFI";
+    private static final long MAX_MEMORY_GROWTH = 1000;
+
+    private FakeIdleTimer mIdleTimer;
+    private EndpointLifecycleManager<FakeEndpoint> mLifecycleManager;
+    private final List<FakeEndpoint> mCreated = new ArrayList<>();
+    private final ManagedEndpoint.Factory<FakeEndpoint> mFactory = () -> {
+        FakeEndpoint endpoint = new FakeEndpoint();
+        mCreated.add(endpoint);
+        return endpoint;
+    };
+
+    @Before
+    public void setUp() {
+        mIdleTimer = new FakeIdleTimer();
+        mLifecycleManager = new EndpointLifecycleManager<>(mIdleTimer, 60000, 3,
+                MAX_MEMORY_GROWTH);
+    }
+
+    @Test
+    public void it_reuses_the_endpoint_for_a_call_within_the_idle_window() throws Exception {
+        FakeEndpoint first = mLifecycleManager.acquire(CONFIGURATION, mFactory);
+        mLifecycleManager.release(first);
+
+        assertTrue(mLifecycleManager.isWarm());
+        assertEquals(60000, mIdleTimer.mDelayMillis);
+
+        FakeEndpoint second = mLifecycleManager.acquire(CONFIGURATION, mFactory);
+
+        assertSame(first, second);
+        assertEquals(1, mCreated.size());
+        assertFalse(first.mDestroyed);
+        assertTrue(mIdleTimer.mCancelled);
+    }
+
+    @Test
+    public void it_destroys_the_endpoint_when_the_idle_window_expires() throws Exception {
+        FakeEndpoint first = mLifecycleManager.acquire(CONFIGURATION, mFactory);
+        mLifecycleManager.release(first);
+
+        mIdleTimer.expire();
+
+        assertTrue(first.mDestroyed);
+        assertFalse(mLifecycleManager.isWarm());
+        assertNotSame(first, mLifecycleManager.acquire(CONFIGURATION, mFactory));
+    }
+
+    @Test
+    public void it_creates_a_new_endpoint_when_the_configuration_changed() throws Exception {
+        FakeEndpoint first = mLifecycleManager.acquire(CONFIGURATION, mFactory);
+        mLifecycleManager.release(first);
+
+        FakeEndpoint second = mLifecycleManager.acquire("tls stun:true network:LTE", mFactory);
+
+        assertNotSame(first, second);
+        assertTrue(first.mDestroyed);
+        assertEquals("created, configuration changed", mLifecycleManager.getLastDecision());
+    }
+
+    @Test
+    public void it_creates_a_new_endpoint_when_the_warm_endpoint_is_not_healthy()
+            throws Exception {
+        FakeEndpoint first = mLifecycleManager.acquire(CONFIGURATION, mFactory);
+        mLifecycleManager.release(first);
+        first.mHealthy = false;
+
+        FakeEndpoint second = mLifecycleManager.acquire(CONFIGURATION, mFactory);
+
+        assertNotSame(first, second);
+        assertTrue(first.mDestroyed);
+    }
+
+    @Test
+    public void it_does_not_keep_an_endpoint_that_grew_too_much() throws Exception {
+        FakeEndpoint first = mLifecycleManager.acquire(CONFIGURATION, mFactory);
+        first.mMemoryUsageBytes += MAX_MEMORY_GROWTH + 1;
+
+        mLifecycleManager.release(first);
+
+        assertTrue(first.mDestroyed);
+        assertFalse(mLifecycleManager.isWarm());
+    }
+
+    @Test
+    public void it_does_not_keep_an_endpoint_that_was_used_for_the_maximum_number_of_calls()
+            throws Exception {
+        FakeEndpoint first = null;
+        for (int call = 0; call < 3; call++) {
+            first = mLifecycleManager.acquire(CONFIGURATION, mFactory);
+            mLifecycleManager.release(first);
+        }
+
+        assertEquals(1, mCreated.size());
+        assertTrue(first.mDestroyed);
+        assertFalse(mLifecycleManager.isWarm());
+    }
+
+    @Test
+    public void it_destroys_the_endpoint_directly_without_an_idle_window() throws Exception {
+        mLifecycleManager = new EndpointLifecycleManager<>(mIdleTimer, 0, 3, MAX_MEMORY_GROWTH);
+
+        FakeEndpoint first = mLifecycleManager.acquire(CONFIGURATION, mFactory);
+        mLifecycleManager.release(first);
+
+        assertTrue(first.mDestroyed);
+        assertEquals(0, mIdleTimer.mDelayMillis);
+    }
+
+    @Test
+    public void it_does_not_expire_an_endpoint_that_is_in_use() throws Exception {
+        FakeEndpoint first = mLifecycleManager.acquire(CONFIGURATION, mFactory);
+        mLifecycleManager.release(first);
+        Runnable expired = mIdleTimer.mExpired;
+        mLifecycleManager.acquire(CONFIGURATION, mFactory);
+
+        // The expiry was already running when the endpoint was acquired.
+        expired.run();
+
+        assertFalse(first.mDestroyed);
+    }
+
+    private static class FakeEndpoint implements ManagedEndpoint {
+        private boolean mHealthy = true;
+        private long mMemoryUsageBytes = 5000;
+        private boolean mDestroyed;
+
+        @Override
+        public boolean isHealthy() {
+            return mHealthy && !mDestroyed;
+        }
+
+        @Override
+        public long getMemoryUsageBytes() {
+            return mMemoryUsageBytes;
+        }
+
+        @Override
+        public void destroy() {
+            mDestroyed = true;
+        }
+    }
+
+    private static class FakeIdleTimer implements ManagedEndpoint.IdleTimer {
+        private Runnable mExpired;
+        private long mDelayMillis;
+        private boolean mCancelled;
+
+        @Override
+        public void schedule(Runnable expired, long delayMillis) {
+            mExpired = expired;
+            mDelayMillis = delayMillis;
+            mCancelled = false;
+        }
+
+        @Override
+        public void cancel() {
+            mCancelled = true;
+        }
+
+        private void expire() {
+            if (!mCancelled && mExpired != null) {
+                mExpired.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.voipgrid.vialer.sip;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.voipgrid.vialer.sip.SipLogForwardingPolicy.Category;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class SipLogForwardingPolicyTest {
+
+    @Test
+    public void it_forwards_every_sip_message_and_samples_media() {
+        SipLogForwardingPolicy policy = SipLogForwardingPolicy.createDefault();
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(policy.shouldForward(Category.SIP, 4, 0));
+            policy.shouldForward(Category.MEDIA, 4, 0);
+        }
+
+        assertEquals(100, policy.getForwardedCount(Category.SIP));
+        assertEquals(10, policy.getForwardedCount(Category.MEDIA));
+        assertEquals(90, policy.getSuppressedCount(Category.MEDIA));
+    }
+
+    @Test
+    public void it_suppresses_lines_above_the_level_of_their_category() {
+        SipLogForwardingPolicy policy = new SipLogForwardingPolicy.Builder()
+                .category(Category.OTHER, 3, 1, SipLogForwardingPolicy.UNLIMITED, 0)
+                .category(Category.MEDIA, 2, 1, SipLogForwardingPolicy.UNLIMITED, 0)
+                .build();
+
+        assertTrue(policy.shouldForward(Category.OTHER, 3, 0));
+        assertFalse(policy.shouldForward(Category.OTHER, 4, 0));
+        assertFalse(policy.shouldForward(Category.MEDIA, 3, 0));
+        assertEquals(Integer.MAX_VALUE, policy.getMaxLevel());
+    }
+
+    @Test
+    public void it_limits_the_rate_of_lines_per_category() {
+        SipLogForwardingPolicy policy = new SipLogForwardingPolicy.Builder()
+                .category(Category.OTHER, 5, 1, 10, 5)
+                .build();
+        long second = TimeUnit.SECONDS.toNanos(1);
+
+        int forwarded = 0;
+        for (int i = 0; i < 20; i++) {
+            forwarded += policy.shouldForward(Category.OTHER, 4, 0) ? 1 : 0;
+        }
+        assertEquals(5, forwarded);
+
+        assertTrue(policy.shouldForward(Category.OTHER, 4, second / 10));
+        assertFalse(policy.shouldForward(Category.OTHER, 4, second / 10));
+        assertTrue(policy.shouldForward(Category.SIP, 4, second / 10));
+    }
+
+    @Test
+    public void it_reports_and_resets_the_counters() {
+        SipLogForwardingPolicy policy = SipLogForwardingPolicy.createDefault();
+        policy.shouldForward(Category.SIP, 4, 0);
+        policy.shouldForward(Category.OTHER, 6, 0);
+
+        assertEquals("Forwarded pjsip log lines: SIP 1 forwarded, 0 suppressed; "
+                + "MEDIA 0 forwarded, 0 suppressed; OTHER 0 forwarded, 1 suppressed",
+                policy.report());
+        assertEquals(0, policy.getForwardedCount(Category.SIP));
+        assertEquals(0, policy.getSuppressedCount(Category.OTHER));
+    }
+
+    @Test
+    public void it_categorizes_entries_by_their_sender() {
+        assertEquals(Category.MEDIA, SipLogForwardingPolicy.categorize(
+                "12:30:01.123 strm0x7c2a0c1e00  Jitter buffer starts returning normal frames"));
+        assertEquals(Category.MEDIA, SipLogForwardingPolicy.categorize(
+                "12:30:01.123 pjsua_media.c  ..Call 0: updating media.."));
+        assertEquals(Category.OTHER, SipLogForwardingPolicy.categorize(
+                "12:30:01.123 pjsua_call.c  .Call 0 state changed to CONFIRMED"));
+    }
+}
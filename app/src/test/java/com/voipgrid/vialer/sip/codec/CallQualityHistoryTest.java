@@ -0,0 +1,88 @@
+package com.voipgrid.vialer.sip.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class CallQualityHistoryTest {
+
+    private static final NetworkKey LTE = NetworkKey.of(NetworkKey.Type.LTE);
+
+    @Test
+    public void it_keeps_a_moving_average_of_the_calls() {
+        CallQualityHistory history = new CallQualityHistory();
+        history.record(LTE, Codec.OPUS, 4.0, 0.0);
+        history.record(LTE, Codec.OPUS, 3.0, 10.0);
+
+        CallQualityHistory.Record record = history.get(LTE, Codec.OPUS);
+        assertEquals(2, record.getCalls());
+        assertEquals(3.7, record.getMos(), 0.0001);
+        assertEquals(3.0, record.getPacketLossPercentage(), 0.0001);
+        assertNull(history.get(LTE, Codec.ILBC));
+    }
+
+    @Test
+    public void it_survives_encoding_and_decoding() {
+        CallQualityHistory history = new CallQualityHistory();
+        history.record(LTE, Codec.OPUS, 3.92, 1.5);
+        history.record(NetworkKey.wifi("\"Home\""), Codec.ILBC, 4.01, 0.2);
+
+        CallQualityHistory decoded = CallQualityHistory.decode(history.encode());
+
+        assertEquals(history.encode(), decoded.encode());
+        assertEquals(3.92, decoded.get(LTE, Codec.OPUS).getMos(), 0.001);
+        assertEquals(1, decoded.get(NetworkKey.wifi("Home"), Codec.ILBC).getCalls());
+    }
+
+    @Test
+    public void it_keeps_the_calls_with_the_other_codec() {
+        CallQualityHistory history = new CallQualityHistory();
+        history.record(LTE, Codec.ILBC, 2.5, 1.0);
+        history.addCallWithOtherCodec(LTE);
+        assertEquals(2, history.addCallWithOtherCodec(LTE));
+
+        CallQualityHistory decoded = CallQualityHistory.decode(history.encode());
+        assertEquals(history.encode(), decoded.encode());
+        assertEquals(3, decoded.addCallWithOtherCodec(LTE));
+
+        decoded.resetCallsWithOtherCodec(LTE);
+        assertEquals(1, decoded.addCallWithOtherCodec(LTE));
+    }
+
+    @Test
+    public void it_skips_records_that_can_not_be_read() {
+        CallQualityHistory history = CallQualityHistory.decode(
+                "lte opus 2 3.50 1.0;5g opus 1 3.0 1.0;lte ilbc x 3.0 1.0;wifi opus 3");
+
+        assertEquals(1, history.getNetworkCount());
+        assertEquals(2, history.get(LTE, Codec.OPUS).getCalls());
+        assertNull(history.get(LTE, Codec.ILBC));
+        assertEquals(0, CallQualityHistory.decode(null).getNetworkCount());
+    }
+
+    @Test
+    public void it_forgets_the_least_recently_used_network() {
+        CallQualityHistory history = new CallQualityHistory();
+        history.record(LTE, Codec.OPUS, 4.0, 0.0);
+        for (int i = 0; i < CallQualityHistory.MAX_NETWORKS; i++) {
+            history.get(LTE, Codec.OPUS);
+            history.record(NetworkKey.wifi("network " + i), Codec.OPUS, 4.0, 0.0);
+        }
+
+        assertEquals(CallQualityHistory.MAX_NETWORKS, history.getNetworkCount());
+        assertNotEquals(null, history.get(LTE, Codec.OPUS));
+        assertNull(history.get(NetworkKey.wifi("network 0"), Codec.OPUS));
+    }
+
+    @Test
+    public void it_does_not_store_the_ssid() {
+        NetworkKey network = NetworkKey.wifi("\"Home\"");
+
+        assertEquals(network, NetworkKey.wifi("Home"));
+        assertEquals(NetworkKey.of(NetworkKey.Type.WIFI), NetworkKey.wifi("<unknown ssid>"));
+        assertEquals(13, network.encode().length());
+        assertEquals(network, NetworkKey.decode(network.encode()));
+    }
+}
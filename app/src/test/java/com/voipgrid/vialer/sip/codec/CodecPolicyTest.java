@@ -0,0 +1,151 @@
+package com.voipgrid.vialer.sip.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Simulates series of calls on networks with synthetic quality, every call is made with the
+ * codec the policy chooses and its quality is added to the history.
+ */
+public class CodecPolicyTest {
+
+    private static final NetworkKey HOME = NetworkKey.wifi("\"Home\"");
+    private static final NetworkKey LTE = NetworkKey.of(NetworkKey.Type.LTE);
+
+    private CallQualityHistory mHistory;
+    private CodecPolicy mCodecPolicy;
+
+    @Before
+    public void setUp() {
+        mHistory = new CallQualityHistory();
+        mCodecPolicy = new CodecPolicy(mHistory);
+    }
+
+    @Test
+    public void it_uses_the_preferred_codec_without_history() {
+        CodecDecision decision = mCodecPolicy.decide(HOME, Codec.OPUS);
+
+        assertEquals(Codec.OPUS, decision.getCodec());
+        assertEquals(CodecPolicy.OpusTier.HIGH.mBitrate, decision.getOpusBitrate());
+        assertEquals(1, decision.getOpusExpectedPacketLoss());
+    }
+
+    @Test
+    public void it_uses_the_preferred_codec_on_an_unknown_network() {
+        assertEquals(Codec.ILBC, mCodecPolicy.decide(null, Codec.ILBC).getCodec());
+    }
+
+    @Test
+    public void it_switches_to_the_other_codec_when_the_preferred_codec_is_poor() {
+        int opusCalls = simulate(HOME, Codec.ILBC, 21, 2.5, 4.2);
+
+        // The preferred codec is used until it is trusted, then mostly the other codec.
+        assertTrue(opusCalls >= 15);
+        assertEquals(Codec.OPUS, mCodecPolicy.decide(HOME, Codec.ILBC).getCodec());
+    }
+
+    @Test
+    public void it_retries_the_preferred_codec_and_returns_to_it_when_the_network_improves() {
+        simulate(HOME, Codec.ILBC, 21, 2.5, 4.2);
+
+        int opusCalls = simulate(HOME, Codec.ILBC, 30, 4.3, 4.2);
+
+        assertTrue(opusCalls < 30);
+        assertEquals(Codec.ILBC, mCodecPolicy.decide(HOME, Codec.ILBC).getCodec());
+    }
+
+    @Test
+    public void it_counts_a_retry_of_the_preferred_codec_that_is_not_recorded() {
+        simulate(HOME, Codec.ILBC, 21, 2.5, 4.2);
+
+        int ilbcCalls = 0;
+        for (int i = 0; i < 3 * CodecPolicy.RETRY_PREFERRED_EVERY; i++) {
+            Codec codec = mCodecPolicy.decide(HOME, Codec.ILBC).getCodec();
+            if (codec == Codec.ILBC) {
+                // The retried call is too short to record.
+                ilbcCalls++;
+            } else {
+                mHistory.record(HOME, codec, 4.2, 1.0);
+            }
+        }
+
+        assertEquals(3, ilbcCalls);
+    }
+
+    @Test
+    public void it_keeps_the_preferred_codec_when_the_other_codec_is_not_better() {
+        simulate(LTE, Codec.OPUS, 20, 2.8, 2.9);
+
+        CodecDecision decision = mCodecPolicy.decide(LTE, Codec.OPUS);
+
+        assertEquals(Codec.OPUS, decision.getCodec());
+    }
+
+    @Test
+    public void it_keeps_the_history_per_network() {
+        simulate(HOME, Codec.ILBC, 21, 2.5, 4.2);
+
+        assertEquals(Codec.ILBC, mCodecPolicy.decide(NetworkKey.wifi("\"Office\""), Codec.ILBC)
+                .getCodec());
+        assertEquals(Codec.ILBC, mCodecPolicy.decide(LTE, Codec.ILBC).getCodec());
+    }
+
+    @Test
+    public void it_lowers_the_opus_bitrate_on_a_network_that_loses_packets() {
+        for (int i = 0; i < CodecPolicy.MIN_CALLS; i++) {
+            mHistory.record(LTE, Codec.OPUS, 3.6, 8.0);
+        }
+
+        CodecDecision decision = mCodecPolicy.decide(LTE, Codec.OPUS);
+
+        assertEquals(CodecPolicy.OpusTier.MEDIUM.mBitrate, decision.getOpusBitrate());
+        assertEquals(8, decision.getOpusExpectedPacketLoss());
+    }
+
+    @Test
+    public void it_raises_the_opus_bitrate_on_a_good_network() {
+        NetworkKey threeG = NetworkKey.of(NetworkKey.Type.THREE_G);
+        assertEquals(CodecPolicy.OpusTier.MEDIUM.mBitrate,
+                mCodecPolicy.decide(threeG, Codec.OPUS).getOpusBitrate());
+        assertEquals(5, mCodecPolicy.decide(threeG, Codec.OPUS).getOpusExpectedPacketLoss());
+
+        for (int i = 0; i < CodecPolicy.MIN_CALLS; i++) {
+            mHistory.record(threeG, Codec.OPUS, 4.2, 0.2);
+        }
+
+        CodecDecision decision = mCodecPolicy.decide(threeG, Codec.OPUS);
+        assertEquals(CodecPolicy.OpusTier.HIGH.mBitrate, decision.getOpusBitrate());
+        assertEquals(0, decision.getOpusExpectedPacketLoss());
+    }
+
+    @Test
+    public void it_uses_the_lowest_opus_bitrate_on_a_slow_network() {
+        CodecDecision decision = mCodecPolicy.decide(NetworkKey.of(NetworkKey.Type.SLOW),
+                Codec.OPUS);
+
+        assertEquals(CodecPolicy.OpusTier.LOW.mBitrate, decision.getOpusBitrate());
+        assertEquals(CodecPolicy.OpusTier.LOW.mComplexity, decision.getOpusComplexity());
+        assertEquals(10, decision.getOpusExpectedPacketLoss());
+    }
+
+    /**
+     * Make calls with the codec the policy chooses.
+     *
+     * @return The number of calls made with Opus.
+     */
+    private int simulate(NetworkKey network, Codec preferred, int calls, double ilbcMos,
+            double opusMos) {
+        int opusCalls = 0;
+        for (int i = 0; i < calls; i++) {
+            Codec codec = mCodecPolicy.decide(network, preferred).getCodec();
+            if (codec == Codec.OPUS) {
+                opusCalls++;
+            }
+            mHistory.record(network, codec, codec == Codec.OPUS ? opusMos : ilbcMos, 1.0);
+        }
+        return opusCalls;
+    }
+}
@@ -0,0 +1,53 @@
+package com.voipgrid.vialer.sip.mos;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * The reference values are those of the E-model as it was calculated by the MosCalculator.
+ */
+public class EModelTest {
+
+    private static final double DELTA = 0.0001;
+
+    private final EModel mEModel = new EModel();
+
+    @Test
+    public void it_rates_a_perfect_call() {
+        assertEquals(92.4722, mEModel.calculateRFactor(pcma(), 0, 0, 0, 1), DELTA);
+        assertEquals(4.3948, mEModel.calculateMos(pcma(), 0, 0, 0, 1), DELTA);
+        assertEquals(4.0573, mEModel.calculateMos(opus(), 0, 0, 0, 1), DELTA);
+    }
+
+    @Test
+    public void it_rates_impaired_calls() {
+        // 1% loss in both directions, 10 ms jitter and 40 ms round trip time.
+        assertEquals(3.1797, mEModel.calculateMos(pcma(), 10, 40, 2, 1), DELTA);
+        assertEquals(3.5115, mEModel.calculateMos(opus(), 10, 40, 2, 1), DELTA);
+
+        // 5% and 2% bursty loss, 30 ms jitter and 150 ms round trip time.
+        assertEquals(0.9917, mEModel.calculateMos(pcma(), 30, 150, 7, 2), DELTA);
+        assertEquals(2.0907, mEModel.calculateMos(opus(), 30, 150, 7, 2), DELTA);
+    }
+
+    @Test
+    public void it_does_not_rate_calls_below_an_r_factor_of_zero() {
+        assertEquals(0.0, mEModel.calculateMos(pcma(), 60, 400, 20, 1.5), DELTA);
+        assertEquals(0.0, EModel.toMos(-1), DELTA);
+        assertEquals(4.5, EModel.toMos(101), DELTA);
+        assertEquals(4.4093, EModel.toMos(93.2), DELTA);
+    }
+
+    static CodecValues.CodecValue pcma() {
+        CodecValues.CodecValue codec = new CodecValues.CodecValue("PCMA", 0.0, 4.3, 0.125);
+        codec.setPacketSize(20);
+        return codec;
+    }
+
+    static CodecValues.CodecValue opus() {
+        CodecValues.CodecValue codec = new CodecValues.CodecValue("opus", 11, 12, 20);
+        codec.setPacketSize(20);
+        return codec;
+    }
+}
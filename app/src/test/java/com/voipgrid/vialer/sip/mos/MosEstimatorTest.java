@@ -0,0 +1,143 @@
+package com.voipgrid.vialer.sip.mos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class MosEstimatorTest {
+
+    private static final double DELTA = 0.0001;
+
+    private final EModel mEModel = new EModel();
+
+    @Test
+    public void the_first_sample_is_rated_from_the_start_of_the_call() {
+        MosEstimator estimator = new MosEstimator(4);
+        assertFalse(estimator.hasEstimate());
+
+        estimator.addSample(EModelTest.pcma(), 1000, 10, 1000, 10, 10, 40, 1);
+
+        assertTrue(estimator.hasEstimate());
+        assertEquals(2.0, estimator.getPacketLossPercentage(), DELTA);
+        assertEquals(mEModel.calculateMos(EModelTest.pcma(), 10, 40, 2, 1), estimator.getMos(),
+                DELTA);
+    }
+
+    @Test
+    public void it_rates_the_samples_in_the_window() {
+        MosEstimator estimator = new MosEstimator(3);
+        long packets = 0, lost = 0;
+
+        // A burst of loss and jitter, followed by a clean window.
+        for (int i = 0; i < 3; i++) {
+            estimator.addSample(EModelTest.pcma(), packets += 50, lost += 10, packets, lost, 80,
+                    300, 2);
+        }
+        double degraded = estimator.getMos();
+        for (int i = 0; i < 3; i++) {
+            estimator.addSample(EModelTest.pcma(), packets += 50, lost, packets, lost, 0, 0, 1);
+        }
+
+        assertEquals(0.0, degraded, DELTA);
+        assertEquals(0.0, estimator.getPacketLossPercentage(), DELTA);
+        assertEquals(mEModel.calculateMos(EModelTest.pcma(), 0, 0, 0, 1), estimator.getMos(),
+                DELTA);
+
+        // One bad sample moves the averages by a third.
+        estimator.addSample(EModelTest.pcma(), packets += 50, lost += 5, packets, lost, 30, 90, 1);
+        assertEquals(mEModel.calculateMos(EModelTest.pcma(), 10, 30, 5.0 / 150 * 100 * 2, 1),
+                estimator.getMos(), DELTA);
+    }
+
+    @Test
+    public void a_direction_without_expected_packets_has_no_loss() {
+        MosEstimator estimator = new MosEstimator(2);
+        estimator.addSample(EModelTest.opus(), 100, 0, 100, 0, 0, 0, 1);
+        estimator.addSample(EModelTest.opus(), 200, 0, 100, 0, 0, 0, 1);
+        estimator.addSample(EModelTest.opus(), 300, 0, 100, 0, 0, 0, 1);
+
+        assertEquals(0.0, estimator.getPacketLossPercentage(), DELTA);
+    }
+
+    @Test
+    public void a_direction_where_all_expected_packets_are_lost_counts_as_lost() {
+        MosEstimator estimator = new MosEstimator(1);
+        estimator.addSample(EModelTest.opus(), 100, 0, 100, 0, 0, 0, 1);
+        estimator.addSample(EModelTest.opus(), 100, 50, 200, 0, 0, 0, 1);
+
+        assertEquals(100.0, estimator.getPacketLossPercentage(), DELTA);
+    }
+
+    @Test
+    public void a_reset_window_starts_from_the_next_sample() {
+        MosEstimator estimator = new MosEstimator(3);
+        estimator.addSample(EModelTest.pcma(), 100, 0, 100, 0, 10, 40, 1);
+        double mos = estimator.getMos();
+
+        // On hold nothing is received, after the hold the window starts again.
+        estimator.resetWindow();
+        assertFalse(estimator.hasEstimate());
+        estimator.addSample(EModelTest.pcma(), 100, 0, 300, 0, 10, 40, 1);
+        assertFalse(estimator.hasEstimate());
+        estimator.addSample(EModelTest.pcma(), 150, 0, 350, 0, 10, 40, 1);
+
+        assertEquals(0.0, estimator.getPacketLossPercentage(), DELTA);
+        assertEquals(mos, estimator.getMos(), DELTA);
+        assertEquals(mos, estimator.getAverageMos(), DELTA);
+        assertEquals(2, estimator.getSampleCount());
+    }
+
+    @Test
+    public void concurrent_calls_are_rated_independently() throws Exception {
+        int calls = 8, samples = 2000;
+        double[] expected = new double[calls];
+        for (int call = 0; call < calls; call++) {
+            MosEstimator estimator = new MosEstimator(5);
+            rate(estimator, call, samples);
+            expected[call] = estimator.getMos();
+        }
+
+        double[] actual = new double[calls];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int call = 0; call < calls; call++) {
+            int index = call;
+            Thread thread = new Thread(() -> {
+                MosEstimator estimator = new MosEstimator(5);
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                rate(estimator, index, samples);
+                actual[index] = estimator.getMos();
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int call = 0; call < calls; call++) {
+            assertEquals(expected[call], actual[call], 0);
+        }
+    }
+
+    /**
+     * Every call has its own jitter, round trip time and loss.
+     */
+    private static void rate(MosEstimator estimator, int call, int samples) {
+        for (int i = 1; i <= samples; i++) {
+            estimator.addSample(EModelTest.opus(), i * 50L, i * call / 4, i * 50L, i * call / 8,
+                    call * 5 + i % 7, call * 30 + i % 11, 1 + call % 3);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.voipgrid.vialer.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void it_keeps_the_latency_within_the_precision_of_its_bucket() {
+        for (long latency = 0; latency <= LatencyHistogram.MAX_LATENCY_MILLIS; latency++) {
+            int index = LatencyHistogram.indexOf(latency);
+            long highest = LatencyHistogram.highestValueOf(index);
+
+            assertTrue(highest >= latency);
+            assertTrue(highest - latency <= latency / (LatencyHistogram.SUB_BUCKETS / 2));
+            if (index > 0) {
+                assertTrue(LatencyHistogram.highestValueOf(index - 1) < latency);
+            }
+        }
+    }
+
+    @Test
+    public void it_finds_the_percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int latency = 1; latency <= 1000; latency++) {
+            histogram.record(latency);
+        }
+
+        assertEquals(1000, histogram.getTotalCount());
+        assertEquals(500, histogram.getValueAtPercentile(50), 500 / 16);
+        assertEquals(900, histogram.getValueAtPercentile(90), 900 / 16);
+        assertEquals(990, histogram.getValueAtPercentile(99), 990 / 16);
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void it_counts_latencies_above_the_maximum_as_the_maximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10 * 60 * 1000);
+        histogram.record(-5);
+
+        assertEquals(LatencyHistogram.MAX_LATENCY_MILLIS, histogram.getMaxMillis());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(LatencyHistogram.MAX_LATENCY_MILLIS, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void it_survives_encoding_and_decoding() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(850);
+        histogram.record(1210);
+        histogram.record(1210);
+        histogram.record(2410);
+
+        LatencyHistogram decoded = LatencyHistogram.decode(histogram.encode());
+
+        assertEquals(histogram.encode(), decoded.encode());
+        assertEquals(histogram.summarize(), decoded.summarize());
+        assertEquals(4, decoded.getTotalCount());
+        assertEquals(2410, decoded.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void it_skips_buckets_that_can_not_be_read() {
+        LatencyHistogram histogram = LatencyHistogram.decode("-1:400,x:3,12:2,9999:1,40");
+
+        assertEquals(2, histogram.getTotalCount());
+        assertEquals(400, histogram.getMaxMillis());
+        assertEquals(0, LatencyHistogram.decode(null).getTotalCount());
+    }
+}
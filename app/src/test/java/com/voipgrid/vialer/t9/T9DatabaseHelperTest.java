@@ -0,0 +1,151 @@
+package com.voipgrid.vialer.t9;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.voipgrid.vialer.contacts.SyncContact;
+import com.voipgrid.vialer.contacts.SyncContactNumber;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 26)
+public class T9DatabaseHelperTest {
+
+    @After
+    public void tearDown() {
+        RuntimeEnvironment.application.deleteDatabase(T9DatabaseHelper.DATABASE_NAME);
+    }
+
+    @Test
+    public void the_matches_query_uses_the_covering_query_index() {
+        T9DatabaseHelper t9Database = new T9DatabaseHelper(RuntimeEnvironment.application);
+        String plan = explain(t9Database.getReadableDatabase(), T9DatabaseHelper.MATCHES_QUERY,
+                "4365", T9DatabaseHelper.getPrefixUpperBound("4365"));
+
+        assertTrue(plan, plan.contains(
+                "USING COVERING INDEX t9_query_index (t9_query>? AND t9_query<?)"));
+        assertTrue(plan, plan.contains("USING INDEX contact_contact_id_index (contact_id=?)"));
+        assertFalse(plan, plan.contains("SCAN TABLE t9_"));
+        assertFalse(plan, plan.contains("SCAN t9_"));
+        t9Database.close();
+    }
+
+    @Test
+    public void it_matches_the_start_of_a_query_ordered_by_display_name() {
+        T9DatabaseHelper t9Database = new T9DatabaseHelper(RuntimeEnvironment.application);
+        T9BatchWriter t9Writer = t9Database.openBatchWriter(T9BatchWriter.MAX_BATCH_SIZE);
+        t9Writer.add(contact(1, "Henk van den Berg", "0508009000", "+31612345678"));
+        t9Writer.add(contact(2, "Bakker", "0201234567"));
+        t9Writer.add(contact(3, "Henk de Boer", "0301234567"));
+        t9Writer.close();
+
+        List<T9Match> matches = t9Database.getT9Matches("4365");
+
+        assertEquals(3, matches.size());
+        assertEquals(3, matches.get(0).getContactId());
+        assertEquals(1, matches.get(1).getContactId());
+        assertEquals("0508009000", matches.get(1).getNumber());
+        assertEquals("+31612345678", matches.get(2).getNumber());
+        // All numbers of a matched contact are returned.
+        assertEquals(2, t9Database.getT9Matches("06").size());
+        assertEquals(0, t9Database.getT9Matches("43659").size());
+    }
+
+    @Test
+    public void it_upgrades_version_2_without_losing_contacts() {
+        SQLiteDatabase db = RuntimeEnvironment.application.openOrCreateDatabase(
+                T9DatabaseHelper.DATABASE_NAME, 0, null);
+        db.execSQL("CREATE TABLE t9_contact (_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "data_id INTEGER, contact_id INTEGER, lookup_key TEXT,display_name TEXT, " +
+                "thumbnail_uri TEXT, number TEXT, type INTEGER, label TEXT);");
+        db.execSQL("CREATE TABLE t9_query (_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "t9_query TEXT COLLATE NOCASE, contact_id INTEGER);");
+        db.execSQL("CREATE INDEX contact_contact_id_index ON t9_contact (contact_id);");
+        db.execSQL("CREATE INDEX contact_sort_index ON t9_contact (display_name);");
+        db.execSQL("CREATE INDEX t9_query_index ON t9_query (t9_query);");
+        db.execSQL("CREATE INDEX t9_query_contact_id_index ON t9_query (contact_id);");
+        db.execSQL("INSERT INTO t9_contact (data_id, contact_id, display_name, number, type) " +
+                "VALUES (10, 1, 'Henk', '0612345678', 2)");
+        db.execSQL("INSERT INTO t9_query (t9_query, contact_id) VALUES ('4365', 1)");
+        db.execSQL("INSERT INTO t9_query (t9_query, contact_id) VALUES ('0612345678', 1)");
+        db.setVersion(2);
+        db.close();
+
+        T9DatabaseHelper t9Database = new T9DatabaseHelper(RuntimeEnvironment.application);
+        List<T9Match> matches = t9Database.getT9Matches("436");
+
+        assertEquals(1, matches.size());
+        assertEquals("Henk", matches.get(0).getDisplayName());
+        assertEquals(1, t9Database.getT9Matches("061").size());
+
+        String plan = explain(t9Database.getReadableDatabase(), T9DatabaseHelper.MATCHES_QUERY,
+                "436", T9DatabaseHelper.getPrefixUpperBound("436"));
+        assertTrue(plan, plan.contains("USING COVERING INDEX t9_query_index"));
+        t9Database.close();
+    }
+
+    @Test
+    public void a_failed_batch_is_not_added_to_the_search_index() {
+        T9DatabaseHelper t9Database = new T9DatabaseHelper(RuntimeEnvironment.application);
+        T9BatchWriter t9Writer = t9Database.openBatchWriter(T9BatchWriter.MAX_BATCH_SIZE);
+        t9Writer.add(contact(1, "Henk", "0508009000"));
+        t9Writer.close();
+
+        T9SearchEngine.Builder builder = new T9SearchEngine.Builder();
+        t9Writer = t9Database.openBatchWriter(T9BatchWriter.MAX_BATCH_SIZE)
+                .setSearchIndexBuilder(builder);
+        t9Writer.add(contact(1, "Henk de Boer", "0508009000"));
+        // A contact without a name can not be written.
+        t9Writer.add(contact(2, null, "0201234567"));
+        try {
+            t9Writer.flush();
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+
+        assertEquals(0, builder.build().size());
+        assertEquals(1, t9Database.getT9Matches("4365").size());
+        assertEquals(0, t9Database.getT9Matches("43653").size());
+        t9Database.close();
+    }
+
+    @Test
+    public void the_prefix_upper_bound_is_the_next_string_after_all_prefixed_strings() {
+        assertEquals("4366", T9DatabaseHelper.getPrefixUpperBound("4365"));
+        assertEquals("0:", T9DatabaseHelper.getPrefixUpperBound("09"));
+        assertEquals(",", T9DatabaseHelper.getPrefixUpperBound("+"));
+    }
+
+    private static SyncContact contact(long contactId, String displayName, String... numbers) {
+        SyncContact syncContact = new SyncContact(contactId, null, displayName, null);
+        for (int i = 0; i < numbers.length; i++) {
+            syncContact.addNumber(new SyncContactNumber(contactId * 10 + i, numbers[i], 2, null));
+        }
+        return syncContact;
+    }
+
+    private static String explain(SQLiteDatabase db, String query, String... args) {
+        StringBuilder plan = new StringBuilder();
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + query, args);
+        int detail = cursor.getColumnIndex("detail");
+        while (cursor.moveToNext()) {
+            plan.append(cursor.getString(detail)).append('\n');
+        }
+        cursor.close();
+        return plan.toString();
+    }
+}
@@ -0,0 +1,140 @@
+package com.voipgrid.vialer.t9;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.voipgrid.vialer.benchmark.MicroBenchmark;
+
+import org.junit.Test;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Compares the lookup table {@link T9Encoder} with the HashMap based implementation it replaced.
+ * Benchmarks only run with -PrunBenchmarks.
+ */
+public class T9EncoderBenchmark {
+
+    private static final String[] NAMES = {
+            "Henk van den Berg",
+            "Henk de Boer",
+            "Bakker",
+            "Jan-Willem Jansen",
+            "Hënk vån dèn Bérg",
+            "Françoise Müller",
+            "Voipgrid Support 24/7",
+            "Dr. Anna Maria de Vries-Smit",
+            "Henk  Bakker",
+            " Henk ",
+            "",
+            "   ",
+    };
+
+    private static final String[] QUERIES = {"2374", "4365", "336", "5", "9999"};
+
+    @Test
+    public void the_encoder_generates_the_same_queries() {
+        for (String name : NAMES) {
+            assertEquals(LegacyT9Query.generateT9NameQueries(name),
+                    T9Query.generateT9NameQueries(name));
+            for (String query : QUERIES) {
+                assertEquals(LegacyT9Query.matchesName(query, name),
+                        T9NameMatcher.T9QueryMatchesName(query, name));
+            }
+        }
+    }
+
+    @Test
+    public void benchmark_generate_name_queries() throws Exception {
+        double legacy = new MicroBenchmark("T9Query.generateT9NameQueries (HashMap)")
+                .run(i -> LegacyT9Query.generateT9NameQueries(NAMES[i % NAMES.length]));
+        double encoder = new MicroBenchmark("T9Query.generateT9NameQueries (T9Encoder)")
+                .run(i -> T9Query.generateT9NameQueries(NAMES[i % NAMES.length]));
+
+        assertTrue(encoder < legacy);
+    }
+
+    @Test
+    public void benchmark_query_matches_name() throws Exception {
+        double legacy = new MicroBenchmark("T9NameMatcher.T9QueryMatchesName (HashMap)")
+                .run(i -> LegacyT9Query.matchesName(QUERIES[i % QUERIES.length],
+                        NAMES[i % NAMES.length]));
+        double encoder = new MicroBenchmark("T9NameMatcher.T9QueryMatchesName (T9Encoder)")
+                .run(i -> T9NameMatcher.T9QueryMatchesName(QUERIES[i % QUERIES.length],
+                        NAMES[i % NAMES.length]));
+
+        assertTrue(encoder < legacy);
+    }
+
+    /**
+     * The implementation of T9Query and T9NameMatcher before the T9Encoder.
+     */
+    private static class LegacyT9Query {
+
+        static boolean matchesName(String query, String displayName) {
+            ArrayList<String> possibleQueries = generateT9NameQueries(displayName);
+
+            Collections.sort(possibleQueries, (s1, s2) -> s2.length() - s1.length());
+
+            for (int i = 0; i < possibleQueries.size(); i++) {
+                if (possibleQueries.get(i).startsWith(query)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        static ArrayList<String> generateT9NameQueries(String displayName) {
+            HashMap<Character, Character> t9Mapping = getT9Mapping();
+            ArrayList<String> nameQueries = new ArrayList<>();
+
+            String normalizedName = Normalizer.normalize(displayName, Normalizer.Form.NFD);
+            normalizedName = normalizedName.replaceAll("\\p{M}", "");
+            normalizedName = normalizedName.toLowerCase();
+
+            String[] splitName = normalizedName.split(" ");
+
+            StringBuilder nameQuery = new StringBuilder();
+
+            for (int i = 0; i < splitName.length; i++) {
+                nameQuery.setLength(0);
+                for (int j = i; j < splitName.length; j++) {
+                    nameQuery.append(splitName[j]);
+                }
+                nameQueries.add(convertNameToT9Query(nameQuery.toString(), t9Mapping));
+            }
+
+            return nameQueries;
+        }
+
+        private static String convertNameToT9Query(String name,
+                HashMap<Character, Character> t9Mapping) {
+            StringBuilder t9Query = new StringBuilder();
+
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+
+                if (Character.isDigit(c)) {
+                    t9Query.append(c);
+                } else if (t9Mapping.keySet().contains(c)) {
+                    t9Query.append(t9Mapping.get(c));
+                }
+            }
+            return t9Query.toString();
+        }
+
+        private static HashMap<Character, Character> getT9Mapping() {
+            HashMap<Character, Character> t9Mapping = new HashMap<>();
+            String[] letters = {"", "", "abc", "def", "ghi", "jkl", "mno", "pqrs", "tuv", "wxyz"};
+            for (int digit = 2; digit < letters.length; digit++) {
+                for (char c : letters[digit].toCharArray()) {
+                    t9Mapping.put(c, (char) ('0' + digit));
+                }
+            }
+            return t9Mapping;
+        }
+    }
+}
@@ -49,25 +49,53 @@ public class T9NameMatcherTest {
 
     @Test
     public void highlightMatchedPartTest() {
-        t9matcherTest("436", "<b>Hen</b>k van den Berg ");
+        t9matcherTest("436", "<b>Hen</b>k van den Berg");
 
         // henk.
-        t9matcherTest("4365", "<b>Henk</b> van den Berg ");
+        t9matcherTest("4365", "<b>Henk</b> van den Berg");
 
         // van.
-        t9matcherTest("826", "Henk <b>van</b> den Berg ");
+        t9matcherTest("826", "Henk <b>van</b> den Berg");
 
         // vande.
-        t9matcherTest("82633", "Henk <b>van de</b>n Berg ");
+        t9matcherTest("82633", "Henk <b>van de</b>n Berg");
 
         // den.
-        t9matcherTest("336", "Henk van <b>den</b> Berg ");
+        t9matcherTest("336", "Henk van <b>den</b> Berg");
 
         // denb.
-        t9matcherTest("3362", "Henk van <b>den B</b>erg ");
+        t9matcherTest("3362", "Henk van <b>den B</b>erg");
 
         // berg.
-        t9matcherTest("2374", "Henk van den <b>Berg</b> ");
+        t9matcherTest("2374", "Henk van den <b>Berg</b>");
+    }
+
+    @Test
+    public void highlightMatchedPartSpecialCharsTest() {
+        assertEquals("<b>H\u00EBnk</b> &lt;Sales&gt;",
+                T9NameMatcher.highlightMatchedPart("4365", "H\u00EBnk <Sales>"));
+        assertEquals("Henk &amp; <b>Co</b>*",
+                T9NameMatcher.highlightMatchedPart("26", "Henk & Co*"));
+        assertEquals("Henk",
+                T9NameMatcher.highlightMatchedPart("999", "Henk"));
+    }
+
+    @Test
+    public void findMatchedPartsTest() {
+        T9Match match = new T9Match(1, null, "Henk van den Berg", null, "+31612345678", 2, null,
+                "0612");
+        T9NameMatcher.findMatchedParts(match);
+        assertFalse(match.hasNameMatch());
+        assertTrue(match.hasNumberMatch());
+        assertEquals(0, match.getNumberMatchStart());
+        assertEquals(6, match.getNumberMatchEnd());
+
+        match = new T9Match(1, null, "Henk van den Berg", null, "+31612345678", 2, null, "3362");
+        T9NameMatcher.findMatchedParts(match);
+        assertTrue(match.hasNameMatch());
+        assertEquals(9, match.getNameMatchStart());
+        assertEquals(14, match.getNameMatchEnd());
+        assertFalse(match.hasNumberMatch());
     }
 
     private void t9matcherTest(String query, String expected) {
@@ -106,6 +106,31 @@ public class T9QueryTest {
 
     }
 
+    /**
+     * Test if spaces, digits and other chars are handled like before.
+     */
+    @Test
+    public void generateT9NameQueriesSeparatorsTest() {
+        ArrayList<String> expectedResult = new ArrayList<>();
+
+        // Double space creates an empty part.
+        expectedResult.add("4365225537");
+        expectedResult.add("225537");
+        expectedResult.add("225537");
+        assertEquals(expectedResult, T9Query.generateT9NameQueries("Henk  Bakker"));
+
+        // Trailing spaces are ignored.
+        expectedResult.clear();
+        expectedResult.add("4365");
+        assertEquals(expectedResult, T9Query.generateT9NameQueries("Henk "));
+
+        // Digits are kept and other chars are skipped.
+        expectedResult.clear();
+        expectedResult.add("787767824");
+        expectedResult.add("24");
+        assertEquals(expectedResult, T9Query.generateT9NameQueries("Support! 24"));
+    }
+
     /**
      * Test if the correct queries are generated for a phone number.
      */
@@ -0,0 +1,127 @@
+package com.voipgrid.vialer.t9;
+
+import static org.junit.Assert.assertEquals;
+
+import com.voipgrid.vialer.contacts.SyncContact;
+import com.voipgrid.vialer.contacts.SyncContactNumber;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the in-memory {@link T9SearchEngine} with {@link T9DatabaseHelper#getT9Matches(String)}
+ * on synthetic address books. Benchmarks only run with -PrunBenchmarks.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 26)
+public class T9SearchEngineBenchmark {
+
+    private static final String[] SYLLABLES = {
+            "an", "be", "de", "el", "ja", "ko", "la", "mar", "ni", "os", "pi", "ro", "sa", "ti",
+            "van", "wi", "ze", "berg", "hen", "kia"
+    };
+
+    private static final String[] TYPED_QUERIES = {"5", "52", "526", "5263", "0", "06", "061", "0612"};
+
+    private static final int ROUNDS = 20;
+
+    @Test
+    public void benchmark_1k_contacts() {
+        benchmark(1000);
+    }
+
+    @Test
+    public void benchmark_10k_contacts() {
+        benchmark(10000);
+    }
+
+    @Test
+    public void benchmark_50k_contacts() {
+        benchmark(50000);
+    }
+
+    private void benchmark(int contacts) {
+        T9DatabaseHelper t9Database = new T9DatabaseHelper(RuntimeEnvironment.application);
+        seed(t9Database, contacts);
+
+        long loadStart = System.nanoTime();
+        T9SearchEngine searchEngine = new T9SearchEngine();
+        searchEngine.reload(t9Database);
+        long loadTime = System.nanoTime() - loadStart;
+
+        // Both implementations must give the same results.
+        for (String query : TYPED_QUERIES) {
+            assertMatchesEqual(t9Database.getT9Matches(query), searchEngine.getT9Matches(query));
+        }
+
+        long databaseTime = 0;
+        long engineTime = 0;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            for (String query : TYPED_QUERIES) {
+                long start = System.nanoTime();
+                t9Database.getT9Matches(query);
+                databaseTime += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                searchEngine.getT9Matches(query);
+                engineTime += System.nanoTime() - start;
+            }
+        }
+
+        int keyPresses = ROUNDS * TYPED_QUERIES.length;
+        System.out.println(String.format(
+                "T9 search with %d contacts: database %d us/key, engine %d us/key, index load %d ms",
+                contacts,
+                databaseTime / keyPresses / 1000,
+                engineTime / keyPresses / 1000,
+                loadTime / 1000000));
+
+        t9Database.close();
+        RuntimeEnvironment.application.deleteDatabase(T9DatabaseHelper.DATABASE_NAME);
+    }
+
+    private void assertMatchesEqual(List<T9Match> expected, List<T9Match> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    /**
+     * Fill the database with contacts that have a unique name and one or two numbers.
+     */
+    private void seed(T9DatabaseHelper t9Database, int contacts) {
+        Random random = new Random(contacts);
+        T9BatchWriter t9Writer = t9Database.openBatchWriter(T9BatchWriter.MAX_BATCH_SIZE);
+
+        for (int contactId = 1; contactId <= contacts; contactId++) {
+            String displayName = randomName(random) + " " + randomName(random) + " " + contactId;
+            SyncContact syncContact = new SyncContact(contactId, null, displayName, null);
+            int numbers = 1 + random.nextInt(2);
+
+            for (int n = 0; n < numbers; n++) {
+                String number = String.format("+316%08d", random.nextInt(100000000));
+                syncContact.addNumber(new SyncContactNumber(contactId * 10 + n, number, 2, null));
+            }
+            t9Writer.add(syncContact);
+        }
+        t9Writer.close();
+    }
+
+    private String randomName(Random random) {
+        StringBuilder name = new StringBuilder();
+        int syllables = 2 + random.nextInt(2);
+        for (int i = 0; i < syllables; i++) {
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+}
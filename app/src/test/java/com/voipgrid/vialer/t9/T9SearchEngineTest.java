@@ -0,0 +1,238 @@
+package com.voipgrid.vialer.t9;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+public class T9SearchEngineTest {
+
+    private T9SearchEngine mSearchEngine;
+
+    @Before
+    public void setUp() {
+        mSearchEngine = new T9SearchEngine();
+        mSearchEngine.setIndex(new T9SearchEngine.Builder()
+                .addContactNumber(1, "a", "Henk van den Berg", null, "0508009000", 2, null)
+                .addContactNumber(1, "a", "Henk van den Berg", null, "+31612345678", 2, null)
+                .addContactNumber(2, "b", "Bakker", null, "0201234567", 2, null)
+                .addContactNumber(2, "b", "Bakker", null, "0201234567", 2, null)
+                .addContactNumber(3, "c", "Henk de Boer", null, "0301234567", 2, null)
+                .addQuery(1, "43658263362374")
+                .addQuery(1, "8263362374")
+                .addQuery(1, "3362374")
+                .addQuery(1, "2374")
+                .addQuery(1, "0508009000")
+                .addQuery(1, "+31612345678")
+                .addQuery(1, "0612345678")
+                .addQuery(2, "225537")
+                .addQuery(2, "0201234567")
+                .addQuery(3, "4365332637")
+                .addQuery(3, "332637")
+                .addQuery(3, "2637")
+                .addQuery(3, "0301234567")
+                // A query without any contact number is never a result.
+                .addQuery(4, "4365")
+                .build());
+    }
+
+    @Test
+    public void it_is_only_loaded_after_an_index_has_been_set() {
+        assertFalse(new T9SearchEngine().isLoaded());
+        assertTrue(mSearchEngine.isLoaded());
+    }
+
+    @Test
+    public void it_matches_the_start_of_a_query() {
+        List<T9Match> matches = mSearchEngine.getT9Matches("4365");
+
+        assertEquals(3, matches.size());
+        assertEquals(3, matches.get(0).getContactId());
+        assertEquals(1, matches.get(1).getContactId());
+        assertEquals(1, matches.get(2).getContactId());
+        assertEquals("4365", matches.get(0).getT9Query());
+    }
+
+    @Test
+    public void it_returns_all_numbers_of_a_matched_contact() {
+        List<T9Match> matches = mSearchEngine.getT9Matches("06");
+
+        assertEquals(2, matches.size());
+        assertEquals("0508009000", matches.get(0).getNumber());
+        assertEquals("+31612345678", matches.get(1).getNumber());
+    }
+
+    @Test
+    public void it_orders_the_results_by_display_name() {
+        List<T9Match> matches = mSearchEngine.getT9Matches("2");
+
+        assertEquals("Bakker", matches.get(0).getDisplayName());
+        assertEquals("Henk de Boer", matches.get(1).getDisplayName());
+        assertEquals("Henk van den Berg", matches.get(2).getDisplayName());
+    }
+
+    @Test
+    public void it_does_not_return_duplicate_matches() {
+        List<T9Match> matches = mSearchEngine.getT9Matches("0201");
+
+        assertEquals(1, matches.size());
+        assertEquals("0201234567", matches.get(0).getNumber());
+    }
+
+    @Test
+    public void it_returns_the_same_results_while_typing_and_removing_digits() {
+        assertEquals(3, mSearchEngine.getT9Matches("4").size());
+        assertEquals(3, mSearchEngine.getT9Matches("43").size());
+        assertEquals(1, mSearchEngine.getT9Matches("43653").size());
+        assertEquals(0, mSearchEngine.getT9Matches("436539").size());
+        assertEquals(1, mSearchEngine.getT9Matches("43653").size());
+        assertEquals(3, mSearchEngine.getT9Matches("4").size());
+        assertEquals(2, mSearchEngine.getT9Matches("2374").size());
+    }
+
+    @Test
+    public void it_limits_the_number_of_results() {
+        T9SearchEngine.Builder builder = new T9SearchEngine.Builder();
+        for (int i = 0; i < 30; i++) {
+            builder.addContactNumber(i, null, "Contact " + (100 + i), null, "0" + i, 2, null);
+            builder.addQuery(i, "266822868");
+        }
+        mSearchEngine.setIndex(builder.build());
+
+        List<T9Match> matches = mSearchEngine.getT9Matches("2668");
+
+        assertEquals(20, matches.size());
+        assertEquals("Contact 100", matches.get(0).getDisplayName());
+        assertEquals("Contact 119", matches.get(19).getDisplayName());
+    }
+
+    @Test
+    public void it_applies_the_changes_of_a_delta_sync() {
+        mSearchEngine.getT9Matches("4365");
+
+        // Contact 1 is renamed, contact 2 is deleted and contact 5 is added.
+        mSearchEngine.update(new HashSet<>(Arrays.asList(1L, 2L, 5L)),
+                new T9SearchEngine.Builder()
+                        .addContactNumber(1, "a", "Anna", null, "0508009000", 2, null)
+                        .addContactNumber(5, "e", "Henk Jansen", null, "0401234567", 2, null)
+                        .addQuery(1, "2662")
+                        .addQuery(1, "0508009000")
+                        .addQuery(5, "4365526736")
+                        .addQuery(5, "526736")
+                        .addQuery(5, "0401234567"));
+
+        List<T9Match> matches = mSearchEngine.getT9Matches("4365");
+        assertEquals(2, matches.size());
+        assertEquals("Henk Jansen", matches.get(0).getDisplayName());
+        assertEquals("Henk de Boer", matches.get(1).getDisplayName());
+
+        matches = mSearchEngine.getT9Matches("0");
+        assertEquals(3, matches.size());
+        assertEquals("Anna", matches.get(0).getDisplayName());
+        assertEquals("Henk Jansen", matches.get(1).getDisplayName());
+        assertEquals("Henk de Boer", matches.get(2).getDisplayName());
+
+        assertEquals(0, mSearchEngine.getT9Matches("225537").size());
+        assertEquals(0, mSearchEngine.getT9Matches("2374").size());
+    }
+
+    @Test
+    public void it_applies_a_delta_sync_that_happens_during_a_load() {
+        T9SearchEngine searchEngine = new T9SearchEngine();
+        T9DatabaseHelper t9Database = mock(T9DatabaseHelper.class);
+        doAnswer(invocation -> {
+            T9SearchEngine.Builder builder = invocation.getArgument(0);
+            builder.addContactNumber(1, "a", "Henk van den Berg", null, "0508009000", 2, null)
+                    .addQuery(1, "43658263362374");
+
+            // Contact 1 is renamed after the load read it.
+            searchEngine.update(Collections.singleton(1L), new T9SearchEngine.Builder()
+                    .addContactNumber(1, "a", "Anna", null, "0508009000", 2, null)
+                    .addQuery(1, "2662"));
+            return null;
+        }).when(t9Database).populateSearchIndex(any(T9SearchEngine.Builder.class));
+
+        searchEngine.reload(t9Database);
+
+        assertEquals(0, searchEngine.getT9Matches("4365").size());
+        assertEquals("Anna", searchEngine.getT9Matches("2662").get(0).getDisplayName());
+    }
+
+    @Test
+    public void it_finds_the_contact_of_a_phone_number_in_any_notation() {
+        assertEquals(1, mSearchEngine.findContactByPhoneNumber("+31612345678").getContactId());
+        assertEquals(1, mSearchEngine.findContactByPhoneNumber("0612345678").getContactId());
+        assertEquals(1, mSearchEngine.findContactByPhoneNumber("+31 (0)6-1234 5678").getContactId());
+        assertEquals("Bakker", mSearchEngine.findContactByPhoneNumber("020 123 4567").getDisplayName());
+        assertEquals(null, mSearchEngine.findContactByPhoneNumber("0201234568"));
+        assertEquals(null, mSearchEngine.findContactByPhoneNumber("xxx"));
+        assertEquals(null, new T9SearchEngine().findContactByPhoneNumber("0612345678"));
+    }
+
+    @Test
+    public void it_does_not_mix_up_numbers_that_only_differ_in_the_country_code() {
+        mSearchEngine.setIndex(new T9SearchEngine.Builder()
+                .addContactNumber(1, "a", "Anna", null, "+32 612345678", 2, null)
+                .addContactNumber(2, "b", "Bakker", null, "+31612345678", 2, null)
+                .addContactNumber(3, "c", "Cor", null, "0301234567", 2, null)
+                .build());
+
+        assertEquals(1, mSearchEngine.findContactByPhoneNumber("0032612345678").getContactId());
+        assertEquals(2, mSearchEngine.findContactByPhoneNumber("+31 (0)6 12345678").getContactId());
+        assertEquals(null, mSearchEngine.findContactByPhoneNumber("+44612345678"));
+        assertEquals(null, mSearchEngine.findContactByPhoneNumber("0401234567"));
+        assertEquals(3, mSearchEngine.findContactByPhoneNumber("+31301234567").getContactId());
+    }
+
+    @Test
+    public void it_reads_national_numbers_as_numbers_in_the_home_country() {
+        mSearchEngine.setIndex(new T9SearchEngine.Builder()
+                .addContactNumber(1, "a", "Anna", null, "0612345678", 2, null)
+                .addContactNumber(2, "b", "Bakker", null, "+32612345678", 2, null)
+                .build());
+        mSearchEngine.setHomeCallingCode("+31");
+
+        assertEquals(1, mSearchEngine.findContactByPhoneNumber("+31612345678").getContactId());
+        assertEquals(1, mSearchEngine.findContactByPhoneNumber("0031612345678").getContactId());
+        assertEquals(1, mSearchEngine.findContactByPhoneNumber("06 1234 5678").getContactId());
+        assertEquals(2, mSearchEngine.findContactByPhoneNumber("0032612345678").getContactId());
+    }
+
+    @Test
+    public void it_compares_phone_numbers_in_the_home_country() {
+        assertTrue(T9SearchEngine.isSamePhoneNumber("0031612345678", "0612345678", "+31"));
+        assertTrue(T9SearchEngine.isSamePhoneNumber("0612345678", "+31612345678", "+31"));
+        assertTrue(T9SearchEngine.isSamePhoneNumber("0612345678", "06-12345678", "+31"));
+        assertFalse(T9SearchEngine.isSamePhoneNumber("0612345678", "+32612345678", "+31"));
+        assertTrue(T9SearchEngine.isSamePhoneNumber("0612345678", "+32612345678", ""));
+    }
+
+    @Test
+    public void it_compares_phone_numbers_in_any_notation() {
+        assertTrue(T9SearchEngine.isSamePhoneNumber("+31612345678", "0612345678"));
+        assertTrue(T9SearchEngine.isSamePhoneNumber("0031 6 1234 5678", "+31 (0)6-1234 5678"));
+        assertTrue(T9SearchEngine.isSamePhoneNumber("201", "2-01"));
+        assertFalse(T9SearchEngine.isSamePhoneNumber("+31612345678", "+32612345678"));
+        assertFalse(T9SearchEngine.isSamePhoneNumber("+31612345678", "612345678"));
+        assertFalse(T9SearchEngine.isSamePhoneNumber("0612345678", "0512345678"));
+        assertFalse(T9SearchEngine.isSamePhoneNumber("xxx", "xxx"));
+    }
+
+    @Test
+    public void the_phone_number_key_is_made_of_the_last_digits() {
+        assertEquals("612345678", T9SearchEngine.getPhoneNumberKey("+31612345678"));
+        assertEquals("612345678", T9SearchEngine.getPhoneNumberKey("06-12345678"));
+        assertEquals("201", T9SearchEngine.getPhoneNumberKey("201"));
+        assertEquals(null, T9SearchEngine.getPhoneNumberKey("xxx"));
+    }
+}